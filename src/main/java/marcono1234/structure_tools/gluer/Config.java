@@ -1,14 +1,50 @@
 package marcono1234.structure_tools.gluer;
 
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+
+import marcono1234.structure_tools.structure.StructureDiskCache;
+import marcono1234.structure_tools.structure.StructureIndex;
+import marcono1234.structure_tools.structure.StructureWriter;
+import marcono1234.structure_tools.util.CodecPool;
+import marcono1234.structure_tools.util.NbtReadLimits;
+import marcono1234.structure_tools.util.ParallelGzipOutputStream;
+
 public class Config {
+    public static final long DEFAULT_CACHE_SIZE_LIMIT = 1024L * 1024 * 1024;
+    
     private final String author;
     private final Integer dataVersion;
     private final boolean writeFakeSize;
+    private final boolean compressOutput;
+    private final int compressionLevel;
+    private final int compressionBufferSize;
+    private final Path structureIndex;
+    private final Path cacheDirectory;
+    private final long cacheSizeLimit;
+    private final int ioBufferSize;
+    private final NbtReadLimits readLimits;
+    private final boolean passThroughNbt;
+    private final boolean deduplicateNbt;
     
-    public Config(final String author, final Integer dataVersion, final boolean writeFakeSize) {
+    public Config(final String author, final Integer dataVersion, final boolean writeFakeSize, final boolean compressOutput, final int compressionLevel, final int compressionBufferSize, final Path structureIndex, final Path cacheDirectory, final long cacheSizeLimit, final int ioBufferSize, final NbtReadLimits readLimits, final boolean passThroughNbt, final boolean deduplicateNbt) {
         this.author = author;
         this.dataVersion = dataVersion;
         this.writeFakeSize = writeFakeSize;
+        this.compressOutput = compressOutput;
+        this.compressionLevel = compressionLevel;
+        this.compressionBufferSize = compressionBufferSize;
+        this.structureIndex = structureIndex;
+        this.cacheDirectory = cacheDirectory;
+        this.cacheSizeLimit = cacheSizeLimit;
+        this.ioBufferSize = ioBufferSize;
+        this.readLimits = readLimits;
+        this.passThroughNbt = passThroughNbt;
+        this.deduplicateNbt = deduplicateNbt;
+    }
+    
+    public Config(final String author, final Integer dataVersion, final boolean writeFakeSize) {
+        this(author, dataVersion, writeFakeSize, true, Deflater.DEFAULT_COMPRESSION, ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE, null, null, DEFAULT_CACHE_SIZE_LIMIT, CodecPool.DEFAULT_BUFFER_SIZE, null, false, false);
     }
     
     public Config() {
@@ -50,4 +86,130 @@ public class Config {
     public boolean shouldWriteFakeSize() {
         return writeFakeSize;
     }
+    
+    /**
+     * Returns whether the glued structure should be GZIP compressed. Minecraft 
+     * requires compressed structure files, uncompressed output is only useful 
+     * for other tools processing the NBT data.
+     * 
+     * @return
+     *      Whether the glued structure should be compressed
+     */
+    public boolean shouldCompressOutput() {
+        return compressOutput;
+    }
+    
+    /**
+     * Returns the deflate compression level, 0 - 9 or {@link Deflater#DEFAULT_COMPRESSION}.
+     * 
+     * @return
+     *      The compression level
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+    
+    /**
+     * Returns the size in bytes of the blocks which are compressed in parallel.
+     * 
+     * @return
+     *      The compression buffer size
+     */
+    public int getCompressionBufferSize() {
+        return compressionBufferSize;
+    }
+    
+    /**
+     * Returns the path of the {@link StructureIndex} file which should be used to 
+     * validate the structures before reading them. If the value is {@code null}, 
+     * the structures are only validated while gluing.
+     * 
+     * @return
+     *      Path of the structure index file, or {@code null}
+     */
+    public Path getStructureIndex() {
+        return structureIndex;
+    }
+    
+    /**
+     * Returns the directory of the {@link StructureDiskCache} which should be used 
+     * for loading the structures. If the value is {@code null}, no cache is used.
+     * 
+     * @return
+     *      Directory of the structure cache, or {@code null}
+     */
+    public Path getCacheDirectory() {
+        return cacheDirectory;
+    }
+    
+    /**
+     * Returns the maximum total size in bytes of the structure cache entries.
+     * 
+     * @return
+     *      The structure cache size limit
+     */
+    public long getCacheSizeLimit() {
+        return cacheSizeLimit;
+    }
+    
+    /**
+     * Returns the size in bytes of the pooled buffers used for reading and writing 
+     * structures, see {@link CodecPool}.
+     * 
+     * @return
+     *      The I/O buffer size
+     */
+    public int getIoBufferSize() {
+        return ioBufferSize;
+    }
+    
+    /**
+     * Returns the limits for reading the structure files. If no limits are 
+     * configured, {@link NbtReadLimits#UNLIMITED} is returned.
+     * 
+     * @return
+     *      The limits for reading structure files
+     */
+    public NbtReadLimits getReadLimits() {
+        return readLimits == null ? NbtReadLimits.UNLIMITED : readLimits;
+    }
+    
+    /**
+     * Returns whether the NBT data of blocks and entities should be copied from the 
+     * structure files to the glued structure in serialized form, without decoding 
+     * and encoding it. This is faster, but the NBT data is only validated and not 
+     * normalized, e.g. the order of the compound entries is kept.
+     * 
+     * @return
+     *      Whether NBT data of blocks and entities should be passed through
+     */
+    public boolean shouldPassThroughNbt() {
+        return passThroughNbt;
+    }
+    
+    /**
+     * Returns whether blocks with identical NBT data, e.g. empty chests, should share 
+     * one immutable serialized instance of the data, both in the loaded structures 
+     * and in the glued structure. This reduces the memory usage for structures with 
+     * many such blocks.
+     * 
+     * @return
+     *      Whether NBT data of blocks should be deduplicated
+     */
+    public boolean shouldDeduplicateNbt() {
+        return deduplicateNbt;
+    }
+    
+    /**
+     * Creates a writer for the glued structure using the output settings of 
+     * this config.
+     * 
+     * @return
+     *      Writer for the glued structure
+     * @throws IllegalArgumentException
+     *      If the compression level or the buffer size is invalid
+     */
+    public StructureWriter createStructureWriter() throws IllegalArgumentException {
+        return new StructureWriter(compressOutput, compressionLevel, compressionBufferSize);
+    }
 }
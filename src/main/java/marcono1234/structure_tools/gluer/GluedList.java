@@ -0,0 +1,166 @@
+package marcono1234.structure_tools.gluer;
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Unmodifiable list view which concatenates the lists of multiple sources and 
+ * maps each element when it is accessed. Used for creating the block and entity 
+ * lists of a glued structure without copying all elements.
+ * 
+ * @param <S>
+ *      Type of the sources
+ * @param <T>
+ *      Type of the elements
+ */
+class GluedList<S, T> extends AbstractList<T> {
+    private final List<S> sources;
+    private final Function<S, List<T>> listRetriever;
+    private final BiFunction<S, T, T> elementMapper;
+    /**
+     * Index of the first element of each source within this list
+     */
+    private final int[] startIndices;
+    private final int size;
+    /**
+     * Source index of the last accessed element, used for speeding up sequential 
+     * access. Only a hint, so it does not matter if it is updated concurrently.
+     */
+    private int lastSourceIndex;
+    
+    public GluedList(final List<S> sources, final Function<S, List<T>> listRetriever, final BiFunction<S, T, T> elementMapper) throws IllegalArgumentException {
+        this.sources = sources;
+        this.listRetriever = listRetriever;
+        this.elementMapper = elementMapper;
+        
+        startIndices = new int[sources.size()];
+        int size = 0;
+        
+        for (int sourceIndex = 0; sourceIndex < startIndices.length; sourceIndex++) {
+            startIndices[sourceIndex] = size;
+            
+            try {
+                size = Math.addExact(size, listRetriever.apply(sources.get(sourceIndex)).size());
+            }
+            catch (final ArithmeticException arithmeticException) {
+                throw new IllegalArgumentException("Too many elements", arithmeticException);
+            }
+        }
+        
+        this.size = size;
+        lastSourceIndex = 0;
+    }
+    
+    /**
+     * Finds the last source whose start index is {@code <= index}. Sources with 
+     * empty lists have the same start index as their successor, therefore the 
+     * last one is the only one which can contain the element.
+     */
+    private int findSourceIndex(final int index) {
+        final int lastSourceIndex = this.lastSourceIndex;
+        final int lastSourceEndIndex = lastSourceIndex + 1 < startIndices.length ? startIndices[lastSourceIndex + 1] : size;
+        
+        if (startIndices[lastSourceIndex] <= index && index < lastSourceEndIndex) {
+            return lastSourceIndex;
+        }
+        
+        int low = 0;
+        int high = startIndices.length - 1;
+        
+        while (low < high) {
+            // Round up to make progress when high == low + 1
+            final int middle = (low + high + 1) >>> 1;
+            
+            if (startIndices[middle] <= index) {
+                low = middle;
+            }
+            else {
+                high = middle - 1;
+            }
+        }
+        
+        this.lastSourceIndex = low;
+        return low;
+    }
+    
+    /**
+     * Returns the index of the source which contains the element with the given index.
+     * 
+     * @param index
+     *      Index of the element within this list
+     * @return
+     *      Index of the source
+     * @throws IndexOutOfBoundsException
+     *      If the index is invalid
+     */
+    protected int getSourceIndex(final int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(String.format("Index %d, size %d", index, size));
+        }
+        
+        return findSourceIndex(index);
+    }
+    
+    protected S getSource(final int sourceIndex) {
+        return sources.get(sourceIndex);
+    }
+    
+    /**
+     * Converts the index of an element within this list to the index within 
+     * the list of its source.
+     */
+    protected int getIndexInSource(final int index, final int sourceIndex) {
+        return index - startIndices[sourceIndex];
+    }
+    
+    @Override
+    public T get(final int index) {
+        final int sourceIndex = getSourceIndex(index);
+        final S source = getSource(sourceIndex);
+        
+        return elementMapper.apply(source, listRetriever.apply(source).get(getIndexInSource(index, sourceIndex)));
+    }
+    
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private final Iterator<S> sourcesIterator = sources.iterator();
+            private S source;
+            private Iterator<T> elementsIterator = Collections.emptyIterator();
+            
+            @Override
+            public boolean hasNext() {
+                while (!elementsIterator.hasNext()) {
+                    if (!sourcesIterator.hasNext()) {
+                        return false;
+                    }
+                    
+                    source = sourcesIterator.next();
+                    elementsIterator = listRetriever.apply(source).iterator();
+                }
+                
+                return true;
+            }
+            
+            @Override
+            public T next() {
+                if (hasNext()) {
+                    return elementMapper.apply(source, elementsIterator.next());
+                }
+                else {
+                    throw new NoSuchElementException();
+                }
+            }
+        };
+    }
+}
@@ -1,20 +1,33 @@
 package marcono1234.structure_tools.gluer;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.function.BiPredicate;
+import java.util.Objects;
+import java.util.Optional;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import marcono1234.structure_tools.gluer.Layout.StructureInfo;
 import marcono1234.structure_tools.gluer.palette.PaletteMap;
+import marcono1234.structure_tools.structure.BlockColumns;
 import marcono1234.structure_tools.structure.BlockInfo;
+import marcono1234.structure_tools.structure.BlockStorage;
 import marcono1234.structure_tools.structure.BlockState;
 import marcono1234.structure_tools.structure.EntityInfo;
+import marcono1234.structure_tools.structure.EntityStorage;
+import marcono1234.structure_tools.structure.OffHeapBlockStorage;
 import marcono1234.structure_tools.structure.Structure;
+import marcono1234.structure_tools.structure.StructureHeader;
+import marcono1234.structure_tools.structure.StructureIndex;
+import marcono1234.structure_tools.structure.StructureProjection;
+import marcono1234.structure_tools.structure.StructureWriter;
 import marcono1234.structure_tools.util.Double3D;
 import marcono1234.structure_tools.util.Int3D;
+import marcono1234.structure_tools.util.NbtDeduplicator;
+import marcono1234.structure_tools.util.RawNbt;
+import net.querz.nbt.CompoundTag;
 
 public class Gluer {
     private static final Logger logger = LogManager.getLogger();
@@ -48,60 +61,422 @@ public class Gluer {
         this.config = config;
     }
     
+    /**
+     * Consumer of offset blocks; exactly one of the NBT values is non-{@code null} 
+     * if the block has NBT data.
+     */
+    @FunctionalInterface
+    private static interface OffsetBlockConsumer {
+        void accept(int x, int y, int z, int state, RawNbt rawNbt, CompoundTag nbt);
+    }
+    
+    /**
+     * Structure of the layout together with the information needed to add its 
+     * blocks and entities to the glued structure.
+     */
+    private static class GluedPiece {
+        private final Structure structure;
+        private final int offsetX;
+        private final int offsetY;
+        private final int offsetZ;
+        private final List<Integer> stateIndices;
+        /**
+         * Blocks of the structure if they are stored in columns, otherwise {@code null}
+         */
+        private final BlockColumns blockColumns;
+        
+        public GluedPiece(final Structure structure, final int offsetX, final int offsetY, final int offsetZ, final List<Integer> stateIndices) {
+            this.structure = structure;
+            this.offsetX = offsetX;
+            this.offsetY = offsetY;
+            this.offsetZ = offsetZ;
+            this.stateIndices = stateIndices;
+            
+            final List<BlockInfo> blocks = structure.getBlocks();
+            blockColumns = blocks instanceof BlockColumns ? (BlockColumns) blocks : null;
+        }
+        
+        public List<BlockInfo> getBlocks() {
+            return structure.getBlocks();
+        }
+        
+        public List<EntityInfo> getEntities() {
+            return structure.getEntities().orElse(Collections.emptyList());
+        }
+        
+        public int getOffsetBlockX(final int index) {
+            return (blockColumns == null ? getBlocks().get(index).getPos().getX() : blockColumns.getX(index)) + offsetX;
+        }
+        
+        public int getOffsetBlockY(final int index) {
+            return (blockColumns == null ? getBlocks().get(index).getPos().getY() : blockColumns.getY(index)) + offsetY;
+        }
+        
+        public int getOffsetBlockZ(final int index) {
+            return (blockColumns == null ? getBlocks().get(index).getPos().getZ() : blockColumns.getZ(index)) + offsetZ;
+        }
+        
+        public int getMappedBlockState(final int index) {
+            return stateIndices.get(blockColumns == null ? getBlocks().get(index).getState() : blockColumns.getState(index));
+        }
+        
+        public boolean hasBlockNbt(final int index) {
+            return blockColumns == null ? getBlocks().get(index).getNbt().isPresent() : blockColumns.hasNbt(index);
+        }
+        
+        public Optional<CompoundTag> getBlockNbt(final int index) {
+            return blockColumns == null ? getBlocks().get(index).getNbt() : blockColumns.getNbt(index);
+        }
+        
+        public Optional<RawNbt> getBlockRawNbt(final int index) {
+            return blockColumns == null ? getBlocks().get(index).getRawNbt() : blockColumns.getRawNbt(index);
+        }
+        
+        public BlockInfo offsetBlock(final BlockInfo blockInfo) {
+            // Keeps serialized NBT data as is, without decoding it
+            return blockInfo.withPosAndState(
+                blockInfo.getPos().add(offsetX, offsetY, offsetZ),
+                stateIndices.get(blockInfo.getState())
+            );
+        }
+        
+        /**
+         * Passes all offset blocks to the consumer. If the blocks are stored in 
+         * columns the primitive values are used without creating any objects.
+         */
+        public void forEachOffsetBlock(final OffsetBlockConsumer consumer) {
+            final List<BlockInfo> blocks = getBlocks();
+            
+            if (blocks instanceof BlockColumns) {
+                final BlockColumns columns = (BlockColumns) blocks;
+                
+                for (int index = 0; index < columns.size(); index++) {
+                    RawNbt rawNbt = null;
+                    CompoundTag nbt = null;
+                    
+                    if (columns.hasNbt(index)) {
+                        rawNbt = columns.getRawNbt(index).orElse(null);
+                        nbt = rawNbt == null ? columns.getNbt(index).orElse(null) : null;
+                    }
+                    
+                    consumer.accept(
+                        columns.getX(index) + offsetX,
+                        columns.getY(index) + offsetY,
+                        columns.getZ(index) + offsetZ,
+                        stateIndices.get(columns.getState(index)),
+                        rawNbt,
+                        nbt
+                    );
+                }
+            }
+            else {
+                for (final BlockInfo blockInfo : blocks) {
+                    final Int3D pos = blockInfo.getPos();
+                    final RawNbt rawNbt = blockInfo.getRawNbt().orElse(null);
+                    
+                    consumer.accept(
+                        pos.getX() + offsetX,
+                        pos.getY() + offsetY,
+                        pos.getZ() + offsetZ,
+                        stateIndices.get(blockInfo.getState()),
+                        rawNbt,
+                        rawNbt == null ? blockInfo.getNbt().orElse(null) : null
+                    );
+                }
+            }
+        }
+        
+        /**
+         * Adds all offset entities to the builder. If the entities are stored in an 
+         * entity storage the primitive values are used without creating any objects.
+         */
+        public void addOffsetEntities(final EntityStorage.Builder builder) {
+            final List<EntityInfo> entities = getEntities();
+            
+            if (entities instanceof EntityStorage) {
+                final EntityStorage entityStorage = (EntityStorage) entities;
+                
+                for (int index = 0; index < entityStorage.size(); index++) {
+                    builder.add(
+                        entityStorage.getX(index) + offsetX,
+                        entityStorage.getY(index) + offsetY,
+                        entityStorage.getZ(index) + offsetZ,
+                        entityStorage.getBlockX(index) + offsetX,
+                        entityStorage.getBlockY(index) + offsetY,
+                        entityStorage.getBlockZ(index) + offsetZ,
+                        entityStorage,
+                        index
+                    );
+                }
+            }
+            else {
+                for (final EntityInfo entityInfo : entities) {
+                    builder.add(offsetEntity(entityInfo));
+                }
+            }
+        }
+        
+        public EntityInfo offsetEntity(final EntityInfo entityInfo) {
+            return entityInfo.withPos(
+                entityInfo.getPos().add(offsetX, offsetY, offsetZ),
+                entityInfo.getBlockPos().add(offsetX, offsetY, offsetZ)
+            );
+        }
+    }
+    
+    /**
+     * Lazily glued block list which implements {@link BlockColumns}, so consumers such 
+     * as {@link StructureWriter} can read the offset positions and mapped states of the 
+     * blocks without a block info being created for every block.
+     */
+    private static class GluedBlockList extends GluedList<GluedPiece, BlockInfo> implements BlockColumns {
+        public GluedBlockList(final List<GluedPiece> pieces) throws IllegalArgumentException {
+            super(pieces, GluedPiece::getBlocks, GluedPiece::offsetBlock);
+        }
+        
+        @Override
+        public int getX(final int index) {
+            final int sourceIndex = getSourceIndex(index);
+            return getSource(sourceIndex).getOffsetBlockX(getIndexInSource(index, sourceIndex));
+        }
+        
+        @Override
+        public int getY(final int index) {
+            final int sourceIndex = getSourceIndex(index);
+            return getSource(sourceIndex).getOffsetBlockY(getIndexInSource(index, sourceIndex));
+        }
+        
+        @Override
+        public int getZ(final int index) {
+            final int sourceIndex = getSourceIndex(index);
+            return getSource(sourceIndex).getOffsetBlockZ(getIndexInSource(index, sourceIndex));
+        }
+        
+        @Override
+        public int getState(final int index) {
+            final int sourceIndex = getSourceIndex(index);
+            return getSource(sourceIndex).getMappedBlockState(getIndexInSource(index, sourceIndex));
+        }
+        
+        @Override
+        public boolean hasNbt(final int index) {
+            final int sourceIndex = getSourceIndex(index);
+            return getSource(sourceIndex).hasBlockNbt(getIndexInSource(index, sourceIndex));
+        }
+        
+        @Override
+        public Optional<CompoundTag> getNbt(final int index) {
+            final int sourceIndex = getSourceIndex(index);
+            return getSource(sourceIndex).getBlockNbt(getIndexInSource(index, sourceIndex));
+        }
+        
+        @Override
+        public Optional<RawNbt> getRawNbt(final int index) {
+            final int sourceIndex = getSourceIndex(index);
+            return getSource(sourceIndex).getBlockRawNbt(getIndexInSource(index, sourceIndex));
+        }
+    }
+    
+    /**
+     * Determines the data version of the glued structure and logs a warning if 
+     * not all structures have the same data version.
+     */
+    private class DataVersionResolver {
+        private Integer dataVersion = config.getDataVersion();
+        private boolean loggedWarning = false;
+        
+        public void add(final int structureDataVersion) {
+            if (dataVersion == null) {
+                dataVersion = structureDataVersion;
+            }
+            else if (dataVersion != structureDataVersion) {
+                if (config.getDataVersion() == null) {
+                    if (!loggedWarning) {
+                        loggedWarning = true;
+                        logger.warn("Not all structures have same DataVersion; using highest one");
+                    }
+                    
+                    dataVersion = Math.max(dataVersion, structureDataVersion);
+                }
+                else if (!loggedWarning) {
+                    loggedWarning = true;
+                    logger.warn("Not all structures have same DataVersion as specified one");
+                }
+            }
+        }
+        
+        public Integer getDataVersion() {
+            return dataVersion;
+        }
+    }
+    
+    /**
+     * <p>Validates the structures described by the given headers before reading them 
+     * completely, e.g. using the headers of a {@link StructureIndex}. Checks that the 
+     * sizes of the structures are in bounds and logs a warning if not all structures 
+     * have the same data version, the same way {@link #glue(Layout)} does.</p>
+     * 
+     * <p>The positions of blocks and entities are not part of the headers and are 
+     * only validated when gluing.</p>
+     * 
+     * @param headers
+     *      Headers of the structures to glue
+     * @throws OutOfBoundsException
+     *      If the size of one of the structures is out of bounds
+     */
+    public void validateHeaders(final Iterable<StructureHeader> headers) throws OutOfBoundsException {
+        final DataVersionResolver dataVersionResolver = new DataVersionResolver();
+        
+        for (final StructureHeader header : headers) {
+            validateSizeBounds(header.getSize(), header.getActualSize());
+            dataVersionResolver.add(header.getDataVersion());
+        }
+    }
+    
     public Structure glue(final Layout layout) {
+        return glue(layout, false, null);
+    }
+    
+    /**
+     * <p>Glues the structures the same way {@link #glue(Layout)} does, except that the 
+     * blocks are stored outside of the Java heap using the given builder. The blocks 
+     * list of the returned structure is the built {@link OffHeapBlockStorage}; the 
+     * caller is responsible for closing it, or the builder if gluing fails.</p>
+     * 
+     * <p>This is intended for structures with so many blocks that storing them on 
+     * the heap would require an impractically large heap size.</p>
+     * 
+     * @param layout
+     *      Layout of the structures to glue
+     * @param blocksBuilder
+     *      Builder which should be used for storing the blocks; must not have been 
+     *      used before
+     * @return
+     *      The glued structure whose blocks are stored off-heap
+     * @throws IllegalArgumentException
+     *      If a block position cannot be stored off-heap
+     */
+    public Structure glueOffHeap(final Layout layout, final OffHeapBlockStorage.Builder blocksBuilder) throws IllegalArgumentException {
+        return glue(layout, false, Objects.requireNonNull(blocksBuilder));
+    }
+    
+    /**
+     * <p>Glues the structures the same way {@link #glue(Layout)} does, except that the 
+     * block and entity lists of the returned structure are views which create the 
+     * offset entries on access instead of containing copies of them.</p>
+     * 
+     * <p>This is intended for directly writing the glued structure, e.g. with 
+     * {@link StructureWriter}, without having all glued blocks in memory at the same 
+     * time. The structures of the layout must not be modified while the returned 
+     * structure is in use, which is guaranteed for {@linkplain Structure#freeze() frozen} 
+     * structures.</p>
+     * 
+     * @param layout
+     *      Layout of the structures to glue
+     * @return
+     *      The glued structure with lazily created block and entity lists
+     */
+    public Structure glueLazily(final Layout layout) {
+        return glue(layout, true, null);
+    }
+    
+    /**
+     * @param offHeapBlocksBuilder
+     *      Builder for storing the blocks off-heap; {@code null} if the blocks 
+     *      should be stored on the heap
+     */
+    private Structure glue(final Layout layout, final boolean lazily, final OffHeapBlockStorage.Builder offHeapBlocksBuilder) {
         final Iterator<StructureInfo> structureInfos = layout.createStructureInfoIterator();
         final PaletteMap palette = new PaletteMap();
-        final List<BlockInfo> blocks = new ArrayList<>();
-        final List<EntityInfo> entities = new ArrayList<>();
-        Integer dataVersion = config.getDataVersion();
-        boolean loggedDataVersionWarning = false;
+        final List<GluedPiece> pieces = new ArrayList<>();
+        final DataVersionResolver dataVersionResolver = new DataVersionResolver();
         
         while (structureInfos.hasNext()) {
             final StructureInfo structureInfo = structureInfos.next();
             
             final Int3D structurePos = structureInfo.getPosition();
             final Structure structure = structureInfo.getStructure();
+            validatePalettes(structure);
             validateBounds(structure);
             
-            final int offsetX = structurePos.getX() * structureSize.getX();
-            final int offsetY = structurePos.getY() * structureSize.getY();
-            final int offsetZ = structurePos.getZ() * structureSize.getZ();
-            final List<Integer> stateIndices = palette.putPalettes(structure.getPalettes());
-            
-            structure.getBlocks().forEach(
-                blockInfo -> blocks.add(new BlockInfo(
-                    blockInfo.getPos().add(offsetX, offsetY, offsetZ),
-                    stateIndices.get(blockInfo.getState()),
-                    blockInfo.getNbt()
-                ))
-            );
-            
-            structure.getEntities().ifPresent(entitiesList -> entitiesList.forEach(
-                entityInfo -> entities.add(new EntityInfo(
-                    entityInfo.getPos().add(offsetX, offsetY, offsetZ),
-                    entityInfo.getBlockPos().add(offsetX, offsetY, offsetZ),
-                    entityInfo.getNbt()
-                ))
+            pieces.add(new GluedPiece(
+                structure,
+                structurePos.getX() * structureSize.getX(),
+                structurePos.getY() * structureSize.getY(),
+                structurePos.getZ() * structureSize.getZ(),
+                palette.putPalettes(structure.getPalettes())
             ));
             
-            final int structureDataVersion = structure.getDataVersion();
+            dataVersionResolver.add(structure.getDataVersion());
+        }
+        
+        final List<BlockInfo> blocks;
+        final List<EntityInfo> entities;
+        
+        if (lazily) {
+            blocks = new GluedBlockList(pieces);
+            entities = new GluedList<>(pieces, GluedPiece::getEntities, GluedPiece::offsetEntity);
+        }
+        else {
+            final EntityStorage.Builder entitiesBuilder = new EntityStorage.Builder();
             
-            if (dataVersion == null) {
-                dataVersion = structureDataVersion;
+            for (final GluedPiece piece : pieces) {
+                piece.addOffsetEntities(entitiesBuilder);
             }
-            else if (dataVersion != structureDataVersion) {
-                if (config.getDataVersion() == null) {
-                    if (!loggedDataVersionWarning) {
-                        loggedDataVersionWarning = true;
-                        logger.warn("Not all structures have same DataVersion; using highest one");
+            
+            entities = entitiesBuilder.build();
+            
+            if (offHeapBlocksBuilder == null) {
+                final BlockStorage.Builder blocksBuilder = new BlockStorage.Builder();
+                
+                if (config.shouldDeduplicateNbt()) {
+                    // Off-heap storage always copies the data, so only deduplicate on the heap
+                    final NbtDeduplicator nbtDeduplicator = new NbtDeduplicator();
+                    
+                    for (final GluedPiece piece : pieces) {
+                        piece.forEachOffsetBlock((x, y, z, state, rawNbt, nbt) -> {
+                            if (rawNbt != null) {
+                                blocksBuilder.add(x, y, z, state, nbtDeduplicator.deduplicate(rawNbt));
+                            }
+                            else if (nbt != null) {
+                                blocksBuilder.add(x, y, z, state, nbtDeduplicator.deduplicate(nbt));
+                            }
+                            else {
+                                blocksBuilder.add(x, y, z, state);
+                            }
+                        });
                     }
                     
-                    dataVersion = Math.max(dataVersion, structureDataVersion);
+                    logger.debug("Deduplicated NBT data of blocks: {} distinct", nbtDeduplicator.getDistinctCount());
                 }
-                else if (!loggedDataVersionWarning) {
-                    loggedDataVersionWarning = true;
-                    logger.warn("Not all structures have same DataVersion as specified one");
+                else {
+                    for (final GluedPiece piece : pieces) {
+                        piece.forEachOffsetBlock((x, y, z, state, rawNbt, nbt) -> {
+                            if (rawNbt == null) {
+                                blocksBuilder.add(x, y, z, state, nbt);
+                            }
+                            else {
+                                blocksBuilder.add(x, y, z, state, rawNbt);
+                            }
+                        });
+                    }
                 }
+                
+                blocks = blocksBuilder.build();
+            }
+            else {
+                for (final GluedPiece piece : pieces) {
+                    piece.forEachOffsetBlock((x, y, z, state, rawNbt, nbt) -> {
+                        if (rawNbt == null) {
+                            offHeapBlocksBuilder.add(x, y, z, state, nbt);
+                        }
+                        else {
+                            offHeapBlocksBuilder.add(x, y, z, state, rawNbt);
+                        }
+                    });
+                }
+                
+                blocks = offHeapBlocksBuilder.build();
             }
         }
         
@@ -126,67 +501,125 @@ public class Gluer {
             blocks,
             palette.createPalette(),
             entities.isEmpty() ? null : entities,
-            dataVersion,
+            dataVersionResolver.getDataVersion(),
             config.getAuthor()
         );
     }
     
-    private void validateBounds(final Structure structure) throws OutOfBoundsException {
-        if (!isInBoundsInclusive(structure.getSize())) {
-            throw new OutOfBoundsException(String.format("Structure size %s", structure.getSize()));
+    private void validateSizeBounds(final Int3D size, final Int3D actualSize) throws OutOfBoundsException {
+        if (!isInBoundsInclusive(size)) {
+            throw new OutOfBoundsException(String.format("Structure size %s", size));
+        }
+        if (!isInBoundsInclusive(actualSize)) {
+            throw new OutOfBoundsException(String.format("Actual structure size %s", actualSize));
         }
-        if (!isInBoundsInclusive(structure.getActualSize())) {
-            throw new OutOfBoundsException(String.format("Actual structure size %s", structure.getActualSize()));
+    }
+    
+    /**
+     * Verifies that the structure has palettes, which is not the case if it was read 
+     * with a {@link StructureProjection} which skips the palettes.
+     */
+    private static void validatePalettes(final Structure structure) throws IllegalArgumentException {
+        if (structure.getPalettes().isEmpty()) {
+            throw new IllegalArgumentException("Structure has no palettes; structures read without palettes cannot be glued");
         }
+    }
+    
+    private void validateBounds(final Structure structure) throws OutOfBoundsException {
+        validateSizeBounds(structure.getSize(), structure.getActualSize());
         
-        for (final BlockInfo blockInfo : structure.getBlocks()) {
-            final Int3D blockInfoPos = blockInfo.getPos();
+        final List<BlockInfo> blocks = structure.getBlocks();
+            
+        if (blocks instanceof BlockColumns) {
+            // Avoid creating a BlockInfo for every block
+            final BlockColumns columns = (BlockColumns) blocks;
             
-            if (!isInBounds(blockInfoPos)) {
-                throw new OutOfBoundsException(String.format("Block info pos %s", blockInfoPos));
+            for (int index = 0; index < columns.size(); index++) {
+                final int x = columns.getX(index);
+                final int y = columns.getY(index);
+                final int z = columns.getZ(index);
+                
+                if (!isInBounds(x, y, z)) {
+                    throw new OutOfBoundsException(String.format("Block info pos %s", new Int3D(x, y, z)));
+                }
+            }
+        }
+        else {
+            for (final BlockInfo blockInfo : blocks) {
+                final Int3D blockInfoPos = blockInfo.getPos();
+                
+                if (!isInBounds(blockInfoPos)) {
+                    throw new OutOfBoundsException(String.format("Block info pos %s", blockInfoPos));
+                }
             }
         }
         
         if (structure.getEntities().isPresent()) {
-            for (final EntityInfo entityInfo : structure.getEntities().get()) {
-                final Double3D entityPos = entityInfo.getPos();
+            final List<EntityInfo> entities = structure.getEntities().get();
                 
-                if (!isInBounds(entityPos)) {
-                    throw new OutOfBoundsException(String.format("Entity pos %s", entityPos));
+            if (entities instanceof EntityStorage) {
+                // Avoid creating an EntityInfo for every entity
+                final EntityStorage entityStorage = (EntityStorage) entities;
+                
+                for (int index = 0; index < entityStorage.size(); index++) {
+                    final double x = entityStorage.getX(index);
+                    final double y = entityStorage.getY(index);
+                    final double z = entityStorage.getZ(index);
+                    
+                    if (!isInBounds(x, y, z)) {
+                        throw new OutOfBoundsException(String.format("Entity pos %s", new Double3D(x, y, z)));
+                    }
+                    
+                    final int blockX = entityStorage.getBlockX(index);
+                    final int blockY = entityStorage.getBlockY(index);
+                    final int blockZ = entityStorage.getBlockZ(index);
+                    
+                    if (!isInBounds(blockX, blockY, blockZ)) {
+                        throw new OutOfBoundsException(String.format("Entity block pos %s", new Int3D(blockX, blockY, blockZ)));
+                    }
                 }
+            }
+            else {
+                for (final EntityInfo entityInfo : entities) {
+                    final Double3D entityPos = entityInfo.getPos();
                 
-                final Int3D entityBlockPos = entityInfo.getBlockPos();
+                    if (!isInBounds(entityPos)) {
+                        throw new OutOfBoundsException(String.format("Entity pos %s", entityPos));
+                    }
                 
-                if (!isInBounds(entityBlockPos)) {
-                    throw new OutOfBoundsException(String.format("Entity block pos %s", entityBlockPos));
+                    final Int3D entityBlockPos = entityInfo.getBlockPos();
+                    
+                    if (!isInBounds(entityBlockPos)) {
+                        throw new OutOfBoundsException(String.format("Entity block pos %s", entityBlockPos));
+                    }
                 }
-                
             }
         }
     }
     
-    private boolean isInBounds(final Int3D pos, final BiPredicate<Integer, Integer> predicate) {
-        return Int3D.createAllCoordinatesPredicate(
-            predicate.and((value, bound) -> value >= 0),
-            structureSize
-        ).test(pos);
+    private boolean isInBounds(final int x, final int y, final int z) {
+        return x >= 0 && x < structureSize.getX()
+            && y >= 0 && y < structureSize.getY()
+            && z >= 0 && z < structureSize.getZ();
     }
     
     private boolean isInBounds(final Int3D pos) {
-        return isInBounds(pos, (value, bound) -> value < bound);
+        return isInBounds(pos.getX(), pos.getY(), pos.getZ());
     }
     
     private boolean isInBoundsInclusive(final Int3D pos) {
-        return isInBounds(pos, (value, bound) -> value <= bound);
+        return pos.getX() >= 0 && pos.getX() <= structureSize.getX()
+            && pos.getY() >= 0 && pos.getY() <= structureSize.getY()
+            && pos.getZ() >= 0 && pos.getZ() <= structureSize.getZ();
     }
     
-    private boolean isInBounds(final Double3D pos, final BiPredicate<Double, Integer> predicate) {
-        return predicate.test(pos.getX(), structureSize.getX())
-            && predicate.test(pos.getY(), structureSize.getY())
-            && predicate.test(pos.getZ(), structureSize.getZ());
+    private boolean isInBounds(final double x, final double y, final double z) {
+        return x >= 0 && x < structureSize.getX()
+            && y >= 0 && y < structureSize.getY()
+            && z >= 0 && z < structureSize.getZ();
     }
     
     private boolean isInBounds(final Double3D pos) {
-        return isInBounds(pos, (value, bound) -> value >= 0 && value < bound);
+        return isInBounds(pos.getX(), pos.getY(), pos.getZ());
     }
 }
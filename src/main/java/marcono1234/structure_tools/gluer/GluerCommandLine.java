@@ -8,7 +8,9 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
 import java.util.function.Function;
 
 import javax.swing.JOptionPane;
@@ -17,15 +19,28 @@ import javax.swing.SwingUtilities;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import marcono1234.structure_tools.structure.BinaryStructure;
 import marcono1234.structure_tools.structure.Structure;
+import marcono1234.structure_tools.structure.StructureCache;
+import marcono1234.structure_tools.structure.StructureDiskCache;
+import marcono1234.structure_tools.structure.StructureHeader;
+import marcono1234.structure_tools.structure.StructureIndex;
+import marcono1234.structure_tools.structure.StructureLoader;
+import marcono1234.structure_tools.structure.StructureWriter;
+import marcono1234.structure_tools.util.CodecPool;
 import marcono1234.structure_tools.util.CommandLineArgument;
 import marcono1234.structure_tools.util.InputStreamHelper;
-import net.querz.nbt.NBTUtil;
+import marcono1234.structure_tools.util.NbtDeduplicator;
+import marcono1234.structure_tools.util.NullSkippingIterable;
 
 public class GluerCommandLine {
     private static final Logger logger = LogManager.getLogger();
     
     private static final String INDENT = "  ";
+    /**
+     * Output path which writes the structure to the standard output
+     */
+    private static final String STANDARD_OUTPUT_PATH = "-";
     private static final Function<String, Path> EXISTING_FILE_PARSER = pathString -> {
         final Path path = Paths.get(pathString);
         
@@ -57,7 +72,8 @@ public class GluerCommandLine {
         ));
         outputPathArg = registerArgument(new CommandLineArgument<>(
             "output path",
-            "File path which should be used for the created structure",
+            "File path which should be used for the created structure, or \"" + STANDARD_OUTPUT_PATH + "\"\n"
+            + "to write it to the standard output",
             Paths::get
         ));
     }
@@ -67,7 +83,17 @@ public class GluerCommandLine {
         return arg;
     }
     
-    private void parseArgs(final String[] args) {
+    /**
+     * Parses the command line arguments and logs an error if parsing fails.
+     * 
+     * @param arguments
+     *      Expected arguments
+     * @param args
+     *      Command line arguments to parse
+     * @return
+     *      Whether parsing was successful
+     */
+    private static boolean parseArgs(final List<CommandLineArgument<?>> arguments, final String[] args) {
         final int argsLength = args.length;
         final int expectedArgsLength = arguments.size();
         
@@ -105,16 +131,64 @@ public class GluerCommandLine {
                         runtimeException
                     );
                     
-                    return;
+                    return false;
                 }
             }
             
+            return true;
+        }
+        
+        return false;
+    }
+    
+    private void glue(final String[] args) {
+        if (parseArgs(arguments, args)) {
             try {
                 final Config config = GsonHelper.fromFile(configArg.getValue(), Config.class);
-                final Layout layout = InputStreamHelper.handleFile(layoutArg.getValue(), Layout::fromInputStream);
-                final Structure gluedStructure = new Gluer(config).glue(layout);
+                // Create writer first to fail fast for invalid output settings
+                final StructureWriter structureWriter = config.createStructureWriter();
+                CodecPool.setBufferSize(config.getIoBufferSize());
+                final List<List<List<Path>>> layoutPaths = InputStreamHelper.handleFile(layoutArg.getValue(), Layout::pathListsFromInputStream);
+                final Gluer gluer = new Gluer(config);
+                
+                if (config.getStructureIndex() != null) {
+                    validateHeaders(gluer, config.getStructureIndex(), layoutPaths);
+                }
+                
+                final StructureLoader fileLoader = StructureLoader.create(
+                    config.getReadLimits(),
+                    config.shouldPassThroughNbt(),
+                    config.shouldDeduplicateNbt() ? new NbtDeduplicator() : null
+                );
+                final StructureLoader structureLoader;
+                
+                if (config.getCacheDirectory() == null) {
+                    structureLoader = fileLoader;
+                }
+                else {
+                    structureLoader = new StructureDiskCache(config.getCacheDirectory(), config.getCacheSizeLimit(), fileLoader);
+                }
                 
-                NBTUtil.writeTag(gluedStructure.toNbt(), outputPathArg.getValue().toFile());
+                /*
+                 * The layout keeps all structures in memory anyway, so caching them only 
+                 * avoids loading structures which are used multiple times again
+                 */
+                final StructureCache structureCache = new StructureCache(Runtime.getRuntime().maxMemory() / 2, structureLoader);
+                final Layout layout = Layout.fromPathLists(layoutPaths, structureCache);
+                logger.debug(String.format("Loaded structures, cache hits: %d, misses: %d", structureCache.getHitCount(), structureCache.getMissCount()));
+                // Blocks and entities are created while writing
+                final Structure gluedStructure = gluer.glueLazily(layout);
+                final Path outputPath = outputPathArg.getValue();
+                
+                if (outputPath.toString().equals(STANDARD_OUTPUT_PATH)) {
+                    structureWriter.write(gluedStructure, System.out);
+                }
+                else if (isBinaryStructurePath(outputPath)) {
+                    BinaryStructure.writeToFile(gluedStructure, outputPath);
+                }
+                else {
+                    structureWriter.writeToFile(gluedStructure, outputPath);
+                }
             }
             catch (final Exception exception) {
                 logger.error("Could not glue structures", exception);
@@ -122,6 +196,110 @@ public class GluerCommandLine {
         }
     }
     
+    /**
+     * Validates the structures of the layout using their headers from the index, 
+     * or read from the file for structures which are not indexed yet. Updates the 
+     * index file if headers had to be read.
+     */
+    private static void validateHeaders(final Gluer gluer, final Path indexPath, final List<List<List<Path>>> layoutPaths) throws IOException {
+        final StructureIndex index = Files.exists(indexPath) ? StructureIndex.readFromFile(indexPath) : new StructureIndex();
+        final List<StructureHeader> headers = new ArrayList<>();
+        boolean updatedIndex = false;
+        
+        for (final List<List<Path>> zList : new NullSkippingIterable<>(layoutPaths)) {
+            for (final List<Path> xList : new NullSkippingIterable<>(zList)) {
+                for (final Path path : new NullSkippingIterable<>(xList)) {
+                    final Optional<StructureHeader> indexedHeader = index.getHeader(path);
+                    
+                    if (indexedHeader.isPresent()) {
+                        headers.add(indexedHeader.get());
+                    }
+                    else {
+                        headers.add(index.getOrReadHeader(path));
+                        updatedIndex = true;
+                    }
+                }
+            }
+        }
+        
+        if (updatedIndex) {
+            index.writeToFile(indexPath);
+        }
+        
+        gluer.validateHeaders(headers);
+    }
+    
+    private static void index(final String[] args) {
+        final CommandLineArgument<Path> directoryArg = new CommandLineArgument<>(
+            "directory",
+            "Directory containing the structure files to index",
+            pathString -> {
+                final Path path = Paths.get(pathString);
+                
+                if (Files.isDirectory(path)) {
+                    return path;
+                }
+                else {
+                    throw new IllegalArgumentException(String.format("Path '%s' does not locate an existing directory", path));
+                }
+            }
+        );
+        final CommandLineArgument<Path> indexPathArg = new CommandLineArgument<>(
+            "index path",
+            "File path which should be used for the index file; an existing index\n"
+            + "file is updated",
+            Paths::get
+        );
+        
+        if (parseArgs(Arrays.asList(directoryArg, indexPathArg), args)) {
+            try {
+                final Path indexPath = indexPathArg.getValue();
+                final StructureIndex previousIndex = Files.exists(indexPath) ? StructureIndex.readFromFile(indexPath) : new StructureIndex();
+                final StructureIndex index = StructureIndex.scanDirectory(directoryArg.getValue(), previousIndex);
+                index.writeToFile(indexPath);
+                
+                logger.info(String.format("Indexed %d structure files", index.size()));
+            }
+            catch (final Exception exception) {
+                logger.error("Could not index structures", exception);
+            }
+        }
+    }
+    
+    private static boolean isBinaryStructurePath(final Path path) {
+        return path.getFileName().toString().endsWith(BinaryStructure.FILE_EXTENSION);
+    }
+    
+    private static void convert(final String[] args) {
+        final CommandLineArgument<Path> inputPathArg = new CommandLineArgument<>(
+            "input path",
+            "Structure file to convert",
+            EXISTING_FILE_PARSER
+        );
+        final CommandLineArgument<Path> outputPathArg = new CommandLineArgument<>(
+            "output path",
+            "File path which should be used for the converted structure",
+            Paths::get
+        );
+        
+        if (parseArgs(Arrays.asList(inputPathArg, outputPathArg), args)) {
+            try {
+                final Structure structure = StructureLoader.DEFAULT.load(inputPathArg.getValue());
+                final Path outputPath = outputPathArg.getValue();
+                
+                if (isBinaryStructurePath(outputPath)) {
+                    BinaryStructure.writeToFile(structure, outputPath);
+                }
+                else {
+                    new StructureWriter().writeToFile(structure, outputPath);
+                }
+            }
+            catch (final Exception exception) {
+                logger.error("Could not convert structure", exception);
+            }
+        }
+    }
+    
     public static void main(final String[] args) {
         if (!isRunningFromCommandLine()) {
             logger.info("Informing user that program has to be used from command line");
@@ -180,7 +358,13 @@ public class GluerCommandLine {
     
     private static void handleCommand(final String command, final String... args) {
         if ("glue".equals(command)) {
-            new GluerCommandLine().parseArgs(args);
+            new GluerCommandLine().glue(args);
+        }
+        else if ("index".equals(command)) {
+            index(args);
+        }
+        else if ("convert".equals(command)) {
+            convert(args);
         }
         else {
             logger.error(String.format("Command '%s' is unknown", command));
@@ -9,7 +9,6 @@ import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -18,6 +17,8 @@ import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParseException;
 
+import marcono1234.structure_tools.util.ArchivePathHelper;
+
 public class GsonHelper {
     private static final Gson gson;
     
@@ -31,7 +32,13 @@ public class GsonHelper {
             .registerTypeAdapter(Path.class, new JsonDeserializer<Path>() {
                 @Override
                 public Path deserialize(final JsonElement json, final Type typeOfT, final JsonDeserializationContext context) throws JsonParseException {
-                    return Paths.get(json.getAsString());
+                    try {
+                        // Supports paths pointing into zip archives
+                        return ArchivePathHelper.parse(json.getAsString());
+                    }
+                    catch (final IOException ioException) {
+                        throw new JsonParseException("Failed opening archive of path " + json.getAsString(), ioException);
+                    }
                 }
             })
             .create();
@@ -3,7 +3,9 @@ package marcono1234.structure_tools.gluer;
 import static marcono1234.structure_tools.util.FunctionHelper.consumerNullable;
 import static marcono1234.structure_tools.util.FunctionHelper.functionNullable;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Type;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -20,7 +22,7 @@ import java.util.stream.Collectors;
 import com.google.gson.reflect.TypeToken;
 
 import marcono1234.structure_tools.structure.Structure;
-import marcono1234.structure_tools.util.ExceptionHelper;
+import marcono1234.structure_tools.structure.StructureLoader;
 import marcono1234.structure_tools.util.Int3D;
 import marcono1234.structure_tools.util.NullSkippingIterable;
 
@@ -296,11 +298,32 @@ public class Layout {
     }
     
     public static Layout fromPathLists(final List<List<List<Path>>> layout) {
+        return fromPathLists(layout, StructureLoader.DEFAULT);
+    }
+    
+    /**
+     * Creates a layout from structure file paths.
+     * 
+     * @param layout
+     *      The y-, z- and x-lists of structure file paths
+     * @param loader
+     *      Loader to use for loading the structure files
+     * @return
+     *      The created layout
+     */
+    public static Layout fromPathLists(final List<List<List<Path>>> layout, final StructureLoader loader) {
         return new Layout(layout.stream()
             .map(functionNullable(zList -> zList.stream()
                 .map(functionNullable(xList -> xList.stream()
                     .map(functionNullable(
-                        path -> ExceptionHelper.get(() -> Structure.readFromFile(path))
+                        path -> {
+                            try {
+                                return loader.load(path);
+                            }
+                            catch (final IOException ioException) {
+                                throw new UncheckedIOException("Failed loading structure " + path, ioException);
+                            }
+                        }
                     ))
                     .collect(Collectors.toList())
                 ))
@@ -311,8 +334,21 @@ public class Layout {
         );
     }
     
+    /**
+     * Reads the structure file paths of a JSON layout file without reading the 
+     * structure files.
+     * 
+     * @param inputStream
+     *      Stream providing the JSON layout data
+     * @return
+     *      The y-, z- and x-lists of structure file paths
+     */
+    public static List<List<List<Path>>> pathListsFromInputStream(final InputStream inputStream) {
+        return GsonHelper.fromInputStream(inputStream, Layout.JSON_CONTENT_TYPE);
+    }
+    
     public static Layout fromInputStream(final InputStream inputStream) {
-        return Layout.fromPathLists(GsonHelper.fromInputStream(inputStream, Layout.JSON_CONTENT_TYPE));
+        return Layout.fromPathLists(pathListsFromInputStream(inputStream));
     }
     
     public static Layout fromStructureInfos(final Collection<StructureInfo> structureInfos) throws IllegalStateException {
@@ -1,7 +1,9 @@
 package marcono1234.structure_tools.gluer.palette;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import marcono1234.structure_tools.structure.BlockState;
@@ -9,10 +11,16 @@ import marcono1234.structure_tools.structure.BlockState;
 public class PaletteMap {
     private int variantsCount;
     private final List<VariantsBase> palette;
+    /**
+     * Index of each variants within {@link #palette}, to avoid a linear search 
+     * for every block state of every structure
+     */
+    private final Map<VariantsBase, Integer> paletteIndices;
     
     public PaletteMap() {
         variantsCount = 1;
         palette = new ArrayList<>();
+        paletteIndices = new HashMap<>();
     }
     
     public List<Integer> putPalettes(final List<List<BlockState>> palettes) {
@@ -51,11 +59,14 @@ public class PaletteMap {
     }
     
     private int putVariants(final VariantsBase variants) {
-        final int index = palette.indexOf(variants);
+        final Integer index = paletteIndices.get(variants);
         
-        if (index == -1) {
+        if (index == null) {
+            final int newIndex = palette.size();
             palette.add(variants);
-            return palette.size() - 1;
+            paletteIndices.put(variants, newIndex);
+            
+            return newIndex;
         }
         else {
             return index;
@@ -0,0 +1,707 @@
+package marcono1234.structure_tools.structure;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.RandomAccess;
+
+import marcono1234.structure_tools.util.ByteBufferInputStream;
+import marcono1234.structure_tools.util.Double3D;
+import marcono1234.structure_tools.util.Int3D;
+import marcono1234.structure_tools.util.NbtReader;
+import marcono1234.structure_tools.util.NbtWriter;
+import marcono1234.structure_tools.util.PackedPos;
+import marcono1234.structure_tools.util.RawNbt;
+import net.querz.nbt.CompoundTag;
+
+/**
+ * <p>Structure stored in the uncompressed, columnar "structure-tools binary" format. 
+ * The data can be memory mapped and is accessed directly from the buffer; no objects 
+ * are created for blocks or entities unless they are requested. Conversion from 
+ * and to {@link Structure} is lossless.</p>
+ * 
+ * <p>The format consists of a fixed size header followed by sections whose offsets 
+ * are stored in the header, all values are big-endian. The sections are written 
+ * in the following order:</p>
+ * <ul>
+ *  <li>block positions: one {@code long} per block, x, y and z packed as signed 
+ *  21-bit values, see {@link PackedPos}</li>
+ *  <li>entities: per entity the position as three {@code double}s and the block 
+ *  position as three {@code int}s</li>
+ *  <li>block states: one {@code int} per block</li>
+ *  <li>NBT offsets: {@code blocksCount + 1} offsets of the block NBT followed by 
+ *  {@code entitiesCount + 1} offsets of the entity NBT, relative to the start of 
+ *  the NBT data section; an element without NBT has an empty range</li>
+ *  <li>palettes: palettes count, and for each palette the block states count 
+ *  followed by the block states as binary NBT compounds</li>
+ *  <li>NBT data: binary NBT compound values, without tag ID and name</li>
+ *  <li>author: modified UTF-8 string as written by {@link DataOutputStream#writeUTF(String)}</li>
+ * </ul>
+ */
+public class BinaryStructure {
+    /**
+     * File extension of files in the binary format
+     */
+    public static final String FILE_EXTENSION = ".stb";
+    
+    private static final int MAGIC = 0x53544231; // "STB1"
+    private static final int FORMAT_VERSION = 1;
+    
+    private static final int FLAG_ACTUAL_SIZE = 1;
+    private static final int FLAG_ENTITIES = 1 << 1;
+    private static final int FLAG_AUTHOR = 1 << 2;
+    
+    private static final int HEADER_SIZE = 80;
+    private static final int ENTITY_RECORD_SIZE = 3 * Double.BYTES + 3 * Integer.BYTES;
+    
+    private final ByteBuffer buffer;
+    private final Int3D size;
+    private final Int3D actualSize;
+    private final int dataVersion;
+    private final int blocksCount;
+    private final int entitiesCount;
+    private final boolean hasEntities;
+    private final int positionsOffset;
+    private final int statesOffset;
+    private final int nbtOffsetsOffset;
+    private final int entitiesOffset;
+    private final int palettesOffset;
+    private final int nbtDataOffset;
+    private final int nbtDataLength;
+    private final String author;
+    
+    private BinaryStructure(final ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        
+        try {
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Data is not in structure-tools binary format");
+            }
+            
+            final int formatVersion = buffer.getInt(4);
+            
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException("Unsupported binary format version " + formatVersion);
+            }
+            
+            final int flags = buffer.getInt(8);
+            size = readInt3D(12);
+            actualSize = (flags & FLAG_ACTUAL_SIZE) != 0 ? readInt3D(24) : null;
+            dataVersion = buffer.getInt(36);
+            blocksCount = verifyCount(buffer.getInt(40));
+            entitiesCount = verifyCount(buffer.getInt(44));
+            hasEntities = (flags & FLAG_ENTITIES) != 0;
+            positionsOffset = verifySection(buffer.getInt(48), (long) blocksCount * Long.BYTES);
+            statesOffset = verifySection(buffer.getInt(52), (long) blocksCount * Integer.BYTES);
+            nbtOffsetsOffset = verifySection(buffer.getInt(56), ((long) blocksCount + entitiesCount + 2) * Integer.BYTES);
+            entitiesOffset = verifySection(buffer.getInt(60), (long) entitiesCount * ENTITY_RECORD_SIZE);
+            palettesOffset = verifySection(buffer.getInt(64), Integer.BYTES);
+            nbtDataLength = buffer.getInt(72);
+            nbtDataOffset = verifySection(buffer.getInt(68), nbtDataLength);
+            
+            if ((flags & FLAG_AUTHOR) != 0) {
+                final int authorOffset = verifySection(buffer.getInt(76), Short.BYTES);
+                author = createNbtReader(authorOffset, buffer.limit() - authorOffset).readString();
+            }
+            else {
+                author = null;
+            }
+        }
+        catch (final IndexOutOfBoundsException indexOutOfBoundsException) {
+            throw new IOException("Malformed binary structure data", indexOutOfBoundsException);
+        }
+    }
+    
+    private static int verifyCount(final int count) throws IOException {
+        if (count < 0) {
+            throw new IOException("Invalid count " + count);
+        }
+        
+        return count;
+    }
+    
+    private int verifySection(final int offset, final long length) throws IOException {
+        if (offset < HEADER_SIZE || length < 0 || offset + length > buffer.limit()) {
+            throw new IOException(String.format("Invalid section at offset %d with length %d", offset, length));
+        }
+        
+        return offset;
+    }
+    
+    /**
+     * Creates a binary structure backed by the given buffer. The buffer must not 
+     * be modified afterwards.
+     * 
+     * @param buffer
+     *      Buffer containing the binary structure data, starting at position 0
+     * @return
+     *      The binary structure
+     * @throws IOException
+     *      If the data is not in the binary format
+     */
+    public static BinaryStructure wrap(final ByteBuffer buffer) throws IOException {
+        // Use duplicate to not be affected by changes to position or limit of the given buffer
+        return new BinaryStructure(buffer.duplicate());
+    }
+    
+    /**
+     * Memory maps the given binary structure file. The file must not be modified 
+     * while the returned structure is in use. Files which are not on the default 
+     * file system, e.g. entries of zip archives, cannot be mapped and are read 
+     * into memory instead.
+     * 
+     * @param path
+     *      Path of the binary structure file
+     * @return
+     *      The mapped binary structure
+     * @throws IOException
+     *      If mapping the file fails or the file is not in the binary format
+     */
+    public static BinaryStructure map(final Path path) throws IOException {
+        if (path.getFileSystem() != FileSystems.getDefault()) {
+            return new BinaryStructure(ByteBuffer.wrap(Files.readAllBytes(path)));
+        }
+        
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long fileSize = channel.size();
+            
+            if (fileSize > Integer.MAX_VALUE) {
+                throw new IOException("File is too large: " + path);
+            }
+            
+            return new BinaryStructure(channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize));
+        }
+    }
+    
+    /**
+     * Reads the given binary structure file and converts it to a {@link Structure}, 
+     * see {@link #toStructure()}.
+     * 
+     * @param path
+     *      Path of the binary structure file
+     * @return
+     *      The read structure
+     * @throws IOException
+     *      If reading fails or the file is not in the binary format
+     */
+    public static Structure readFromFile(final Path path) throws IOException {
+        return map(path).toStructure();
+    }
+    
+    private static long packPos(final int x, final int y, final int z) throws IllegalArgumentException {
+        if (!PackedPos.isPackable(x) || !PackedPos.isPackable(y) || !PackedPos.isPackable(z)) {
+            throw new IllegalArgumentException(String.format("Block position %s cannot be stored in binary format", new Int3D(x, y, z)));
+        }
+        
+        return PackedPos.pack(x, y, z);
+    }
+    
+    private static void writeInt3D(final DataOutputStream out, final Int3D int3D) throws IOException {
+        out.writeInt(int3D.getX());
+        out.writeInt(int3D.getY());
+        out.writeInt(int3D.getZ());
+    }
+    
+    private static int toOffset(final long offset) throws IllegalArgumentException {
+        if (offset > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Structure is too large for binary format");
+        }
+        
+        return (int) offset;
+    }
+    
+    /**
+     * Writes the structure in binary format to the given stream. The stream is 
+     * flushed, but not closed by this method.
+     * 
+     * @param structure
+     *      The structure to write
+     * @param outputStream
+     *      Stream to write the structure to
+     * @throws IOException
+     *      If writing fails
+     * @throws IllegalArgumentException
+     *      If the structure cannot be stored in binary format because a block position 
+     *      cannot be packed or the data is too large
+     */
+    public static void write(final Structure structure, final OutputStream outputStream) throws IOException, IllegalArgumentException {
+        final List<BlockInfo> blocks = structure.getBlocks();
+        final List<EntityInfo> entities = structure.getEntities().orElse(Collections.emptyList());
+        final int blocksCount = blocks.size();
+        final int entitiesCount = entities.size();
+        
+        // Serialize variable size data first to know the offsets
+        final ByteArrayOutputStream nbtData = new ByteArrayOutputStream();
+        final NbtWriter nbtWriter = new NbtWriter(nbtData);
+        final int[] nbtOffsets = new int[blocksCount + entitiesCount + 2];
+        int nbtOffsetIndex = 0;
+        
+        final BlockColumns columns = blocks instanceof BlockColumns ? (BlockColumns) blocks : BlockStorage.copyOf(blocks);
+        
+        for (int index = 0; index < blocksCount; index++) {
+            nbtWriter.flush();
+            nbtOffsets[nbtOffsetIndex++] = nbtData.size();
+            
+            if (columns.hasNbt(index)) {
+                final Optional<RawNbt> rawNbt = columns.getRawNbt(index);
+            
+                if (rawNbt.isPresent()) {
+                    nbtWriter.writeRawCompound(rawNbt.get());
+                }
+                else {
+                    nbtWriter.writeCompound(columns.getNbt(index).get());
+                }
+            }
+        }
+        
+        nbtWriter.flush();
+        nbtOffsets[nbtOffsetIndex++] = nbtData.size();
+        
+        for (final EntityInfo entityInfo : entities) {
+            nbtWriter.flush();
+            nbtOffsets[nbtOffsetIndex++] = nbtData.size();
+            
+            final Optional<RawNbt> rawNbt = entityInfo.getRawNbt();
+            
+            if (rawNbt.isPresent()) {
+                nbtWriter.writeRawCompound(rawNbt.get());
+            }
+            else {
+                nbtWriter.writeCompound(entityInfo.getNbt());
+            }
+        }
+        
+        nbtWriter.flush();
+        nbtOffsets[nbtOffsetIndex] = nbtData.size();
+        
+        final ByteArrayOutputStream palettesData = new ByteArrayOutputStream();
+        final NbtWriter palettesWriter = new NbtWriter(palettesData);
+        palettesWriter.writeInt(structure.getPalettes().size());
+        
+        for (final List<BlockState> palette : structure.getPalettes()) {
+            palettesWriter.writeInt(palette.size());
+            
+            for (final BlockState blockState : palette) {
+                palettesWriter.writeCompound(blockState.toNbt());
+            }
+        }
+        
+        palettesWriter.flush();
+        
+        final Optional<Int3D> actualSize = structure.getSpecifiedActualSize();
+        final Optional<String> author = structure.getAuthor();
+        int flags = 0;
+        
+        if (actualSize.isPresent()) {
+            flags |= FLAG_ACTUAL_SIZE;
+        }
+        if (structure.getEntities().isPresent()) {
+            flags |= FLAG_ENTITIES;
+        }
+        if (author.isPresent()) {
+            flags |= FLAG_AUTHOR;
+        }
+        
+        // Block positions directly after header to have them 8 byte aligned
+        final int positionsOffset = HEADER_SIZE;
+        final int entitiesOffset = toOffset(positionsOffset + (long) blocksCount * Long.BYTES);
+        final int statesOffset = toOffset(entitiesOffset + (long) entitiesCount * ENTITY_RECORD_SIZE);
+        final int nbtOffsetsOffset = toOffset(statesOffset + (long) blocksCount * Integer.BYTES);
+        final int palettesOffset = toOffset(nbtOffsetsOffset + (long) nbtOffsets.length * Integer.BYTES);
+        final int nbtDataOffset = toOffset((long) palettesOffset + palettesData.size());
+        final int authorOffset = toOffset((long) nbtDataOffset + nbtData.size());
+        
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(flags);
+        writeInt3D(out, structure.getSize());
+        writeInt3D(out, actualSize.orElse(new Int3D(0, 0, 0)));
+        out.writeInt(structure.getDataVersion());
+        out.writeInt(blocksCount);
+        out.writeInt(entitiesCount);
+        out.writeInt(positionsOffset);
+        out.writeInt(statesOffset);
+        out.writeInt(nbtOffsetsOffset);
+        out.writeInt(entitiesOffset);
+        out.writeInt(palettesOffset);
+        out.writeInt(nbtDataOffset);
+        out.writeInt(nbtData.size());
+        out.writeInt(authorOffset);
+        
+        for (int index = 0; index < blocksCount; index++) {
+            out.writeLong(packPos(columns.getX(index), columns.getY(index), columns.getZ(index)));
+        }
+        
+        for (final EntityInfo entityInfo : entities) {
+            final Double3D pos = entityInfo.getPos();
+            out.writeDouble(pos.getX());
+            out.writeDouble(pos.getY());
+            out.writeDouble(pos.getZ());
+            writeInt3D(out, entityInfo.getBlockPos());
+        }
+        
+        for (int index = 0; index < blocksCount; index++) {
+            out.writeInt(columns.getState(index));
+        }
+        
+        for (final int nbtOffset : nbtOffsets) {
+            out.writeInt(nbtOffset);
+        }
+        
+        palettesData.writeTo(out);
+        nbtData.writeTo(out);
+        
+        if (author.isPresent()) {
+            out.writeUTF(author.get());
+        }
+        
+        out.flush();
+    }
+    
+    /**
+     * Writes the structure in binary format to a file, see {@link #write(Structure, OutputStream)}.
+     * 
+     * @param structure
+     *      Structure to write
+     * @param path
+     *      Path of the file to write to; an existing file is overwritten
+     * @throws IOException
+     *      If writing fails
+     * @throws IllegalArgumentException
+     *      If a block position cannot be packed or the data is too large
+     */
+    public static void writeToFile(final Structure structure, final Path path) throws IOException, IllegalArgumentException {
+        try (OutputStream outputStream = Files.newOutputStream(path)) {
+            write(structure, outputStream);
+        }
+    }
+    
+    private Int3D readInt3D(final int offset) {
+        return new Int3D(buffer.getInt(offset), buffer.getInt(offset + 4), buffer.getInt(offset + 8));
+    }
+    
+    private NbtReader createNbtReader(final int offset, final int length) {
+        final ByteBuffer slice = buffer.duplicate();
+        slice.limit(offset + length);
+        slice.position(offset);
+        
+        return new NbtReader(new ByteBufferInputStream(slice));
+    }
+    
+    /**
+     * Reads the NBT compound with the given index in the NBT offsets section, or 
+     * returns {@code null} if the element has no NBT data.
+     */
+    private CompoundTag readNbt(final int nbtIndex) {
+        final NbtReader reader = createNbtReader(nbtIndex);
+        
+        if (reader == null) {
+            return null;
+        }
+        
+        try {
+            return reader.readCompound();
+        }
+        catch (final IOException ioException) {
+            throw new IllegalStateException("Malformed NBT data", ioException);
+        }
+    }
+    
+    /**
+     * Same as {@link #readNbt(int)}, except that the compound is read in serialized 
+     * form.
+     */
+    private RawNbt readRawNbt(final int nbtIndex) {
+        final NbtReader reader = createNbtReader(nbtIndex);
+        
+        if (reader == null) {
+            return null;
+        }
+        
+        try {
+            return reader.readRawCompound();
+        }
+        catch (final IOException ioException) {
+            throw new IllegalStateException("Malformed NBT data", ioException);
+        }
+    }
+    
+    /**
+     * Creates a reader for the NBT compound with the given index in the NBT offsets 
+     * section, or returns {@code null} if the element has no NBT data.
+     */
+    private NbtReader createNbtReader(final int nbtIndex) {
+        final int[] range = getNbtRange(nbtIndex);
+        return range == null ? null : createNbtReader(nbtDataOffset + range[0], range[1] - range[0]);
+    }
+    
+    /**
+     * Returns the start and end offset of the NBT compound with the given index in 
+     * the NBT offsets section, or {@code null} if the element has no NBT data.
+     */
+    private int[] getNbtRange(final int nbtIndex) {
+        final int start = buffer.getInt(nbtOffsetsOffset + nbtIndex * Integer.BYTES);
+        final int end = buffer.getInt(nbtOffsetsOffset + (nbtIndex + 1) * Integer.BYTES);
+        
+        if (start < 0 || end < start || end > nbtDataLength) {
+            throw new IllegalStateException(String.format("Malformed NBT offsets %d - %d", start, end));
+        }
+        
+        return start == end ? null : new int[] {start, end};
+    }
+    
+    private static void checkIndex(final int index, final int count) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException(String.format("Index %d, size %d", index, count));
+        }
+    }
+    
+    public Int3D getSize() {
+        return size;
+    }
+    
+    public Optional<Int3D> getActualSize() {
+        return Optional.ofNullable(actualSize);
+    }
+    
+    public int getDataVersion() {
+        return dataVersion;
+    }
+    
+    public Optional<String> getAuthor() {
+        return Optional.ofNullable(author);
+    }
+    
+    public int getBlocksCount() {
+        return blocksCount;
+    }
+    
+    private long getPackedBlockPos(final int index) {
+        checkIndex(index, blocksCount);
+        return buffer.getLong(positionsOffset + index * Long.BYTES);
+    }
+    
+    public int getBlockX(final int index) {
+        return PackedPos.unpackX(getPackedBlockPos(index));
+    }
+    
+    public int getBlockY(final int index) {
+        return PackedPos.unpackY(getPackedBlockPos(index));
+    }
+    
+    public int getBlockZ(final int index) {
+        return PackedPos.unpackZ(getPackedBlockPos(index));
+    }
+    
+    public Int3D getBlockPos(final int index) {
+        return PackedPos.unpack(getPackedBlockPos(index));
+    }
+    
+    public int getBlockState(final int index) {
+        checkIndex(index, blocksCount);
+        return buffer.getInt(statesOffset + index * Integer.BYTES);
+    }
+    
+    /**
+     * Decodes the NBT data of the block with the given index.
+     * 
+     * @param index
+     *      Index of the block
+     * @return
+     *      NBT data of the block, if any
+     * @throws IllegalStateException
+     *      If the NBT data is malformed
+     */
+    public Optional<CompoundTag> getBlockNbt(final int index) throws IllegalStateException {
+        checkIndex(index, blocksCount);
+        return Optional.ofNullable(readNbt(index));
+    }
+    
+    /**
+     * Returns whether the block with the given index has NBT data, without decoding 
+     * the data.
+     * 
+     * @param index
+     *      Index of the block
+     * @return
+     *      Whether the block has NBT data
+     * @throws IllegalStateException
+     *      If the NBT offsets are malformed
+     */
+    public boolean hasBlockNbt(final int index) throws IllegalStateException {
+        checkIndex(index, blocksCount);
+        return getNbtRange(index) != null;
+    }
+    
+    /**
+     * Returns the block with the given index. Its NBT data is kept in serialized 
+     * form, see {@link BlockInfo#getRawNbt()}.
+     * 
+     * @param index
+     *      Index of the block
+     * @return
+     *      The block
+     * @throws IllegalStateException
+     *      If the NBT data is malformed
+     */
+    public BlockInfo getBlock(final int index) throws IllegalStateException {
+        final Int3D pos = getBlockPos(index);
+        final int state = getBlockState(index);
+        final RawNbt rawNbt = readRawNbt(index);
+        
+        return rawNbt == null ? new BlockInfo(pos, state) : new BlockInfo(pos, state, rawNbt);
+    }
+    
+    public int getEntitiesCount() {
+        return entitiesCount;
+    }
+    
+    public EntityInfo getEntity(final int index) throws IllegalStateException {
+        checkIndex(index, entitiesCount);
+        final int offset = entitiesOffset + index * ENTITY_RECORD_SIZE;
+        final Double3D pos = new Double3D(
+            buffer.getDouble(offset),
+            buffer.getDouble(offset + Double.BYTES),
+            buffer.getDouble(offset + 2 * Double.BYTES)
+        );
+        final RawNbt rawNbt = readRawNbt(blocksCount + 1 + index);
+        
+        if (rawNbt == null) {
+            throw new IllegalStateException("Entity is missing NBT data");
+        }
+        
+        return new EntityInfo(pos, readInt3D(offset + 3 * Double.BYTES), rawNbt);
+    }
+    
+    /**
+     * Decodes the palettes.
+     * 
+     * @return
+     *      The palettes of the structure
+     * @throws IOException
+     *      If the palettes data is malformed
+     */
+    public List<List<BlockState>> readPalettes() throws IOException {
+        final NbtReader reader = createNbtReader(palettesOffset, nbtDataOffset - palettesOffset);
+        final int palettesCount = verifyCount(reader.readInt());
+        final List<List<BlockState>> palettes = new ArrayList<>(Math.min(palettesCount, 64));
+        
+        for (int paletteIndex = 0; paletteIndex < palettesCount; paletteIndex++) {
+            final int paletteSize = verifyCount(reader.readInt());
+            final List<BlockState> palette = new ArrayList<>(Math.min(paletteSize, 1024));
+            
+            for (int stateIndex = 0; stateIndex < paletteSize; stateIndex++) {
+                palette.add(BlockState.fromNbt(reader.readCompound()).intern());
+            }
+            
+            palettes.add(palette);
+        }
+        
+        return palettes;
+    }
+    
+    /**
+     * Unmodifiable view of the blocks which reads the values directly from the buffer.
+     */
+    private class BlocksView extends AbstractList<BlockInfo> implements RandomAccess, BlockColumns {
+        @Override
+        public int size() {
+            return blocksCount;
+        }
+        
+        @Override
+        public int getX(final int index) {
+            return getBlockX(index);
+        }
+        
+        @Override
+        public int getY(final int index) {
+            return getBlockY(index);
+        }
+        
+        @Override
+        public int getZ(final int index) {
+            return getBlockZ(index);
+        }
+        
+        @Override
+        public int getState(final int index) {
+            return getBlockState(index);
+        }
+        
+        @Override
+        public boolean hasNbt(final int index) {
+            return hasBlockNbt(index);
+        }
+        
+        @Override
+        public Optional<CompoundTag> getNbt(final int index) {
+            return getBlockNbt(index);
+        }
+        
+        @Override
+        public Optional<RawNbt> getRawNbt(final int index) {
+            checkIndex(index, blocksCount);
+            return Optional.ofNullable(readRawNbt(index));
+        }
+        
+        @Override
+        public BlockInfo get(final int index) {
+            return getBlock(index);
+        }
+    }
+    
+    /**
+     * Converts this binary structure to a {@link Structure}. The palettes are decoded 
+     * immediately, the block and entity lists are unmodifiable views which decode 
+     * the elements from the buffer on access. The block list implements {@link BlockColumns}, 
+     * so positions and states can be read without creating block info objects.
+     * 
+     * @return
+     *      Structure backed by this binary structure
+     * @throws IOException
+     *      If the palettes data is malformed
+     */
+    public Structure toStructure() throws IOException {
+        final List<BlockInfo> blocks = new BlocksView();
+        final List<EntityInfo> entities;
+        
+        if (hasEntities) {
+            entities = new AbstractList<EntityInfo>() {
+                @Override
+                public EntityInfo get(final int index) {
+                    return getEntity(index);
+                }
+                
+                @Override
+                public int size() {
+                    return entitiesCount;
+                }
+            };
+        }
+        else {
+            entities = null;
+        }
+        
+        try {
+            return new Structure(size, actualSize, blocks, readPalettes(), entities, dataVersion, author);
+        }
+        catch (final IllegalArgumentException illegalArgumentException) {
+            throw new IOException("Malformed binary structure data", illegalArgumentException);
+        }
+    }
+}
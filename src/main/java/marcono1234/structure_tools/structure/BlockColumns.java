@@ -0,0 +1,53 @@
+package marcono1234.structure_tools.structure;
+
+import java.util.Optional;
+
+import marcono1234.structure_tools.util.RawNbt;
+import net.querz.nbt.CompoundTag;
+
+/**
+ * <p>Block list which stores the positions and states in primitive form and 
+ * allows accessing them without creating {@link BlockInfo} objects. Consumers 
+ * such as {@link StructureWriter} check whether a block list implements this 
+ * interface and then read the values directly.</p>
+ * 
+ * <p>All methods throw an {@link IndexOutOfBoundsException} for invalid indices.</p>
+ * 
+ * @see BlockStorage
+ * @see OffHeapBlockStorage
+ */
+public interface BlockColumns {
+    int size();
+    
+    int getX(int index);
+    
+    int getY(int index);
+    
+    int getZ(int index);
+    
+    int getState(int index);
+    
+    boolean hasNbt(int index);
+    
+    /**
+     * Returns the NBT data of the block with the given index. Serialized data 
+     * is decoded for every call.
+     * 
+     * @param index
+     *      Index of the block
+     * @return
+     *      NBT data of the block, if any
+     */
+    Optional<CompoundTag> getNbt(int index);
+    
+    /**
+     * Returns the NBT data of the block with the given index if it is stored 
+     * in serialized form, see {@link BlockInfo#getRawNbt()}.
+     * 
+     * @param index
+     *      Index of the block
+     * @return
+     *      Serialized NBT data of the block, if it is stored in that form
+     */
+    Optional<RawNbt> getRawNbt(int index);
+}
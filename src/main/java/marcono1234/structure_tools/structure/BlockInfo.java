@@ -4,21 +4,48 @@ import java.util.Objects;
 import java.util.Optional;
 
 import marcono1234.structure_tools.util.Int3D;
+import marcono1234.structure_tools.util.RawNbt;
 import net.querz.nbt.CompoundTag;
 
 public class BlockInfo {
-    private static final String POS_KEY = "pos";
-    private static final String STATE_KEY = "state";
-    private static final String NBT_KEY = "nbt";
+    static final String POS_KEY = "pos";
+    static final String STATE_KEY = "state";
+    static final String NBT_KEY = "nbt";
     
-    private Int3D pos;
-    private int state;
-    private Optional<CompoundTag> nbt;
+    private final Int3D pos;
+    private final int state;
+    /**
+     * NBT data as tag tree; {@code null} if the NBT data is {@linkplain #rawNbt serialized}
+     */
+    private final Optional<CompoundTag> nbt;
+    /**
+     * NBT data in serialized form; {@code null} if the NBT data is a tag tree
+     */
+    private final RawNbt rawNbt;
     
     public BlockInfo(final Int3D pos, final int state, final Optional<CompoundTag> nbt) {
         this.pos = Objects.requireNonNull(pos);
         this.state = state;
         this.nbt = Objects.requireNonNull(nbt);
+        this.rawNbt = null;
+    }
+    
+    /**
+     * Creates a block info whose NBT data is kept in serialized form; it is only 
+     * decoded when {@link #getNbt()} is called.
+     * 
+     * @param pos
+     *      Position of the block
+     * @param state
+     *      Index of the block state in the palette
+     * @param rawNbt
+     *      NBT data of the block in serialized form
+     */
+    public BlockInfo(final Int3D pos, final int state, final RawNbt rawNbt) {
+        this.pos = Objects.requireNonNull(pos);
+        this.state = state;
+        this.nbt = null;
+        this.rawNbt = Objects.requireNonNull(rawNbt);
     }
     
     public BlockInfo(final Int3D pos, final int state, final CompoundTag nbt) {
@@ -37,8 +64,69 @@ public class BlockInfo {
         return state;
     }
     
+    /**
+     * Returns the NBT data of the block. If this block info holds the NBT data 
+     * in serialized form, every call decodes it again.
+     * 
+     * @return
+     *      The NBT data, if any
+     */
     public Optional<CompoundTag> getNbt() {
-        return nbt;
+        return rawNbt == null ? nbt : Optional.of(rawNbt.toCompound());
+    }
+    
+    /**
+     * Returns the NBT data of the block if this block info holds it in serialized 
+     * form. If it holds the NBT data as tag tree, empty is returned and the data 
+     * has to be obtained using {@link #getNbt()}.
+     * 
+     * @return
+     *      The serialized NBT data, if this block info holds it in that form
+     */
+    public Optional<RawNbt> getRawNbt() {
+        return Optional.ofNullable(rawNbt);
+    }
+    
+    public boolean hasNbt() {
+        return rawNbt != null || nbt.isPresent();
+    }
+    
+    /**
+     * Creates a block info with the given position and state and the NBT data of 
+     * this block info, keeping it in its current form.
+     * 
+     * @param pos
+     *      Position of the new block info
+     * @param state
+     *      Index of the block state of the new block info
+     * @return
+     *      The new block info
+     */
+    public BlockInfo withPosAndState(final Int3D pos, final int state) {
+        return rawNbt == null ? new BlockInfo(pos, state, nbt) : new BlockInfo(pos, state, rawNbt);
+    }
+    
+    /**
+     * Returns a frozen block info which holds the NBT data in serialized form, or 
+     * this block info if it is already frozen. Frozen block infos are immutable 
+     * since {@link #getNbt()} creates a new tag tree for every call.
+     * 
+     * @return
+     *      The frozen block info
+     */
+    public BlockInfo freeze() {
+        return isFrozen() ? this : new BlockInfo(pos, state, RawNbt.fromCompound(nbt.get()));
+    }
+    
+    /**
+     * Returns whether this block info is immutable, that is whether it has no NBT 
+     * data or holds it in serialized form.
+     * 
+     * @return
+     *      Whether this block info is frozen
+     */
+    public boolean isFrozen() {
+        return rawNbt != null || !nbt.isPresent();
     }
     
     public CompoundTag toNbt() {
@@ -46,6 +134,8 @@ public class BlockInfo {
         compound.put(POS_KEY, pos.toNbt());
         compound.putInt(STATE_KEY, state);
         
+        final Optional<CompoundTag> nbt = getNbt();
+        
         if (nbt.isPresent()) {
             compound.put(NBT_KEY, nbt.get());
         }
@@ -71,7 +161,7 @@ public class BlockInfo {
             
             return pos.equals(other.pos)
                 && state == other.state
-                && nbt.equals(other.nbt);
+                && getNbt().equals(other.getNbt());
         }
         
         return false;
@@ -79,6 +169,6 @@ public class BlockInfo {
     
     @Override
     public int hashCode() {
-        return Objects.hash(pos, state, nbt);
+        return Objects.hash(pos, state, getNbt());
     }
 }
@@ -0,0 +1,139 @@
+package marcono1234.structure_tools.structure;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import marcono1234.structure_tools.util.Int3D;
+import marcono1234.structure_tools.util.RawNbt;
+import net.querz.nbt.CompoundTag;
+
+/**
+ * Sparse table of the NBT data of blocks, used by the block lists which store 
+ * positions and states in primitive form. Only blocks which have NBT data have 
+ * an entry. Entries are appended in ascending block index order, so they can be 
+ * found using binary search.
+ */
+final class BlockNbtTable {
+    private static final int DEFAULT_CAPACITY = 16;
+    
+    /**
+     * Sorted indices of the blocks which have NBT data
+     */
+    private int[] blockIndices;
+    /**
+     * NBT data of the blocks, {@code null} if the data is stored in {@link #rawNbtValues}
+     */
+    private CompoundTag[] nbtValues;
+    /**
+     * Serialized NBT data of the blocks, {@code null} if the data is stored in {@link #nbtValues}
+     */
+    private RawNbt[] rawNbtValues;
+    private int size;
+    
+    private BlockNbtTable(final int[] blockIndices, final CompoundTag[] nbtValues, final RawNbt[] rawNbtValues, final int size) {
+        this.blockIndices = blockIndices;
+        this.nbtValues = nbtValues;
+        this.rawNbtValues = rawNbtValues;
+        this.size = size;
+    }
+    
+    public BlockNbtTable() {
+        this(new int[DEFAULT_CAPACITY], new CompoundTag[DEFAULT_CAPACITY], new RawNbt[DEFAULT_CAPACITY], 0);
+    }
+    
+    /**
+     * Returns the capacity after growing from the given capacity, by 50%.
+     */
+    static int grownCapacity(final int capacity) {
+        final int newCapacity = capacity + (capacity >> 1) + 1;
+        
+        // Overflow
+        if (newCapacity < 0) {
+            if (capacity == Integer.MAX_VALUE) {
+                throw new IllegalStateException("Too many blocks");
+            }
+            
+            return Integer.MAX_VALUE;
+        }
+        
+        return newCapacity;
+    }
+    
+    private void add(final int blockIndex, final CompoundTag nbt, final RawNbt rawNbt) {
+        if (size > 0 && blockIndex <= blockIndices[size - 1]) {
+            throw new IllegalArgumentException("Block index " + blockIndex + " is not larger than previous index");
+        }
+        
+        if (size == blockIndices.length) {
+            final int newCapacity = grownCapacity(size);
+            blockIndices = Arrays.copyOf(blockIndices, newCapacity);
+            nbtValues = Arrays.copyOf(nbtValues, newCapacity);
+            rawNbtValues = Arrays.copyOf(rawNbtValues, newCapacity);
+        }
+        
+        blockIndices[size] = blockIndex;
+        nbtValues[size] = nbt;
+        rawNbtValues[size] = rawNbt;
+        size++;
+    }
+    
+    public void add(final int blockIndex, final CompoundTag nbt) {
+        add(blockIndex, nbt, null);
+    }
+    
+    public void add(final int blockIndex, final RawNbt rawNbt) {
+        add(blockIndex, null, rawNbt);
+    }
+    
+    /**
+     * Creates a copy of this table whose arrays have exactly the needed size.
+     */
+    public BlockNbtTable trimmedCopy() {
+        return new BlockNbtTable(
+            Arrays.copyOf(blockIndices, size),
+            Arrays.copyOf(nbtValues, size),
+            Arrays.copyOf(rawNbtValues, size),
+            size
+        );
+    }
+    
+    /**
+     * Returns the table index of the entry for the given block, or a negative 
+     * value if the block has no NBT data.
+     */
+    public int find(final int blockIndex) {
+        return Arrays.binarySearch(blockIndices, 0, size, blockIndex);
+    }
+    
+    public Optional<CompoundTag> getNbt(final int tableIndex) {
+        if (tableIndex < 0) {
+            return Optional.empty();
+        }
+        else if (rawNbtValues[tableIndex] != null) {
+            return Optional.of(rawNbtValues[tableIndex].toCompound());
+        }
+        else {
+            return Optional.of(nbtValues[tableIndex]);
+        }
+    }
+    
+    public Optional<RawNbt> getRawNbt(final int tableIndex) {
+        return tableIndex < 0 ? Optional.empty() : Optional.ofNullable(rawNbtValues[tableIndex]);
+    }
+    
+    /**
+     * Creates a block info with the NBT data of the given table entry, keeping 
+     * the NBT data in its current form.
+     */
+    public BlockInfo createBlockInfo(final Int3D pos, final int state, final int tableIndex) {
+        if (tableIndex < 0) {
+            return new BlockInfo(pos, state);
+        }
+        else if (rawNbtValues[tableIndex] != null) {
+            return new BlockInfo(pos, state, rawNbtValues[tableIndex]);
+        }
+        else {
+            return new BlockInfo(pos, state, nbtValues[tableIndex]);
+        }
+    }
+}
@@ -5,28 +5,99 @@ import java.util.Optional;
 
 import net.querz.nbt.CompoundTag;
 
+/**
+ * Block state of a palette. Block states are immutable, so they can be shared 
+ * between structures and threads.
+ */
 public class BlockState {
-    private static final String NAME_KEY = "Name";
-    private static final String PROPERTIES_KEY = "Properties";
+    static final String NAME_KEY = "Name";
+    static final String PROPERTIES_KEY = "Properties";
+    /**
+     * Name used when the NBT data contains no name
+     */
+    static final String DEFAULT_NAME = "minecraft:air";
     
     private final String name;
-    private final Optional<CompoundTag> properties;
+    /**
+     * Canonical properties; {@code null} if the state has no properties tag
+     */
+    private final BlockStateProperties properties;
+    /**
+     * Whether this state is the canonical instance from the {@link BlockStatePool}
+     */
+    private final boolean isInterned;
+    private final int hashCode;
     
-    public BlockState(final String name, final CompoundTag properties) {
+    BlockState(final String name, final BlockStateProperties properties, final boolean isInterned) {
         this.name = Objects.requireNonNull(name);
-        this.properties = Optional.ofNullable(properties);
+        this.properties = properties;
+        this.isInterned = isInterned;
+        hashCode = 31 * name.hashCode() + Objects.hashCode(properties);
+    }
+    
+    /**
+     * Creates a block state. The properties are copied into a canonical form, 
+     * sorted by name, so modifying the given compound afterwards has no effect 
+     * on the block state.
+     * 
+     * @param name
+     *      Name of the block
+     * @param properties
+     *      Properties of the state, can be {@code null}
+     */
+    public BlockState(final String name, final CompoundTag properties) {
+        this(name, properties == null ? null : BlockStateProperties.fromNbt(properties), false);
     }
     
     public BlockState(final String name) {
-        this(name, null);
+        this(name, (BlockStateProperties) null, false);
+    }
+    
+    /**
+     * <p>Returns the canonical instance of this block state from a global, thread-safe 
+     * pool, similar to {@link String#intern()}. Equal block states are then the same 
+     * instance, which reduces the memory needed when many structures are loaded and 
+     * allows comparing them by reference.</p>
+     * 
+     * @return
+     *      The interned block state equal to this state
+     */
+    public BlockState intern() {
+        return isInterned ? this : BlockStatePool.intern(this);
+    }
+    
+    public boolean isInterned() {
+        return isInterned;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Returns the properties of the block state as new compound, ordered by name. 
+     * Modifying the compound has no effect on this block state.
+     * 
+     * @return
+     *      The properties, if any
+     */
+    public Optional<CompoundTag> getProperties() {
+        return properties == null ? Optional.empty() : Optional.of(properties.toNbt());
+    }
+    
+    /**
+     * Returns the canonical properties without creating a compound.
+     */
+    BlockStateProperties getCanonicalProperties() {
+        return properties;
     }
     
     public CompoundTag toNbt() {
         final CompoundTag compound = new CompoundTag();
         compound.putString(NAME_KEY, name);
         
-        if (properties.isPresent()) {
-            compound.put(PROPERTIES_KEY, properties.get());
+        if (properties != null) {
+            compound.put(PROPERTIES_KEY, properties.toNbt());
         }
         
         return compound;
@@ -38,7 +109,7 @@ public class BlockState {
          * net.minecraft.nbt.NBTUtil.readBlockState(NBTTagCompound)
          */
         if (!compound.containsKey(NAME_KEY)) {
-            return new BlockState("minecraft:air", null);
+            return new BlockState(DEFAULT_NAME, null);
         }
         
         return new BlockState(
@@ -55,8 +126,14 @@ public class BlockState {
         else if (obj instanceof BlockState) {
             final BlockState other = (BlockState) obj;
             
-            return name.equals(other.name)
-                && properties.equals(other.properties);
+            // Interned states are unique, so different instances are not equal
+            if (isInterned && other.isInterned) {
+                return false;
+            }
+            
+            return hashCode == other.hashCode
+                && name.equals(other.name)
+                && Objects.equals(properties, other.properties);
         }
         
         return false;
@@ -64,6 +141,6 @@ public class BlockState {
     
     @Override
     public int hashCode() {
-        return Objects.hash(name, properties);
+        return hashCode;
     }
 }
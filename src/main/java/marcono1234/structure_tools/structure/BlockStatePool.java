@@ -0,0 +1,45 @@
+package marcono1234.structure_tools.structure;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>Global pool of interned block states, see {@link BlockState#intern()}. Equal 
+ * properties of interned block states are interned as well, so states with different 
+ * names but the same properties share them.</p>
+ * 
+ * <p>The pool is thread-safe. It keeps all interned states until the JVM exits; 
+ * structures typically only use a few thousand distinct states.</p>
+ */
+final class BlockStatePool {
+    private BlockStatePool() { }
+    
+    /**
+     * Maps non-interned states to the interned ones. Interned states must not be used 
+     * as keys because different interned instances are never equal, so concurrently 
+     * added keys for the same state would not be detected as duplicates.
+     */
+    private static final ConcurrentMap<BlockState, BlockState> STATES = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<BlockStateProperties, BlockStateProperties> PROPERTIES = new ConcurrentHashMap<>();
+    
+    /**
+     * Returns the interned block state equal to the given one.
+     */
+    public static BlockState intern(final BlockState blockState) {
+        final BlockState interned = STATES.get(blockState);
+        
+        if (interned != null) {
+            return interned;
+        }
+        
+        return STATES.computeIfAbsent(blockState, key -> {
+            final BlockStateProperties properties = key.getCanonicalProperties();
+            return new BlockState(key.getName(), properties == null ? null : internProperties(properties), true);
+        });
+    }
+    
+    private static BlockStateProperties internProperties(final BlockStateProperties properties) {
+        final BlockStateProperties existing = PROPERTIES.putIfAbsent(properties, properties);
+        return existing == null ? properties : existing;
+    }
+}
@@ -0,0 +1,95 @@
+package marcono1234.structure_tools.structure;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+
+import net.querz.nbt.CompoundTag;
+import net.querz.nbt.Tag;
+
+/**
+ * Immutable canonical representation of the properties of a block state. The 
+ * properties are stored as arrays sorted by name, so properties which only differ 
+ * in the order of their entries are equal, and the hash code is computed once.
+ */
+final class BlockStateProperties {
+    private final String[] names;
+    /**
+     * Values of the properties; Minecraft only uses string tags, but other tags 
+     * are kept as well to convert the properties losslessly. The tags are copies 
+     * which are never modified.
+     */
+    private final Tag<?>[] values;
+    private final int hashCode;
+    
+    private BlockStateProperties(final String[] names, final Tag<?>[] values) {
+        this.names = names;
+        this.values = values;
+        hashCode = 31 * Arrays.hashCode(names) + Arrays.hashCode(values);
+    }
+    
+    public static BlockStateProperties fromNbt(final CompoundTag properties) {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        final Map.Entry<String, Tag<?>>[] entries = properties.entrySet().toArray(new Map.Entry[0]);
+        Arrays.sort(entries, Comparator.comparing(Map.Entry::getKey));
+        
+        final String[] names = new String[entries.length];
+        final Tag<?>[] values = new Tag<?>[entries.length];
+        
+        for (int index = 0; index < entries.length; index++) {
+            names[index] = entries[index].getKey();
+            values[index] = entries[index].getValue().clone();
+        }
+        
+        return new BlockStateProperties(names, values);
+    }
+    
+    /**
+     * Creates a new compound containing the properties, ordered by name.
+     */
+    public CompoundTag toNbt() {
+        final CompoundTag compound = new CompoundTag();
+        
+        for (int index = 0; index < names.length; index++) {
+            compound.put(names[index], values[index].clone());
+        }
+        
+        return compound;
+    }
+    
+    public int size() {
+        return names.length;
+    }
+    
+    public String getName(final int index) {
+        return names[index];
+    }
+    
+    /**
+     * Returns the value of the property. The tag must not be modified.
+     */
+    public Tag<?> getValue(final int index) {
+        return values[index];
+    }
+    
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        else if (obj instanceof BlockStateProperties) {
+            final BlockStateProperties other = (BlockStateProperties) obj;
+            
+            return hashCode == other.hashCode
+                && Arrays.equals(names, other.names)
+                && Arrays.equals(values, other.values);
+        }
+        
+        return false;
+    }
+    
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+}
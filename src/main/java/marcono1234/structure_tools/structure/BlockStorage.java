@@ -0,0 +1,245 @@
+package marcono1234.structure_tools.structure;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.RandomAccess;
+
+import marcono1234.structure_tools.util.Int3D;
+import marcono1234.structure_tools.util.RawNbt;
+import net.querz.nbt.CompoundTag;
+
+/**
+ * <p>Unmodifiable list of blocks which stores the positions and states in primitive 
+ * arrays, one per coordinate and one for the states, instead of one {@link BlockInfo} 
+ * object per block. The NBT data is stored in a separate table which only has entries 
+ * for the blocks which have NBT data. This needs considerably less memory than a list 
+ * of block info objects, and the primitive values can be accessed directly using 
+ * {@link #getX(int)}, {@link #getY(int)}, {@link #getZ(int)} and {@link #getState(int)}.</p>
+ * 
+ * <p>{@link #get(int)} creates a new block info for every call. Block storages are 
+ * created using a {@link Builder}.</p>
+ */
+public final class BlockStorage extends AbstractList<BlockInfo> implements RandomAccess, BlockColumns {
+    /**
+     * Growable builder for block storages.
+     */
+    public static final class Builder {
+        private static final int DEFAULT_CAPACITY = 16;
+        
+        private int[] xs;
+        private int[] ys;
+        private int[] zs;
+        private int[] states;
+        private int size;
+        private final BlockNbtTable nbtTable;
+        
+        /**
+         * @param expectedSize
+         *      Expected number of blocks; more blocks can be added nonetheless
+         */
+        public Builder(final int expectedSize) {
+            if (expectedSize < 0) {
+                throw new IllegalArgumentException("Invalid expected size " + expectedSize);
+            }
+            
+            final int capacity = Math.max(expectedSize, 1);
+            xs = new int[capacity];
+            ys = new int[capacity];
+            zs = new int[capacity];
+            states = new int[capacity];
+            size = 0;
+            nbtTable = new BlockNbtTable();
+        }
+        
+        public Builder() {
+            this(DEFAULT_CAPACITY);
+        }
+        
+        private int addBlock(final int x, final int y, final int z, final int state) {
+            if (size == xs.length) {
+                final int newCapacity = BlockNbtTable.grownCapacity(size);
+                xs = Arrays.copyOf(xs, newCapacity);
+                ys = Arrays.copyOf(ys, newCapacity);
+                zs = Arrays.copyOf(zs, newCapacity);
+                states = Arrays.copyOf(states, newCapacity);
+            }
+            
+            xs[size] = x;
+            ys[size] = y;
+            zs[size] = z;
+            states[size] = state;
+            
+            return size++;
+        }
+        
+        public Builder add(final int x, final int y, final int z, final int state) {
+            addBlock(x, y, z, state);
+            return this;
+        }
+        
+        public Builder add(final int x, final int y, final int z, final int state, final CompoundTag nbt) {
+            final int index = addBlock(x, y, z, state);
+            
+            if (nbt != null) {
+                nbtTable.add(index, nbt);
+            }
+            
+            return this;
+        }
+        
+        public Builder add(final int x, final int y, final int z, final int state, final RawNbt rawNbt) {
+            final int index = addBlock(x, y, z, state);
+            
+            if (rawNbt != null) {
+                nbtTable.add(index, rawNbt);
+            }
+            
+            return this;
+        }
+        
+        /**
+         * Adds the given block, keeping its NBT data in its current form.
+         * 
+         * @param blockInfo
+         *      The block to add
+         * @return
+         *      This builder
+         */
+        public Builder add(final BlockInfo blockInfo) {
+            final Int3D pos = blockInfo.getPos();
+            final Optional<RawNbt> rawNbt = blockInfo.getRawNbt();
+            
+            if (rawNbt.isPresent()) {
+                return add(pos.getX(), pos.getY(), pos.getZ(), blockInfo.getState(), rawNbt.get());
+            }
+            else {
+                return add(pos.getX(), pos.getY(), pos.getZ(), blockInfo.getState(), blockInfo.getNbt().orElse(null));
+            }
+        }
+        
+        public Builder addAll(final List<BlockInfo> blocks) {
+            for (final BlockInfo blockInfo : blocks) {
+                add(blockInfo);
+            }
+            
+            return this;
+        }
+        
+        public int size() {
+            return size;
+        }
+        
+        /**
+         * Creates a block storage containing the blocks added so far. The builder 
+         * can afterwards still be used to add more blocks for another storage.
+         * 
+         * @return
+         *      The created block storage
+         */
+        public BlockStorage build() {
+            return new BlockStorage(
+                Arrays.copyOf(xs, size),
+                Arrays.copyOf(ys, size),
+                Arrays.copyOf(zs, size),
+                Arrays.copyOf(states, size),
+                nbtTable.trimmedCopy()
+            );
+        }
+    }
+    
+    private final int[] xs;
+    private final int[] ys;
+    private final int[] zs;
+    private final int[] states;
+    private final BlockNbtTable nbtTable;
+    
+    private BlockStorage(final int[] xs, final int[] ys, final int[] zs, final int[] states, final BlockNbtTable nbtTable) {
+        this.xs = xs;
+        this.ys = ys;
+        this.zs = zs;
+        this.states = states;
+        this.nbtTable = nbtTable;
+    }
+    
+    /**
+     * Returns a block storage containing the given blocks. If the list is already 
+     * a block storage, it is returned.
+     * 
+     * @param blocks
+     *      The blocks
+     * @return
+     *      Block storage containing the blocks
+     */
+    public static BlockStorage copyOf(final List<BlockInfo> blocks) {
+        if (blocks instanceof BlockStorage) {
+            return (BlockStorage) blocks;
+        }
+        
+        return new Builder(blocks.size()).addAll(blocks).build();
+    }
+    
+    BlockNbtTable getNbtTable() {
+        return nbtTable;
+    }
+    
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= xs.length) {
+            throw new IndexOutOfBoundsException(String.format("Index %d, size %d", index, xs.length));
+        }
+    }
+    
+    @Override
+    public int size() {
+        return xs.length;
+    }
+    
+    @Override
+    public int getX(final int index) {
+        checkIndex(index);
+        return xs[index];
+    }
+    
+    @Override
+    public int getY(final int index) {
+        checkIndex(index);
+        return ys[index];
+    }
+    
+    @Override
+    public int getZ(final int index) {
+        checkIndex(index);
+        return zs[index];
+    }
+    
+    @Override
+    public int getState(final int index) {
+        checkIndex(index);
+        return states[index];
+    }
+    
+    @Override
+    public boolean hasNbt(final int index) {
+        checkIndex(index);
+        return nbtTable.find(index) >= 0;
+    }
+    
+    @Override
+    public Optional<CompoundTag> getNbt(final int index) {
+        checkIndex(index);
+        return nbtTable.getNbt(nbtTable.find(index));
+    }
+    
+    @Override
+    public Optional<RawNbt> getRawNbt(final int index) {
+        checkIndex(index);
+        return nbtTable.getRawNbt(nbtTable.find(index));
+    }
+    
+    @Override
+    public BlockInfo get(final int index) {
+        checkIndex(index);
+        return nbtTable.createBlockInfo(new Int3D(xs[index], ys[index], zs[index]), states[index], nbtTable.find(index));
+    }
+}
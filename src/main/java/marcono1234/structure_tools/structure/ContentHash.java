@@ -0,0 +1,285 @@
+package marcono1234.structure_tools.structure;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import marcono1234.structure_tools.util.Int3D;
+import marcono1234.structure_tools.util.NbtTagId;
+import marcono1234.structure_tools.util.NbtWriter;
+import marcono1234.structure_tools.util.RawNbt;
+import net.querz.nbt.CompoundTag;
+import net.querz.nbt.ListTag;
+import net.querz.nbt.Tag;
+
+/**
+ * <p>128-bit hash of the content of a structure, see {@link Structure#getContentHash()}. 
+ * The hash consists of the first 128 bits of the SHA-256 digest of a canonical 
+ * encoding of the structure, so structures which are equal have the same hash, 
+ * and structures with the same hash are equal unless there is a hash collision, 
+ * which is practically impossible.</p>
+ * 
+ * <p>The canonical encoding contains all data which {@link Structure#equals(Object)} 
+ * compares. NBT compound entries are encoded ordered by name because compounds are 
+ * equal regardless of the order of their entries.</p>
+ */
+public final class ContentHash {
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final int DIGEST_BUFFER_SIZE = 8192;
+    
+    private final long high;
+    private final long low;
+    
+    private ContentHash(final long high, final long low) {
+        this.high = high;
+        this.low = low;
+    }
+    
+    /**
+     * Computes the content hash of the given structure.
+     */
+    static ContentHash compute(final Structure structure) {
+        final MessageDigest digest;
+        
+        try {
+            digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        }
+        catch (final NoSuchAlgorithmException noSuchAlgorithmException) {
+            // Cannot happen, every Java implementation has to support SHA-256
+            throw new IllegalStateException(noSuchAlgorithmException);
+        }
+        
+        final OutputStream digestStream = new OutputStream() {
+            @Override
+            public void write(final int b) {
+                digest.update((byte) b);
+            }
+            
+            @Override
+            public void write(final byte[] b, final int off, final int len) {
+                digest.update(b, off, len);
+            }
+        };
+        final NbtWriter writer = new NbtWriter(new BufferedOutputStream(digestStream, DIGEST_BUFFER_SIZE));
+        
+        try {
+            writeInt3D(writer, structure.getSize());
+            writeOptionalInt3D(writer, structure.getSpecifiedActualSize());
+            writeBlocks(writer, structure.getBlocks());
+            writePalettes(writer, structure.getPalettes());
+            writeEntities(writer, structure.getEntities());
+            writer.writeInt(structure.getDataVersion());
+            
+            final Optional<String> author = structure.getAuthor();
+            writer.writeByte((byte) (author.isPresent() ? 1 : 0));
+            
+            if (author.isPresent()) {
+                writer.writeString(author.get());
+            }
+            
+            writer.flush();
+        }
+        catch (final IOException ioException) {
+            // Cannot happen for the digest stream
+            throw new UncheckedIOException(ioException);
+        }
+        
+        final byte[] hash = digest.digest();
+        long high = 0;
+        long low = 0;
+        
+        for (int index = 0; index < Long.BYTES; index++) {
+            high = (high << Byte.SIZE) | (hash[index] & 0xFF);
+            low = (low << Byte.SIZE) | (hash[Long.BYTES + index] & 0xFF);
+        }
+        
+        return new ContentHash(high, low);
+    }
+    
+    private static void writeInt3D(final NbtWriter writer, final Int3D int3D) throws IOException {
+        writer.writeInt(int3D.getX());
+        writer.writeInt(int3D.getY());
+        writer.writeInt(int3D.getZ());
+    }
+    
+    private static void writeOptionalInt3D(final NbtWriter writer, final Optional<Int3D> int3D) throws IOException {
+        writer.writeByte((byte) (int3D.isPresent() ? 1 : 0));
+        
+        if (int3D.isPresent()) {
+            writeInt3D(writer, int3D.get());
+        }
+    }
+    
+    private static void writeOptionalNbt(final NbtWriter writer, final Optional<CompoundTag> nbt) throws IOException {
+        writer.writeByte((byte) (nbt.isPresent() ? 1 : 0));
+        
+        if (nbt.isPresent()) {
+            writeCanonicalTag(writer, nbt.get());
+        }
+    }
+    
+    /**
+     * Writes the value of the tag the same way {@link NbtWriter#writeTag(Tag)} does, 
+     * except that the entries of compounds are ordered by name.
+     */
+    private static void writeCanonicalTag(final NbtWriter writer, final Tag<?> tag) throws IOException {
+        if (tag.getID() == NbtTagId.COMPOUND) {
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            final Map.Entry<String, Tag<?>>[] entries = ((CompoundTag) tag).entrySet().toArray(new Map.Entry[0]);
+            Arrays.sort(entries, Map.Entry.comparingByKey());
+            
+            for (final Map.Entry<String, Tag<?>> entry : entries) {
+                writer.writeTagHeader(entry.getValue().getID(), entry.getKey());
+                writeCanonicalTag(writer, entry.getValue());
+            }
+            
+            writer.writeEnd();
+        }
+        else if (tag.getID() == NbtTagId.LIST) {
+            final ListTag<?> list = (ListTag<?>) tag;
+            final int length = list.size();
+            writer.writeListHeader(length == 0 ? NbtTagId.END : list.get(0).getID(), length);
+            
+            for (final Tag<?> element : list) {
+                writeCanonicalTag(writer, element);
+            }
+        }
+        else {
+            writer.writeTag(tag);
+        }
+    }
+    
+    private static void writeBlocks(final NbtWriter writer, final List<BlockInfo> blocks) throws IOException {
+        writer.writeInt(blocks.size());
+        
+        if (blocks instanceof BlockColumns) {
+            final BlockColumns columns = (BlockColumns) blocks;
+            
+            for (int index = 0; index < columns.size(); index++) {
+                writer.writeInt(columns.getX(index));
+                writer.writeInt(columns.getY(index));
+                writer.writeInt(columns.getZ(index));
+                writer.writeInt(columns.getState(index));
+                writeOptionalNbt(writer, columns.getNbt(index));
+            }
+        }
+        else {
+            for (final BlockInfo blockInfo : blocks) {
+                writeInt3D(writer, blockInfo.getPos());
+                writer.writeInt(blockInfo.getState());
+                writeOptionalNbt(writer, blockInfo.getNbt());
+            }
+        }
+    }
+    
+    private static void writePalettes(final NbtWriter writer, final List<List<BlockState>> palettes) throws IOException {
+        writer.writeInt(palettes.size());
+        
+        for (final List<BlockState> palette : palettes) {
+            writer.writeInt(palette.size());
+            
+            for (final BlockState blockState : palette) {
+                writer.writeString(blockState.getName());
+                
+                // Properties are already ordered by name
+                final BlockStateProperties properties = blockState.getCanonicalProperties();
+                
+                if (properties == null) {
+                    writer.writeInt(-1);
+                }
+                else {
+                    writer.writeInt(properties.size());
+                    
+                    for (int index = 0; index < properties.size(); index++) {
+                        final Tag<?> value = properties.getValue(index);
+                        writer.writeTagHeader(value.getID(), properties.getName(index));
+                        writeCanonicalTag(writer, value);
+                    }
+                }
+            }
+        }
+    }
+    
+    private static void writeEntities(final NbtWriter writer, final Optional<List<EntityInfo>> entities) throws IOException {
+        if (!entities.isPresent()) {
+            writer.writeInt(-1);
+        }
+        else if (entities.get() instanceof EntityStorage) {
+            final EntityStorage entityStorage = (EntityStorage) entities.get();
+            writer.writeInt(entityStorage.size());
+            
+            for (int index = 0; index < entityStorage.size(); index++) {
+                // Same as Double3D.equals, which compares the bits of the values
+                writer.writeLong(Double.doubleToLongBits(entityStorage.getX(index)));
+                writer.writeLong(Double.doubleToLongBits(entityStorage.getY(index)));
+                writer.writeLong(Double.doubleToLongBits(entityStorage.getZ(index)));
+                writer.writeInt(entityStorage.getBlockX(index));
+                writer.writeInt(entityStorage.getBlockY(index));
+                writer.writeInt(entityStorage.getBlockZ(index));
+                // Avoid decoding lazily decoded NBT data permanently
+                final Optional<RawNbt> rawNbt = entityStorage.getRawNbt(index);
+                writeCanonicalTag(writer, rawNbt.isPresent() ? rawNbt.get().toCompound() : entityStorage.getNbt(index));
+            }
+        }
+        else {
+            writer.writeInt(entities.get().size());
+            
+            for (final EntityInfo entityInfo : entities.get()) {
+                writer.writeLong(Double.doubleToLongBits(entityInfo.getPos().getX()));
+                writer.writeLong(Double.doubleToLongBits(entityInfo.getPos().getY()));
+                writer.writeLong(Double.doubleToLongBits(entityInfo.getPos().getZ()));
+                writeInt3D(writer, entityInfo.getBlockPos());
+                writeCanonicalTag(writer, entityInfo.getNbt());
+            }
+        }
+    }
+    
+    /**
+     * Returns the most significant 64 bits of the hash.
+     */
+    public long getHigh() {
+        return high;
+    }
+    
+    /**
+     * Returns the least significant 64 bits of the hash.
+     */
+    public long getLow() {
+        return low;
+    }
+    
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        else if (obj instanceof ContentHash) {
+            final ContentHash other = (ContentHash) obj;
+            
+            return high == other.high && low == other.low;
+        }
+        
+        return false;
+    }
+    
+    @Override
+    public int hashCode() {
+        // Bits of a cryptographic hash are already well distributed
+        return (int) low;
+    }
+    
+    /**
+     * Returns the hash as 32 lowercase hexadecimal digits.
+     */
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+}
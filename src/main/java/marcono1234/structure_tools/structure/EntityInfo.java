@@ -1,29 +1,54 @@
 package marcono1234.structure_tools.structure;
 
 import java.util.Objects;
+import java.util.Optional;
 
 import marcono1234.structure_tools.util.Double3D;
 import marcono1234.structure_tools.util.Int3D;
+import marcono1234.structure_tools.util.RawNbt;
 import net.querz.nbt.CompoundTag;
 
 public class EntityInfo {
-    private static final String POS_KEY = "pos";
-    private static final String BLOCK_POS_KEY = "blockPos";
-    private static final String NBT_KEY = "nbt";
+    static final String POS_KEY = "pos";
+    static final String BLOCK_POS_KEY = "blockPos";
+    static final String NBT_KEY = "nbt";
     
     private final Double3D pos;
     private final Int3D blockPos;
     /*
      * When Minecraft reads entity info it checks if "nbt" is present, 
      * however when it is not present it ignores the entry; therefore 
-     * it is not optional here
+     * it is not optional here. It is null if the NBT data is {@linkplain #rawNbt serialized}.
      */
     private final CompoundTag nbt;
+    /**
+     * NBT data in serialized form; {@code null} if the NBT data is a tag tree
+     */
+    private final RawNbt rawNbt;
     
     public EntityInfo(final Double3D pos, final Int3D blockPos, final CompoundTag nbt) {
         this.pos = Objects.requireNonNull(pos);
         this.blockPos = Objects.requireNonNull(blockPos);
         this.nbt = Objects.requireNonNull(nbt);
+        this.rawNbt = null;
+    }
+    
+    /**
+     * Creates an entity info whose NBT data is kept in serialized form; it is only 
+     * decoded when {@link #getNbt()} is called.
+     * 
+     * @param pos
+     *      Position of the entity
+     * @param blockPos
+     *      Position of the block the entity is in
+     * @param rawNbt
+     *      NBT data of the entity in serialized form
+     */
+    public EntityInfo(final Double3D pos, final Int3D blockPos, final RawNbt rawNbt) {
+        this.pos = Objects.requireNonNull(pos);
+        this.blockPos = Objects.requireNonNull(blockPos);
+        this.nbt = null;
+        this.rawNbt = Objects.requireNonNull(rawNbt);
     }
     
     public Double3D getPos() {
@@ -34,8 +59,65 @@ public class EntityInfo {
         return blockPos;
     }
     
+    /**
+     * Returns the NBT data of the entity. If this entity info holds the NBT data 
+     * in serialized form, every call decodes it again.
+     * 
+     * @return
+     *      The NBT data
+     */
     public CompoundTag getNbt() {
-        return nbt;
+        return rawNbt == null ? nbt : rawNbt.toCompound();
+    }
+    
+    /**
+     * Returns the NBT data of the entity if this entity info holds it in serialized 
+     * form. If it holds the NBT data as tag tree, empty is returned and the data 
+     * has to be obtained using {@link #getNbt()}.
+     * 
+     * @return
+     *      The serialized NBT data, if this entity info holds it in that form
+     */
+    public Optional<RawNbt> getRawNbt() {
+        return Optional.ofNullable(rawNbt);
+    }
+    
+    /**
+     * Creates an entity info with the given positions and the NBT data of this 
+     * entity info, keeping it in its current form.
+     * 
+     * @param pos
+     *      Position of the new entity info
+     * @param blockPos
+     *      Block position of the new entity info
+     * @return
+     *      The new entity info
+     */
+    public EntityInfo withPos(final Double3D pos, final Int3D blockPos) {
+        return rawNbt == null ? new EntityInfo(pos, blockPos, nbt) : new EntityInfo(pos, blockPos, rawNbt);
+    }
+    
+    /**
+     * Returns a frozen entity info which holds the NBT data in serialized form, or 
+     * this entity info if it is already frozen. Frozen entity infos are immutable 
+     * since {@link #getNbt()} creates a new tag tree for every call.
+     * 
+     * @return
+     *      The frozen entity info
+     */
+    public EntityInfo freeze() {
+        return isFrozen() ? this : new EntityInfo(pos, blockPos, RawNbt.fromCompound(nbt));
+    }
+    
+    /**
+     * Returns whether this entity info is immutable, that is whether it holds the 
+     * NBT data in serialized form.
+     * 
+     * @return
+     *      Whether this entity info is frozen
+     */
+    public boolean isFrozen() {
+        return rawNbt != null;
     }
     
     public CompoundTag toNbt() {
@@ -43,7 +125,7 @@ public class EntityInfo {
         
         compound.put(POS_KEY, pos.toNbt());
         compound.put(BLOCK_POS_KEY, blockPos.toNbt());
-        compound.put(NBT_KEY, nbt);
+        compound.put(NBT_KEY, getNbt());
         
         return compound;
     }
@@ -66,7 +148,7 @@ public class EntityInfo {
             
             return pos.equals(other.pos)
                 && blockPos.equals(other.blockPos)
-                && nbt.equals(other.nbt);
+                && getNbt().equals(other.getNbt());
         }
         
         return false;
@@ -74,6 +156,6 @@ public class EntityInfo {
     
     @Override
     public int hashCode() {
-        return Objects.hash(pos, blockPos, nbt);
+        return Objects.hash(pos, blockPos, getNbt());
     }
 }
@@ -0,0 +1,356 @@
+package marcono1234.structure_tools.structure;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import marcono1234.structure_tools.util.Double3D;
+import marcono1234.structure_tools.util.Int3D;
+import marcono1234.structure_tools.util.RawNbt;
+import net.querz.nbt.CompoundTag;
+
+/**
+ * <p>Unmodifiable list of entities which stores the positions and block positions 
+ * in primitive arrays, one per coordinate, instead of one {@link EntityInfo}, 
+ * {@link Double3D} and {@link Int3D} object per entity. The primitive values can be 
+ * accessed directly using {@link #getX(int)}, {@link #getBlockX(int)} and the other 
+ * getters.</p>
+ * 
+ * <p>The NBT data of an entity can be stored as tag tree, in serialized form to pass 
+ * it through as is, or in serialized form which is lazily decoded the first time 
+ * {@link #getNbt(int)} is called for the entity. The decoded data is kept, so 
+ * modifications to it are retained. If multiple threads decode the data of the same 
+ * entity concurrently, all of them get the same tag tree. The tag tree itself is not 
+ * thread-safe though, so modifying it requires external synchronization.</p>
+ * 
+ * <p>{@link #get(int)} creates a new entity info for every call. Entity storages are 
+ * created using a {@link Builder}.</p>
+ */
+public final class EntityStorage extends AbstractList<EntityInfo> implements RandomAccess {
+    /**
+     * Growable builder for entity storages.
+     */
+    public static final class Builder {
+        private static final int DEFAULT_CAPACITY = 16;
+        
+        private double[] xs;
+        private double[] ys;
+        private double[] zs;
+        private int[] blockXs;
+        private int[] blockYs;
+        private int[] blockZs;
+        private CompoundTag[] nbts;
+        private RawNbt[] rawNbts;
+        private final BitSet lazilyDecoded;
+        private int size;
+        
+        /**
+         * @param expectedSize
+         *      Expected number of entities; more entities can be added nonetheless
+         */
+        public Builder(final int expectedSize) {
+            if (expectedSize < 0) {
+                throw new IllegalArgumentException("Invalid expected size " + expectedSize);
+            }
+            
+            final int capacity = Math.max(expectedSize, 1);
+            xs = new double[capacity];
+            ys = new double[capacity];
+            zs = new double[capacity];
+            blockXs = new int[capacity];
+            blockYs = new int[capacity];
+            blockZs = new int[capacity];
+            nbts = new CompoundTag[capacity];
+            rawNbts = new RawNbt[capacity];
+            lazilyDecoded = new BitSet();
+            size = 0;
+        }
+        
+        public Builder() {
+            this(DEFAULT_CAPACITY);
+        }
+        
+        private int addEntity(final double x, final double y, final double z, final int blockX, final int blockY, final int blockZ) {
+            if (size == xs.length) {
+                final int newCapacity = BlockNbtTable.grownCapacity(size);
+                xs = Arrays.copyOf(xs, newCapacity);
+                ys = Arrays.copyOf(ys, newCapacity);
+                zs = Arrays.copyOf(zs, newCapacity);
+                blockXs = Arrays.copyOf(blockXs, newCapacity);
+                blockYs = Arrays.copyOf(blockYs, newCapacity);
+                blockZs = Arrays.copyOf(blockZs, newCapacity);
+                nbts = Arrays.copyOf(nbts, newCapacity);
+                rawNbts = Arrays.copyOf(rawNbts, newCapacity);
+            }
+            
+            xs[size] = x;
+            ys[size] = y;
+            zs[size] = z;
+            blockXs[size] = blockX;
+            blockYs[size] = blockY;
+            blockZs[size] = blockZ;
+            
+            return size++;
+        }
+        
+        public Builder add(final double x, final double y, final double z, final int blockX, final int blockY, final int blockZ, final CompoundTag nbt) {
+            final int index = addEntity(x, y, z, blockX, blockY, blockZ);
+            nbts[index] = Objects.requireNonNull(nbt);
+            
+            return this;
+        }
+        
+        /**
+         * Adds an entity whose NBT data is kept in serialized form; it is decoded 
+         * every time the NBT data is requested, the same way {@link EntityInfo} 
+         * handles serialized NBT data.
+         */
+        public Builder add(final double x, final double y, final double z, final int blockX, final int blockY, final int blockZ, final RawNbt rawNbt) {
+            final int index = addEntity(x, y, z, blockX, blockY, blockZ);
+            rawNbts[index] = Objects.requireNonNull(rawNbt);
+            
+            return this;
+        }
+        
+        /**
+         * Adds an entity whose NBT data is decoded the first time it is requested.
+         */
+        public Builder addLazilyDecoded(final double x, final double y, final double z, final int blockX, final int blockY, final int blockZ, final RawNbt rawNbt) {
+            final int index = addEntity(x, y, z, blockX, blockY, blockZ);
+            rawNbts[index] = Objects.requireNonNull(rawNbt);
+            lazilyDecoded.set(index);
+            
+            return this;
+        }
+        
+        /**
+         * Adds an entity with the given positions and the NBT data of an entity of 
+         * another entity storage, keeping the NBT data in its current form. Lazily 
+         * decoded NBT data which has not been decoded yet stays that way.
+         * 
+         * @param entities
+         *      Entity storage containing the entity whose NBT data should be used
+         * @param index
+         *      Index of the entity within that storage
+         * @return
+         *      This builder
+         */
+        public Builder add(final double x, final double y, final double z, final int blockX, final int blockY, final int blockZ, final EntityStorage entities, final int index) {
+            entities.checkIndex(index);
+            final CompoundTag nbt = entities.nbts.get(index);
+            
+            if (nbt != null) {
+                return add(x, y, z, blockX, blockY, blockZ, nbt);
+            }
+            else if (entities.lazilyDecoded.get(index)) {
+                return addLazilyDecoded(x, y, z, blockX, blockY, blockZ, entities.rawNbts[index]);
+            }
+            else {
+                return add(x, y, z, blockX, blockY, blockZ, entities.rawNbts[index]);
+            }
+        }
+        
+        /**
+         * Adds the given entity, keeping its NBT data in its current form.
+         * 
+         * @param entityInfo
+         *      The entity to add
+         * @return
+         *      This builder
+         */
+        public Builder add(final EntityInfo entityInfo) {
+            final Double3D pos = entityInfo.getPos();
+            final Int3D blockPos = entityInfo.getBlockPos();
+            final Optional<RawNbt> rawNbt = entityInfo.getRawNbt();
+            
+            if (rawNbt.isPresent()) {
+                return add(pos.getX(), pos.getY(), pos.getZ(), blockPos.getX(), blockPos.getY(), blockPos.getZ(), rawNbt.get());
+            }
+            else {
+                return add(pos.getX(), pos.getY(), pos.getZ(), blockPos.getX(), blockPos.getY(), blockPos.getZ(), entityInfo.getNbt());
+            }
+        }
+        
+        public Builder addAll(final List<EntityInfo> entities) {
+            for (final EntityInfo entityInfo : entities) {
+                add(entityInfo);
+            }
+            
+            return this;
+        }
+        
+        public int size() {
+            return size;
+        }
+        
+        /**
+         * Creates an entity storage containing the entities added so far. The builder 
+         * can afterwards still be used to add more entities for another storage.
+         * 
+         * @return
+         *      The created entity storage
+         */
+        public EntityStorage build() {
+            return new EntityStorage(
+                Arrays.copyOf(xs, size),
+                Arrays.copyOf(ys, size),
+                Arrays.copyOf(zs, size),
+                Arrays.copyOf(blockXs, size),
+                Arrays.copyOf(blockYs, size),
+                Arrays.copyOf(blockZs, size),
+                new AtomicReferenceArray<>(Arrays.copyOf(nbts, size)),
+                Arrays.copyOf(rawNbts, size),
+                (BitSet) lazilyDecoded.clone()
+            );
+        }
+    }
+    
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] zs;
+    private final int[] blockXs;
+    private final int[] blockYs;
+    private final int[] blockZs;
+    /**
+     * NBT data as tag tree; for lazily decoded entities it is set once decoded. 
+     * Atomic so that concurrently decoded data is only set once and is safely 
+     * published to other threads.
+     */
+    private final AtomicReferenceArray<CompoundTag> nbts;
+    /**
+     * NBT data in serialized form; kept for lazily decoded entities since multiple 
+     * threads might decode the same entity concurrently
+     */
+    private final RawNbt[] rawNbts;
+    private final BitSet lazilyDecoded;
+    
+    private EntityStorage(final double[] xs, final double[] ys, final double[] zs, final int[] blockXs, final int[] blockYs, final int[] blockZs, final AtomicReferenceArray<CompoundTag> nbts, final RawNbt[] rawNbts, final BitSet lazilyDecoded) {
+        this.xs = xs;
+        this.ys = ys;
+        this.zs = zs;
+        this.blockXs = blockXs;
+        this.blockYs = blockYs;
+        this.blockZs = blockZs;
+        this.nbts = nbts;
+        this.rawNbts = rawNbts;
+        this.lazilyDecoded = lazilyDecoded;
+    }
+    
+    /**
+     * Returns an entity storage containing the given entities. If the list is already 
+     * an entity storage, it is returned.
+     * 
+     * @param entities
+     *      The entities
+     * @return
+     *      Entity storage containing the entities
+     */
+    public static EntityStorage copyOf(final List<EntityInfo> entities) {
+        if (entities instanceof EntityStorage) {
+            return (EntityStorage) entities;
+        }
+        
+        return new Builder(entities.size()).addAll(entities).build();
+    }
+    
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= xs.length) {
+            throw new IndexOutOfBoundsException(String.format("Index %d, size %d", index, xs.length));
+        }
+    }
+    
+    @Override
+    public int size() {
+        return xs.length;
+    }
+    
+    public double getX(final int index) {
+        checkIndex(index);
+        return xs[index];
+    }
+    
+    public double getY(final int index) {
+        checkIndex(index);
+        return ys[index];
+    }
+    
+    public double getZ(final int index) {
+        checkIndex(index);
+        return zs[index];
+    }
+    
+    public int getBlockX(final int index) {
+        checkIndex(index);
+        return blockXs[index];
+    }
+    
+    public int getBlockY(final int index) {
+        checkIndex(index);
+        return blockYs[index];
+    }
+    
+    public int getBlockZ(final int index) {
+        checkIndex(index);
+        return blockZs[index];
+    }
+    
+    /**
+     * Returns the NBT data of the entity. Lazily decoded NBT data is decoded on the 
+     * first call; other serialized NBT data is decoded on every call.
+     * 
+     * @param index
+     *      Index of the entity
+     * @return
+     *      The NBT data
+     */
+    public CompoundTag getNbt(final int index) {
+        checkIndex(index);
+        
+        CompoundTag nbt = nbts.get(index);
+        
+        if (nbt == null) {
+            nbt = rawNbts[index].toCompound();
+            
+            // Use the data decoded concurrently by another thread to not lose its modifications
+            if (lazilyDecoded.get(index) && !nbts.compareAndSet(index, null, nbt)) {
+                nbt = nbts.get(index);
+            }
+        }
+        
+        return nbt;
+    }
+    
+    /**
+     * Returns the NBT data of the entity in serialized form, if it is stored in 
+     * that form and, for lazily decoded NBT data, has not been decoded yet.
+     * 
+     * @param index
+     *      Index of the entity
+     * @return
+     *      The serialized NBT data, if it is up to date
+     */
+    public Optional<RawNbt> getRawNbt(final int index) {
+        checkIndex(index);
+        return nbts.get(index) == null ? Optional.of(rawNbts[index]) : Optional.empty();
+    }
+    
+    @Override
+    public EntityInfo get(final int index) {
+        checkIndex(index);
+        
+        final Double3D pos = new Double3D(xs[index], ys[index], zs[index]);
+        final Int3D blockPos = new Int3D(blockXs[index], blockYs[index], blockZs[index]);
+        
+        if (lazilyDecoded.get(index) || rawNbts[index] == null) {
+            return new EntityInfo(pos, blockPos, getNbt(index));
+        }
+        else {
+            return new EntityInfo(pos, blockPos, rawNbts[index]);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package marcono1234.structure_tools.structure;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.RandomAccess;
+
+import marcono1234.structure_tools.util.Int3D;
+import marcono1234.structure_tools.util.RawNbt;
+import net.querz.nbt.CompoundTag;
+
+/**
+ * <p>Unmodifiable list of blocks which stores the states per cell of the grid spanned 
+ * by the structure size instead of storing the position of every block. Cells are 
+ * ordered by Y, then X, then Z coordinate. If the blocks are in that order the 
+ * position of a block is implied by its index, otherwise the cell of every block is 
+ * stored, which still needs less memory than storing the positions. The order of the 
+ * blocks is retained in both cases.</p>
+ * 
+ * <p>Minecraft does not write the blocks of a structure in cell order: it writes full 
+ * blocks first, then all other blocks, such as air, and then blocks with block 
+ * entities, each group ordered by cell. Therefore most structures written by 
+ * Minecraft need the stored cells.</p>
+ * 
+ * <p>Grid storages are created using {@link #compact(List, Int3D)}, which selects the 
+ * storage needing the least memory for the blocks of a structure, see 
+ * {@link PackedBlockStorage} and {@link RunLengthBlockStorage}. The NBT data of the 
+ * blocks is stored in a separate table, the same way {@link BlockStorage} does.</p>
+ */
+public abstract class GridBlockStorage extends AbstractList<BlockInfo> implements RandomAccess, BlockColumns {
+    /**
+     * Size of a block in a {@link BlockStorage}, 4 ints
+     */
+    private static final long STORED_BLOCK_SIZE = 16;
+    
+    final int sizeX;
+    final int sizeZ;
+    /**
+     * Number of blocks per Y layer
+     */
+    final int layerSize;
+    private final int blocksCount;
+    /**
+     * Cell of every block; {@code null} if the blocks are ordered by cell
+     */
+    private final int[] cells;
+    private final BlockNbtTable nbtTable;
+    
+    GridBlockStorage(final int sizeX, final int sizeZ, final int blocksCount, final int[] cells, final BlockNbtTable nbtTable) {
+        this.sizeX = sizeX;
+        this.sizeZ = sizeZ;
+        layerSize = sizeX * sizeZ;
+        this.blocksCount = blocksCount;
+        this.cells = cells;
+        this.nbtTable = nbtTable;
+    }
+    
+    /**
+     * Returns the index of the cell which is occupied by the block with the given 
+     * index, for storages whose blocks are ordered by cell. The index has already 
+     * been checked.
+     */
+    abstract int getOrderedCell(int index);
+    
+    /**
+     * Returns the state of the block occupying the given cell.
+     */
+    abstract int getCellState(int cell);
+    
+    /**
+     * Returns the estimated number of bytes needed for the states of the cells.
+     */
+    abstract long estimateCellsDataSize();
+    
+    /**
+     * Returns the index of the cell which is occupied by the block with the given 
+     * index. The index has already been checked.
+     */
+    final int getCell(final int index) {
+        return cells == null ? getOrderedCell(index) : cells[index];
+    }
+    
+    /**
+     * Returns the estimated number of bytes needed for the positions and states.
+     */
+    long estimateDataSize() {
+        return estimateCellsDataSize() + estimateCellIndicesSize(cells == null, blocksCount);
+    }
+    
+    static long estimateCellIndicesSize(final boolean isOrdered, final int blocksCount) {
+        return isOrdered ? 0 : (long) blocksCount * Integer.BYTES;
+    }
+    
+    /**
+     * Returns whether the blocks are ordered by cell, in which case the storage 
+     * does not have to store the cell of every block.
+     */
+    public boolean isOrderedByCell() {
+        return cells == null;
+    }
+    
+    /**
+     * Returns a list containing the given blocks which needs as little memory as 
+     * possible. The blocks are only stored in a grid storage if they do not share 
+     * positions, are within the bounds of the size and if the grid storage needs 
+     * less memory than the block storage; otherwise the block storage is returned. 
+     * The order of the blocks is retained.
+     * 
+     * @param blocks
+     *      The blocks of the structure
+     * @param size
+     *      Size of the structure
+     * @return
+     *      List containing the blocks
+     */
+    public static List<BlockInfo> compact(final BlockStorage blocks, final Int3D size) {
+        final int blocksCount = blocks.size();
+        final long cellsCount = (long) size.getX() * size.getY() * size.getZ();
+        
+        if (blocksCount == 0 || cellsCount > Integer.MAX_VALUE) {
+            return blocks;
+        }
+        
+        final int sizeX = size.getX();
+        final int sizeZ = size.getZ();
+        final int[] cells = new int[blocksCount];
+        boolean isOrdered = true;
+        int maxState = 0;
+        
+        for (int index = 0; index < blocksCount; index++) {
+            final int x = blocks.getX(index);
+            final int y = blocks.getY(index);
+            final int z = blocks.getZ(index);
+            final int state = blocks.getState(index);
+            
+            if (x < 0 || x >= sizeX || y < 0 || y >= size.getY() || z < 0 || z >= sizeZ || state < 0) {
+                return blocks;
+            }
+            
+            final int cell = (y * sizeX + x) * sizeZ + z;
+            cells[index] = cell;
+            
+            // Strictly increasing cells are ordered and distinct
+            if (index > 0 && cell <= cells[index - 1]) {
+                isOrdered = false;
+            }
+            
+            maxState = Math.max(maxState, state);
+        }
+        
+        if (!isOrdered && hasDuplicates(cells)) {
+            return blocks;
+        }
+        
+        final long cellIndicesSize = estimateCellIndicesSize(isOrdered, blocksCount);
+        final long storedSize = STORED_BLOCK_SIZE * blocksCount;
+        final int bitsPerCell = PackedBlockStorage.getBitsPerCell(maxState);
+        final long packedSize = PackedBlockStorage.estimateDataSize((int) cellsCount, blocksCount, bitsPerCell, isOrdered) + cellIndicesSize;
+        // Run-length encoding only supports structures without empty cells
+        final boolean isFull = blocksCount == cellsCount;
+        final int[] cellBlocks = isFull && !isOrdered ? getCellBlocks(cells) : null;
+        final long runLengthSize = isFull ? RunLengthBlockStorage.estimateDataSize(blocks, cellBlocks, size) + cellIndicesSize : Long.MAX_VALUE;
+        final int[] storedCells = isOrdered ? null : cells;
+        
+        if (runLengthSize < packedSize && runLengthSize < storedSize) {
+            return RunLengthBlockStorage.create(blocks, cellBlocks, size, storedCells, blocks.getNbtTable());
+        }
+        else if (packedSize < storedSize) {
+            return PackedBlockStorage.create(blocks, cells, size, bitsPerCell, storedCells, blocks.getNbtTable());
+        }
+        else {
+            return blocks;
+        }
+    }
+    
+    private static boolean hasDuplicates(final int[] cells) {
+        final int[] sortedCells = cells.clone();
+        Arrays.sort(sortedCells);
+        
+        for (int index = 1; index < sortedCells.length; index++) {
+            if (sortedCells[index] == sortedCells[index - 1]) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Returns the index of the block occupying every cell, for blocks which occupy 
+     * all cells.
+     */
+    private static int[] getCellBlocks(final int[] cells) {
+        final int[] cellBlocks = new int[cells.length];
+        
+        for (int index = 0; index < cells.length; index++) {
+            cellBlocks[cells[index]] = index;
+        }
+        
+        return cellBlocks;
+    }
+    
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= blocksCount) {
+            throw new IndexOutOfBoundsException(String.format("Index %d, size %d", index, blocksCount));
+        }
+    }
+    
+    @Override
+    public int size() {
+        return blocksCount;
+    }
+    
+    @Override
+    public int getX(final int index) {
+        checkIndex(index);
+        return (getCell(index) / sizeZ) % sizeX;
+    }
+    
+    @Override
+    public int getY(final int index) {
+        checkIndex(index);
+        return getCell(index) / layerSize;
+    }
+    
+    @Override
+    public int getZ(final int index) {
+        checkIndex(index);
+        return getCell(index) % sizeZ;
+    }
+    
+    @Override
+    public int getState(final int index) {
+        checkIndex(index);
+        return getCellState(getCell(index));
+    }
+    
+    @Override
+    public boolean hasNbt(final int index) {
+        checkIndex(index);
+        return nbtTable.find(index) >= 0;
+    }
+    
+    @Override
+    public Optional<CompoundTag> getNbt(final int index) {
+        checkIndex(index);
+        return nbtTable.getNbt(nbtTable.find(index));
+    }
+    
+    @Override
+    public Optional<RawNbt> getRawNbt(final int index) {
+        checkIndex(index);
+        return nbtTable.getRawNbt(nbtTable.find(index));
+    }
+    
+    @Override
+    public BlockInfo get(final int index) {
+        checkIndex(index);
+        
+        final int cell = getCell(index);
+        final Int3D pos = new Int3D((cell / sizeZ) % sizeX, cell / layerSize, cell % sizeZ);
+        
+        return nbtTable.createBlockInfo(pos, getCellState(cell), nbtTable.find(index));
+    }
+}
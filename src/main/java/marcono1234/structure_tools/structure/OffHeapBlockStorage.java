@@ -0,0 +1,326 @@
+package marcono1234.structure_tools.structure;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.RandomAccess;
+
+import marcono1234.structure_tools.util.Int3D;
+import marcono1234.structure_tools.util.PackedPos;
+import marcono1234.structure_tools.util.RawNbt;
+import net.querz.nbt.CompoundTag;
+
+/**
+ * <p>Unmodifiable list of blocks which stores the packed positions and the states 
+ * outside of the Java heap, either in direct buffers or in a memory mapped temporary 
+ * file. Each block needs 12 bytes, and since the data is not on the heap it neither 
+ * increases the needed heap size nor the garbage collection pauses. Only the NBT 
+ * data of the blocks, which most blocks do not have, is stored on the heap.</p>
+ * 
+ * <p>The positions are stored as {@link PackedPos packed positions}, so the 
+ * coordinates are limited to 21 bits. {@link #get(int)} creates a new block info 
+ * for every call; consumers which only need the primitive values should use the 
+ * methods of {@link BlockColumns} instead, as {@link StructureWriter} does.</p>
+ * 
+ * <p>Block storages are created using a {@link Builder}. They should be closed once 
+ * they are not needed anymore to delete the temporary file; direct buffers cannot 
+ * be freed explicitly and are only released by the garbage collector.</p>
+ */
+public final class OffHeapBlockStorage extends AbstractList<BlockInfo> implements RandomAccess, BlockColumns, Closeable {
+    /**
+     * Packed position (long) followed by state (int)
+     */
+    private static final int RECORD_SIZE = Long.BYTES + Integer.BYTES;
+    private static final int SEGMENT_RECORDS_BITS = 20;
+    /**
+     * Number of blocks per buffer; a single buffer cannot be larger than 2 GiB
+     */
+    private static final int SEGMENT_RECORDS = 1 << SEGMENT_RECORDS_BITS;
+    private static final int SEGMENT_SIZE = SEGMENT_RECORDS * RECORD_SIZE;
+    
+    /**
+     * Builder for off-heap block storages. The buffers are handed over to the block 
+     * storage, so the builder cannot be used anymore after {@link #build()} has been 
+     * called.
+     */
+    public static final class Builder implements Closeable {
+        /**
+         * Channel of the temporary file; {@code null} if direct buffers are used
+         */
+        private final FileChannel fileChannel;
+        private final List<ByteBuffer> segments;
+        private final BlockNbtTable nbtTable;
+        private int size;
+        private boolean isBuilt;
+        
+        private Builder(final FileChannel fileChannel) {
+            this.fileChannel = fileChannel;
+            segments = new ArrayList<>();
+            nbtTable = new BlockNbtTable();
+            size = 0;
+            isBuilt = false;
+        }
+        
+        /**
+         * Creates a builder which stores the blocks in direct buffers. Direct buffers 
+         * cannot be freed explicitly; closing the builder or the built block storage 
+         * only drops the references to them, the memory is released once the garbage 
+         * collector has collected them. The amount of direct memory is limited by the 
+         * JVM option {@code -XX:MaxDirectMemorySize}.
+         */
+        public Builder() {
+            this(null);
+        }
+        
+        /**
+         * Creates a builder which stores the blocks in a memory mapped temporary file. 
+         * The file is deleted when the builder or the built block storage is closed.
+         * 
+         * @param tempDirectory
+         *      Directory in which the temporary file should be created
+         * @return
+         *      The created builder
+         * @throws IOException
+         *      If creating the temporary file fails
+         */
+        public static Builder usingTempFile(final Path tempDirectory) throws IOException {
+            final Path file = Files.createTempFile(tempDirectory, "blocks", ".tmp");
+            
+            return new Builder(FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE));
+        }
+        
+        private void verifyNotBuilt() {
+            if (isBuilt) {
+                throw new IllegalStateException("Block storage has already been built");
+            }
+        }
+        
+        private int addBlock(final int x, final int y, final int z, final int state) {
+            verifyNotBuilt();
+            
+            if (size == Integer.MAX_VALUE) {
+                throw new IllegalStateException("Too many blocks");
+            }
+            
+            // Pack first to not add a segment for an invalid position
+            final long packedPos = PackedPos.pack(x, y, z);
+            final int segmentIndex = size >>> SEGMENT_RECORDS_BITS;
+            
+            if (segmentIndex == segments.size()) {
+                segments.add(createSegment(segmentIndex));
+            }
+            
+            final int offset = (size & (SEGMENT_RECORDS - 1)) * RECORD_SIZE;
+            final ByteBuffer segment = segments.get(segmentIndex);
+            segment.putLong(offset, packedPos);
+            segment.putInt(offset + Long.BYTES, state);
+            
+            return size++;
+        }
+        
+        private ByteBuffer createSegment(final int segmentIndex) {
+            if (fileChannel == null) {
+                return ByteBuffer.allocateDirect(SEGMENT_SIZE);
+            }
+            
+            try {
+                // Mapping beyond the end of the file grows the file
+                return fileChannel.map(MapMode.READ_WRITE, (long) segmentIndex * SEGMENT_SIZE, SEGMENT_SIZE);
+            }
+            catch (final IOException ioException) {
+                throw new IllegalStateException("Failed mapping temporary file", ioException);
+            }
+        }
+        
+        /**
+         * @throws IllegalArgumentException
+         *      If any of the coordinates does not fit into 21 bits
+         */
+        public Builder add(final int x, final int y, final int z, final int state) throws IllegalArgumentException {
+            addBlock(x, y, z, state);
+            return this;
+        }
+        
+        /**
+         * @throws IllegalArgumentException
+         *      If any of the coordinates does not fit into 21 bits
+         */
+        public Builder add(final int x, final int y, final int z, final int state, final CompoundTag nbt) throws IllegalArgumentException {
+            final int index = addBlock(x, y, z, state);
+            
+            if (nbt != null) {
+                nbtTable.add(index, nbt);
+            }
+            
+            return this;
+        }
+        
+        /**
+         * @throws IllegalArgumentException
+         *      If any of the coordinates does not fit into 21 bits
+         */
+        public Builder add(final int x, final int y, final int z, final int state, final RawNbt rawNbt) throws IllegalArgumentException {
+            final int index = addBlock(x, y, z, state);
+            
+            if (rawNbt != null) {
+                nbtTable.add(index, rawNbt);
+            }
+            
+            return this;
+        }
+        
+        /**
+         * Adds the given block, keeping its NBT data in its current form.
+         * 
+         * @param blockInfo
+         *      The block to add
+         * @return
+         *      This builder
+         * @throws IllegalArgumentException
+         *      If any of the coordinates does not fit into 21 bits
+         */
+        public Builder add(final BlockInfo blockInfo) throws IllegalArgumentException {
+            final Int3D pos = blockInfo.getPos();
+            final Optional<RawNbt> rawNbt = blockInfo.getRawNbt();
+            
+            if (rawNbt.isPresent()) {
+                return add(pos.getX(), pos.getY(), pos.getZ(), blockInfo.getState(), rawNbt.get());
+            }
+            else {
+                return add(pos.getX(), pos.getY(), pos.getZ(), blockInfo.getState(), blockInfo.getNbt().orElse(null));
+            }
+        }
+        
+        public int size() {
+            return size;
+        }
+        
+        /**
+         * Creates the block storage containing the added blocks.
+         * 
+         * @return
+         *      The created block storage
+         * @throws IllegalStateException
+         *      If the block storage has already been built
+         */
+        public OffHeapBlockStorage build() throws IllegalStateException {
+            verifyNotBuilt();
+            isBuilt = true;
+            
+            return new OffHeapBlockStorage(fileChannel, new ArrayList<>(segments), nbtTable.trimmedCopy(), size);
+        }
+        
+        /**
+         * Deletes the temporary file, unless the block storage has been built; 
+         * then the block storage is responsible for it. Direct buffers are only 
+         * freed by the garbage collector, see {@link #Builder()}.
+         */
+        @Override
+        public void close() throws IOException {
+            if (!isBuilt) {
+                isBuilt = true;
+                segments.clear();
+                
+                if (fileChannel != null) {
+                    fileChannel.close();
+                }
+            }
+        }
+    }
+    
+    private final FileChannel fileChannel;
+    private final List<ByteBuffer> segments;
+    private final BlockNbtTable nbtTable;
+    private final int size;
+    
+    private OffHeapBlockStorage(final FileChannel fileChannel, final List<ByteBuffer> segments, final BlockNbtTable nbtTable, final int size) {
+        this.fileChannel = fileChannel;
+        this.segments = segments;
+        this.nbtTable = nbtTable;
+        this.size = size;
+    }
+    
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(String.format("Index %d, size %d", index, size));
+        }
+    }
+    
+    private long getPackedPos(final int index) {
+        checkIndex(index);
+        return segments.get(index >>> SEGMENT_RECORDS_BITS).getLong((index & (SEGMENT_RECORDS - 1)) * RECORD_SIZE);
+    }
+    
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    @Override
+    public int getX(final int index) {
+        return PackedPos.unpackX(getPackedPos(index));
+    }
+    
+    @Override
+    public int getY(final int index) {
+        return PackedPos.unpackY(getPackedPos(index));
+    }
+    
+    @Override
+    public int getZ(final int index) {
+        return PackedPos.unpackZ(getPackedPos(index));
+    }
+    
+    @Override
+    public int getState(final int index) {
+        checkIndex(index);
+        return segments.get(index >>> SEGMENT_RECORDS_BITS).getInt((index & (SEGMENT_RECORDS - 1)) * RECORD_SIZE + Long.BYTES);
+    }
+    
+    @Override
+    public boolean hasNbt(final int index) {
+        checkIndex(index);
+        return nbtTable.find(index) >= 0;
+    }
+    
+    @Override
+    public Optional<CompoundTag> getNbt(final int index) {
+        checkIndex(index);
+        return nbtTable.getNbt(nbtTable.find(index));
+    }
+    
+    @Override
+    public Optional<RawNbt> getRawNbt(final int index) {
+        checkIndex(index);
+        return nbtTable.getRawNbt(nbtTable.find(index));
+    }
+    
+    @Override
+    public BlockInfo get(final int index) {
+        return nbtTable.createBlockInfo(PackedPos.unpack(getPackedPos(index)), getState(index), nbtTable.find(index));
+    }
+    
+    /**
+     * Deletes the temporary file, if any. Direct buffers cannot be freed explicitly, 
+     * closing only drops the references to them so that the garbage collector can 
+     * release the memory even if this block storage is still referenced. The block 
+     * storage must not be used afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        segments.clear();
+        
+        if (fileChannel != null) {
+            fileChannel.close();
+        }
+    }
+}
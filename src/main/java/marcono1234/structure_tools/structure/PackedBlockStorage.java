@@ -0,0 +1,193 @@
+package marcono1234.structure_tools.structure;
+
+import marcono1234.structure_tools.util.Int3D;
+
+/**
+ * <p>Grid storage which packs the state of every cell into as few bits as possible, 
+ * similar to the block states of Minecraft chunk sections. Cells store the palette 
+ * index + 1, 0 is used for cells without block, so for a palette with {@code n} states 
+ * each cell needs {@code ceil(log2(n + 1))} bits. The values of a cell do not span 
+ * multiple longs.</p>
+ * 
+ * <p>If the blocks are ordered by cell but not every cell is occupied, the number of 
+ * occupied cells before every long is stored in addition to find the cell of a block. 
+ * The cell of the last accessed block is remembered, so accessing the same or the 
+ * next block, as consumers of {@link BlockColumns} do, needs no search.</p>
+ */
+public final class PackedBlockStorage extends GridBlockStorage {
+    private final int bitsPerCell;
+    private final int cellsPerLong;
+    private final long cellMask;
+    private final long[] data;
+    /**
+     * Number of occupied cells before the respective long of {@link #data}; 
+     * {@code null} if all cells are occupied
+     */
+    private final int[] occupiedBefore;
+    /**
+     * Index of the last block whose cell was found using {@link #occupiedBefore} in 
+     * the upper 32 bits and its cell in the lower 32 bits, so that both are updated 
+     * atomically. Only a hint for speeding up sequential access.
+     */
+    private volatile long lastIndexAndCell;
+    
+    private PackedBlockStorage(final int sizeX, final int sizeZ, final int blocksCount, final int[] cells, final BlockNbtTable nbtTable, final int bitsPerCell, final long[] data, final int[] occupiedBefore) {
+        super(sizeX, sizeZ, blocksCount, cells, nbtTable);
+        
+        this.bitsPerCell = bitsPerCell;
+        cellsPerLong = Long.SIZE / bitsPerCell;
+        cellMask = (1L << bitsPerCell) - 1;
+        this.data = data;
+        this.occupiedBefore = occupiedBefore;
+        // Block -1 at cell -1, so the first block is found by searching from cell 0
+        lastIndexAndCell = packIndexAndCell(-1, -1);
+    }
+    
+    private static long packIndexAndCell(final int index, final int cell) {
+        return ((long) index << Integer.SIZE) | (cell & 0xFFFFFFFFL);
+    }
+    
+    static int getBitsPerCell(final int maxState) {
+        // + 1 because 0 represents an empty cell
+        return Integer.SIZE - Integer.numberOfLeadingZeros(maxState + 1);
+    }
+    
+    private static int getLongsCount(final int cellsCount, final int cellsPerLong) {
+        return (cellsCount + cellsPerLong - 1) / cellsPerLong;
+    }
+    
+    /**
+     * Estimates the size of the cell states; does not include the cell of every 
+     * block stored for blocks which are not ordered by cell.
+     */
+    static long estimateDataSize(final int cellsCount, final int blocksCount, final int bitsPerCell, final boolean isOrdered) {
+        final long longsCount = getLongsCount(cellsCount, Long.SIZE / bitsPerCell);
+        final long occupiedBeforeSize = !isOrdered || blocksCount == cellsCount ? 0 : longsCount * Integer.BYTES;
+        
+        return longsCount * Long.BYTES + occupiedBeforeSize;
+    }
+    
+    /**
+     * Creates the storage for blocks which have been verified by 
+     * {@link GridBlockStorage#compact(java.util.List, Int3D)}.
+     * 
+     * @param blockCells
+     *      Cell of every block
+     * @param cells
+     *      Cell of every block to store; {@code null} if the blocks are ordered by cell
+     */
+    static PackedBlockStorage create(final BlockStorage blocks, final int[] blockCells, final Int3D size, final int bitsPerCell, final int[] cells, final BlockNbtTable nbtTable) {
+        final int sizeX = size.getX();
+        final int sizeZ = size.getZ();
+        final int cellsCount = sizeX * size.getY() * sizeZ;
+        final int cellsPerLong = Long.SIZE / bitsPerCell;
+        final long[] data = new long[getLongsCount(cellsCount, cellsPerLong)];
+        final int blocksCount = blocks.size();
+        
+        for (int index = 0; index < blocksCount; index++) {
+            final int cell = blockCells[index];
+            final long value = blocks.getState(index) + 1L;
+            
+            data[cell / cellsPerLong] |= value << ((cell % cellsPerLong) * bitsPerCell);
+        }
+        
+        int[] occupiedBefore = null;
+        
+        // Cell of every block is known if the blocks are not ordered
+        if (cells == null && blocksCount != cellsCount) {
+            occupiedBefore = new int[data.length];
+            int occupied = 0;
+            int cell = 0;
+            
+            for (int longIndex = 0; longIndex < data.length; longIndex++) {
+                occupiedBefore[longIndex] = occupied;
+                
+                for (int cellInLong = 0; cellInLong < cellsPerLong && cell < cellsCount; cellInLong++, cell++) {
+                    if (((data[longIndex] >>> (cellInLong * bitsPerCell)) & ((1L << bitsPerCell) - 1)) != 0) {
+                        occupied++;
+                    }
+                }
+            }
+        }
+        
+        return new PackedBlockStorage(sizeX, sizeZ, blocksCount, cells, nbtTable, bitsPerCell, data, occupiedBefore);
+    }
+    
+    private long getCellValue(final int cell) {
+        return (data[cell / cellsPerLong] >>> ((cell % cellsPerLong) * bitsPerCell)) & cellMask;
+    }
+    
+    public int getBitsPerCell() {
+        return bitsPerCell;
+    }
+    
+    @Override
+    int getOrderedCell(final int index) {
+        if (occupiedBefore == null) {
+            return index;
+        }
+        
+        final long lastIndexAndCell = this.lastIndexAndCell;
+        final int lastIndex = (int) (lastIndexAndCell >> Integer.SIZE);
+        final int lastCell = (int) lastIndexAndCell;
+        
+        if (index == lastIndex) {
+            return lastCell;
+        }
+        
+        final int cell = index == lastIndex + 1 ? findOccupiedCell(lastCell + 1, 0) : searchOccupiedCell(index);
+        this.lastIndexAndCell = packIndexAndCell(index, cell);
+        
+        return cell;
+    }
+    
+    /**
+     * Returns the occupied cell starting at the given cell after skipping the given 
+     * number of occupied cells.
+     */
+    private int findOccupiedCell(final int startCell, final int skipped) {
+        int remaining = skipped;
+        int cell = startCell;
+        
+        while (true) {
+            if (getCellValue(cell) != 0) {
+                if (remaining == 0) {
+                    return cell;
+                }
+                
+                remaining--;
+            }
+            
+            cell++;
+        }
+    }
+    
+    private int searchOccupiedCell(final int index) {
+        // Find the last long with at most index occupied cells before it
+        int low = 0;
+        int high = occupiedBefore.length - 1;
+        
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            
+            if (occupiedBefore[mid] <= index) {
+                low = mid;
+            }
+            else {
+                high = mid - 1;
+            }
+        }
+        
+        return findOccupiedCell(low * cellsPerLong, index - occupiedBefore[low]);
+    }
+    
+    @Override
+    int getCellState(final int cell) {
+        return (int) getCellValue(cell) - 1;
+    }
+    
+    @Override
+    long estimateCellsDataSize() {
+        return (long) data.length * Long.BYTES + (occupiedBefore == null ? 0 : (long) occupiedBefore.length * Integer.BYTES);
+    }
+}
@@ -0,0 +1,151 @@
+package marcono1234.structure_tools.structure;
+
+import java.util.Arrays;
+
+import marcono1234.structure_tools.util.Int3D;
+
+/**
+ * <p>Grid storage which stores the states of every column of the structure as runs 
+ * of equal states from bottom to top. This needs very little memory for layered 
+ * builds, such as terrain, where the state of most blocks is the same as the state 
+ * of the block below.</p>
+ * 
+ * <p>Only supports structures where every cell is occupied by a block. Finding the 
+ * state of a block requires a binary search over the runs of its column.</p>
+ */
+public final class RunLengthBlockStorage extends GridBlockStorage {
+    /**
+     * Index of the first run of every column, and the total number of runs at the end
+     */
+    private final int[] columnRunStarts;
+    /**
+     * Exclusive end Y coordinate of every run
+     */
+    private final int[] runEnds;
+    private final int[] runStates;
+    
+    private RunLengthBlockStorage(final int sizeX, final int sizeY, final int sizeZ, final int[] cells, final BlockNbtTable nbtTable, final int[] columnRunStarts, final int[] runEnds, final int[] runStates) {
+        super(sizeX, sizeZ, sizeX * sizeY * sizeZ, cells, nbtTable);
+        
+        this.columnRunStarts = columnRunStarts;
+        this.runEnds = runEnds;
+        this.runStates = runStates;
+    }
+    
+    private static long estimateDataSize(final int columnsCount, final int runsCount) {
+        return (long) (columnsCount + 1) * Integer.BYTES + (long) runsCount * 2 * Integer.BYTES;
+    }
+    
+    /**
+     * Returns the state of the block occupying the given cell.
+     * 
+     * @param cellBlocks
+     *      Index of the block occupying every cell; {@code null} if the blocks are 
+     *      ordered by cell
+     */
+    private static int getStateAt(final BlockStorage blocks, final int[] cellBlocks, final int cell) {
+        return blocks.getState(cellBlocks == null ? cell : cellBlocks[cell]);
+    }
+    
+    /**
+     * Estimates the size of the states of blocks which have been verified by 
+     * {@link GridBlockStorage#compact(java.util.List, Int3D)} and occupy every cell.
+     */
+    static long estimateDataSize(final BlockStorage blocks, final int[] cellBlocks, final Int3D size) {
+        final int layerSize = size.getX() * size.getZ();
+        int runsCount = layerSize;
+        
+        // Cells are ordered by Y coordinate, so the cell below has the index cell - layerSize
+        for (int cell = layerSize; cell < blocks.size(); cell++) {
+            if (getStateAt(blocks, cellBlocks, cell) != getStateAt(blocks, cellBlocks, cell - layerSize)) {
+                runsCount++;
+            }
+        }
+        
+        return estimateDataSize(layerSize, runsCount);
+    }
+    
+    /**
+     * Creates the storage for blocks which have been verified by 
+     * {@link GridBlockStorage#compact(java.util.List, Int3D)} and occupy every cell.
+     * 
+     * @param cellBlocks
+     *      Index of the block occupying every cell; {@code null} if the blocks are 
+     *      ordered by cell
+     * @param cells
+     *      Cell of every block; {@code null} if the blocks are ordered by cell
+     */
+    static RunLengthBlockStorage create(final BlockStorage blocks, final int[] cellBlocks, final Int3D size, final int[] cells, final BlockNbtTable nbtTable) {
+        final int sizeY = size.getY();
+        final int layerSize = size.getX() * size.getZ();
+        final int[] columnRunStarts = new int[layerSize + 1];
+        int[] runEnds = new int[layerSize];
+        int[] runStates = new int[layerSize];
+        int runsCount = 0;
+        
+        for (int column = 0; column < layerSize; column++) {
+            columnRunStarts[column] = runsCount;
+            int runState = getStateAt(blocks, cellBlocks, column);
+            
+            for (int y = 1; y <= sizeY; y++) {
+                final boolean isEnd = y == sizeY;
+                final int state = isEnd ? 0 : getStateAt(blocks, cellBlocks, y * layerSize + column);
+                
+                if (isEnd || state != runState) {
+                    if (runsCount == runEnds.length) {
+                        final int newCapacity = BlockNbtTable.grownCapacity(runsCount);
+                        runEnds = Arrays.copyOf(runEnds, newCapacity);
+                        runStates = Arrays.copyOf(runStates, newCapacity);
+                    }
+                    
+                    runEnds[runsCount] = y;
+                    runStates[runsCount] = runState;
+                    runsCount++;
+                    runState = state;
+                }
+            }
+        }
+        
+        columnRunStarts[layerSize] = runsCount;
+        
+        return new RunLengthBlockStorage(size.getX(), sizeY, size.getZ(), cells, nbtTable, columnRunStarts, Arrays.copyOf(runEnds, runsCount), Arrays.copyOf(runStates, runsCount));
+    }
+    
+    public int getRunsCount() {
+        return runEnds.length;
+    }
+    
+    @Override
+    int getOrderedCell(final int index) {
+        // Every cell is occupied
+        return index;
+    }
+    
+    @Override
+    int getCellState(final int cell) {
+        final int column = cell % layerSize;
+        final int y = cell / layerSize;
+        
+        // Find the first run of the column which ends after the Y coordinate
+        int low = columnRunStarts[column];
+        int high = columnRunStarts[column + 1] - 1;
+        
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            
+            if (runEnds[mid] > y) {
+                high = mid;
+            }
+            else {
+                low = mid + 1;
+            }
+        }
+        
+        return runStates[low];
+    }
+    
+    @Override
+    long estimateCellsDataSize() {
+        return estimateDataSize(layerSize, runEnds.length);
+    }
+}
@@ -0,0 +1,433 @@
+package marcono1234.structure_tools.structure;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.RandomAccess;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import marcono1234.structure_tools.util.Int3D;
+import marcono1234.structure_tools.util.PackedPos;
+
+/**
+ * <p>Index of the blocks and entities of a structure by position, see {@link Structure#getSpatialIndex()}. 
+ * It allows finding the block at a position in constant time instead of searching 
+ * the blocks list, and querying all blocks and entities within a box.</p>
+ * 
+ * <p>Depending on the density of the blocks, block indices are either stored in a 
+ * dense grid covering the bounding box of all blocks, or in a hash table with the 
+ * {@linkplain PackedPos packed} positions as keys. Entities are indexed by their 
+ * block position, sorted by packed position. If multiple blocks have the same 
+ * position, the last one is found, matching how Minecraft places the blocks.</p>
+ */
+public final class SpatialIndex {
+    /**
+     * Maximum ratio between the volume of the bounding box and the number of blocks 
+     * for which a dense grid is used; a grid cell needs 4 bytes, a hash table entry 
+     * including free slots about 24 bytes
+     */
+    private static final int MAX_DENSE_VOLUME_PER_BLOCK = 6;
+    /**
+     * Key of free hash table slots; packed positions are never negative
+     */
+    private static final long FREE_KEY = -1;
+    
+    private final List<BlockInfo> blocks;
+    private final List<EntityInfo> entities;
+    
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int maxX;
+    private final int maxY;
+    private final int maxZ;
+    
+    /**
+     * Block index + 1 for every cell of the bounding box, 0 if the cell is empty; 
+     * {@code null} if the hash table is used
+     */
+    private final int[] grid;
+    /**
+     * Packed positions of the hash table slots, {@link #FREE_KEY} for free slots; 
+     * {@code null} if the grid is used
+     */
+    private final long[] tableKeys;
+    /**
+     * Block indices of the hash table slots
+     */
+    private final int[] tableValues;
+    
+    /**
+     * Packed block positions of the entities, sorted
+     */
+    private final long[] entityKeys;
+    /**
+     * Entity indices in the order of {@link #entityKeys}
+     */
+    private final int[] entityIndices;
+    
+    private SpatialIndex(final List<BlockInfo> blocks, final List<EntityInfo> entities, final int[] bounds, final int[] grid, final long[] tableKeys, final int[] tableValues, final long[] entityKeys, final int[] entityIndices) {
+        this.blocks = blocks;
+        this.entities = entities;
+        minX = bounds[0];
+        minY = bounds[1];
+        minZ = bounds[2];
+        maxX = bounds[3];
+        maxY = bounds[4];
+        maxZ = bounds[5];
+        this.grid = grid;
+        this.tableKeys = tableKeys;
+        this.tableValues = tableValues;
+        this.entityKeys = entityKeys;
+        this.entityIndices = entityIndices;
+    }
+    
+    private static int getX(final List<BlockInfo> blocks, final int index) {
+        return blocks instanceof BlockColumns ? ((BlockColumns) blocks).getX(index) : blocks.get(index).getPos().getX();
+    }
+    
+    private static int getY(final List<BlockInfo> blocks, final int index) {
+        return blocks instanceof BlockColumns ? ((BlockColumns) blocks).getY(index) : blocks.get(index).getPos().getY();
+    }
+    
+    private static int getZ(final List<BlockInfo> blocks, final int index) {
+        return blocks instanceof BlockColumns ? ((BlockColumns) blocks).getZ(index) : blocks.get(index).getPos().getZ();
+    }
+    
+    /**
+     * Creates the index for the blocks and entities of the structure.
+     * 
+     * @param structure
+     *      The structure to index
+     * @return
+     *      The created index
+     * @throws IllegalArgumentException
+     *      If the blocks are too sparse for a grid and the position of a block cannot 
+     *      be {@linkplain PackedPos packed}, or if the block position of an entity 
+     *      cannot be packed; entities are always indexed by packed position
+     */
+    static SpatialIndex create(final Structure structure) throws IllegalArgumentException {
+        final List<BlockInfo> blocks = structure.getBlocks();
+        final List<EntityInfo> entities = structure.getEntities().orElse(Collections.emptyList());
+        final int blocksCount = blocks.size();
+        
+        // minX, minY, minZ, maxX, maxY, maxZ; inclusive
+        final int[] bounds = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+        
+        for (int index = 0; index < blocksCount; index++) {
+            final int x = getX(blocks, index);
+            final int y = getY(blocks, index);
+            final int z = getZ(blocks, index);
+            bounds[0] = Math.min(bounds[0], x);
+            bounds[1] = Math.min(bounds[1], y);
+            bounds[2] = Math.min(bounds[2], z);
+            bounds[3] = Math.max(bounds[3], x);
+            bounds[4] = Math.max(bounds[4], y);
+            bounds[5] = Math.max(bounds[5], z);
+        }
+        
+        int[] grid = null;
+        long[] tableKeys = null;
+        int[] tableValues = null;
+        
+        if (blocksCount > 0) {
+            final long volume = ((long) bounds[3] - bounds[0] + 1) * ((long) bounds[4] - bounds[1] + 1) * ((long) bounds[5] - bounds[2] + 1);
+            
+            if (volume <= (long) MAX_DENSE_VOLUME_PER_BLOCK * blocksCount && volume <= Integer.MAX_VALUE) {
+                grid = createGrid(blocks, bounds, (int) volume);
+            }
+            else {
+                // Capacity is a power of two with a load factor of at most 0.5
+                final int capacity = Integer.highestOneBit(Math.max(blocksCount, 1) * 2 - 1) << 1;
+                tableKeys = new long[capacity];
+                tableValues = new int[capacity];
+                Arrays.fill(tableKeys, FREE_KEY);
+                
+                for (int index = 0; index < blocksCount; index++) {
+                    final long packedPos = PackedPos.pack(getX(blocks, index), getY(blocks, index), getZ(blocks, index));
+                    final int slot = findSlot(tableKeys, packedPos);
+                    tableKeys[slot] = packedPos;
+                    tableValues[slot] = index;
+                }
+            }
+        }
+        
+        final int entitiesCount = entities.size();
+        final long[] entityKeys = new long[entitiesCount];
+        // Pairs of packed block position and entity index, sorted together
+        final long[][] keysAndIndices = new long[entitiesCount][];
+        
+        for (int index = 0; index < entitiesCount; index++) {
+            final long packedPos;
+            
+            if (entities instanceof EntityStorage) {
+                final EntityStorage entityStorage = (EntityStorage) entities;
+                packedPos = PackedPos.pack(entityStorage.getBlockX(index), entityStorage.getBlockY(index), entityStorage.getBlockZ(index));
+            }
+            else {
+                packedPos = PackedPos.pack(entities.get(index).getBlockPos());
+            }
+            
+            keysAndIndices[index] = new long[] {packedPos, index};
+        }
+        
+        Arrays.sort(keysAndIndices, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        final int[] entityIndices = new int[entitiesCount];
+        
+        for (int index = 0; index < entitiesCount; index++) {
+            entityKeys[index] = keysAndIndices[index][0];
+            entityIndices[index] = (int) keysAndIndices[index][1];
+        }
+        
+        return new SpatialIndex(blocks, entities, bounds, grid, tableKeys, tableValues, entityKeys, entityIndices);
+    }
+    
+    private static int[] createGrid(final List<BlockInfo> blocks, final int[] bounds, final int volume) {
+        final int[] grid = new int[volume];
+        final int sizeX = bounds[3] - bounds[0] + 1;
+        final int sizeZ = bounds[5] - bounds[2] + 1;
+        
+        for (int index = 0; index < blocks.size(); index++) {
+            final int x = getX(blocks, index) - bounds[0];
+            final int y = getY(blocks, index) - bounds[1];
+            final int z = getZ(blocks, index) - bounds[2];
+            grid[(y * sizeX + x) * sizeZ + z] = index + 1;
+        }
+        
+        return grid;
+    }
+    
+    private static int hash(final long packedPos) {
+        // Finalizer of MurmurHash3
+        long hash = packedPos;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        
+        return (int) hash;
+    }
+    
+    /**
+     * Returns the slot containing the key or the free slot where it would be stored.
+     */
+    private static int findSlot(final long[] tableKeys, final long packedPos) {
+        final int mask = tableKeys.length - 1;
+        int slot = hash(packedPos) & mask;
+        
+        while (tableKeys[slot] != FREE_KEY && tableKeys[slot] != packedPos) {
+            slot = (slot + 1) & mask;
+        }
+        
+        return slot;
+    }
+    
+    /**
+     * Returns whether the blocks are stored in a dense grid instead of a hash table.
+     * 
+     * @return
+     *      Whether a dense grid is used
+     */
+    public boolean isDense() {
+        return grid != null;
+    }
+    
+    private boolean isInBounds(final int x, final int y, final int z) {
+        return x >= minX && x <= maxX
+            && y >= minY && y <= maxY
+            && z >= minZ && z <= maxZ;
+    }
+    
+    /**
+     * Returns the index of the block at the given position within the blocks list 
+     * of the structure.
+     * 
+     * @return
+     *      The index of the block, or -1 if there is no block at the position
+     */
+    public int getBlockIndex(final int x, final int y, final int z) {
+        if (!isInBounds(x, y, z)) {
+            return -1;
+        }
+        else if (grid != null) {
+            final int cell = ((y - minY) * (maxX - minX + 1) + (x - minX)) * (maxZ - minZ + 1) + (z - minZ);
+            return grid[cell] - 1;
+        }
+        else {
+            final long packedPos = PackedPos.pack(x, y, z);
+            final int slot = findSlot(tableKeys, packedPos);
+            return tableKeys[slot] == FREE_KEY ? -1 : tableValues[slot];
+        }
+    }
+    
+    /**
+     * Returns the block at the given position.
+     * 
+     * @return
+     *      The block, if any
+     */
+    public Optional<BlockInfo> getBlockAt(final int x, final int y, final int z) {
+        final int index = getBlockIndex(x, y, z);
+        return index == -1 ? Optional.empty() : Optional.of(blocks.get(index));
+    }
+    
+    /**
+     * Passes the index of every block within the box to the consumer, in no 
+     * particular order.
+     * 
+     * @param min
+     *      Minimum corner of the box, inclusive
+     * @param max
+     *      Maximum corner of the box, inclusive
+     * @param consumer
+     *      Consumer of the block indices
+     */
+    public void forEachBlockIndexIn(final Int3D min, final Int3D max, final IntConsumer consumer) {
+        // Restrict to the bounding box of the blocks
+        final int fromX = Math.max(min.getX(), minX);
+        final int fromY = Math.max(min.getY(), minY);
+        final int fromZ = Math.max(min.getZ(), minZ);
+        final int toX = Math.min(max.getX(), maxX);
+        final int toY = Math.min(max.getY(), maxY);
+        final int toZ = Math.min(max.getZ(), maxZ);
+        
+        if (fromX > toX || fromY > toY || fromZ > toZ) {
+            return;
+        }
+        
+        final long volume = ((long) toX - fromX + 1) * ((long) toY - fromY + 1) * ((long) toZ - fromZ + 1);
+        
+        if (grid != null || volume <= blocks.size()) {
+            for (int y = fromY; y <= toY; y++) {
+                for (int x = fromX; x <= toX; x++) {
+                    for (int z = fromZ; z <= toZ; z++) {
+                        final int index = getBlockIndex(x, y, z);
+                        
+                        if (index != -1) {
+                            consumer.accept(index);
+                        }
+                    }
+                }
+            }
+        }
+        else {
+            // Box is larger than the number of blocks, so checking all blocks is faster
+            for (int index = 0; index < blocks.size(); index++) {
+                final int x = getX(blocks, index);
+                final int y = getY(blocks, index);
+                final int z = getZ(blocks, index);
+                
+                // Only report the block which is found at the position
+                if (x >= fromX && x <= toX && y >= fromY && y <= toY && z >= fromZ && z <= toZ && getBlockIndex(x, y, z) == index) {
+                    consumer.accept(index);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Returns all blocks within the box, ordered the same way as in the blocks 
+     * list of the structure.
+     * 
+     * @param min
+     *      Minimum corner of the box, inclusive
+     * @param max
+     *      Maximum corner of the box, inclusive
+     * @return
+     *      The blocks within the box
+     */
+    public List<BlockInfo> getBlocksIn(final Int3D min, final Int3D max) {
+        final IntStream.Builder indices = IntStream.builder();
+        forEachBlockIndexIn(min, max, indices::add);
+        
+        return new IndexedList<>(blocks, indices.build().sorted().toArray());
+    }
+    
+    /**
+     * Returns the entities whose block position is the given position.
+     * 
+     * @return
+     *      The entities at the position
+     */
+    public List<EntityInfo> getEntitiesAt(final int x, final int y, final int z) {
+        if (!PackedPos.isPackable(x) || !PackedPos.isPackable(y) || !PackedPos.isPackable(z)) {
+            return Collections.emptyList();
+        }
+        
+        final long packedPos = PackedPos.pack(x, y, z);
+        int from = Arrays.binarySearch(entityKeys, packedPos);
+        
+        if (from < 0) {
+            return Collections.emptyList();
+        }
+        
+        // Binary search finds any of the equal keys
+        while (from > 0 && entityKeys[from - 1] == packedPos) {
+            from--;
+        }
+        
+        int to = from + 1;
+        
+        while (to < entityKeys.length && entityKeys[to] == packedPos) {
+            to++;
+        }
+        
+        return new IndexedList<>(entities, Arrays.copyOfRange(entityIndices, from, to));
+    }
+    
+    /**
+     * Returns all entities whose block position is within the box, ordered the same 
+     * way as in the entities list of the structure.
+     * 
+     * @param min
+     *      Minimum corner of the box, inclusive
+     * @param max
+     *      Maximum corner of the box, inclusive
+     * @return
+     *      The entities within the box
+     */
+    public List<EntityInfo> getEntitiesIn(final Int3D min, final Int3D max) {
+        final IntStream.Builder indices = IntStream.builder();
+        
+        for (int index = 0; index < entityKeys.length; index++) {
+            final long packedPos = entityKeys[index];
+            final int x = PackedPos.unpackX(packedPos);
+            final int y = PackedPos.unpackY(packedPos);
+            final int z = PackedPos.unpackZ(packedPos);
+            
+            if (x >= min.getX() && x <= max.getX()
+                && y >= min.getY() && y <= max.getY()
+                && z >= min.getZ() && z <= max.getZ()
+            ) {
+                indices.add(entityIndices[index]);
+            }
+        }
+        
+        return new IndexedList<>(entities, indices.build().sorted().toArray());
+    }
+    
+    /**
+     * Unmodifiable view of the elements at the given indices of a list.
+     */
+    private static class IndexedList<T> extends AbstractList<T> implements RandomAccess {
+        private final List<T> list;
+        private final int[] indices;
+        
+        public IndexedList(final List<T> list, final int[] indices) {
+            this.list = list;
+            this.indices = indices;
+        }
+        
+        @Override
+        public T get(final int index) {
+            return list.get(indices[index]);
+        }
+        
+        @Override
+        public int size() {
+            return indices.length;
+        }
+    }
+}
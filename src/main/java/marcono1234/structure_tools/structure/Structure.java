@@ -12,9 +12,9 @@ import java.util.function.Predicate;
 import marcono1234.structure_tools.util.Int3D;
 import marcono1234.structure_tools.util.NbtCollectors;
 import marcono1234.structure_tools.util.NbtUtils;
+import marcono1234.structure_tools.util.RawNbt;
 import net.querz.nbt.CompoundTag;
 import net.querz.nbt.ListTag;
-import net.querz.nbt.NBTUtil;
 
 public class Structure {
     /**
@@ -34,19 +34,19 @@ public class Structure {
         MAX_VANILLA_SIZE
     );
     
-    private static final String SIZE_KEY = "size";
-    private static final String BLOCKS_KEY = "blocks";
-    private static final String MULTI_PALETTES_KEY = "palettes";
-    private static final String SINGLE_PALETTE_KEY = "palette";
-    private static final String ENTITIES_KEY = "entities";
-    private static final String DATA_VERSION_KEY = "DataVersion";
+    static final String SIZE_KEY = "size";
+    static final String BLOCKS_KEY = "blocks";
+    static final String MULTI_PALETTES_KEY = "palettes";
+    static final String SINGLE_PALETTE_KEY = "palette";
+    static final String ENTITIES_KEY = "entities";
+    static final String DATA_VERSION_KEY = "DataVersion";
     // Currently not written and read by Minecraft anymore
-    private static final String AUTHOR_KEY = "author";
+    static final String AUTHOR_KEY = "author";
     
     /**
      * Key used for writing custom data
      */
-    private static final String STRUCTURE_TOOLS_KEY = "structure-tools";
+    static final String STRUCTURE_TOOLS_KEY = "structure-tools";
     
     private final Int3D size;
     private final Optional<Int3D> actualSize;
@@ -56,8 +56,24 @@ public class Structure {
     private final Optional<List<EntityInfo>> entities;
     private final int dataVersion;
     private final Optional<String> author;
+    private final boolean isFrozen;
+    /**
+     * Lazily computed content hash of a frozen structure, {@code null} if not 
+     * computed yet or if the structure is not frozen
+     */
+    private volatile ContentHash contentHash;
+    /**
+     * Lazily computed hash code of a frozen structure, 0 if not computed yet or 
+     * if the structure is not frozen
+     */
+    private volatile int hashCode;
+    /**
+     * Lazily created spatial index of a frozen structure, {@code null} if not 
+     * created yet or if the structure is not frozen
+     */
+    private volatile SpatialIndex spatialIndex;
     
-    public Structure(final Int3D size, final Int3D actualSize, final List<BlockInfo> blocks, final List<List<BlockState>> palettes, final List<EntityInfo> entities, final int dataVersion, final String author) throws IllegalArgumentException {
+    private Structure(final Int3D size, final Int3D actualSize, final List<BlockInfo> blocks, final List<List<BlockState>> palettes, final List<EntityInfo> entities, final int dataVersion, final String author, final boolean isFrozen) throws IllegalArgumentException {
         this.size = verifyValidSize(size);
         
         if (actualSize == null) {
@@ -72,6 +88,11 @@ public class Structure {
         this.entities = Optional.ofNullable(entities);
         this.dataVersion = dataVersion;
         this.author = Optional.ofNullable(author);
+        this.isFrozen = isFrozen;
+    }
+    
+    public Structure(final Int3D size, final Int3D actualSize, final List<BlockInfo> blocks, final List<List<BlockState>> palettes, final List<EntityInfo> entities, final int dataVersion, final String author) throws IllegalArgumentException {
+        this(size, actualSize, blocks, palettes, entities, dataVersion, author, false);
     }
     
     public Structure(final Int3D size, final List<BlockInfo> blocks, final List<List<BlockState>> palettes, final List<EntityInfo> entities, final int dataVersion, final String author) {
@@ -111,6 +132,27 @@ public class Structure {
         return actualSize.orElse(size);
     }
     
+    /**
+     * Returns the actual size only if it was specified in addition to the size, 
+     * that is the value which is written to the custom {@value #STRUCTURE_TOOLS_KEY} 
+     * tag.
+     * 
+     * @return
+     *      The specified actual size
+     */
+    Optional<Int3D> getSpecifiedActualSize() {
+        return actualSize;
+    }
+    
+    /**
+     * Returns the blocks of the structure. For structures read from files the 
+     * list is a {@link BlockColumns} implementation, which allows accessing the 
+     * positions and states without creating block info objects. Depending on the 
+     * blocks it is a {@link BlockStorage} or a {@link GridBlockStorage}.
+     * 
+     * @return
+     *      The blocks of the structure
+     */
     public List<BlockInfo> getBlocks() {
         return blocks;
     }
@@ -119,6 +161,14 @@ public class Structure {
         return palettes;
     }
     
+    /**
+     * Returns the entities of the structure, if any. For structures read from files 
+     * the list is an {@link EntityStorage}, which allows accessing the positions 
+     * without creating entity info objects.
+     * 
+     * @return
+     *      The entities of the structure
+     */
     public Optional<List<EntityInfo>> getEntities() {
         return entities;
     }
@@ -131,14 +181,192 @@ public class Structure {
         return author;
     }
     
+    /**
+     * <p>Returns the 128-bit hash of the content of this structure. For 
+     * {@linkplain #freeze() frozen} structures it is computed on the first call and 
+     * then cached because they cannot be modified. For all other structures it is 
+     * computed again for every call, so prefer freezing a structure when its hash is 
+     * needed repeatedly.</p>
+     * 
+     * <p>Structures with the same content hash are equal, except for hash collisions 
+     * which are practically impossible. This makes the hash suitable for detecting 
+     * duplicate or changed structures. When comparing two frozen structures, 
+     * {@link #equals(Object)} only compares their hashes.</p>
+     * 
+     * @return
+     *      The content hash
+     */
+    public ContentHash getContentHash() {
+        if (!isFrozen) {
+            return ContentHash.compute(this);
+        }
+        
+        ContentHash contentHash = this.contentHash;
+        
+        if (contentHash == null) {
+            // Might be computed concurrently by multiple threads, but the result is the same
+            contentHash = ContentHash.compute(this);
+            this.contentHash = contentHash;
+        }
+        
+        return contentHash;
+    }
+    
+    /**
+     * Returns the index for looking up blocks and entities by position. For 
+     * {@linkplain #freeze() frozen} structures it is created on the first call and 
+     * then cached because they cannot be modified. For all other structures it is 
+     * created again for every call, and it becomes outdated when the blocks or 
+     * entities are modified afterwards.
+     * 
+     * @return
+     *      The spatial index of this structure
+     * @throws IllegalArgumentException
+     *      If the blocks are sparse and the position of a block is too large to be 
+     *      indexed, or if the block position of an entity is too large to be indexed, 
+     *      see {@link SpatialIndex}
+     */
+    public SpatialIndex getSpatialIndex() throws IllegalArgumentException {
+        if (!isFrozen) {
+            return SpatialIndex.create(this);
+        }
+        
+        SpatialIndex spatialIndex = this.spatialIndex;
+        
+        if (spatialIndex == null) {
+            // Might be created concurrently by multiple threads, but the result is equivalent
+            spatialIndex = SpatialIndex.create(this);
+            this.spatialIndex = spatialIndex;
+        }
+        
+        return spatialIndex;
+    }
+    
+    /**
+     * <p>Returns a frozen copy of this structure, or this structure if it is already 
+     * frozen. A frozen structure cannot be modified, so it can be shared between 
+     * threads, e.g. in a cache, and be glued multiple times without making defensive 
+     * copies.</p>
+     * 
+     * <p>Tag trees cannot be made read-only, therefore the NBT data of all blocks and 
+     * entities of a frozen structure is stored in serialized form, see {@link RawNbt}. 
+     * Getting the NBT data creates a new tag tree for every call, so modifying it has 
+     * no effect on the structure. The block, palette and entity lists are unmodifiable 
+     * and the block states are {@linkplain BlockState#intern() interned}.</p>
+     * 
+     * @return
+     *      The frozen structure
+     */
+    public Structure freeze() {
+        if (isFrozen) {
+            return this;
+        }
+        
+        final List<List<BlockState>> frozenPalettes = new ArrayList<>(palettes.size());
+        
+        for (final List<BlockState> palette : palettes) {
+            final List<BlockState> frozenPalette = new ArrayList<>(palette.size());
+            
+            for (final BlockState blockState : palette) {
+                frozenPalette.add(blockState.intern());
+            }
+            
+            frozenPalettes.add(Collections.unmodifiableList(frozenPalette));
+        }
+        
+        final Structure frozen = new Structure(
+            size,
+            actualSize.orElse(null),
+            GridBlockStorage.compact(freezeBlocks(blocks), getActualSize()),
+            Collections.unmodifiableList(frozenPalettes),
+            entities.isPresent() ? freezeEntities(entities.get()) : null,
+            dataVersion,
+            author.orElse(null),
+            true
+        );
+        
+        return frozen;
+    }
+    
+    private static BlockStorage freezeBlocks(final List<BlockInfo> blocks) {
+        final BlockStorage.Builder builder = new BlockStorage.Builder(blocks.size());
+        
+        if (blocks instanceof BlockColumns) {
+            final BlockColumns columns = (BlockColumns) blocks;
+            
+            for (int index = 0; index < columns.size(); index++) {
+                final int x = columns.getX(index);
+                final int y = columns.getY(index);
+                final int z = columns.getZ(index);
+                final int state = columns.getState(index);
+                final Optional<RawNbt> rawNbt = columns.getRawNbt(index);
+                
+                if (rawNbt.isPresent()) {
+                    builder.add(x, y, z, state, rawNbt.get());
+                }
+                else if (columns.hasNbt(index)) {
+                    builder.add(x, y, z, state, RawNbt.fromCompound(columns.getNbt(index).get()));
+                }
+                else {
+                    builder.add(x, y, z, state);
+                }
+            }
+        }
+        else {
+            for (final BlockInfo blockInfo : blocks) {
+                builder.add(blockInfo.freeze());
+            }
+        }
+        
+        return builder.build();
+    }
+    
+    private static EntityStorage freezeEntities(final List<EntityInfo> entities) {
+        final EntityStorage.Builder builder = new EntityStorage.Builder(entities.size());
+        
+        if (entities instanceof EntityStorage) {
+            final EntityStorage entityStorage = (EntityStorage) entities;
+            
+            for (int index = 0; index < entityStorage.size(); index++) {
+                // Lazily decoded data which has not been decoded yet is still up to date
+                final Optional<RawNbt> rawNbt = entityStorage.getRawNbt(index);
+                
+                builder.add(
+                    entityStorage.getX(index),
+                    entityStorage.getY(index),
+                    entityStorage.getZ(index),
+                    entityStorage.getBlockX(index),
+                    entityStorage.getBlockY(index),
+                    entityStorage.getBlockZ(index),
+                    rawNbt.isPresent() ? rawNbt.get() : RawNbt.fromCompound(entityStorage.getNbt(index))
+                );
+            }
+        }
+        else {
+            for (final EntityInfo entityInfo : entities) {
+                builder.add(entityInfo.freeze());
+            }
+        }
+        
+        return builder.build();
+    }
+    
+    /**
+     * Returns whether this structure is frozen, see {@link #freeze()}.
+     * 
+     * @return
+     *      Whether this structure is frozen
+     */
+    public boolean isFrozen() {
+        return isFrozen;
+    }
+    
     public CompoundTag toNbt() {
         final CompoundTag compound = new CompoundTag();
         
         compound.put(SIZE_KEY, size.toNbt());
-        compound.put(BLOCKS_KEY, blocks.stream()
-            .map(BlockInfo::toNbt)
-            .collect(NbtCollectors.toList())
-        );
+        // Blocks and entities are converted in parallel for large structures
+        compound.put(BLOCKS_KEY, NbtUtils.toNbtList(blocks, BlockInfo::toNbt));
         
         if (palettes.size() == 1) {
             compound.put(SINGLE_PALETTE_KEY, paletteToNbt(palettes.get(0)));
@@ -151,9 +379,7 @@ public class Structure {
         }
         
         if (entities.isPresent()) {
-            compound.put(ENTITIES_KEY, entities.get().stream()
-                .map(EntityInfo::toNbt)
-                .collect(NbtCollectors.toList()));
+            compound.put(ENTITIES_KEY, NbtUtils.toNbtList(entities.get(), EntityInfo::toNbt));
         }
         
         compound.putInt(DATA_VERSION_KEY, dataVersion);
@@ -201,23 +427,36 @@ public class Structure {
             }
         }
         
+        final Int3D size = Int3D.fromNbt(compound.getListTag(SIZE_KEY).asIntTagList());
+        final BlockStorage blocks = BlockStorage.copyOf(NbtUtils.fromNbtList(compound.getListTag(BLOCKS_KEY).asCompoundTagList(), BlockInfo::fromNbt));
+        
         return new Structure(
-            Int3D.fromNbt(compound.getListTag(SIZE_KEY).asIntTagList()),
+            size,
             actualSize,
-            NbtUtils.fromNbtList(compound.getListTag(BLOCKS_KEY).asCompoundTagList(), BlockInfo::fromNbt),
+            GridBlockStorage.compact(blocks, size),
             palettes,
-            compound.containsKey(ENTITIES_KEY) ? NbtUtils.fromNbtList(compound.getListTag(ENTITIES_KEY).asCompoundTagList(), EntityInfo::fromNbt) : null,
+            compound.containsKey(ENTITIES_KEY) ? EntityStorage.copyOf(NbtUtils.fromNbtList(compound.getListTag(ENTITIES_KEY).asCompoundTagList(), EntityInfo::fromNbt)) : null,
             compound.getInt(DATA_VERSION_KEY),
             compound.containsKey(AUTHOR_KEY) ? compound.getString(AUTHOR_KEY) : null
         );
     }
     
+    /**
+     * Reads a structure from a file, see {@link StructureReader}.
+     * 
+     * @param path
+     *      Path of the structure file
+     * @return
+     *      The read structure
+     * @throws IOException
+     *      If reading fails or the data is malformed
+     */
     public static Structure readFromFile(final Path path) throws IOException {
-        return fromNbt((CompoundTag) NBTUtil.readTag(path.toFile()));
+        return new StructureReader().readFromFile(path);
     }
     
     private static List<BlockState> paletteFromNbt(final ListTag<CompoundTag> palette) {
-        return NbtUtils.fromNbtList(palette, BlockState::fromNbt);
+        return NbtUtils.fromNbtList(palette, stateNbt -> BlockState.fromNbt(stateNbt).intern());
     }
     
     /**
@@ -250,6 +489,12 @@ public class Structure {
         else if (obj instanceof Structure) {
             final Structure other = (Structure) obj;
             
+            // Only frozen structures cache their hash, for all others computing it would
+            // be more expensive than comparing the content
+            if (isFrozen && other.isFrozen) {
+                return getContentHash().equals(other.getContentHash());
+            }
+            
             return size.equals(other.size)
                 && actualSize.equals(other.actualSize)
                 && blocks.equals(other.blocks)
@@ -262,16 +507,32 @@ public class Structure {
         return false;
     }
     
+    /**
+     * Returns the hash code of this structure. Unlike the {@linkplain #getContentHash() 
+     * content hash} it is not computed using a cryptographic hash function. For frozen 
+     * structures it is computed on the first call and then cached.
+     */
     @Override
     public int hashCode() {
-        return Objects.hash(
-            size,
-            actualSize,
-            blocks,
-            palettes,
-            entities,
-            dataVersion,
-            author
-        );
+        int hashCode = this.hashCode;
+        
+        if (hashCode == 0) {
+            hashCode = Objects.hash(
+                size,
+                actualSize,
+                blocks,
+                palettes,
+                entities,
+                dataVersion,
+                author
+            );
+            
+            if (isFrozen) {
+                // Might be computed concurrently by multiple threads, but the result is the same
+                this.hashCode = hashCode;
+            }
+        }
+        
+        return hashCode;
     }
 }
@@ -0,0 +1,338 @@
+package marcono1234.structure_tools.structure;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import marcono1234.structure_tools.util.RawNbt;
+import net.querz.nbt.ByteArrayTag;
+import net.querz.nbt.CompoundTag;
+import net.querz.nbt.IntArrayTag;
+import net.querz.nbt.ListTag;
+import net.querz.nbt.LongArrayTag;
+import net.querz.nbt.StringTag;
+import net.querz.nbt.Tag;
+
+/**
+ * <p>Loader which keeps loaded structures in memory. Entries are identified by the 
+ * path and the modification time of the structure file, so modified files are loaded 
+ * again.</p>
+ * 
+ * <p>Each entry is weighted by the {@linkplain #estimateSize(Structure) estimated heap 
+ * size} of its structure. When the total weight exceeds the budget the least recently 
+ * used entries are evicted. Structures which on their own exceed the budget are not 
+ * cached.</p>
+ * 
+ * <p>The returned structures are shared between all callers and must therefore not be 
+ * modified.</p>
+ */
+public class StructureCache implements StructureLoader {
+    /*
+     * Rough estimates of the retained sizes in bytes of the objects, including 
+     * the object headers and references to them
+     */
+    private static final long STRUCTURE_SIZE = 128;
+    private static final long BLOCK_SIZE = 64;
+    /**
+     * Size of a block in a {@link BlockStorage}, 4 ints
+     */
+    private static final long STORED_BLOCK_SIZE = 16;
+    private static final long BLOCK_STATE_SIZE = 48;
+    private static final long REFERENCE_SIZE = 8;
+    private static final long ENTITY_SIZE = 96;
+    /**
+     * Size of an entity in an {@link EntityStorage}, 3 doubles, 3 ints and 2 references
+     */
+    private static final long STORED_ENTITY_SIZE = 48;
+    private static final long TAG_SIZE = 32;
+    private static final long MAP_ENTRY_SIZE = 48;
+    private static final long STRING_SIZE = 40;
+    private static final long RAW_NBT_SIZE = 32;
+    
+    private static class Entry {
+        private final long lastModified;
+        private final Structure structure;
+        private final long weight;
+        
+        public Entry(final long lastModified, final Structure structure, final long weight) {
+            this.lastModified = lastModified;
+            this.structure = structure;
+            this.weight = weight;
+        }
+    }
+    
+    private final long maxWeight;
+    private final StructureLoader delegate;
+    /**
+     * Entries keyed by absolute normalized path, in least recently used order
+     */
+    private final LinkedHashMap<Path, Entry> entries;
+    private long totalWeight;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    
+    /**
+     * @param maxWeight
+     *      Maximum total estimated size in bytes of all cached structures
+     * @param delegate
+     *      Loader to use for loading structures which are not cached
+     * @throws IllegalArgumentException
+     *      If the maximum weight is negative
+     */
+    public StructureCache(final long maxWeight, final StructureLoader delegate) throws IllegalArgumentException {
+        if (maxWeight < 0) {
+            throw new IllegalArgumentException("Invalid max weight " + maxWeight);
+        }
+        
+        this.maxWeight = maxWeight;
+        this.delegate = delegate;
+        // Use access order for least recently used order
+        entries = new LinkedHashMap<>(16, 0.75f, true);
+        totalWeight = 0;
+    }
+    
+    /**
+     * Creates a cache which loads structures which are not cached using 
+     * {@link StructureLoader#DEFAULT}.
+     * 
+     * @param maxWeight
+     *      Maximum total estimated size in bytes of all cached structures
+     * @throws IllegalArgumentException
+     *      If the maximum weight is negative
+     */
+    public StructureCache(final long maxWeight) throws IllegalArgumentException {
+        this(maxWeight, StructureLoader.DEFAULT);
+    }
+    
+    private static long estimateStringSize(final String string) {
+        return STRING_SIZE + 2L * string.length();
+    }
+    
+    private static long estimateTagSize(final Tag<?> tag) {
+        long size = TAG_SIZE;
+        
+        if (tag instanceof CompoundTag) {
+            for (final Map.Entry<String, Tag<?>> entry : ((CompoundTag) tag).entrySet()) {
+                size += MAP_ENTRY_SIZE + estimateStringSize(entry.getKey()) + estimateTagSize(entry.getValue());
+            }
+        }
+        else if (tag instanceof ListTag) {
+            for (final Tag<?> element : (ListTag<?>) tag) {
+                size += 8 + estimateTagSize(element);
+            }
+        }
+        else if (tag instanceof StringTag) {
+            size += estimateStringSize(((StringTag) tag).getValue());
+        }
+        else if (tag instanceof ByteArrayTag) {
+            size += ((ByteArrayTag) tag).length();
+        }
+        else if (tag instanceof IntArrayTag) {
+            size += 4L * ((IntArrayTag) tag).length();
+        }
+        else if (tag instanceof LongArrayTag) {
+            size += 8L * ((LongArrayTag) tag).length();
+        }
+        
+        return size;
+    }
+    
+    /**
+     * Estimates the heap size in bytes retained by the structure, based on the number 
+     * of blocks, the palette sizes and the NBT data. The estimate is only meant for 
+     * weighting structures relative to each other and against a memory budget.
+     * 
+     * @param structure
+     *      Structure to estimate the size of
+     * @return
+     *      The estimated size in bytes
+     */
+    public static long estimateSize(final Structure structure) {
+        long size = STRUCTURE_SIZE;
+        
+        final List<BlockInfo> blocks = structure.getBlocks();
+        final long blockSize;
+        
+        if (blocks instanceof GridBlockStorage) {
+            // Positions and states are not stored per block
+            size += ((GridBlockStorage) blocks).estimateDataSize();
+            blockSize = 0;
+        }
+        else {
+            blockSize = blocks instanceof BlockStorage ? STORED_BLOCK_SIZE : BLOCK_SIZE;
+        }
+        
+        for (final BlockInfo block : blocks) {
+            size += blockSize;
+            
+            final Optional<RawNbt> rawNbt = block.getRawNbt();
+            
+            if (rawNbt.isPresent()) {
+                size += RAW_NBT_SIZE + rawNbt.get().getLength();
+            }
+            else {
+                final Optional<CompoundTag> nbt = block.getNbt();
+                
+                if (nbt.isPresent()) {
+                    size += estimateTagSize(nbt.get());
+                }
+            }
+        }
+        
+        for (final List<BlockState> palette : structure.getPalettes()) {
+            for (final BlockState blockState : palette) {
+                // Interned states are shared with other structures
+                if (blockState.isInterned()) {
+                    size += REFERENCE_SIZE;
+                }
+                else {
+                    size += BLOCK_STATE_SIZE + estimateStringSize(blockState.getName());
+                
+                    final Optional<CompoundTag> properties = blockState.getProperties();
+                
+                    if (properties.isPresent()) {
+                        size += estimateTagSize(properties.get());
+                    }
+                }
+            }
+        }
+        
+        final Optional<List<EntityInfo>> entities = structure.getEntities();
+        
+        if (entities.isPresent() && entities.get() instanceof EntityStorage) {
+            final EntityStorage entityStorage = (EntityStorage) entities.get();
+            
+            // Does not decode lazily decoded NBT data
+            for (int index = 0; index < entityStorage.size(); index++) {
+                final Optional<RawNbt> rawNbt = entityStorage.getRawNbt(index);
+                size += STORED_ENTITY_SIZE + (rawNbt.isPresent() ? RAW_NBT_SIZE + rawNbt.get().getLength() : estimateTagSize(entityStorage.getNbt(index)));
+            }
+        }
+        else if (entities.isPresent()) {
+            for (final EntityInfo entity : entities.get()) {
+                final Optional<RawNbt> rawNbt = entity.getRawNbt();
+                size += ENTITY_SIZE + (rawNbt.isPresent() ? RAW_NBT_SIZE + rawNbt.get().getLength() : estimateTagSize(entity.getNbt()));
+            }
+        }
+        
+        return size;
+    }
+    
+    @Override
+    public Structure load(final Path path) throws IOException {
+        final Path key = path.toAbsolutePath().normalize();
+        final long lastModified = Files.getLastModifiedTime(path).toMillis();
+        
+        synchronized (this) {
+            // get also updates the access order
+            final Entry entry = entries.get(key);
+            
+            if (entry != null && entry.lastModified == lastModified) {
+                hitCount++;
+                return entry.structure;
+            }
+            
+            missCount++;
+        }
+        
+        final Structure structure = delegate.load(path);
+        final long weight = estimateSize(structure);
+        
+        synchronized (this) {
+            final Entry oldEntry;
+            
+            if (weight > maxWeight) {
+                oldEntry = entries.remove(key);
+            }
+            else {
+                oldEntry = entries.put(key, new Entry(lastModified, structure, weight));
+                totalWeight += weight;
+            }
+            
+            if (oldEntry != null) {
+                totalWeight -= oldEntry.weight;
+            }
+            
+            evictIfNeeded();
+        }
+        
+        return structure;
+    }
+    
+    private void evictIfNeeded() {
+        final Iterator<Entry> entryIterator = entries.values().iterator();
+        
+        while (totalWeight > maxWeight && entryIterator.hasNext()) {
+            totalWeight -= entryIterator.next().weight;
+            entryIterator.remove();
+            evictionCount++;
+        }
+    }
+    
+    /**
+     * Removes all entries from this cache. The hit, miss and eviction counts are 
+     * not reset.
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+        totalWeight = 0;
+    }
+    
+    /**
+     * Returns the number of cached structures.
+     * 
+     * @return
+     *      The number of cached structures
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+    
+    /**
+     * Returns the total estimated size in bytes of all cached structures.
+     * 
+     * @return
+     *      The total weight of all entries
+     */
+    public synchronized long getTotalWeight() {
+        return totalWeight;
+    }
+    
+    /**
+     * Returns how often a structure was returned from this cache.
+     * 
+     * @return
+     *      The number of cache hits
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+    
+    /**
+     * Returns how often a structure had to be loaded because it was not cached 
+     * or its file was modified.
+     * 
+     * @return
+     *      The number of cache misses
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+    
+    /**
+     * Returns how many entries were evicted because the total weight exceeded 
+     * the budget.
+     * 
+     * @return
+     *      The number of evictions
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+}
@@ -0,0 +1,292 @@
+package marcono1234.structure_tools.structure;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import marcono1234.structure_tools.util.CodecPool;
+
+/**
+ * <p>Loader which caches the loaded structures on disk in {@linkplain BinaryStructure binary} 
+ * format, which is considerably faster to load than NBT. Cache entries are keyed by 
+ * the SHA-256 hash of the content of the structure file, so changed files are 
+ * loaded again regardless of their modification time, and identical files share 
+ * one entry.</p>
+ * 
+ * <p>The total size of the cache entries is limited; when the limit is exceeded the 
+ * least recently used entries are deleted. The usage order is persisted using the 
+ * modification time of the entries, so it is kept between runs.</p>
+ * 
+ * <p>Entries are memory mapped when loaded. The structures returned by this cache 
+ * must therefore not be used after their entry has been evicted on platforms which 
+ * do not support deleting mapped files; there the entry is instead deleted when 
+ * the cache is created the next time.</p>
+ */
+public class StructureDiskCache implements StructureLoader {
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    
+    private final Path directory;
+    private final long sizeLimit;
+    private final StructureLoader delegate;
+    /**
+     * File names of the entries mapped to their size, in least recently used order
+     */
+    private final LinkedHashMap<String, Long> entries;
+    private long totalSize;
+    
+    /**
+     * @param directory
+     *      Directory to store the cache entries in; created if it does not exist
+     * @param sizeLimit
+     *      Maximum total size in bytes of all cache entries
+     * @param delegate
+     *      Loader to use for loading structures which are not cached
+     * @throws IOException
+     *      If reading the existing cache entries fails
+     * @throws IllegalArgumentException
+     *      If the size limit is negative
+     */
+    public StructureDiskCache(final Path directory, final long sizeLimit, final StructureLoader delegate) throws IOException, IllegalArgumentException {
+        if (sizeLimit < 0) {
+            throw new IllegalArgumentException("Invalid size limit " + sizeLimit);
+        }
+        
+        this.directory = Files.createDirectories(directory);
+        this.sizeLimit = sizeLimit;
+        this.delegate = delegate;
+        // Use access order for least recently used order
+        entries = new LinkedHashMap<>(16, 0.75f, true);
+        totalSize = 0;
+        
+        final List<Path> entryPaths;
+        
+        try (Stream<Path> files = Files.list(directory)) {
+            entryPaths = files.collect(Collectors.toList());
+        }
+        
+        final List<Map.Entry<Path, BasicFileAttributes>> existingEntries = new ArrayList<>();
+        
+        for (final Path entryPath : entryPaths) {
+            final String fileName = entryPath.getFileName().toString();
+            
+            if (fileName.endsWith(TEMP_FILE_SUFFIX)) {
+                // Left over from a previous run which was aborted while writing
+                Files.deleteIfExists(entryPath);
+            }
+            else if (fileName.endsWith(BinaryStructure.FILE_EXTENSION)) {
+                existingEntries.add(new AbstractMap.SimpleImmutableEntry<>(
+                    entryPath,
+                    Files.readAttributes(entryPath, BasicFileAttributes.class)
+                ));
+            }
+        }
+        
+        existingEntries.sort(Comparator.comparing(entry -> entry.getValue().lastModifiedTime()));
+        
+        for (final Map.Entry<Path, BasicFileAttributes> existingEntry : existingEntries) {
+            final long entrySize = existingEntry.getValue().size();
+            entries.put(existingEntry.getKey().getFileName().toString(), entrySize);
+            totalSize += entrySize;
+        }
+        
+        evictIfNeeded();
+    }
+    
+    /**
+     * Creates a cache which loads structures which are not cached using 
+     * {@link StructureLoader#DEFAULT}.
+     * 
+     * @param directory
+     *      Directory to store the cache entries in; created if it does not exist
+     * @param sizeLimit
+     *      Maximum total size in bytes of all cache entries
+     * @throws IOException
+     *      If reading the existing cache entries fails
+     * @throws IllegalArgumentException
+     *      If the size limit is negative
+     */
+    public StructureDiskCache(final Path directory, final long sizeLimit) throws IOException, IllegalArgumentException {
+        this(directory, sizeLimit, StructureLoader.DEFAULT);
+    }
+    
+    private static String hashFile(final Path path) throws IOException {
+        final MessageDigest digest;
+        
+        try {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        }
+        catch (final NoSuchAlgorithmException noSuchAlgorithmException) {
+            // Every Java implementation has to support SHA-256
+            throw new AssertionError(noSuchAlgorithmException);
+        }
+        
+        final byte[] buffer = CodecPool.acquireBuffer();
+        
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            int readCount;
+            
+            while ((readCount = inputStream.read(buffer)) != -1) {
+                digest.update(buffer, 0, readCount);
+            }
+        }
+        finally {
+            CodecPool.releaseBuffer(buffer);
+        }
+        
+        final StringBuilder hexBuilder = new StringBuilder();
+        
+        for (final byte b : digest.digest()) {
+            hexBuilder.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hexBuilder.append(Character.forDigit(b & 0xF, 16));
+        }
+        
+        return hexBuilder.toString();
+    }
+    
+    @Override
+    public Structure load(final Path path) throws IOException {
+        if (path.getFileName().toString().endsWith(BinaryStructure.FILE_EXTENSION)) {
+            // Already in binary format, caching would not make loading faster
+            return delegate.load(path);
+        }
+        
+        final String entryName = hashFile(path) + BinaryStructure.FILE_EXTENSION;
+        final Path entryPath = directory.resolve(entryName);
+        
+        synchronized (this) {
+            // get also updates the access order
+            if (entries.get(entryName) != null) {
+                try {
+                    final Structure structure = BinaryStructure.readFromFile(entryPath);
+                    
+                    try {
+                        // Persist usage order
+                        Files.setLastModifiedTime(entryPath, FileTime.fromMillis(System.currentTimeMillis()));
+                    }
+                    catch (final IOException ioException) {
+                        // Ignore; only affects the eviction order of the next run
+                    }
+                    
+                    return structure;
+                }
+                catch (final IOException ioException) {
+                    // Entry is malformed or was deleted externally, so load it again
+                    removeEntry(entryName);
+                }
+            }
+        }
+        
+        final Structure structure = delegate.load(path);
+        putEntry(entryName, structure);
+        
+        return structure;
+    }
+    
+    private void putEntry(final String entryName, final Structure structure) throws IOException {
+        final Path tempPath = Files.createTempFile(directory, "entry", TEMP_FILE_SUFFIX);
+        
+        try {
+            BinaryStructure.writeToFile(structure, tempPath);
+        }
+        catch (final IllegalArgumentException illegalArgumentException) {
+            // Structure cannot be stored in binary format, so it cannot be cached
+            Files.delete(tempPath);
+            return;
+        }
+        catch (final IOException ioException) {
+            Files.delete(tempPath);
+            throw ioException;
+        }
+        
+        final long entrySize = Files.size(tempPath);
+        
+        synchronized (this) {
+            try {
+                Files.move(tempPath, directory.resolve(entryName), StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (final AtomicMoveNotSupportedException atomicMoveNotSupportedException) {
+                Files.move(tempPath, directory.resolve(entryName), StandardCopyOption.REPLACE_EXISTING);
+            }
+            
+            final Long oldSize = entries.put(entryName, entrySize);
+            
+            if (oldSize != null) {
+                totalSize -= oldSize;
+            }
+            
+            totalSize += entrySize;
+            evictIfNeeded();
+        }
+    }
+    
+    private void removeEntry(final String entryName) {
+        final Long entrySize = entries.remove(entryName);
+        
+        if (entrySize != null) {
+            totalSize -= entrySize;
+        }
+        
+        try {
+            Files.deleteIfExists(directory.resolve(entryName));
+        }
+        catch (final IOException ioException) {
+            // Might be mapped and therefore not deletable on some platforms; it is
+            // deleted by a later run once its size exceeds the limit again
+        }
+    }
+    
+    private void evictIfNeeded() {
+        // Must not use get(...) while iterating because it modifies the access order
+        final Iterator<Map.Entry<String, Long>> entryIterator = entries.entrySet().iterator();
+        
+        while (totalSize > sizeLimit && entryIterator.hasNext()) {
+            final Map.Entry<String, Long> entry = entryIterator.next();
+            totalSize -= entry.getValue();
+            entryIterator.remove();
+            
+            try {
+                Files.deleteIfExists(directory.resolve(entry.getKey()));
+            }
+            catch (final IOException ioException) {
+                // See removeEntry
+            }
+        }
+    }
+    
+    /**
+     * Returns the number of cache entries.
+     * 
+     * @return
+     *      The number of cache entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+    
+    /**
+     * Returns the total size in bytes of all cache entries.
+     * 
+     * @return
+     *      The total size of all cache entries
+     */
+    public synchronized long getTotalSize() {
+        return totalSize;
+    }
+}
@@ -0,0 +1,134 @@
+package marcono1234.structure_tools.structure;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import marcono1234.structure_tools.util.Int3D;
+
+/**
+ * Metadata of a structure which can be read without decoding the blocks, palettes 
+ * and entities, see {@link StructureReader#readHeader(java.io.InputStream)}.
+ */
+public class StructureHeader {
+    private final Int3D size;
+    private final Optional<Int3D> actualSize;
+    private final int dataVersion;
+    private final List<Integer> paletteSizes;
+    private final int blocksCount;
+    private final int entitiesCount;
+    
+    /**
+     * @param size
+     *      Size of the structure
+     * @param actualSize
+     *      Actual size of the structure, {@code null} if not specified
+     * @param dataVersion
+     *      Minecraft data version of the structure
+     * @param paletteSizes
+     *      Number of block states of each palette
+     * @param blocksCount
+     *      Number of blocks
+     * @param entitiesCount
+     *      Number of entities
+     */
+    public StructureHeader(final Int3D size, final Int3D actualSize, final int dataVersion, final List<Integer> paletteSizes, final int blocksCount, final int entitiesCount) {
+        this.size = Objects.requireNonNull(size);
+        this.actualSize = Optional.ofNullable(actualSize);
+        this.dataVersion = dataVersion;
+        this.paletteSizes = Collections.unmodifiableList(paletteSizes);
+        this.blocksCount = blocksCount;
+        this.entitiesCount = entitiesCount;
+    }
+    
+    /**
+     * Creates the header for an already read structure.
+     * 
+     * @param structure
+     *      Structure to create the header for
+     * @return
+     *      Header of the structure
+     */
+    public static StructureHeader fromStructure(final Structure structure) {
+        return new StructureHeader(
+            structure.getSize(),
+            structure.getSpecifiedActualSize().orElse(null),
+            structure.getDataVersion(),
+            structure.getPalettes().stream().map(List::size).collect(Collectors.toList()),
+            structure.getBlocks().size(),
+            structure.getEntities().map(List::size).orElse(0)
+        );
+    }
+    
+    public Int3D getSize() {
+        return size;
+    }
+    
+    /**
+     * Returns the actual size, or the size if no actual size is specified; same 
+     * as {@link Structure#getActualSize()}.
+     * 
+     * @return
+     *      The actual size of the structure
+     */
+    public Int3D getActualSize() {
+        return actualSize.orElse(size);
+    }
+    
+    Optional<Int3D> getSpecifiedActualSize() {
+        return actualSize;
+    }
+    
+    public int getDataVersion() {
+        return dataVersion;
+    }
+    
+    public int getPalettesCount() {
+        return paletteSizes.size();
+    }
+    
+    public List<Integer> getPaletteSizes() {
+        return paletteSizes;
+    }
+    
+    public int getBlocksCount() {
+        return blocksCount;
+    }
+    
+    public int getEntitiesCount() {
+        return entitiesCount;
+    }
+    
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        else if (obj instanceof StructureHeader) {
+            final StructureHeader other = (StructureHeader) obj;
+            
+            return size.equals(other.size)
+                && actualSize.equals(other.actualSize)
+                && dataVersion == other.dataVersion
+                && paletteSizes.equals(other.paletteSizes)
+                && blocksCount == other.blocksCount
+                && entitiesCount == other.entitiesCount;
+        }
+        
+        return false;
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(
+            size,
+            actualSize,
+            dataVersion,
+            paletteSizes,
+            blocksCount,
+            entitiesCount
+        );
+    }
+}
@@ -0,0 +1,349 @@
+package marcono1234.structure_tools.structure;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import marcono1234.structure_tools.util.Int3D;
+
+/**
+ * <p>Index of the {@linkplain StructureHeader headers} of structure files, which 
+ * allows validating structures without reading the files.</p>
+ * 
+ * <p>The index can be stored in a compact binary file. The paths of the structure 
+ * files are stored relative to the directory containing the index file. For 
+ * every file the size and the last modification time are stored as well; if 
+ * they differ from the current values the indexed header is considered outdated 
+ * and is not used.</p>
+ */
+public class StructureIndex {
+    /**
+     * File extension of the NBT structure files which are indexed; files with 
+     * {@link BinaryStructure#FILE_EXTENSION} are indexed as well
+     */
+    public static final String STRUCTURE_FILE_EXTENSION = ".nbt";
+    /**
+     * Name of the index file which is used by default
+     */
+    public static final String DEFAULT_FILE_NAME = "structure-index.bin";
+    
+    private static final int MAGIC = 0x53544958; // "STIX"
+    private static final int FORMAT_VERSION = 1;
+    
+    private static class Entry {
+        private final long fileSize;
+        private final long lastModified;
+        private final StructureHeader header;
+        
+        public Entry(final long fileSize, final long lastModified, final StructureHeader header) {
+            this.fileSize = fileSize;
+            this.lastModified = lastModified;
+            this.header = header;
+        }
+        
+        public boolean isUpToDate(final BasicFileAttributes attributes) {
+            return fileSize == attributes.size() && lastModified == attributes.lastModifiedTime().toMillis();
+        }
+    }
+    
+    /**
+     * Entries with absolute normalized paths as key
+     */
+    private final Map<Path, Entry> entries;
+    
+    private StructureIndex(final Map<Path, Entry> entries) {
+        this.entries = entries;
+    }
+    
+    /**
+     * Creates an empty index.
+     */
+    public StructureIndex() {
+        this(new HashMap<>());
+    }
+    
+    private static Path normalize(final Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+    
+    private static BasicFileAttributes readAttributes(final Path path) throws IOException {
+        return Files.readAttributes(path, BasicFileAttributes.class);
+    }
+    
+    /**
+     * Scans the given directory and its subdirectories for structure files and 
+     * creates an index of their headers.
+     * 
+     * @param directory
+     *      Directory to scan
+     * @return
+     *      Index of the structure files
+     * @throws IOException
+     *      If reading a file fails
+     */
+    public static StructureIndex scanDirectory(final Path directory) throws IOException {
+        return scanDirectory(directory, new StructureIndex());
+    }
+    
+    /**
+     * Scans the given directory and its subdirectories for structure files and 
+     * creates an index of their headers. Headers of the previous index which are 
+     * still up to date are reused instead of reading the file again.
+     * 
+     * @param directory
+     *      Directory to scan
+     * @param previousIndex
+     *      Previous index whose entries should be reused
+     * @return
+     *      Index of the structure files
+     * @throws IOException
+     *      If reading a file fails
+     */
+    public static StructureIndex scanDirectory(final Path directory, final StructureIndex previousIndex) throws IOException {
+        final List<Path> paths;
+        
+        try (Stream<Path> files = Files.walk(directory)) {
+            paths = files
+                .filter(path -> {
+                    final String fileName = path.getFileName().toString();
+                    return fileName.endsWith(STRUCTURE_FILE_EXTENSION) || fileName.endsWith(BinaryStructure.FILE_EXTENSION);
+                })
+                .filter(Files::isRegularFile)
+                .collect(Collectors.toList());
+        }
+        
+        final StructureIndex index = new StructureIndex();
+        
+        for (final Path path : paths) {
+            final Path normalizedPath = normalize(path);
+            final Entry previousEntry = previousIndex.entries.get(normalizedPath);
+            final BasicFileAttributes attributes = readAttributes(normalizedPath);
+            
+            if (previousEntry != null && previousEntry.isUpToDate(attributes)) {
+                index.entries.put(normalizedPath, previousEntry);
+            }
+            else {
+                index.put(normalizedPath, attributes);
+            }
+        }
+        
+        return index;
+    }
+    
+    private StructureHeader put(final Path normalizedPath, final BasicFileAttributes attributes) throws IOException {
+        final StructureHeader header;
+        
+        try {
+            if (normalizedPath.getFileName().toString().endsWith(BinaryStructure.FILE_EXTENSION)) {
+                // Blocks and entities are not decoded, so this is cheap as well
+                header = StructureHeader.fromStructure(BinaryStructure.readFromFile(normalizedPath));
+            }
+            else {
+                header = new StructureReader().readHeaderFromFile(normalizedPath);
+            }
+        }
+        catch (final IOException ioException) {
+            throw new IOException("Failed reading header of " + normalizedPath, ioException);
+        }
+        
+        entries.put(normalizedPath, new Entry(attributes.size(), attributes.lastModifiedTime().toMillis(), header));
+        return header;
+    }
+    
+    /**
+     * Returns the indexed header of the structure file, if the index contains an 
+     * up to date header for it.
+     * 
+     * @param path
+     *      Path of the structure file
+     * @return
+     *      Header of the structure file, if indexed
+     * @throws IOException
+     *      If reading the file attributes fails
+     */
+    public Optional<StructureHeader> getHeader(final Path path) throws IOException {
+        final Path normalizedPath = normalize(path);
+        final Entry entry = entries.get(normalizedPath);
+        
+        if (entry != null && entry.isUpToDate(readAttributes(normalizedPath))) {
+            return Optional.of(entry.header);
+        }
+        else {
+            return Optional.empty();
+        }
+    }
+    
+    /**
+     * Returns the indexed header of the structure file, or reads the header from 
+     * the file and adds it to the index if the index does not contain an up to 
+     * date header for it.
+     * 
+     * @param path
+     *      Path of the structure file
+     * @return
+     *      Header of the structure file
+     * @throws IOException
+     *      If reading the file fails
+     */
+    public StructureHeader getOrReadHeader(final Path path) throws IOException {
+        final Path normalizedPath = normalize(path);
+        final Entry entry = entries.get(normalizedPath);
+        final BasicFileAttributes attributes = readAttributes(normalizedPath);
+        
+        if (entry != null && entry.isUpToDate(attributes)) {
+            return entry.header;
+        }
+        else {
+            return put(normalizedPath, attributes);
+        }
+    }
+    
+    public int size() {
+        return entries.size();
+    }
+    
+    private static void writeInt3D(final DataOutputStream out, final Int3D int3D) throws IOException {
+        out.writeInt(int3D.getX());
+        out.writeInt(int3D.getY());
+        out.writeInt(int3D.getZ());
+    }
+    
+    private static Int3D readInt3D(final DataInputStream in) throws IOException {
+        return new Int3D(in.readInt(), in.readInt(), in.readInt());
+    }
+    
+    /**
+     * Writes the index to the given file. The structure paths are stored relative 
+     * to the directory of the file. Structures which are not on the file system 
+     * of the index file are omitted.
+     * 
+     * @param path
+     *      Path of the index file
+     * @throws IOException
+     *      If writing fails
+     */
+    public void writeToFile(final Path path) throws IOException {
+        final Path directory = normalize(path).getParent();
+        
+        final List<Path> paths = new ArrayList<>();
+        
+        for (final Path structurePath : entries.keySet()) {
+            // Paths of other file systems, e.g. entries of zip archives, cannot be stored relative to the index file
+            if (structurePath.getFileSystem() == directory.getFileSystem()) {
+                paths.add(structurePath);
+            }
+        }
+        
+        // Sort paths to make output deterministic
+        Collections.sort(paths);
+        
+        try (OutputStream outputStream = Files.newOutputStream(path)) {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(paths.size());
+            
+            for (final Path structurePath : paths) {
+                final Entry entry = entries.get(structurePath);
+                final StructureHeader header = entry.header;
+                
+                // Always use '/' as separator to make index platform independent
+                out.writeUTF(directory.relativize(structurePath).toString().replace(structurePath.getFileSystem().getSeparator(), "/"));
+                out.writeLong(entry.fileSize);
+                out.writeLong(entry.lastModified);
+                writeInt3D(out, header.getSize());
+                
+                final Optional<Int3D> actualSize = header.getSpecifiedActualSize();
+                out.writeBoolean(actualSize.isPresent());
+                
+                if (actualSize.isPresent()) {
+                    writeInt3D(out, actualSize.get());
+                }
+                
+                out.writeInt(header.getDataVersion());
+                out.writeInt(header.getBlocksCount());
+                out.writeInt(header.getEntitiesCount());
+                out.writeInt(header.getPalettesCount());
+                
+                for (final int paletteSize : header.getPaletteSizes()) {
+                    out.writeInt(paletteSize);
+                }
+            }
+            
+            out.flush();
+        }
+    }
+    
+    /**
+     * Reads an index from the given file, see {@link #writeToFile(Path)}.
+     * 
+     * @param path
+     *      Path of the index file
+     * @return
+     *      The read index
+     * @throws IOException
+     *      If reading fails or the file is not a valid index file
+     */
+    public static StructureIndex readFromFile(final Path path) throws IOException {
+        final Path directory = normalize(path).getParent();
+        
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+            
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a structure index file: " + path);
+            }
+            
+            final int formatVersion = in.readInt();
+            
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException("Unsupported structure index version " + formatVersion);
+            }
+            
+            final int entriesCount = in.readInt();
+            final Map<Path, Entry> entries = new HashMap<>();
+            
+            for (int entryIndex = 0; entryIndex < entriesCount; entryIndex++) {
+                final Path structurePath = directory.resolve(in.readUTF().replace("/", directory.getFileSystem().getSeparator())).normalize();
+                final long fileSize = in.readLong();
+                final long lastModified = in.readLong();
+                final Int3D size = readInt3D(in);
+                final Int3D actualSize = in.readBoolean() ? readInt3D(in) : null;
+                final int dataVersion = in.readInt();
+                final int blocksCount = in.readInt();
+                final int entitiesCount = in.readInt();
+                final int palettesCount = in.readInt();
+                
+                if (palettesCount < 0) {
+                    throw new IOException("Invalid palettes count " + palettesCount);
+                }
+                
+                final List<Integer> paletteSizes = new ArrayList<>(Math.min(palettesCount, 64));
+                
+                for (int paletteIndex = 0; paletteIndex < palettesCount; paletteIndex++) {
+                    paletteSizes.add(in.readInt());
+                }
+                
+                final StructureHeader header = new StructureHeader(size, actualSize, dataVersion, paletteSizes, blocksCount, entitiesCount);
+                entries.put(structurePath, new Entry(fileSize, lastModified, header));
+            }
+            
+            return new StructureIndex(entries);
+        }
+    }
+}
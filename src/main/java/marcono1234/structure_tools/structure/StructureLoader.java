@@ -0,0 +1,92 @@
+package marcono1234.structure_tools.structure;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import marcono1234.structure_tools.util.NbtDeduplicator;
+import marcono1234.structure_tools.util.NbtReadLimits;
+
+/**
+ * Loads structures from files, e.g. for creating a layout. Implementations may 
+ * cache structures instead of reading the files every time.
+ */
+@FunctionalInterface
+public interface StructureLoader {
+    /**
+     * Loader which reads the files either in NBT or in {@linkplain BinaryStructure binary} 
+     * format, depending on the file extension.
+     */
+    StructureLoader DEFAULT = create(NbtReadLimits.UNLIMITED);
+    
+    /**
+     * Creates a loader which reads the files either in NBT or in {@linkplain BinaryStructure binary} 
+     * format, depending on the file extension. The NBT data of NBT files must not 
+     * exceed the given limits.
+     * 
+     * @param limits
+     *      Limits for reading NBT files
+     * @return
+     *      The created loader
+     */
+    static StructureLoader create(final NbtReadLimits limits) {
+        return create(limits, false);
+    }
+    
+    /**
+     * Creates a loader which reads the files either in NBT or in {@linkplain BinaryStructure binary} 
+     * format, depending on the file extension. The NBT data of NBT files must not 
+     * exceed the given limits.
+     * 
+     * @param limits
+     *      Limits for reading NBT files
+     * @param keepRawNbt
+     *      Whether the NBT data of blocks and entities of NBT files should be kept 
+     *      in serialized form, see {@link StructureReader#StructureReader(StructureProjection, NbtReadLimits, boolean)}
+     * @return
+     *      The created loader
+     */
+    static StructureLoader create(final NbtReadLimits limits, final boolean keepRawNbt) {
+        return create(limits, keepRawNbt, null);
+    }
+    
+    /**
+     * Creates a loader which reads the files either in NBT or in {@linkplain BinaryStructure binary} 
+     * format, depending on the file extension. The NBT data of NBT files must not 
+     * exceed the given limits.
+     * 
+     * @param limits
+     *      Limits for reading NBT files
+     * @param keepRawNbt
+     *      Whether the NBT data of blocks and entities of NBT files should be kept 
+     *      in serialized form, see {@link StructureReader#StructureReader(StructureProjection, NbtReadLimits, boolean)}
+     * @param blockNbtDeduplicator
+     *      Deduplicator for the NBT data of blocks of NBT files, shared by all loaded 
+     *      structures, or {@code null}, see {@link StructureReader#StructureReader(StructureProjection, NbtReadLimits, boolean, NbtDeduplicator)}
+     * @return
+     *      The created loader
+     */
+    static StructureLoader create(final NbtReadLimits limits, final boolean keepRawNbt, final NbtDeduplicator blockNbtDeduplicator) {
+        final StructureReader reader = new StructureReader(StructureProjection.ALL, limits, keepRawNbt, blockNbtDeduplicator);
+        
+        return path -> {
+            if (path.getFileName().toString().endsWith(BinaryStructure.FILE_EXTENSION)) {
+                return BinaryStructure.readFromFile(path);
+            }
+            else {
+                return reader.readFromFile(path);
+            }
+        };
+    }
+    
+    /**
+     * Loads the structure from the given file.
+     * 
+     * @param path
+     *      Path of the structure file
+     * @return
+     *      The loaded structure
+     * @throws IOException
+     *      If reading the file fails
+     */
+    Structure load(Path path) throws IOException;
+}
@@ -0,0 +1,77 @@
+package marcono1234.structure_tools.structure;
+
+/**
+ * <p>Specifies which parts of a structure a {@link StructureReader} should read. 
+ * The data of the parts which are not read is skipped without decoding it, 
+ * which is considerably faster when only some information of many structures 
+ * is needed.</p>
+ * 
+ * <p>The size, the actual size, the data version and the author are always read. 
+ * Parts which are not read are represented as follows in the read structure:</p>
+ * <ul>
+ *  <li>blocks: empty list</li>
+ *  <li>block NBT: all blocks have no NBT data</li>
+ *  <li>palettes: empty list</li>
+ *  <li>entities: no entities list</li>
+ * </ul>
+ * 
+ * <p>Structures read without palettes cannot be glued, the {@code Gluer} rejects 
+ * them.</p>
+ */
+public class StructureProjection {
+    /**
+     * Reads all parts of the structure.
+     */
+    public static final StructureProjection ALL = new StructureProjection(true, true, true, true);
+    /**
+     * Only reads the size, the actual size, the data version and the author.
+     */
+    public static final StructureProjection HEADER_ONLY = new StructureProjection(false, false, false, false);
+    /**
+     * Reads the header data and the palettes.
+     */
+    public static final StructureProjection PALETTE_ONLY = new StructureProjection(false, false, true, false);
+    /**
+     * Reads everything except for the entities and the NBT data of the blocks.
+     */
+    public static final StructureProjection WITHOUT_NBT = new StructureProjection(true, false, true, false);
+    
+    private final boolean readBlocks;
+    private final boolean readBlockNbt;
+    private final boolean readPalettes;
+    private final boolean readEntities;
+    
+    /**
+     * @param readBlocks
+     *      Whether the blocks should be read
+     * @param readBlockNbt
+     *      Whether the NBT data of the blocks should be read; ignored if the blocks 
+     *      are not read
+     * @param readPalettes
+     *      Whether the palettes should be read
+     * @param readEntities
+     *      Whether the entities should be read
+     */
+    public StructureProjection(final boolean readBlocks, final boolean readBlockNbt, final boolean readPalettes, final boolean readEntities) {
+        this.readBlocks = readBlocks;
+        this.readBlockNbt = readBlocks && readBlockNbt;
+        this.readPalettes = readPalettes;
+        this.readEntities = readEntities;
+    }
+    
+    public boolean shouldReadBlocks() {
+        return readBlocks;
+    }
+    
+    public boolean shouldReadBlockNbt() {
+        return readBlockNbt;
+    }
+    
+    public boolean shouldReadPalettes() {
+        return readPalettes;
+    }
+    
+    public boolean shouldReadEntities() {
+        return readEntities;
+    }
+}
@@ -0,0 +1,628 @@
+package marcono1234.structure_tools.structure;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import marcono1234.structure_tools.util.InputStreamHelper;
+import marcono1234.structure_tools.util.Int3D;
+import marcono1234.structure_tools.util.NbtDeduplicator;
+import marcono1234.structure_tools.util.NbtLimitExceededException;
+import marcono1234.structure_tools.util.NbtReadLimits;
+import marcono1234.structure_tools.util.NbtReader;
+import marcono1234.structure_tools.util.NbtTagId;
+import marcono1234.structure_tools.util.RawNbt;
+import net.querz.nbt.CompoundTag;
+
+/**
+ * <p>Reads structures directly from the binary NBT data, without creating the 
+ * intermediate tag tree which {@link Structure#fromNbt(CompoundTag)} requires. 
+ * Only the NBT data of blocks and entities, which can have arbitrary content, 
+ * is read as tag tree. Unknown tags are skipped.</p>
+ * 
+ * <p>The result is the same as reading the tag tree with {@code NBTUtil} and 
+ * converting it with {@code Structure.fromNbt}, except that malformed data 
+ * causes an {@link IOException}.</p>
+ * 
+ * <p>A {@link StructureProjection} can be used to only read some parts of the 
+ * structure; the other parts are skipped at the byte level.</p>
+ */
+public class StructureReader {
+    @FunctionalInterface
+    private static interface ElementReader<T> {
+        T read(NbtReader reader) throws IOException;
+    }
+    
+    /**
+     * Maximum capacity to preallocate for lists; the length read from the data is 
+     * not trusted since malformed data could otherwise cause an {@link OutOfMemoryError} 
+     * before reading fails
+     */
+    private static final int MAX_INITIAL_CAPACITY = 1024;
+    
+    private final StructureProjection projection;
+    private final NbtReadLimits limits;
+    private final boolean keepRawNbt;
+    /**
+     * Deduplicator for the NBT data of blocks, {@code null} if the data should not 
+     * be deduplicated
+     */
+    private final NbtDeduplicator blockNbtDeduplicator;
+    
+    /**
+     * @param projection
+     *      Specifies which parts of the structures should be read
+     * @param limits
+     *      Limits which the uncompressed NBT data must not exceed; reading fails 
+     *      with a {@link NbtLimitExceededException} as soon as a limit is exceeded
+     * @param keepRawNbt
+     *      Whether the NBT data of blocks and entities should be kept in serialized 
+     *      form instead of being decoded as tag tree, see {@link BlockInfo#getRawNbt()}; 
+     *      useful when the data is only copied, e.g. when gluing structures
+     * @param blockNbtDeduplicator
+     *      Deduplicator which blocks with identical NBT data should share the data 
+     *      instance of, or {@code null}; the data of these blocks is kept in serialized 
+     *      form regardless of {@code keepRawNbt}
+     */
+    public StructureReader(final StructureProjection projection, final NbtReadLimits limits, final boolean keepRawNbt, final NbtDeduplicator blockNbtDeduplicator) {
+        this.projection = Objects.requireNonNull(projection);
+        this.limits = Objects.requireNonNull(limits);
+        this.keepRawNbt = keepRawNbt;
+        this.blockNbtDeduplicator = blockNbtDeduplicator;
+    }
+    
+    /**
+     * @param projection
+     *      Specifies which parts of the structures should be read
+     * @param limits
+     *      Limits which the uncompressed NBT data must not exceed; reading fails 
+     *      with a {@link NbtLimitExceededException} as soon as a limit is exceeded
+     * @param keepRawNbt
+     *      Whether the NBT data of blocks and entities should be kept in serialized 
+     *      form instead of being decoded as tag tree, see {@link BlockInfo#getRawNbt()}; 
+     *      useful when the data is only copied, e.g. when gluing structures
+     */
+    public StructureReader(final StructureProjection projection, final NbtReadLimits limits, final boolean keepRawNbt) {
+        this(projection, limits, keepRawNbt, null);
+    }
+    
+    /**
+     * @param projection
+     *      Specifies which parts of the structures should be read
+     * @param limits
+     *      Limits which the uncompressed NBT data must not exceed; reading fails 
+     *      with a {@link NbtLimitExceededException} as soon as a limit is exceeded
+     */
+    public StructureReader(final StructureProjection projection, final NbtReadLimits limits) {
+        this(projection, limits, false);
+    }
+    
+    /**
+     * @param projection
+     *      Specifies which parts of the structures should be read
+     */
+    public StructureReader(final StructureProjection projection) {
+        this(projection, NbtReadLimits.UNLIMITED);
+    }
+    
+    /**
+     * Creates a reader which reads all parts of the structures.
+     */
+    public StructureReader() {
+        this(StructureProjection.ALL);
+    }
+    
+    public Structure readFromFile(final Path path) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            return read(inputStream);
+        }
+    }
+    
+    /**
+     * Reads a structure from the given stream. The data may be GZIP compressed. 
+     * The stream is not closed by this method.
+     * 
+     * @param inputStream
+     *      Stream to read the structure from
+     * @return
+     *      The read structure
+     * @throws IOException
+     *      If reading fails or the data is malformed
+     */
+    public Structure read(final InputStream inputStream) throws IOException {
+        // Closing the decompressing stream does not close the given stream
+        try (InputStream uncompressedStream = InputStreamHelper.decompressIfNeeded(inputStream)) {
+            final NbtReader reader = new NbtReader(uncompressedStream, limits);
+            NbtTagId.verify("root", NbtTagId.COMPOUND, reader.readTagId());
+            reader.skipName();
+        
+            return readStructure(reader);
+        }
+    }
+    
+    public StructureHeader readHeaderFromFile(final Path path) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            return readHeader(inputStream);
+        }
+    }
+    
+    /**
+     * <p>Reads only the header of a structure from the given stream. The data may 
+     * be GZIP compressed. The stream is not closed by this method.</p>
+     * 
+     * <p>Blocks, palettes and entities are only counted and skipped. Reading stops 
+     * as soon as all header values have been read, so the remaining data is 
+     * neither decompressed nor validated. The projection of this reader is not 
+     * used.</p>
+     * 
+     * @param inputStream
+     *      Stream to read the structure header from
+     * @return
+     *      The read structure header
+     * @throws IOException
+     *      If reading fails or the data is malformed
+     */
+    public StructureHeader readHeader(final InputStream inputStream) throws IOException {
+        // Closing the decompressing stream does not close the given stream
+        try (InputStream uncompressedStream = InputStreamHelper.decompressIfNeeded(inputStream)) {
+            final NbtReader reader = new NbtReader(uncompressedStream, limits);
+            NbtTagId.verify("root", NbtTagId.COMPOUND, reader.readTagId());
+            reader.skipName();
+        
+            return readStructureHeader(reader);
+        }
+    }
+    
+    private Structure readStructure(final NbtReader reader) throws IOException {
+        Int3D size = null;
+        Int3D actualSize = null;
+        List<BlockInfo> blocks = null;
+        List<List<BlockState>> multiPalettes = null;
+        List<BlockState> singlePalette = null;
+        List<EntityInfo> entities = null;
+        int dataVersion = 0;
+        String author = null;
+        
+        for (byte tagId = reader.readTagId(); tagId != NbtTagId.END; tagId = reader.readTagId()) {
+            final String name = reader.readName();
+            
+            switch (name) {
+                case Structure.SIZE_KEY:
+                    size = readInt3D(reader, name, tagId);
+                    break;
+                case Structure.BLOCKS_KEY:
+                    if (projection.shouldReadBlocks()) {
+                        blocks = readBlocks(reader, name, tagId);
+                    }
+                    else {
+                        NbtTagId.verify(name, NbtTagId.LIST, tagId);
+                        reader.skipTag(tagId);
+                        blocks = Collections.emptyList();
+                    }
+                    break;
+                case Structure.MULTI_PALETTES_KEY: {
+                    if (!projection.shouldReadPalettes()) {
+                        NbtTagId.verify(name, NbtTagId.LIST, tagId);
+                        reader.skipTag(tagId);
+                        multiPalettes = Collections.emptyList();
+                        break;
+                    }
+                    
+                    NbtTagId.verify(name, NbtTagId.LIST, tagId);
+                    final int palettesCount = reader.readListHeader(name, NbtTagId.LIST);
+                    multiPalettes = new ArrayList<>(getInitialCapacity(palettesCount));
+                    
+                    for (int paletteIndex = 0; paletteIndex < palettesCount; paletteIndex++) {
+                        // Elements are list values, so read them as if they were a list tag
+                        multiPalettes.add(readCompoundList(reader, name, NbtTagId.LIST, StructureReader::readBlockState));
+                    }
+                    break;
+                }
+                case Structure.SINGLE_PALETTE_KEY:
+                    if (projection.shouldReadPalettes()) {
+                        singlePalette = readCompoundList(reader, name, tagId, StructureReader::readBlockState);
+                    }
+                    else {
+                        NbtTagId.verify(name, NbtTagId.LIST, tagId);
+                        reader.skipTag(tagId);
+                        singlePalette = Collections.emptyList();
+                    }
+                    break;
+                case Structure.ENTITIES_KEY:
+                    if (projection.shouldReadEntities()) {
+                        entities = readEntities(reader, name, tagId);
+                    }
+                    else {
+                        reader.skipTag(tagId);
+                    }
+                    break;
+                case Structure.DATA_VERSION_KEY:
+                    NbtTagId.verify(name, NbtTagId.INT, tagId);
+                    dataVersion = reader.readInt();
+                    break;
+                case Structure.AUTHOR_KEY:
+                    NbtTagId.verify(name, NbtTagId.STRING, tagId);
+                    author = reader.readString();
+                    break;
+                case Structure.STRUCTURE_TOOLS_KEY:
+                    NbtTagId.verify(name, NbtTagId.COMPOUND, tagId);
+                    actualSize = readStructureToolsSize(reader);
+                    break;
+                default:
+                    reader.skipTag(tagId);
+            }
+        }
+        
+        final List<List<BlockState>> palettes;
+        
+        // Same precedence as Structure.fromNbt
+        if (multiPalettes != null) {
+            palettes = multiPalettes;
+        }
+        else if (singlePalette != null) {
+            palettes = projection.shouldReadPalettes() ? Collections.singletonList(singlePalette) : Collections.emptyList();
+        }
+        else {
+            throw createMissingTagException("structure", Structure.SINGLE_PALETTE_KEY);
+        }
+        
+        requireTag(size, "structure", Structure.SIZE_KEY);
+        requireTag(blocks, "structure", Structure.BLOCKS_KEY);
+        
+        // Size might be read after the blocks, so select the storage at the end
+        if (blocks instanceof BlockStorage) {
+            blocks = GridBlockStorage.compact((BlockStorage) blocks, size);
+        }
+        
+        return new Structure(
+            size,
+            actualSize,
+            blocks,
+            palettes,
+            entities,
+            dataVersion,
+            author
+        );
+    }
+    
+    private static StructureHeader readStructureHeader(final NbtReader reader) throws IOException {
+        Int3D size = null;
+        Int3D actualSize = null;
+        boolean readStructureTools = false;
+        Integer blocksCount = null;
+        List<Integer> multiPaletteSizes = null;
+        Integer singlePaletteSize = null;
+        Integer entitiesCount = null;
+        Integer dataVersion = null;
+        
+        for (byte tagId = reader.readTagId(); tagId != NbtTagId.END; tagId = reader.readTagId()) {
+            final String name = reader.readName();
+            
+            switch (name) {
+                case Structure.SIZE_KEY:
+                    size = readInt3D(reader, name, tagId);
+                    break;
+                case Structure.BLOCKS_KEY:
+                    blocksCount = skipCompoundList(reader, name, tagId);
+                    break;
+                case Structure.MULTI_PALETTES_KEY: {
+                    NbtTagId.verify(name, NbtTagId.LIST, tagId);
+                    final int palettesCount = reader.readListHeader(name, NbtTagId.LIST);
+                    multiPaletteSizes = new ArrayList<>(getInitialCapacity(palettesCount));
+                    
+                    for (int paletteIndex = 0; paletteIndex < palettesCount; paletteIndex++) {
+                        multiPaletteSizes.add(skipCompoundList(reader, name, NbtTagId.LIST));
+                    }
+                    break;
+                }
+                case Structure.SINGLE_PALETTE_KEY:
+                    singlePaletteSize = skipCompoundList(reader, name, tagId);
+                    break;
+                case Structure.ENTITIES_KEY:
+                    entitiesCount = skipCompoundList(reader, name, tagId);
+                    break;
+                case Structure.DATA_VERSION_KEY:
+                    NbtTagId.verify(name, NbtTagId.INT, tagId);
+                    dataVersion = reader.readInt();
+                    break;
+                case Structure.STRUCTURE_TOOLS_KEY:
+                    NbtTagId.verify(name, NbtTagId.COMPOUND, tagId);
+                    actualSize = readStructureToolsSize(reader);
+                    readStructureTools = true;
+                    break;
+                default:
+                    reader.skipTag(tagId);
+            }
+            
+            /*
+             * Stop once all values are known; only possible if all optional tags are 
+             * present because otherwise they could still follow. The single palette 
+             * is not checked because the multi palettes could follow and would 
+             * take precedence.
+             */
+            if (size != null && readStructureTools && blocksCount != null && multiPaletteSizes != null && entitiesCount != null && dataVersion != null) {
+                break;
+            }
+        }
+        
+        final List<Integer> paletteSizes;
+        
+        // Same precedence as Structure.fromNbt
+        if (multiPaletteSizes != null) {
+            paletteSizes = multiPaletteSizes;
+        }
+        else if (singlePaletteSize != null) {
+            paletteSizes = Collections.singletonList(singlePaletteSize);
+        }
+        else {
+            throw createMissingTagException("structure", Structure.SINGLE_PALETTE_KEY);
+        }
+        
+        return new StructureHeader(
+            requireTag(size, "structure", Structure.SIZE_KEY),
+            actualSize,
+            dataVersion == null ? 0 : dataVersion,
+            paletteSizes,
+            requireTag(blocksCount, "structure", Structure.BLOCKS_KEY),
+            entitiesCount == null ? 0 : entitiesCount
+        );
+    }
+    
+    /**
+     * Skips a list of compounds and returns its length.
+     */
+    private static int skipCompoundList(final NbtReader reader, final String name, final byte tagId) throws IOException {
+        NbtTagId.verify(name, NbtTagId.LIST, tagId);
+        final int length = reader.readListHeader(name, NbtTagId.COMPOUND);
+        
+        for (int index = 0; index < length; index++) {
+            reader.skipTag(NbtTagId.COMPOUND);
+        }
+        
+        return length;
+    }
+    
+    private static IOException createMissingTagException(final String owner, final String name) {
+        return new IOException(String.format("The %s is missing the tag '%s'", owner, name));
+    }
+    
+    private static <T> T requireTag(final T value, final String owner, final String name) throws IOException {
+        if (value == null) {
+            throw createMissingTagException(owner, name);
+        }
+        
+        return value;
+    }
+    
+    /**
+     * Returns the capacity to preallocate for a list with the given length read 
+     * from the data.
+     */
+    private static int getInitialCapacity(final int length) {
+        return Math.min(length, MAX_INITIAL_CAPACITY);
+    }
+    
+    private static <T> List<T> readCompoundList(final NbtReader reader, final String name, final byte tagId, final ElementReader<T> elementReader) throws IOException {
+        NbtTagId.verify(name, NbtTagId.LIST, tagId);
+        final int length = reader.readListHeader(name, NbtTagId.COMPOUND);
+        final List<T> list = new ArrayList<>(getInitialCapacity(length));
+        
+        for (int index = 0; index < length; index++) {
+            list.add(elementReader.read(reader));
+        }
+        
+        return list;
+    }
+    
+    private static void verifyCoordinatesCount(final int length) throws IOException {
+        final int expectedSize = 3;
+        
+        if (length != expectedSize) {
+            throw new IOException(String.format(
+                "Expected list of size %d, actual size is %d",
+                expectedSize,
+                length
+            ));
+        }
+    }
+    
+    private static Int3D readInt3D(final NbtReader reader, final String name, final byte tagId) throws IOException {
+        NbtTagId.verify(name, NbtTagId.LIST, tagId);
+        verifyCoordinatesCount(reader.readListHeader(name, NbtTagId.INT));
+        
+        return new Int3D(reader.readInt(), reader.readInt(), reader.readInt());
+    }
+    
+    private static Int3D readStructureToolsSize(final NbtReader reader) throws IOException {
+        Int3D actualSize = null;
+        
+        for (byte tagId = reader.readTagId(); tagId != NbtTagId.END; tagId = reader.readTagId()) {
+            final String name = reader.readName();
+            
+            if (Structure.SIZE_KEY.equals(name)) {
+                actualSize = readInt3D(reader, name, tagId);
+            }
+            else {
+                reader.skipTag(tagId);
+            }
+        }
+        
+        return actualSize;
+    }
+    
+    /**
+     * Reads the blocks directly into a {@link BlockStorage}, without creating 
+     * {@link BlockInfo} objects.
+     */
+    private BlockStorage readBlocks(final NbtReader reader, final String name, final byte tagId) throws IOException {
+        NbtTagId.verify(name, NbtTagId.LIST, tagId);
+        final int length = reader.readListHeader(name, NbtTagId.COMPOUND);
+        final BlockStorage.Builder builder = new BlockStorage.Builder(getInitialCapacity(length));
+        
+        for (int index = 0; index < length; index++) {
+            readBlock(reader, builder);
+        }
+        
+        return builder.build();
+    }
+    
+    private void readBlock(final NbtReader reader, final BlockStorage.Builder builder) throws IOException {
+        boolean hasPos = false;
+        int x = 0;
+        int y = 0;
+        int z = 0;
+        int state = 0;
+        CompoundTag nbt = null;
+        RawNbt rawNbt = null;
+        
+        for (byte tagId = reader.readTagId(); tagId != NbtTagId.END; tagId = reader.readTagId()) {
+            switch (reader.readName(StructureSchema.BLOCK_KEYS)) {
+                case StructureSchema.BLOCK_POS_INDEX:
+                    NbtTagId.verify(BlockInfo.POS_KEY, NbtTagId.LIST, tagId);
+                    verifyCoordinatesCount(reader.readListHeader(BlockInfo.POS_KEY, NbtTagId.INT));
+                    x = reader.readInt();
+                    y = reader.readInt();
+                    z = reader.readInt();
+                    hasPos = true;
+                    break;
+                case StructureSchema.BLOCK_STATE_INDEX:
+                    NbtTagId.verify(BlockInfo.STATE_KEY, NbtTagId.INT, tagId);
+                    state = reader.readInt();
+                    break;
+                case StructureSchema.BLOCK_NBT_INDEX:
+                    NbtTagId.verify(BlockInfo.NBT_KEY, NbtTagId.COMPOUND, tagId);
+                    
+                    if (!projection.shouldReadBlockNbt()) {
+                        reader.skipTag(tagId);
+                    }
+                    else if (blockNbtDeduplicator != null) {
+                        rawNbt = blockNbtDeduplicator.deduplicate(reader.readRawCompound());
+                    }
+                    else if (keepRawNbt) {
+                        rawNbt = reader.readRawCompound();
+                    }
+                    else {
+                        nbt = reader.readCompound();
+                    }
+                    break;
+                default:
+                    reader.skipTag(tagId);
+            }
+        }
+        
+        if (!hasPos) {
+            throw createMissingTagException("block info", BlockInfo.POS_KEY);
+        }
+        
+        if (rawNbt == null) {
+            builder.add(x, y, z, state, nbt);
+        }
+        else {
+            builder.add(x, y, z, state, rawNbt);
+        }
+    }
+    
+    private static BlockState readBlockState(final NbtReader reader) throws IOException {
+        String name = null;
+        CompoundTag properties = null;
+        
+        for (byte tagId = reader.readTagId(); tagId != NbtTagId.END; tagId = reader.readTagId()) {
+            switch (reader.readName(StructureSchema.BLOCK_STATE_KEYS)) {
+                case StructureSchema.BLOCK_STATE_NAME_INDEX:
+                    NbtTagId.verify(BlockState.NAME_KEY, NbtTagId.STRING, tagId);
+                    name = reader.readString();
+                    break;
+                case StructureSchema.BLOCK_STATE_PROPERTIES_INDEX:
+                    NbtTagId.verify(BlockState.PROPERTIES_KEY, NbtTagId.COMPOUND, tagId);
+                    properties = reader.readCompound();
+                    break;
+                default:
+                    reader.skipTag(tagId);
+            }
+        }
+        
+        // Same defaulting to air as BlockState.fromNbt
+        if (name == null) {
+            return new BlockState(BlockState.DEFAULT_NAME).intern();
+        }
+        
+        return new BlockState(name, properties).intern();
+    }
+    
+    /**
+     * Reads the entities directly into an {@link EntityStorage}, without creating 
+     * {@link EntityInfo} objects. The NBT data of the entities is only decoded when 
+     * it is requested, unless it is kept in serialized form anyways.
+     */
+    private EntityStorage readEntities(final NbtReader reader, final String name, final byte tagId) throws IOException {
+        NbtTagId.verify(name, NbtTagId.LIST, tagId);
+        final int length = reader.readListHeader(name, NbtTagId.COMPOUND);
+        final EntityStorage.Builder builder = new EntityStorage.Builder(getInitialCapacity(length));
+        
+        for (int index = 0; index < length; index++) {
+            readEntity(reader, builder);
+        }
+        
+        return builder.build();
+    }
+    
+    private void readEntity(final NbtReader reader, final EntityStorage.Builder builder) throws IOException {
+        boolean hasPos = false;
+        double x = 0;
+        double y = 0;
+        double z = 0;
+        boolean hasBlockPos = false;
+        int blockX = 0;
+        int blockY = 0;
+        int blockZ = 0;
+        RawNbt rawNbt = null;
+        
+        for (byte tagId = reader.readTagId(); tagId != NbtTagId.END; tagId = reader.readTagId()) {
+            switch (reader.readName(StructureSchema.ENTITY_KEYS)) {
+                case StructureSchema.ENTITY_POS_INDEX:
+                    NbtTagId.verify(EntityInfo.POS_KEY, NbtTagId.LIST, tagId);
+                    verifyCoordinatesCount(reader.readListHeader(EntityInfo.POS_KEY, NbtTagId.DOUBLE));
+                    x = reader.readDouble();
+                    y = reader.readDouble();
+                    z = reader.readDouble();
+                    hasPos = true;
+                    break;
+                case StructureSchema.ENTITY_BLOCK_POS_INDEX:
+                    NbtTagId.verify(EntityInfo.BLOCK_POS_KEY, NbtTagId.LIST, tagId);
+                    verifyCoordinatesCount(reader.readListHeader(EntityInfo.BLOCK_POS_KEY, NbtTagId.INT));
+                    blockX = reader.readInt();
+                    blockY = reader.readInt();
+                    blockZ = reader.readInt();
+                    hasBlockPos = true;
+                    break;
+                case StructureSchema.ENTITY_NBT_INDEX:
+                    NbtTagId.verify(EntityInfo.NBT_KEY, NbtTagId.COMPOUND, tagId);
+                    rawNbt = reader.readRawCompound();
+                    break;
+                default:
+                    reader.skipTag(tagId);
+            }
+        }
+        
+        if (!hasPos) {
+            throw createMissingTagException("entity info", EntityInfo.POS_KEY);
+        }
+        else if (!hasBlockPos) {
+            throw createMissingTagException("entity info", EntityInfo.BLOCK_POS_KEY);
+        }
+        
+        requireTag(rawNbt, "entity info", EntityInfo.NBT_KEY);
+        
+        if (keepRawNbt) {
+            builder.add(x, y, z, blockX, blockY, blockZ, rawNbt);
+        }
+        else {
+            builder.addLazilyDecoded(x, y, z, blockX, blockY, blockZ, rawNbt);
+        }
+    }
+}
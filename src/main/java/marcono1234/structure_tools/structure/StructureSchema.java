@@ -0,0 +1,40 @@
+package marcono1234.structure_tools.structure;
+
+import marcono1234.structure_tools.util.NbtName;
+
+/**
+ * <p>Pre-encoded names of the tags of the structure file format, used by 
+ * {@link StructureReader} and {@link StructureWriter} for the tags which occur 
+ * once per block, block state or entity.</p>
+ * 
+ * <p>The arrays contain the known tags of the respective compound, the reader 
+ * matches names against them and uses the index constants to tell which tag 
+ * was read. The arrays must not be modified.</p>
+ */
+final class StructureSchema {
+    private StructureSchema() { }
+    
+    static final NbtName SIZE = NbtName.of(Structure.SIZE_KEY);
+    
+    static final NbtName BLOCK_POS = NbtName.of(BlockInfo.POS_KEY);
+    static final NbtName BLOCK_STATE = NbtName.of(BlockInfo.STATE_KEY);
+    static final NbtName BLOCK_NBT = NbtName.of(BlockInfo.NBT_KEY);
+    static final NbtName[] BLOCK_KEYS = {BLOCK_POS, BLOCK_STATE, BLOCK_NBT};
+    static final int BLOCK_POS_INDEX = 0;
+    static final int BLOCK_STATE_INDEX = 1;
+    static final int BLOCK_NBT_INDEX = 2;
+    
+    static final NbtName BLOCK_STATE_NAME = NbtName.of(BlockState.NAME_KEY);
+    static final NbtName BLOCK_STATE_PROPERTIES = NbtName.of(BlockState.PROPERTIES_KEY);
+    static final NbtName[] BLOCK_STATE_KEYS = {BLOCK_STATE_NAME, BLOCK_STATE_PROPERTIES};
+    static final int BLOCK_STATE_NAME_INDEX = 0;
+    static final int BLOCK_STATE_PROPERTIES_INDEX = 1;
+    
+    static final NbtName ENTITY_POS = NbtName.of(EntityInfo.POS_KEY);
+    static final NbtName ENTITY_BLOCK_POS = NbtName.of(EntityInfo.BLOCK_POS_KEY);
+    static final NbtName ENTITY_NBT = NbtName.of(EntityInfo.NBT_KEY);
+    static final NbtName[] ENTITY_KEYS = {ENTITY_POS, ENTITY_BLOCK_POS, ENTITY_NBT};
+    static final int ENTITY_POS_INDEX = 0;
+    static final int ENTITY_BLOCK_POS_INDEX = 1;
+    static final int ENTITY_NBT_INDEX = 2;
+}
@@ -0,0 +1,330 @@
+package marcono1234.structure_tools.structure;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.Deflater;
+
+import marcono1234.structure_tools.util.CodecPool;
+import marcono1234.structure_tools.util.Double3D;
+import marcono1234.structure_tools.util.Int3D;
+import marcono1234.structure_tools.util.NbtName;
+import marcono1234.structure_tools.util.NbtTagId;
+import marcono1234.structure_tools.util.NbtWriter;
+import marcono1234.structure_tools.util.ParallelGzipOutputStream;
+import marcono1234.structure_tools.util.RawNbt;
+import net.querz.nbt.CompoundTag;
+import net.querz.nbt.Tag;
+
+/**
+ * <p>Writes structures directly as (by default GZIP compressed) binary NBT data, without 
+ * creating the intermediate tag tree which {@link Structure#toNbt()} creates. 
+ * Each block and entity is written as soon as it is retrieved from the 
+ * respective list, so structures whose lists create their elements lazily 
+ * (see {@code Gluer.glueLazily}) never have all elements in memory.</p>
+ * 
+ * <p>The written data is equivalent to writing the result of {@code Structure.toNbt} 
+ * with {@code NBTUtil}. The compression is performed in parallel by a 
+ * {@link ParallelGzipOutputStream}, but can also be disabled for tools which 
+ * consume the NBT data directly.</p>
+ */
+public class StructureWriter {
+    private final boolean compress;
+    private final int compressionLevel;
+    private final int compressionBufferSize;
+    
+    /**
+     * @param compress
+     *      Whether the data should be GZIP compressed; Minecraft requires compressed 
+     *      structure files
+     * @param compressionLevel
+     *      Deflate compression level, 0 - 9 or {@link Deflater#DEFAULT_COMPRESSION}; 
+     *      ignored when not compressing
+     * @param compressionBufferSize
+     *      Size in bytes of the blocks which are compressed in parallel; ignored when 
+     *      not compressing
+     * @throws IllegalArgumentException
+     *      If the compression level or the buffer size is invalid
+     */
+    public StructureWriter(final boolean compress, final int compressionLevel, final int compressionBufferSize) throws IllegalArgumentException {
+        if (compress) {
+            if ((compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) && compressionLevel != Deflater.DEFAULT_COMPRESSION) {
+                throw new IllegalArgumentException("Invalid compression level " + compressionLevel);
+            }
+            if (compressionBufferSize <= 0) {
+                throw new IllegalArgumentException("Invalid compression buffer size " + compressionBufferSize);
+            }
+        }
+        
+        this.compress = compress;
+        this.compressionLevel = compressionLevel;
+        this.compressionBufferSize = compressionBufferSize;
+    }
+    
+    /**
+     * Creates a writer which compresses the data with the default compression level.
+     */
+    public StructureWriter() {
+        this(true, Deflater.DEFAULT_COMPRESSION, ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE);
+    }
+    
+    public void writeToFile(final Structure structure, final Path path) throws IOException {
+        try (OutputStream outputStream = Files.newOutputStream(path)) {
+            write(structure, outputStream);
+        }
+    }
+    
+    /**
+     * Writes the structure to the given channel. The channel is not closed by this 
+     * method.
+     * 
+     * @param structure
+     *      The structure to write
+     * @param channel
+     *      Channel to write the structure to
+     * @throws IOException
+     *      If writing fails
+     */
+    public void write(final Structure structure, final WritableByteChannel channel) throws IOException {
+        write(structure, Channels.newOutputStream(channel));
+    }
+    
+    /**
+     * Writes the structure to the given stream. The stream is flushed, but not 
+     * closed by this method.
+     * 
+     * @param structure
+     *      The structure to write
+     * @param outputStream
+     *      Stream to write the structure to
+     * @throws IOException
+     *      If writing fails
+     */
+    public void write(final Structure structure, final OutputStream outputStream) throws IOException {
+        final ParallelGzipOutputStream gzipOutputStream = compress ? new ParallelGzipOutputStream(outputStream, compressionLevel, compressionBufferSize) : null;
+        final NbtWriter writer = new NbtWriter(new BufferedOutputStream(compress ? gzipOutputStream : outputStream, CodecPool.getBufferSize()));
+        
+        // Root tag has an empty name
+        writer.writeTagHeader(NbtTagId.COMPOUND, "");
+        writeStructure(writer, structure);
+        writer.flush();
+        
+        if (compress) {
+            gzipOutputStream.finish();
+        }
+        outputStream.flush();
+    }
+    
+    private static void writeStructure(final NbtWriter writer, final Structure structure) throws IOException {
+        writeInt3D(writer, StructureSchema.SIZE, structure.getSize());
+        
+        final List<BlockInfo> blocks = structure.getBlocks();
+        writer.writeTagHeader(NbtTagId.LIST, Structure.BLOCKS_KEY);
+        writer.writeListHeader(NbtTagId.COMPOUND, blocks.size());
+        
+        if (blocks instanceof BlockColumns) {
+            // Write primitive values directly without creating block info objects
+            final BlockColumns blockColumns = (BlockColumns) blocks;
+            
+            for (int index = 0; index < blockColumns.size(); index++) {
+                writeBlock(writer, blockColumns, index);
+            }
+        }
+        else {
+            for (final BlockInfo blockInfo : blocks) {
+                writeBlock(writer, blockInfo);
+            }
+        }
+        
+        final List<List<BlockState>> palettes = structure.getPalettes();
+        
+        if (palettes.size() == 1) {
+            writer.writeTagHeader(NbtTagId.LIST, Structure.SINGLE_PALETTE_KEY);
+            writePalette(writer, palettes.get(0));
+        }
+        else {
+            writer.writeTagHeader(NbtTagId.LIST, Structure.MULTI_PALETTES_KEY);
+            writer.writeListHeader(NbtTagId.LIST, palettes.size());
+            
+            for (final List<BlockState> palette : palettes) {
+                writePalette(writer, palette);
+            }
+        }
+        
+        final Optional<List<EntityInfo>> entities = structure.getEntities();
+        
+        if (entities.isPresent()) {
+            writer.writeTagHeader(NbtTagId.LIST, Structure.ENTITIES_KEY);
+            writer.writeListHeader(NbtTagId.COMPOUND, entities.get().size());
+            
+            if (entities.get() instanceof EntityStorage) {
+                // Write primitive values directly without creating entity info objects
+                final EntityStorage entityStorage = (EntityStorage) entities.get();
+                
+                for (int index = 0; index < entityStorage.size(); index++) {
+                    writeEntity(writer, entityStorage, index);
+                }
+            }
+            else {
+                for (final EntityInfo entityInfo : entities.get()) {
+                    writeEntity(writer, entityInfo);
+                }
+            }
+        }
+        
+        writer.writeTagHeader(NbtTagId.INT, Structure.DATA_VERSION_KEY);
+        writer.writeInt(structure.getDataVersion());
+        
+        final Optional<String> author = structure.getAuthor();
+        
+        if (author.isPresent()) {
+            writer.writeTagHeader(NbtTagId.STRING, Structure.AUTHOR_KEY);
+            writer.writeString(author.get());
+        }
+        
+        final Optional<Int3D> actualSize = structure.getSpecifiedActualSize();
+        
+        if (actualSize.isPresent()) {
+            writer.writeTagHeader(NbtTagId.COMPOUND, Structure.STRUCTURE_TOOLS_KEY);
+            writeInt3D(writer, StructureSchema.SIZE, actualSize.get());
+            writer.writeEnd();
+        }
+        
+        writer.writeEnd();
+    }
+    
+    private static void writeInt3D(final NbtWriter writer, final NbtName name, final Int3D int3D) throws IOException {
+        writer.writeTagHeader(NbtTagId.LIST, name);
+        writer.writeListHeader(NbtTagId.INT, 3);
+        writer.writeInt(int3D.getX());
+        writer.writeInt(int3D.getY());
+        writer.writeInt(int3D.getZ());
+    }
+    
+    private static void writeDouble3D(final NbtWriter writer, final NbtName name, final Double3D double3D) throws IOException {
+        writer.writeTagHeader(NbtTagId.LIST, name);
+        writer.writeListHeader(NbtTagId.DOUBLE, 3);
+        writer.writeDouble(double3D.getX());
+        writer.writeDouble(double3D.getY());
+        writer.writeDouble(double3D.getZ());
+    }
+    
+    private static void writeBlock(final NbtWriter writer, final BlockInfo blockInfo) throws IOException {
+        writeInt3D(writer, StructureSchema.BLOCK_POS, blockInfo.getPos());
+        writer.writeTagHeader(NbtTagId.INT, StructureSchema.BLOCK_STATE);
+        writer.writeInt(blockInfo.getState());
+        
+        final Optional<RawNbt> rawNbt = blockInfo.getRawNbt();
+        
+        if (rawNbt.isPresent()) {
+            writer.writeTagHeader(NbtTagId.COMPOUND, StructureSchema.BLOCK_NBT);
+            writer.writeRawCompound(rawNbt.get());
+        }
+        else {
+            final Optional<CompoundTag> nbt = blockInfo.getNbt();
+            
+            if (nbt.isPresent()) {
+                writer.writeTagHeader(NbtTagId.COMPOUND, StructureSchema.BLOCK_NBT);
+                writer.writeCompound(nbt.get());
+            }
+        }
+        
+        writer.writeEnd();
+    }
+    
+    private static void writeBlock(final NbtWriter writer, final BlockColumns blocks, final int index) throws IOException {
+        writer.writeTagHeader(NbtTagId.LIST, StructureSchema.BLOCK_POS);
+        writer.writeListHeader(NbtTagId.INT, 3);
+        writer.writeInt(blocks.getX(index));
+        writer.writeInt(blocks.getY(index));
+        writer.writeInt(blocks.getZ(index));
+        writer.writeTagHeader(NbtTagId.INT, StructureSchema.BLOCK_STATE);
+        writer.writeInt(blocks.getState(index));
+        
+        if (blocks.hasNbt(index)) {
+            writer.writeTagHeader(NbtTagId.COMPOUND, StructureSchema.BLOCK_NBT);
+            final Optional<RawNbt> rawNbt = blocks.getRawNbt(index);
+            
+            if (rawNbt.isPresent()) {
+                writer.writeRawCompound(rawNbt.get());
+            }
+            else {
+                writer.writeCompound(blocks.getNbt(index).get());
+            }
+        }
+        
+        writer.writeEnd();
+    }
+    
+    private static void writePalette(final NbtWriter writer, final List<BlockState> palette) throws IOException {
+        writer.writeListHeader(NbtTagId.COMPOUND, palette.size());
+        
+        for (final BlockState blockState : palette) {
+            writer.writeTagHeader(NbtTagId.STRING, StructureSchema.BLOCK_STATE_NAME);
+            writer.writeString(blockState.getName());
+            
+            final BlockStateProperties properties = blockState.getCanonicalProperties();
+            
+            if (properties != null) {
+                // Write the canonical properties directly without creating a compound
+                writer.writeTagHeader(NbtTagId.COMPOUND, StructureSchema.BLOCK_STATE_PROPERTIES);
+                
+                for (int index = 0; index < properties.size(); index++) {
+                    final Tag<?> value = properties.getValue(index);
+                    writer.writeTagHeader(value.getID(), properties.getName(index));
+                    writer.writeTag(value);
+                }
+                
+                writer.writeEnd();
+            }
+            
+            writer.writeEnd();
+        }
+    }
+    
+    private static void writeEntity(final NbtWriter writer, final EntityInfo entityInfo) throws IOException {
+        writeDouble3D(writer, StructureSchema.ENTITY_POS, entityInfo.getPos());
+        writeInt3D(writer, StructureSchema.ENTITY_BLOCK_POS, entityInfo.getBlockPos());
+        writer.writeTagHeader(NbtTagId.COMPOUND, StructureSchema.ENTITY_NBT);
+        
+        final Optional<RawNbt> rawNbt = entityInfo.getRawNbt();
+        
+        if (rawNbt.isPresent()) {
+            writer.writeRawCompound(rawNbt.get());
+        }
+        else {
+            writer.writeCompound(entityInfo.getNbt());
+        }
+        writer.writeEnd();
+    }
+    
+    private static void writeEntity(final NbtWriter writer, final EntityStorage entities, final int index) throws IOException {
+        writer.writeTagHeader(NbtTagId.LIST, StructureSchema.ENTITY_POS);
+        writer.writeListHeader(NbtTagId.DOUBLE, 3);
+        writer.writeDouble(entities.getX(index));
+        writer.writeDouble(entities.getY(index));
+        writer.writeDouble(entities.getZ(index));
+        writer.writeTagHeader(NbtTagId.LIST, StructureSchema.ENTITY_BLOCK_POS);
+        writer.writeListHeader(NbtTagId.INT, 3);
+        writer.writeInt(entities.getBlockX(index));
+        writer.writeInt(entities.getBlockY(index));
+        writer.writeInt(entities.getBlockZ(index));
+        writer.writeTagHeader(NbtTagId.COMPOUND, StructureSchema.ENTITY_NBT);
+        
+        final Optional<RawNbt> rawNbt = entities.getRawNbt(index);
+        
+        if (rawNbt.isPresent()) {
+            writer.writeRawCompound(rawNbt.get());
+        }
+        else {
+            writer.writeCompound(entities.getNbt(index));
+        }
+        writer.writeEnd();
+    }
+}
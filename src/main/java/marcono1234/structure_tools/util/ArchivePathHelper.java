@@ -0,0 +1,113 @@
+package marcono1234.structure_tools.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.ProviderNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>Resolves paths pointing to entries of zip or jar archives, for example 
+ * {@code pack.zip!/data/ns/structures/a.nbt}. The returned paths belong to a zip 
+ * file system, so the entries can be read with the regular {@link java.nio.file.Files} 
+ * methods without extracting them first.</p>
+ * 
+ * <p>Only one file system is opened per archive and it is shared by all paths 
+ * pointing into that archive. The file systems stay open until {@link #closeAll()} 
+ * is called.</p>
+ */
+public final class ArchivePathHelper {
+    private ArchivePathHelper() { }
+    
+    /**
+     * Separator between the path of the archive and the path of the entry
+     */
+    public static final String ARCHIVE_SEPARATOR = "!/";
+    
+    /**
+     * File systems keyed by the absolute normalized path of the archive
+     */
+    private static final Map<Path, FileSystem> fileSystems = new ConcurrentHashMap<>();
+    
+    private static FileSystem getFileSystem(final Path archivePath) throws IOException {
+        try {
+            return fileSystems.computeIfAbsent(archivePath.toAbsolutePath().normalize(), path -> {
+                try {
+                    // Cast to select the overload which exists in Java 8
+                    return FileSystems.newFileSystem(path, (ClassLoader) null);
+                }
+                catch (final IOException ioException) {
+                    throw new UncheckedIOException(ioException);
+                }
+                catch (final ProviderNotFoundException providerNotFoundException) {
+                    throw new UncheckedIOException(new IOException("Not a supported archive: " + path, providerNotFoundException));
+                }
+            });
+        }
+        catch (final UncheckedIOException uncheckedIOException) {
+            throw uncheckedIOException.getCause();
+        }
+    }
+    
+    /**
+     * Converts the given string to a path. If the string contains {@value #ARCHIVE_SEPARATOR}, 
+     * the part before it is the path of the archive and the part after it the path of 
+     * the entry in the archive. Otherwise the string is converted using {@link Paths#get(String, String...)}.
+     * 
+     * @param pathString
+     *      The string to convert
+     * @return
+     *      The path, either of the default file system or of an archive file system
+     * @throws IOException
+     *      If opening the archive fails
+     */
+    public static Path parse(final String pathString) throws IOException {
+        final int separatorIndex = pathString.indexOf(ARCHIVE_SEPARATOR);
+        
+        if (separatorIndex == -1) {
+            return Paths.get(pathString);
+        }
+        else {
+            final FileSystem fileSystem = getFileSystem(Paths.get(pathString.substring(0, separatorIndex)));
+            // Entry paths in the archive are absolute
+            return fileSystem.getPath("/" + pathString.substring(separatorIndex + ARCHIVE_SEPARATOR.length()));
+        }
+    }
+    
+    /**
+     * Closes the file systems of all archives. Paths pointing into archives must 
+     * not be used afterwards.
+     * 
+     * @throws IOException
+     *      If closing any of the file systems fails
+     */
+    public static void closeAll() throws IOException {
+        final List<FileSystem> closedFileSystems = new ArrayList<>(fileSystems.values());
+        fileSystems.clear();
+        IOException exception = null;
+        
+        for (final FileSystem fileSystem : closedFileSystems) {
+            try {
+                fileSystem.close();
+            }
+            catch (final IOException ioException) {
+                if (exception == null) {
+                    exception = ioException;
+                }
+                else {
+                    exception.addSuppressed(ioException);
+                }
+            }
+        }
+        
+        if (exception != null) {
+            throw exception;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package marcono1234.structure_tools.util;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Input stream reading the remaining data of a byte buffer. The position of the 
+ * buffer is advanced while reading.
+ */
+public class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+    
+    public ByteBufferInputStream(final ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+    
+    @Override
+    public int read() {
+        return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+    
+    @Override
+    public int read(final byte[] b, final int off, final int len) {
+        if (len == 0) {
+            return 0;
+        }
+        else if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        
+        final int readCount = Math.min(len, buffer.remaining());
+        buffer.get(b, off, readCount);
+        return readCount;
+    }
+    
+    @Override
+    public long skip(final long n) {
+        if (n <= 0) {
+            return 0;
+        }
+        
+        final int skipCount = (int) Math.min(n, buffer.remaining());
+        buffer.position(buffer.position() + skipCount);
+        return skipCount;
+    }
+    
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+}
@@ -0,0 +1,163 @@
+package marcono1234.structure_tools.util;
+
+import java.util.ArrayDeque;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * <p>Thread local pools of {@link Inflater}s, {@link Deflater}s and I/O buffers. 
+ * Inflaters and deflaters hold native memory which is only freed once they are 
+ * ended or finalized, so creating new ones for every structure which is read or 
+ * written causes considerable overhead when processing many structures.</p>
+ * 
+ * <p>Every acquired object has to be released again once it is not used anymore, 
+ * and must not be used afterwards. Each thread only keeps a few released objects; 
+ * objects exceeding that are discarded (inflaters and deflaters are ended).</p>
+ */
+public final class CodecPool {
+    private CodecPool() { }
+    
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    /**
+     * Maximum number of released objects of each kind kept per thread
+     */
+    private static final int MAX_POOLED_COUNT = 4;
+    
+    private static volatile int bufferSize = DEFAULT_BUFFER_SIZE;
+    
+    private static final ThreadLocal<ArrayDeque<Inflater>> inflaters = ThreadLocal.withInitial(ArrayDeque::new);
+    /**
+     * Deflaters per compression level; index is the level + 1 to include 
+     * {@link Deflater#DEFAULT_COMPRESSION}. Changing the level of a deflater 
+     * is avoided since it can cause the next output to start a new block.
+     */
+    private static final ThreadLocal<ArrayDeque<Deflater>[]> deflaters = ThreadLocal.withInitial(() -> {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        final ArrayDeque<Deflater>[] deflatersByLevel = new ArrayDeque[Deflater.BEST_COMPRESSION + 2];
+        
+        for (int index = 0; index < deflatersByLevel.length; index++) {
+            deflatersByLevel[index] = new ArrayDeque<>();
+        }
+        
+        return deflatersByLevel;
+    });
+    private static final ThreadLocal<ArrayDeque<byte[]>> buffers = ThreadLocal.withInitial(ArrayDeque::new);
+    
+    /**
+     * Returns the size in bytes of the buffers returned by {@link #acquireBuffer()}.
+     * 
+     * @return
+     *      The buffer size
+     */
+    public static int getBufferSize() {
+        return bufferSize;
+    }
+    
+    /**
+     * Sets the size in bytes of the buffers returned by {@link #acquireBuffer()}. 
+     * Pooled buffers with a different size are discarded when acquiring buffers.
+     * 
+     * @param bufferSize
+     *      The buffer size
+     * @throws IllegalArgumentException
+     *      If the size is not positive
+     */
+    public static void setBufferSize(final int bufferSize) throws IllegalArgumentException {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Invalid buffer size " + bufferSize);
+        }
+        
+        CodecPool.bufferSize = bufferSize;
+    }
+    
+    /**
+     * Acquires an inflater for raw deflate data, without zlib header.
+     * 
+     * @return
+     *      Inflater in its initial state
+     */
+    public static Inflater acquireInflater() {
+        final Inflater inflater = inflaters.get().pollFirst();
+        return inflater == null ? new Inflater(true) : inflater;
+    }
+    
+    public static void releaseInflater(final Inflater inflater) {
+        final ArrayDeque<Inflater> pool = inflaters.get();
+        
+        if (pool.size() < MAX_POOLED_COUNT) {
+            inflater.reset();
+            pool.addFirst(inflater);
+        }
+        else {
+            inflater.end();
+        }
+    }
+    
+    /**
+     * Acquires a deflater for raw deflate data, without zlib header.
+     * 
+     * @param compressionLevel
+     *      Compression level, 0 - 9 or {@link Deflater#DEFAULT_COMPRESSION}
+     * @return
+     *      Deflater in its initial state
+     * @throws IllegalArgumentException
+     *      If the compression level is invalid
+     */
+    public static Deflater acquireDeflater(final int compressionLevel) throws IllegalArgumentException {
+        if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level " + compressionLevel);
+        }
+        
+        final Deflater deflater = deflaters.get()[compressionLevel + 1].pollFirst();
+        return deflater == null ? new Deflater(compressionLevel, true) : deflater;
+    }
+    
+    /**
+     * Releases a deflater acquired with {@link #acquireDeflater(int)}.
+     * 
+     * @param deflater
+     *      The deflater to release
+     * @param compressionLevel
+     *      Compression level the deflater was acquired with
+     */
+    public static void releaseDeflater(final Deflater deflater, final int compressionLevel) {
+        final ArrayDeque<Deflater> pool = deflaters.get()[compressionLevel + 1];
+        
+        if (pool.size() < MAX_POOLED_COUNT) {
+            deflater.reset();
+            pool.addFirst(deflater);
+        }
+        else {
+            deflater.end();
+        }
+    }
+    
+    /**
+     * Acquires a buffer of {@linkplain #getBufferSize() the current buffer size}. 
+     * The content of the buffer is undefined.
+     * 
+     * @return
+     *      The buffer
+     */
+    public static byte[] acquireBuffer() {
+        final int size = bufferSize;
+        final ArrayDeque<byte[]> pool = buffers.get();
+        byte[] buffer;
+        
+        while ((buffer = pool.pollFirst()) != null) {
+            if (buffer.length == size) {
+                return buffer;
+            }
+        }
+        
+        return new byte[size];
+    }
+    
+    public static void releaseBuffer(final byte[] buffer) {
+        final ArrayDeque<byte[]> pool = buffers.get();
+        
+        if (pool.size() < MAX_POOLED_COUNT && buffer.length == bufferSize) {
+            pool.addFirst(buffer);
+        }
+    }
+}
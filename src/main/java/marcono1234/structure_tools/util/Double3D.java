@@ -1,7 +1,5 @@
 package marcono1234.structure_tools.util;
 
-import java.util.Objects;
-
 import net.querz.nbt.DoubleTag;
 import net.querz.nbt.ListTag;
 
@@ -68,10 +66,10 @@ public class Double3D {
         else if (obj instanceof Double3D) {
             final Double3D other = (Double3D) obj;
             
-            // Have to use equals because NaN != NaN
-            return Double.valueOf(x).equals(other.x)
-                && Double.valueOf(y).equals(other.y)
-                && Double.valueOf(z).equals(other.z);
+            // Compare the bits, like Double.equals, because NaN != NaN
+            return Double.doubleToLongBits(x) == Double.doubleToLongBits(other.x)
+                && Double.doubleToLongBits(y) == Double.doubleToLongBits(other.y)
+                && Double.doubleToLongBits(z) == Double.doubleToLongBits(other.z);
         }
         
         return false;
@@ -79,7 +77,10 @@ public class Double3D {
     
     @Override
     public int hashCode() {
-        return Objects.hash(x, y, z);
+        // Same value as Objects.hash(x, y, z), but without boxing the coordinates
+        int result = 31 + Double.hashCode(x);
+        result = 31 * result + Double.hashCode(y);
+        return 31 * result + Double.hashCode(z);
     }
     
     @Override
@@ -1,12 +1,16 @@
 package marcono1234.structure_tools.util;
 
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PushbackInputStream;
 import java.nio.file.Files;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
 
 public final class InputStreamHelper {
     private InputStreamHelper() { }
@@ -22,4 +26,55 @@ public final class InputStreamHelper {
             return streamFunction.apply(inputStream);
         }
     }
+    
+    /**
+     * Stream which does not close the underlying stream
+     */
+    private static class UnclosableInputStream extends FilterInputStream {
+        public UnclosableInputStream(final InputStream in) {
+            super(in);
+        }
+        
+        @Override
+        public void close() {
+            // Do not close underlying stream
+        }
+    }
+    
+    /**
+     * <p>Creates a buffered stream which decompresses the data of the given stream 
+     * if it is GZIP compressed, otherwise the data is returned as is. This behaves 
+     * the same way {@code NBTUtil.readTag} detects compression.</p>
+     * 
+     * <p>The buffers and the inflater are acquired from the {@link CodecPool}. 
+     * The returned stream should be closed to release them; this does not close 
+     * the given stream.</p>
+     * 
+     * @param inputStream
+     *      Stream providing the possibly compressed data
+     * @return
+     *      Buffered stream providing the uncompressed data
+     * @throws IOException
+     *      If reading the GZIP header fails
+     */
+    public static InputStream decompressIfNeeded(final InputStream inputStream) throws IOException {
+        final PushbackInputStream pushbackStream = new PushbackInputStream(new UnclosableInputStream(inputStream), 2);
+        final byte[] magicBytes = new byte[2];
+        int magicLength = 0;
+        int readCount;
+        
+        while (magicLength < magicBytes.length && (readCount = pushbackStream.read(magicBytes, magicLength, magicBytes.length - magicLength)) != -1) {
+            magicLength += readCount;
+        }
+        
+        pushbackStream.unread(magicBytes, 0, magicLength);
+        final int magic = (magicBytes[0] & 0xFF) | ((magicBytes[1] & 0xFF) << 8);
+        
+        if (magicLength == magicBytes.length && magic == GZIPInputStream.GZIP_MAGIC) {
+            return new PooledGzipInputStream(pushbackStream);
+        }
+        else {
+            return new BufferedInputStream(pushbackStream, CodecPool.getBufferSize());
+        }
+    }
 }
@@ -2,7 +2,6 @@ package marcono1234.structure_tools.util;
 
 import java.util.Arrays;
 import java.util.List;
-import java.util.Objects;
 import java.util.function.BiPredicate;
 import java.util.function.Function;
 import java.util.function.IntPredicate;
@@ -125,7 +124,10 @@ public class Int3D {
     
     @Override
     public int hashCode() {
-        return Objects.hash(x, y, z);
+        // Same value as Objects.hash(x, y, z), but without boxing the coordinates
+        int result = 31 + x;
+        result = 31 * result + y;
+        return 31 * result + z;
     }
     
     @Override
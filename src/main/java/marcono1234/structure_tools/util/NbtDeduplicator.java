@@ -0,0 +1,64 @@
+package marcono1234.structure_tools.util;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.querz.nbt.CompoundTag;
+
+/**
+ * <p>Shares one instance of {@link RawNbt} per distinct NBT data. Structures often 
+ * contain many blocks with identical NBT data, e.g. empty chests or blank signs; 
+ * storing the data of all of them as the same immutable serialized instance 
+ * reduces the memory usage, and writers copy the serialized data without encoding 
+ * it again.</p>
+ * 
+ * <p>NBT data is considered identical if its serialized form is the same, see 
+ * {@link RawNbt}. The hash code of the serialized data is computed only once. 
+ * Instances are safe to be used by multiple threads concurrently. All distinct 
+ * NBT data is retained as long as the deduplicator is in use.</p>
+ */
+public final class NbtDeduplicator {
+    private final ConcurrentMap<RawNbt, RawNbt> instances;
+    
+    public NbtDeduplicator() {
+        instances = new ConcurrentHashMap<>();
+    }
+    
+    /**
+     * Returns the shared instance which is equal to the given serialized NBT data. 
+     * If there is none yet, the given instance becomes the shared instance.
+     * 
+     * @param rawNbt
+     *      The serialized NBT data
+     * @return
+     *      The shared instance
+     */
+    public RawNbt deduplicate(final RawNbt rawNbt) {
+        final RawNbt existing = instances.putIfAbsent(Objects.requireNonNull(rawNbt), rawNbt);
+        return existing == null ? rawNbt : existing;
+    }
+    
+    /**
+     * Serializes the compound and returns the shared instance which is equal to 
+     * the serialized data.
+     * 
+     * @param compound
+     *      The compound to serialize
+     * @return
+     *      The shared instance
+     */
+    public RawNbt deduplicate(final CompoundTag compound) {
+        return deduplicate(RawNbt.fromCompound(compound));
+    }
+    
+    /**
+     * Returns the number of distinct NBT data instances.
+     * 
+     * @return
+     *      The number of distinct instances
+     */
+    public int getDistinctCount() {
+        return instances.size();
+    }
+}
@@ -0,0 +1,46 @@
+package marcono1234.structure_tools.util;
+
+import java.io.IOException;
+
+/**
+ * Thrown by the {@link NbtReader} when the data exceeds one of its {@link NbtReadLimits}.
+ */
+@SuppressWarnings("serial")
+public class NbtLimitExceededException extends IOException {
+    private final String limitName;
+    private final long limit;
+    private final long actualValue;
+    
+    public NbtLimitExceededException(final String limitName, final long limit, final long actualValue, final long position) {
+        super(String.format(
+            "Limit '%s' of %d exceeded with %d, at uncompressed byte %d",
+            limitName,
+            limit,
+            actualValue,
+            position
+        ));
+        
+        this.limitName = limitName;
+        this.limit = limit;
+        this.actualValue = actualValue;
+    }
+    
+    /**
+     * Returns the name of the exceeded limit, which is the name of the 
+     * corresponding {@link NbtReadLimits} property, for example {@code maxDepth}.
+     * 
+     * @return
+     *      The name of the exceeded limit
+     */
+    public String getLimitName() {
+        return limitName;
+    }
+    
+    public long getLimit() {
+        return limit;
+    }
+    
+    public long getActualValue() {
+        return actualValue;
+    }
+}
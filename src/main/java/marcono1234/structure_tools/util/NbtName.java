@@ -0,0 +1,107 @@
+package marcono1234.structure_tools.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * <p>Tag name which has already been encoded in modified UTF-8, the encoding 
+ * used by NBT. Encoding the names of frequently written tags once avoids 
+ * encoding them again for every tag, and reading a name by comparing its bytes 
+ * against known names avoids creating a string for it, see 
+ * {@link NbtReader#readName(NbtName[])}.</p>
+ */
+public final class NbtName {
+    private final String name;
+    /**
+     * Encoded name, including the 2 bytes length prefix
+     */
+    private final byte[] encoded;
+    
+    private NbtName(final String name, final byte[] encoded) {
+        this.name = name;
+        this.encoded = encoded;
+    }
+    
+    /**
+     * Encodes the given name.
+     * 
+     * @param name
+     *      The name to encode
+     * @return
+     *      The encoded name
+     * @throws IllegalArgumentException
+     *      If the encoded name is longer than 65535 bytes
+     */
+    public static NbtName of(final String name) {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(name.length() + 2);
+        
+        try {
+            new DataOutputStream(outputStream).writeUTF(name);
+        }
+        catch (final UTFDataFormatException utfDataFormatException) {
+            throw new IllegalArgumentException("Name is too long", utfDataFormatException);
+        }
+        catch (final IOException ioException) {
+            // Cannot happen for ByteArrayOutputStream
+            throw new UncheckedIOException(ioException);
+        }
+        
+        return new NbtName(name, outputStream.toByteArray());
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Returns the encoded name including its length prefix. The returned 
+     * array must not be modified.
+     */
+    byte[] getEncoded() {
+        return encoded;
+    }
+    
+    /**
+     * Returns whether the given encoded name, without length prefix, 
+     * is equal to this name.
+     */
+    boolean matches(final byte[] data, final int length) {
+        if (length != encoded.length - 2) {
+            return false;
+        }
+        
+        for (int index = 0; index < length; index++) {
+            if (data[index] != encoded[index + 2]) {
+                return false;
+            }
+        }
+        
+        return true;
+    }
+    
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(encoded);
+    }
+    
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        else if (obj instanceof NbtName) {
+            return Arrays.equals(encoded, ((NbtName) obj).encoded);
+        }
+        
+        return false;
+    }
+    
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,76 @@
+package marcono1234.structure_tools.util;
+
+/**
+ * <p>Limits for reading NBT data with the {@link NbtReader}, which protect against 
+ * malformed or malicious data allocating large amounts of memory. The limits are 
+ * checked while reading, before memory for a value is allocated, and a 
+ * {@link NbtLimitExceededException} is thrown when a limit is exceeded.</p>
+ * 
+ * <p>The limits apply to the uncompressed data. Values which are skipped only 
+ * count towards the {@linkplain #getMaxBytes() maximum number of bytes} and the 
+ * maximum depth.</p>
+ */
+public class NbtReadLimits {
+    /**
+     * Maximum nesting depth of lists and compounds used by Minecraft
+     */
+    public static final int DEFAULT_MAX_DEPTH = 512;
+    
+    /**
+     * Limits which only restrict the nesting depth to the one used by Minecraft
+     */
+    public static final NbtReadLimits UNLIMITED = new NbtReadLimits(Long.MAX_VALUE, Integer.MAX_VALUE, DEFAULT_MAX_DEPTH, Integer.MAX_VALUE);
+    
+    private final long maxBytes;
+    private final int maxListLength;
+    private final int maxDepth;
+    private final int maxStringLength;
+    
+    /**
+     * @param maxBytes
+     *      Maximum number of uncompressed bytes
+     * @param maxListLength
+     *      Maximum number of elements of lists and arrays
+     * @param maxDepth
+     *      Maximum nesting depth of lists and compounds
+     * @param maxStringLength
+     *      Maximum length of strings and names, in bytes of their modified UTF-8 
+     *      encoding
+     * @throws IllegalArgumentException
+     *      If any of the limits is negative
+     */
+    public NbtReadLimits(final long maxBytes, final int maxListLength, final int maxDepth, final int maxStringLength) throws IllegalArgumentException {
+        if (maxBytes < 0 || maxListLength < 0 || maxDepth < 0 || maxStringLength < 0) {
+            throw new IllegalArgumentException("Limits must not be negative");
+        }
+        
+        this.maxBytes = maxBytes;
+        this.maxListLength = maxListLength;
+        this.maxDepth = maxDepth;
+        this.maxStringLength = maxStringLength;
+    }
+    
+    /**
+     * Constructor used by Gson; limits which are not specified are unlimited.
+     */
+    @SuppressWarnings("unused")
+    private NbtReadLimits() {
+        this(UNLIMITED.maxBytes, UNLIMITED.maxListLength, UNLIMITED.maxDepth, UNLIMITED.maxStringLength);
+    }
+    
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+    
+    public int getMaxListLength() {
+        return maxListLength;
+    }
+    
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+    
+    public int getMaxStringLength() {
+        return maxStringLength;
+    }
+}
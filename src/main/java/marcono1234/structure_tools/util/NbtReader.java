@@ -0,0 +1,531 @@
+package marcono1234.structure_tools.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import java.util.Objects;
+
+import net.querz.nbt.ByteArrayTag;
+import net.querz.nbt.ByteTag;
+import net.querz.nbt.CompoundTag;
+import net.querz.nbt.DoubleTag;
+import net.querz.nbt.FloatTag;
+import net.querz.nbt.IntArrayTag;
+import net.querz.nbt.IntTag;
+import net.querz.nbt.ListTag;
+import net.querz.nbt.LongArrayTag;
+import net.querz.nbt.LongTag;
+import net.querz.nbt.ShortTag;
+import net.querz.nbt.StringTag;
+import net.querz.nbt.Tag;
+
+/**
+ * <p>Reader for uncompressed binary NBT data which reads the data tag by tag 
+ * instead of creating the complete tag tree. Values which are not needed can 
+ * be skipped using {@link #skipTag(byte)}, values with arbitrary content can 
+ * still be read as tag tree using {@link #readTag(byte)}.</p>
+ * 
+ * <p>The caller is responsible for reading the data in the correct order, e.g. 
+ * for a named tag first the tag ID, then the name and then the value.</p>
+ */
+public class NbtReader {
+    /**
+     * Stream which counts the read and skipped bytes and fails when the maximum 
+     * number of bytes is exceeded
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private final long maxBytes;
+        private long count;
+        /**
+         * Stream to which all read and skipped bytes are copied, or {@code null}
+         */
+        private ByteArrayOutputStream recording;
+    
+        public CountingInputStream(final InputStream in, final long maxBytes) {
+            super(in);
+            this.maxBytes = maxBytes;
+            count = 0;
+        }
+        
+        private void addCount(final long delta) throws NbtLimitExceededException {
+            if (delta > 0) {
+                count += delta;
+                
+                if (count > maxBytes) {
+                    throw new NbtLimitExceededException("maxBytes", maxBytes, count, count);
+                }
+            }
+        }
+        
+        @Override
+        public int read() throws IOException {
+            final int b = in.read();
+            
+            if (b != -1) {
+                addCount(1);
+                
+                if (recording != null) {
+                    recording.write(b);
+                }
+            }
+            
+            return b;
+        }
+        
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final int readCount = in.read(b, off, len);
+            addCount(readCount);
+            
+            if (recording != null && readCount > 0) {
+                recording.write(b, off, readCount);
+            }
+            
+            return readCount;
+        }
+        
+        @Override
+        public long skip(final long n) throws IOException {
+            if (recording != null) {
+                // Have to read the bytes to record them
+                final byte[] buffer = new byte[(int) Math.min(n, 8192)];
+                return Math.max(read(buffer, 0, buffer.length), 0);
+            }
+            
+            final long skipped = in.skip(n);
+            addCount(skipped);
+            return skipped;
+        }
+        
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+    
+    private final NbtReadLimits limits;
+    private final CountingInputStream countingStream;
+    private final DataInputStream in;
+    /**
+     * Reused buffer for names read by {@link #readName(NbtName[])}
+     */
+    private byte[] nameBuffer;
+    
+    /**
+     * @param in
+     *      Stream providing the uncompressed NBT data; should be buffered since 
+     *      most values are read with multiple single byte reads
+     * @param limits
+     *      Limits which the data must not exceed
+     */
+    public NbtReader(final InputStream in, final NbtReadLimits limits) {
+        this.limits = Objects.requireNonNull(limits);
+        countingStream = new CountingInputStream(in, limits.getMaxBytes());
+        this.in = new DataInputStream(countingStream);
+        nameBuffer = new byte[32];
+    }
+    
+    /**
+     * Creates a reader which only limits the nesting depth, see {@link NbtReadLimits#UNLIMITED}.
+     * 
+     * @param in
+     *      Stream providing the uncompressed NBT data; should be buffered since 
+     *      most values are read with multiple single byte reads
+     */
+    public NbtReader(final InputStream in) {
+        this(in, NbtReadLimits.UNLIMITED);
+    }
+    
+    /**
+     * Returns the number of uncompressed bytes which have been read or skipped so far.
+     * 
+     * @return
+     *      The number of read bytes
+     */
+    public long getPosition() {
+        return countingStream.count;
+    }
+    
+    private void verifyLimit(final String limitName, final long limit, final long actualValue) throws NbtLimitExceededException {
+        if (actualValue > limit) {
+            throw new NbtLimitExceededException(limitName, limit, actualValue, getPosition());
+        }
+    }
+    
+    /**
+     * Verifies that the given number of bytes can still be read without exceeding 
+     * the maximum number of bytes, to fail before allocating memory for them.
+     */
+    private void verifyRemainingBytes(final long bytesCount) throws NbtLimitExceededException {
+        verifyLimit("maxBytes", limits.getMaxBytes(), getPosition() + bytesCount);
+    }
+    
+    /**
+     * Reads a string in modified UTF-8 encoding, verifying its length.
+     */
+    private String readUtf() throws IOException {
+        // Strings cannot be longer than 65535 bytes, so only check when limit is lower
+        if (limits.getMaxStringLength() >= 0xFFFF) {
+            return in.readUTF();
+        }
+        
+        final int length = in.readUnsignedShort();
+        verifyLimit("maxStringLength", limits.getMaxStringLength(), length);
+        
+        // Let DataInputStream decode the data including its length
+        final byte[] data = new byte[length + 2];
+        data[0] = (byte) (length >> 8);
+        data[1] = (byte) length;
+        in.readFully(data, 2, length);
+        
+        return DataInputStream.readUTF(new DataInputStream(new ByteArrayInputStream(data)));
+    }
+    
+    public byte readTagId() throws IOException {
+        final byte tagId = in.readByte();
+        
+        if (!NbtTagId.isValid(tagId)) {
+            throw new IOException("Unknown tag ID " + tagId);
+        }
+        
+        return tagId;
+    }
+    
+    public String readName() throws IOException {
+        return readUtf();
+    }
+    
+    /**
+     * Reads a name and returns the index of the matching known name. The name is 
+     * compared in its encoded form, so unlike {@link #readName()} this does not 
+     * create a string for it.
+     * 
+     * @param knownNames
+     *      Names to compare the read name with
+     * @return
+     *      Index of the matching name, or -1 if the name matches none of them
+     * @throws IOException
+     *      If reading fails
+     */
+    public int readName(final NbtName[] knownNames) throws IOException {
+        final int length = in.readUnsignedShort();
+        
+        if (limits.getMaxStringLength() < 0xFFFF) {
+            verifyLimit("maxStringLength", limits.getMaxStringLength(), length);
+        }
+        
+        if (length > nameBuffer.length) {
+            nameBuffer = new byte[Math.max(length, nameBuffer.length * 2)];
+        }
+        in.readFully(nameBuffer, 0, length);
+        
+        for (int index = 0; index < knownNames.length; index++) {
+            if (knownNames[index].matches(nameBuffer, length)) {
+                return index;
+            }
+        }
+        
+        return -1;
+    }
+    
+    public void skipName() throws IOException {
+        skipFully(in.readUnsignedShort());
+    }
+    
+    public byte readByte() throws IOException {
+        return in.readByte();
+    }
+    
+    public short readShort() throws IOException {
+        return in.readShort();
+    }
+    
+    public int readInt() throws IOException {
+        return in.readInt();
+    }
+    
+    public long readLong() throws IOException {
+        return in.readLong();
+    }
+    
+    public float readFloat() throws IOException {
+        return in.readFloat();
+    }
+    
+    public double readDouble() throws IOException {
+        return in.readDouble();
+    }
+    
+    public String readString() throws IOException {
+        return readUtf();
+    }
+    
+    private int readLength() throws IOException {
+        final int length = in.readInt();
+        
+        if (length < 0) {
+            throw new IOException("Negative length " + length);
+        }
+        
+        verifyLimit("maxListLength", limits.getMaxListLength(), length);
+        // Every element takes at least one byte
+        verifyRemainingBytes(length);
+        
+        return length;
+    }
+    
+    /**
+     * Reads the header of a list value, that is the element tag ID and the length, 
+     * and verifies that the elements have the expected type. Empty lists are allowed 
+     * to have any element type since Minecraft writes {@code TAG_End} for them.
+     * 
+     * @param name
+     *      Name of the list tag, only used for the exception message
+     * @param expectedElementId
+     *      The expected tag ID of the elements
+     * @return
+     *      The length of the list
+     * @throws IOException
+     *      If reading fails or the elements have a different type
+     */
+    public int readListHeader(final String name, final byte expectedElementId) throws IOException {
+        final byte elementId = readTagId();
+        final int length = readLength();
+        
+        if (length > 0) {
+            NbtTagId.verify(name + "[]", expectedElementId, elementId);
+        }
+        
+        return length;
+    }
+    
+    /**
+     * Reads the value of a compound tag, that is all entries until the 
+     * {@code TAG_End}.
+     * 
+     * @return
+     *      The read compound
+     * @throws IOException
+     *      If reading fails or the data is malformed
+     */
+    public CompoundTag readCompound() throws IOException {
+        return readCompound(1);
+    }
+    
+    /**
+     * Reads the value of a compound tag in serialized form, without creating 
+     * a tag tree. The data is validated the same way {@link #readCompound()} 
+     * validates it.
+     * 
+     * @return
+     *      The read compound in serialized form
+     * @throws IOException
+     *      If reading fails or the data is malformed
+     */
+    public RawNbt readRawCompound() throws IOException {
+        if (countingStream.recording != null) {
+            throw new IllegalStateException("Already reading raw compound");
+        }
+        
+        countingStream.recording = new ByteArrayOutputStream();
+        
+        try {
+            skipTag(NbtTagId.COMPOUND, 1);
+            return new RawNbt(countingStream.recording.toByteArray());
+        }
+        finally {
+            countingStream.recording = null;
+        }
+    }
+    
+    /**
+     * Reads the value of a tag with the given ID as tag tree.
+     * 
+     * @param tagId
+     *      ID of the tag whose value should be read
+     * @return
+     *      The read tag
+     * @throws IOException
+     *      If reading fails or the data is malformed
+     */
+    public Tag<?> readTag(final byte tagId) throws IOException {
+        return readTag(tagId, 0);
+    }
+    
+    private void verifyDepth(final int depth) throws IOException {
+        verifyLimit("maxDepth", limits.getMaxDepth(), depth);
+    }
+    
+    private CompoundTag readCompound(final int depth) throws IOException {
+        verifyDepth(depth);
+        final CompoundTag compound = new CompoundTag();
+        
+        for (byte tagId = readTagId(); tagId != NbtTagId.END; tagId = readTagId()) {
+            final String name = readName();
+            compound.put(name, readTag(tagId, depth + 1));
+        }
+        
+        return compound;
+    }
+    
+    private Tag<?> readTag(final byte tagId, final int depth) throws IOException {
+        switch (tagId) {
+            case NbtTagId.BYTE:
+                return new ByteTag(readByte());
+            case NbtTagId.SHORT:
+                return new ShortTag(readShort());
+            case NbtTagId.INT:
+                return new IntTag(readInt());
+            case NbtTagId.LONG:
+                return new LongTag(readLong());
+            case NbtTagId.FLOAT:
+                return new FloatTag(readFloat());
+            case NbtTagId.DOUBLE:
+                return new DoubleTag(readDouble());
+            case NbtTagId.BYTE_ARRAY: {
+                final int length = readLength();
+                verifyRemainingBytes(length);
+                final byte[] value = new byte[length];
+                in.readFully(value);
+                
+                return new ByteArrayTag(value);
+            }
+            case NbtTagId.STRING:
+                return new StringTag(readString());
+            case NbtTagId.LIST: {
+                verifyDepth(depth);
+                final byte elementId = readTagId();
+                final int length = readLength();
+                
+                if (elementId == NbtTagId.END && length > 0) {
+                    throw new IOException("Non-empty list has element type " + NbtTagId.getName(NbtTagId.END));
+                }
+                
+                final ListTag<Tag<?>> list = new ListTag<>();
+                
+                for (int index = 0; index < length; index++) {
+                    list.add(readTag(elementId, depth + 1));
+                }
+                
+                return list;
+            }
+            case NbtTagId.COMPOUND:
+                return readCompound(depth);
+            case NbtTagId.INT_ARRAY: {
+                final int length = readLength();
+                verifyRemainingBytes((long) length * Integer.BYTES);
+                final int[] value = new int[length];
+                
+                for (int index = 0; index < value.length; index++) {
+                    value[index] = readInt();
+                }
+                
+                return new IntArrayTag(value);
+            }
+            case NbtTagId.LONG_ARRAY: {
+                final int length = readLength();
+                verifyRemainingBytes((long) length * Long.BYTES);
+                final long[] value = new long[length];
+                
+                for (int index = 0; index < value.length; index++) {
+                    value[index] = readLong();
+                }
+                
+                return new LongArrayTag(value);
+            }
+            default:
+                throw new IOException("Cannot read value of " + NbtTagId.getName(tagId));
+        }
+    }
+    
+    /**
+     * Skips the value of a tag with the given ID without creating any objects 
+     * for it.
+     * 
+     * @param tagId
+     *      ID of the tag whose value should be skipped
+     * @throws IOException
+     *      If reading fails or the data is malformed
+     */
+    public void skipTag(final byte tagId) throws IOException {
+        skipTag(tagId, 0);
+    }
+    
+    private void skipTag(final byte tagId, final int depth) throws IOException {
+        switch (tagId) {
+            case NbtTagId.BYTE:
+                skipFully(Byte.BYTES);
+                break;
+            case NbtTagId.SHORT:
+                skipFully(Short.BYTES);
+                break;
+            case NbtTagId.INT:
+            case NbtTagId.FLOAT:
+                skipFully(Integer.BYTES);
+                break;
+            case NbtTagId.LONG:
+            case NbtTagId.DOUBLE:
+                skipFully(Long.BYTES);
+                break;
+            case NbtTagId.BYTE_ARRAY:
+                skipFully(readLength());
+                break;
+            case NbtTagId.STRING:
+                skipName();
+                break;
+            case NbtTagId.LIST: {
+                verifyDepth(depth);
+                final byte elementId = readTagId();
+                final int length = readLength();
+                
+                if (elementId == NbtTagId.END && length > 0) {
+                    throw new IOException("Non-empty list has element type " + NbtTagId.getName(NbtTagId.END));
+                }
+                
+                for (int index = 0; index < length; index++) {
+                    skipTag(elementId, depth + 1);
+                }
+                break;
+            }
+            case NbtTagId.COMPOUND:
+                verifyDepth(depth);
+                
+                for (byte entryId = readTagId(); entryId != NbtTagId.END; entryId = readTagId()) {
+                    skipName();
+                    skipTag(entryId, depth + 1);
+                }
+                break;
+            case NbtTagId.INT_ARRAY:
+                skipFully((long) readLength() * Integer.BYTES);
+                break;
+            case NbtTagId.LONG_ARRAY:
+                skipFully((long) readLength() * Long.BYTES);
+                break;
+            default:
+                throw new IOException("Cannot skip value of " + NbtTagId.getName(tagId));
+        }
+    }
+    
+    private void skipFully(final long bytesCount) throws IOException {
+        long remaining = bytesCount;
+        
+        while (remaining > 0) {
+            final long skipped = in.skip(remaining);
+            
+            if (skipped > 0) {
+                remaining -= skipped;
+            }
+            // skip(long) might return 0 without having reached the end
+            else if (in.read() == -1) {
+                throw new EOFException();
+            }
+            else {
+                remaining--;
+            }
+        }
+    }
+}
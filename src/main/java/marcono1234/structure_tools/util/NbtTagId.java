@@ -0,0 +1,76 @@
+package marcono1234.structure_tools.util;
+
+import java.io.IOException;
+
+/**
+ * IDs of the NBT tag types as used in the binary NBT format.
+ */
+public final class NbtTagId {
+    private NbtTagId() { }
+    
+    public static final byte END = 0;
+    public static final byte BYTE = 1;
+    public static final byte SHORT = 2;
+    public static final byte INT = 3;
+    public static final byte LONG = 4;
+    public static final byte FLOAT = 5;
+    public static final byte DOUBLE = 6;
+    public static final byte BYTE_ARRAY = 7;
+    public static final byte STRING = 8;
+    public static final byte LIST = 9;
+    public static final byte COMPOUND = 10;
+    public static final byte INT_ARRAY = 11;
+    public static final byte LONG_ARRAY = 12;
+    
+    private static final String[] TAG_NAMES = {
+        "TAG_End",
+        "TAG_Byte",
+        "TAG_Short",
+        "TAG_Int",
+        "TAG_Long",
+        "TAG_Float",
+        "TAG_Double",
+        "TAG_Byte_Array",
+        "TAG_String",
+        "TAG_List",
+        "TAG_Compound",
+        "TAG_Int_Array",
+        "TAG_Long_Array"
+    };
+    
+    public static boolean isValid(final byte tagId) {
+        return tagId >= END && tagId <= LONG_ARRAY;
+    }
+    
+    public static String getName(final byte tagId) {
+        if (isValid(tagId)) {
+            return TAG_NAMES[tagId];
+        }
+        else {
+            return "unknown tag " + tagId;
+        }
+    }
+    
+    /**
+     * Verifies that the tag with the given name has the expected tag ID.
+     * 
+     * @param name
+     *      Name of the tag, only used for the exception message
+     * @param expectedId
+     *      The expected tag ID
+     * @param actualId
+     *      The actual tag ID
+     * @throws IOException
+     *      If the tag IDs differ
+     */
+    public static void verify(final String name, final byte expectedId, final byte actualId) throws IOException {
+        if (actualId != expectedId) {
+            throw new IOException(String.format(
+                "Expected tag '%s' to be %s, but was %s",
+                name,
+                getName(expectedId),
+                getName(actualId)
+            ));
+        }
+    }
+}
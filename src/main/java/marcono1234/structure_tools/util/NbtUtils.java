@@ -1,8 +1,10 @@
 package marcono1234.structure_tools.util;
 
 import java.util.List;
+import java.util.RandomAccess;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.StreamSupport;
 
 import net.querz.nbt.ListTag;
@@ -11,13 +13,62 @@ import net.querz.nbt.Tag;
 public final class NbtUtils {
     private NbtUtils() { }
     
+    /**
+     * Minimum number of elements of a list for which its elements are converted 
+     * in parallel. For smaller lists the overhead of splitting them outweighs 
+     * the gain.
+     */
+    public static final int PARALLEL_THRESHOLD = 4096;
+    
+    /**
+     * <p>Converts the elements of the given list to tags and returns them as list tag.</p>
+     * 
+     * <p>Large lists are split into chunks which are converted in parallel on the 
+     * common fork-join pool, therefore the converter must be thread-safe. The order 
+     * of the elements is the same in all cases.</p>
+     * 
+     * @param list
+     *      List whose elements should be converted
+     * @param converter
+     *      Function converting an element to a tag
+     * @return
+     *      The list tag containing the converted elements
+     */
     public static <T, R extends Tag<?>> ListTag<R> toNbtList(final List<T> list, final Function<T, R> converter) {
+        if (list.size() >= PARALLEL_THRESHOLD && list instanceof RandomAccess) {
+            // Ordered stream; the collector combines the chunks in encounter order
+            return IntStream.range(0, list.size()).parallel()
+                .mapToObj(index -> converter.apply(list.get(index)))
+                .collect(NbtCollectors.toList());
+        }
+        
         return list.stream()
             .map(converter)
             .collect(NbtCollectors.toList());
     }
     
+    /**
+     * <p>Converts the elements of the given list tag and returns them as list.</p>
+     * 
+     * <p>Large lists are split into chunks which are converted in parallel on the 
+     * common fork-join pool, therefore the converter must be thread-safe. The order 
+     * of the elements is the same in all cases.</p>
+     * 
+     * @param list
+     *      List tag whose elements should be converted
+     * @param converter
+     *      Function converting a tag to an element
+     * @return
+     *      The list containing the converted elements
+     */
     public static <T extends Tag<?>, R> List<R> fromNbtList(final ListTag<T> list, final Function<T, R> converter) {
+        if (list.size() >= PARALLEL_THRESHOLD) {
+            // The spliterator of ListTag does not split well, so split by index instead
+            return IntStream.range(0, list.size()).parallel()
+                .mapToObj(index -> converter.apply(list.get(index)))
+                .collect(Collectors.toList());
+        }
+        
         return StreamSupport.stream(list.spliterator(), false)
             .map(converter)
             .collect(Collectors.toList());
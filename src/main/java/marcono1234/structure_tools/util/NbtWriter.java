@@ -0,0 +1,236 @@
+package marcono1234.structure_tools.util;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+import net.querz.nbt.ByteArrayTag;
+import net.querz.nbt.ByteTag;
+import net.querz.nbt.CompoundTag;
+import net.querz.nbt.DoubleTag;
+import net.querz.nbt.FloatTag;
+import net.querz.nbt.IntArrayTag;
+import net.querz.nbt.IntTag;
+import net.querz.nbt.ListTag;
+import net.querz.nbt.LongArrayTag;
+import net.querz.nbt.LongTag;
+import net.querz.nbt.ShortTag;
+import net.querz.nbt.StringTag;
+import net.querz.nbt.Tag;
+
+/**
+ * <p>Writer for uncompressed binary NBT data which writes the data tag by tag 
+ * instead of requiring the complete tag tree. Values with arbitrary content 
+ * can still be written from a tag tree using {@link #writeTag(Tag)}.</p>
+ * 
+ * <p>The caller is responsible for writing the data in the correct order, e.g. 
+ * for a named tag first the header using {@link #writeTagHeader(byte, String)} 
+ * and then the value, and for compounds a {@link #writeEnd() TAG_End} after 
+ * the last entry.</p>
+ */
+public class NbtWriter {
+    private final DataOutputStream out;
+    
+    /**
+     * @param out
+     *      Stream to write the uncompressed NBT data to; should be buffered since 
+     *      most values are written with multiple single byte writes
+     */
+    public NbtWriter(final OutputStream out) {
+        this.out = new DataOutputStream(out);
+    }
+    
+    /**
+     * Writes the header of a named tag, that is the tag ID and the name.
+     * 
+     * @param tagId
+     *      ID of the tag
+     * @param name
+     *      Name of the tag
+     * @throws IOException
+     *      If writing fails
+     */
+    public void writeTagHeader(final byte tagId, final String name) throws IOException {
+        out.writeByte(tagId);
+        out.writeUTF(name);
+    }
+    
+    /**
+     * Writes the header of a named tag using a pre-encoded name.
+     * 
+     * @param tagId
+     *      ID of the tag
+     * @param name
+     *      Name of the tag
+     * @throws IOException
+     *      If writing fails
+     */
+    public void writeTagHeader(final byte tagId, final NbtName name) throws IOException {
+        out.writeByte(tagId);
+        out.write(name.getEncoded());
+    }
+    
+    /**
+     * Writes the {@code TAG_End} which ends a compound.
+     * 
+     * @throws IOException
+     *      If writing fails
+     */
+    public void writeEnd() throws IOException {
+        out.writeByte(NbtTagId.END);
+    }
+    
+    /**
+     * Writes the header of a list value. Afterwards exactly {@code length} values 
+     * of the given element type have to be written.
+     * 
+     * @param elementId
+     *      ID of the element tags
+     * @param length
+     *      Length of the list
+     * @throws IOException
+     *      If writing fails
+     */
+    public void writeListHeader(final byte elementId, final int length) throws IOException {
+        // Same as Minecraft, use TAG_End as element type for empty lists
+        out.writeByte(length == 0 ? NbtTagId.END : elementId);
+        out.writeInt(length);
+    }
+    
+    public void writeByte(final byte value) throws IOException {
+        out.writeByte(value);
+    }
+    
+    public void writeShort(final short value) throws IOException {
+        out.writeShort(value);
+    }
+    
+    public void writeInt(final int value) throws IOException {
+        out.writeInt(value);
+    }
+    
+    public void writeLong(final long value) throws IOException {
+        out.writeLong(value);
+    }
+    
+    public void writeFloat(final float value) throws IOException {
+        out.writeFloat(value);
+    }
+    
+    public void writeDouble(final double value) throws IOException {
+        out.writeDouble(value);
+    }
+    
+    public void writeString(final String value) throws IOException {
+        out.writeUTF(value);
+    }
+    
+    /**
+     * Writes the value of a compound tag including the {@code TAG_End}.
+     * 
+     * @param compound
+     *      The compound to write
+     * @throws IOException
+     *      If writing fails
+     */
+    public void writeCompound(final CompoundTag compound) throws IOException {
+        for (final Map.Entry<String, Tag<?>> entry : compound.entrySet()) {
+            final Tag<?> tag = entry.getValue();
+            writeTagHeader(tag.getID(), entry.getKey());
+            writeTag(tag);
+        }
+        
+        writeEnd();
+    }
+    
+    /**
+     * Writes the value of a compound tag in serialized form, including the 
+     * {@code TAG_End}.
+     * 
+     * @param compound
+     *      The serialized compound to write
+     * @throws IOException
+     *      If writing fails
+     */
+    public void writeRawCompound(final RawNbt compound) throws IOException {
+        out.write(compound.getData());
+    }
+    
+    /**
+     * Writes the value of the given tag, without tag ID and name.
+     * 
+     * @param tag
+     *      The tag whose value should be written
+     * @throws IOException
+     *      If writing fails
+     */
+    public void writeTag(final Tag<?> tag) throws IOException {
+        switch (tag.getID()) {
+            case NbtTagId.BYTE:
+                writeByte(((ByteTag) tag).asByte());
+                break;
+            case NbtTagId.SHORT:
+                writeShort(((ShortTag) tag).asShort());
+                break;
+            case NbtTagId.INT:
+                writeInt(((IntTag) tag).asInt());
+                break;
+            case NbtTagId.LONG:
+                writeLong(((LongTag) tag).asLong());
+                break;
+            case NbtTagId.FLOAT:
+                writeFloat(((FloatTag) tag).asFloat());
+                break;
+            case NbtTagId.DOUBLE:
+                writeDouble(((DoubleTag) tag).asDouble());
+                break;
+            case NbtTagId.BYTE_ARRAY: {
+                final byte[] value = ((ByteArrayTag) tag).getValue();
+                out.writeInt(value.length);
+                out.write(value);
+                break;
+            }
+            case NbtTagId.STRING:
+                writeString(((StringTag) tag).getValue());
+                break;
+            case NbtTagId.LIST: {
+                final ListTag<?> list = (ListTag<?>) tag;
+                final int length = list.size();
+                writeListHeader(length == 0 ? NbtTagId.END : list.get(0).getID(), length);
+                
+                for (final Tag<?> element : list) {
+                    writeTag(element);
+                }
+                break;
+            }
+            case NbtTagId.COMPOUND:
+                writeCompound((CompoundTag) tag);
+                break;
+            case NbtTagId.INT_ARRAY: {
+                final int[] value = ((IntArrayTag) tag).getValue();
+                out.writeInt(value.length);
+                
+                for (final int element : value) {
+                    writeInt(element);
+                }
+                break;
+            }
+            case NbtTagId.LONG_ARRAY: {
+                final long[] value = ((LongArrayTag) tag).getValue();
+                out.writeInt(value.length);
+                
+                for (final long element : value) {
+                    writeLong(element);
+                }
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Cannot write value of " + NbtTagId.getName(tag.getID()));
+        }
+    }
+    
+    public void flush() throws IOException {
+        out.flush();
+    }
+}
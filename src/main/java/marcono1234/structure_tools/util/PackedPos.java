@@ -0,0 +1,131 @@
+package marcono1234.structure_tools.util;
+
+/**
+ * <p>Codec for block positions packed into a single long, 21 bits per coordinate, 
+ * X in the most significant bits. Coordinates are stored in two's complement, so 
+ * each coordinate can be in the range [-2<sup>20</sup>, 2<sup>20</sup> - 1].</p>
+ * 
+ * <p>Packed positions allow storing and processing positions on primitives without 
+ * creating an {@link Int3D} for every block; {@code Int3D} is only needed at API 
+ * boundaries.</p>
+ */
+public final class PackedPos {
+    private PackedPos() { }
+    
+    private static final int COORDINATE_BITS = 21;
+    private static final long COORDINATE_MASK = (1L << COORDINATE_BITS) - 1;
+    public static final int MIN_COORDINATE = -(1 << (COORDINATE_BITS - 1));
+    public static final int MAX_COORDINATE = (1 << (COORDINATE_BITS - 1)) - 1;
+    
+    private static final int X_SHIFT = 2 * COORDINATE_BITS;
+    private static final int Y_SHIFT = COORDINATE_BITS;
+    private static final int Z_SHIFT = 0;
+    
+    public static boolean isPackable(final int coordinate) {
+        return coordinate >= MIN_COORDINATE && coordinate <= MAX_COORDINATE;
+    }
+    
+    /**
+     * @throws IllegalArgumentException
+     *      If any of the coordinates does not fit into 21 bits
+     */
+    public static long pack(final int x, final int y, final int z) throws IllegalArgumentException {
+        if (!isPackable(x) || !isPackable(y) || !isPackable(z)) {
+            throw new IllegalArgumentException(String.format("Position %s cannot be packed", new Int3D(x, y, z)));
+        }
+        
+        return ((x & COORDINATE_MASK) << X_SHIFT)
+            | ((y & COORDINATE_MASK) << Y_SHIFT)
+            | ((z & COORDINATE_MASK) << Z_SHIFT);
+    }
+    
+    /**
+     * @throws IllegalArgumentException
+     *      If any of the coordinates does not fit into 21 bits
+     */
+    public static long pack(final Int3D pos) throws IllegalArgumentException {
+        return pack(pos.getX(), pos.getY(), pos.getZ());
+    }
+    
+    private static int unpackCoordinate(final long packedPos, final int shift) {
+        // Shift left first to restore sign with arithmetic shift right
+        return (int) ((packedPos << (Long.SIZE - COORDINATE_BITS - shift)) >> (Long.SIZE - COORDINATE_BITS));
+    }
+    
+    public static int unpackX(final long packedPos) {
+        return unpackCoordinate(packedPos, X_SHIFT);
+    }
+    
+    public static int unpackY(final long packedPos) {
+        return unpackCoordinate(packedPos, Y_SHIFT);
+    }
+    
+    public static int unpackZ(final long packedPos) {
+        return unpackCoordinate(packedPos, Z_SHIFT);
+    }
+    
+    public static Int3D unpack(final long packedPos) {
+        return new Int3D(unpackX(packedPos), unpackY(packedPos), unpackZ(packedPos));
+    }
+    
+    /**
+     * Adds the offsets to the coordinates of the packed position.
+     * 
+     * @param packedPos
+     *      The packed position
+     * @param x
+     *      Offset to add to the X coordinate
+     * @param y
+     *      Offset to add to the Y coordinate
+     * @param z
+     *      Offset to add to the Z coordinate
+     * @return
+     *      The packed resulting position
+     * @throws IllegalArgumentException
+     *      If any of the resulting coordinates does not fit into 21 bits
+     */
+    public static long add(final long packedPos, final int x, final int y, final int z) throws IllegalArgumentException {
+        // Add as long to detect overflow of the int range as well
+        final long newX = (long) unpackX(packedPos) + x;
+        final long newY = (long) unpackY(packedPos) + y;
+        final long newZ = (long) unpackZ(packedPos) + z;
+        
+        if (newX != (int) newX || newY != (int) newY || newZ != (int) newZ) {
+            throw new IllegalArgumentException(String.format("Position %s + [x=%d, y=%d, z=%d] cannot be packed", unpack(packedPos), x, y, z));
+        }
+        
+        return pack((int) newX, (int) newY, (int) newZ);
+    }
+    
+    /**
+     * Returns whether all coordinates of the packed position are >= 0 and &lt; the 
+     * respective size coordinate.
+     */
+    public static boolean isWithin(final long packedPos, final int sizeX, final int sizeY, final int sizeZ) {
+        final int x = unpackX(packedPos);
+        final int y = unpackY(packedPos);
+        final int z = unpackZ(packedPos);
+        
+        return x >= 0 && x < sizeX
+            && y >= 0 && y < sizeY
+            && z >= 0 && z < sizeZ;
+    }
+    
+    /**
+     * Compares two packed positions by Y, then X, then Z coordinate, which is the 
+     * order in which Minecraft writes the blocks of a structure.
+     */
+    public static int compare(final long packedPos1, final long packedPos2) {
+        int result = Integer.compare(unpackY(packedPos1), unpackY(packedPos2));
+        
+        if (result == 0) {
+            result = Integer.compare(unpackX(packedPos1), unpackX(packedPos2));
+            
+            if (result == 0) {
+                result = Integer.compare(unpackZ(packedPos1), unpackZ(packedPos2));
+            }
+        }
+        
+        return result;
+    }
+}
@@ -0,0 +1,301 @@
+package marcono1234.structure_tools.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * <p>Output stream which writes GZIP compressed data, compressing blocks of the 
+ * data in parallel, similar to <a href="https://zlib.net/pigz/">pigz</a>.</p>
+ * 
+ * <p>The data is split into blocks of a fixed size which are deflated independently 
+ * on an executor. Each block uses the last 32 KiB of the preceding block as 
+ * dictionary and, except for the last block, ends with a sync flush so the 
+ * compressed blocks can simply be concatenated. The result is a single regular 
+ * GZIP member which can be read by any GZIP implementation, including 
+ * Minecraft.</p>
+ * 
+ * <p>This stream is not thread-safe; only the compression happens on other 
+ * threads.</p>
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+    /**
+     * Default block size, same as the one used by pigz
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+    
+    /**
+     * Maximum size of the dictionary supported by deflate
+     */
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final byte[] HEADER = {
+        0x1f, (byte) 0x8b, // Magic number
+        Deflater.DEFLATED, // Compression method
+        0, // Flags
+        0, 0, 0, 0, // Modification time
+        0, // Extra flags
+        0 // Operating system, same as java.util.zip.GZIPOutputStream
+    };
+    
+    private final OutputStream out;
+    private final int compressionLevel;
+    private final int blockSize;
+    private final ExecutorService executor;
+    /**
+     * Maximum number of blocks which are compressed or waiting to be written at 
+     * the same time; limits memory usage if compression is slower than producing 
+     * data
+     */
+    private final int maxPendingBlocks;
+    private final Queue<Future<byte[]>> pendingBlocks;
+    private final CRC32 crc;
+    
+    private byte[] block;
+    private int blockLength;
+    private byte[] previousBlock;
+    private long uncompressedLength;
+    private boolean wroteHeader;
+    private boolean finished;
+    
+    /**
+     * @param out
+     *      Stream to write the compressed data to
+     * @param compressionLevel
+     *      Deflate compression level, 0 - 9 or {@link Deflater#DEFAULT_COMPRESSION}
+     * @param blockSize
+     *      Size of the blocks which are compressed in parallel, should be larger 
+     *      than 32 KiB for good compression
+     * @param executor
+     *      Executor to compress the blocks on
+     * @throws IllegalArgumentException
+     *      If the compression level or the block size is invalid
+     */
+    public ParallelGzipOutputStream(final OutputStream out, final int compressionLevel, final int blockSize, final ExecutorService executor) throws IllegalArgumentException {
+        if ((compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) && compressionLevel != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level " + compressionLevel);
+        }
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Invalid block size " + blockSize);
+        }
+        
+        this.out = out;
+        this.compressionLevel = compressionLevel;
+        this.blockSize = blockSize;
+        this.executor = executor;
+        maxPendingBlocks = 2 * Runtime.getRuntime().availableProcessors();
+        pendingBlocks = new ArrayDeque<>(maxPendingBlocks);
+        crc = new CRC32();
+        
+        block = new byte[blockSize];
+        blockLength = 0;
+        previousBlock = null;
+        uncompressedLength = 0;
+        wroteHeader = false;
+        finished = false;
+    }
+    
+    /**
+     * Creates a stream which compresses the blocks on the {@link ForkJoinPool#commonPool() common pool}.
+     * 
+     * @param out
+     *      Stream to write the compressed data to
+     * @param compressionLevel
+     *      Deflate compression level, 0 - 9 or {@link Deflater#DEFAULT_COMPRESSION}
+     * @param blockSize
+     *      Size of the blocks which are compressed in parallel
+     * @throws IllegalArgumentException
+     *      If the compression level or the block size is invalid
+     */
+    public ParallelGzipOutputStream(final OutputStream out, final int compressionLevel, final int blockSize) throws IllegalArgumentException {
+        this(out, compressionLevel, blockSize, ForkJoinPool.commonPool());
+    }
+    
+    public ParallelGzipOutputStream(final OutputStream out) {
+        this(out, Deflater.DEFAULT_COMPRESSION, DEFAULT_BLOCK_SIZE);
+    }
+    
+    private void verifyNotFinished() throws IOException {
+        if (finished) {
+            throw new IOException("Stream is already finished");
+        }
+    }
+    
+    @Override
+    public void write(final int b) throws IOException {
+        verifyNotFinished();
+        block[blockLength++] = (byte) b;
+        
+        if (blockLength == blockSize) {
+            submitBlock(false);
+        }
+    }
+    
+    @Override
+    public void write(final byte[] b, int off, int len) throws IOException {
+        verifyNotFinished();
+        
+        if (off < 0 || len < 0 || off + len > b.length || off + len < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        
+        while (len > 0) {
+            final int copyLength = Math.min(len, blockSize - blockLength);
+            System.arraycopy(b, off, block, blockLength, copyLength);
+            blockLength += copyLength;
+            off += copyLength;
+            len -= copyLength;
+            
+            if (blockLength == blockSize) {
+                submitBlock(false);
+            }
+        }
+    }
+    
+    private void submitBlock(final boolean isLast) throws IOException {
+        final byte[] data = block;
+        final int length = blockLength;
+        final byte[] dictionary = previousBlock;
+        
+        crc.update(data, 0, length);
+        uncompressedLength += length;
+        
+        if (pendingBlocks.size() >= maxPendingBlocks) {
+            writeCompressedBlock(pendingBlocks.remove());
+        }
+        
+        pendingBlocks.add(executor.submit(() -> compressBlock(data, length, dictionary, isLast)));
+        
+        previousBlock = data;
+        // Submitted block is used by the task, so have to use a new one
+        block = isLast ? null : new byte[blockSize];
+        blockLength = 0;
+    }
+    
+    private byte[] compressBlock(final byte[] data, final int length, final byte[] dictionary, final boolean isLast) {
+        // Raw deflate data without zlib header, GZIP header is written separately
+        final Deflater deflater = CodecPool.acquireDeflater(compressionLevel);
+        final byte[] buffer = CodecPool.acquireBuffer();
+        
+        try {
+            if (dictionary != null) {
+                final int dictionaryLength = Math.min(DICTIONARY_SIZE, dictionary.length);
+                deflater.setDictionary(dictionary, dictionary.length - dictionaryLength, dictionaryLength);
+            }
+            
+            deflater.setInput(data, 0, length);
+            
+            final ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+            
+            if (isLast) {
+                deflater.finish();
+                
+                while (!deflater.finished()) {
+                    compressed.write(buffer, 0, deflater.deflate(buffer));
+                }
+            }
+            else {
+                int compressedLength;
+                
+                // Sync flush makes sure all data is written and ends on a byte boundary
+                do {
+                    compressedLength = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    compressed.write(buffer, 0, compressedLength);
+                } while (compressedLength == buffer.length);
+            }
+            
+            return compressed.toByteArray();
+        }
+        finally {
+            // Compression runs on the executor threads, so each of them has its own pool
+            CodecPool.releaseDeflater(deflater, compressionLevel);
+            CodecPool.releaseBuffer(buffer);
+        }
+    }
+    
+    private void writeHeaderIfNeeded() throws IOException {
+        if (!wroteHeader) {
+            wroteHeader = true;
+            out.write(HEADER);
+        }
+    }
+    
+    private void writeCompressedBlock(final Future<byte[]> compressedBlock) throws IOException {
+        final byte[] compressedData;
+        
+        try {
+            compressedData = compressedBlock.get();
+        }
+        catch (final InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for compression");
+        }
+        catch (final ExecutionException executionException) {
+            throw new IOException("Compression failed", executionException.getCause());
+        }
+        
+        writeHeaderIfNeeded();
+        out.write(compressedData);
+    }
+    
+    private void writePendingBlocks() throws IOException {
+        while (!pendingBlocks.isEmpty()) {
+            writeCompressedBlock(pendingBlocks.remove());
+        }
+    }
+    
+    private void writeIntLittleEndian(final int value) throws IOException {
+        out.write(value & 0xFF);
+        out.write((value >> 8) & 0xFF);
+        out.write((value >> 16) & 0xFF);
+        out.write((value >> 24) & 0xFF);
+    }
+    
+    /**
+     * Writes all blocks which have been completely filled so far and flushes 
+     * the underlying stream. The data of the current block is not flushed since 
+     * that would require ending the block early.
+     */
+    @Override
+    public void flush() throws IOException {
+        writePendingBlocks();
+        out.flush();
+    }
+    
+    /**
+     * Finishes writing the compressed data without closing the underlying stream.
+     * 
+     * @throws IOException
+     *      If writing fails
+     */
+    public void finish() throws IOException {
+        if (!finished) {
+            submitBlock(true);
+            finished = true;
+            
+            writePendingBlocks();
+            writeIntLittleEndian((int) crc.getValue());
+            // GZIP stores the length modulo 2^32
+            writeIntLittleEndian((int) uncompressedLength);
+            out.flush();
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        }
+        finally {
+            out.close();
+        }
+    }
+}
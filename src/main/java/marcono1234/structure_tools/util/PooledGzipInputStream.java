@@ -0,0 +1,318 @@
+package marcono1234.structure_tools.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * <p>Input stream which decompresses GZIP data, behaving like {@link GZIPInputStream} 
+ * (including support for multiple concatenated GZIP members and ignoring trailing 
+ * garbage after a member). The inflater and the input and output buffers are 
+ * acquired from the {@link CodecPool} and released when the stream is closed.</p>
+ * 
+ * <p>The decompressed data is buffered, so wrapping this stream in a 
+ * {@link java.io.BufferedInputStream} is not necessary.</p>
+ */
+public class PooledGzipInputStream extends InputStream {
+    private static final int FLAG_HEADER_CRC = 2;
+    private static final int FLAG_EXTRA = 4;
+    private static final int FLAG_NAME = 8;
+    private static final int FLAG_COMMENT = 16;
+    
+    private final InputStream in;
+    private Inflater inflater;
+    private byte[] inputBuffer;
+    /**
+     * Position of the first byte in the input buffer which has not been consumed yet
+     */
+    private int inputPos;
+    private int inputLength;
+    private byte[] outputBuffer;
+    private int outputPos;
+    private int outputLength;
+    private final CRC32 crc;
+    private boolean isEof;
+    
+    /**
+     * Creates the stream and reads the header of the first GZIP member.
+     * 
+     * @param in
+     *      Stream providing the compressed data
+     * @throws ZipException
+     *      If the data is not in GZIP format
+     * @throws IOException
+     *      If reading the header fails
+     */
+    public PooledGzipInputStream(final InputStream in) throws IOException {
+        this.in = in;
+        inflater = CodecPool.acquireInflater();
+        inputBuffer = CodecPool.acquireBuffer();
+        outputBuffer = CodecPool.acquireBuffer();
+        crc = new CRC32();
+        isEof = false;
+        
+        try {
+            if (!readHeader()) {
+                throw new EOFException();
+            }
+        }
+        catch (final IOException ioException) {
+            releaseResources();
+            throw ioException;
+        }
+    }
+    
+    private void ensureOpen() throws IOException {
+        if (inflater == null) {
+            throw new IOException("Stream closed");
+        }
+    }
+    
+    /**
+     * Reads an unsigned byte of the raw data, returns -1 if the end of the data 
+     * has been reached.
+     */
+    private int readRawByte() throws IOException {
+        if (inputPos == inputLength) {
+            final int readCount = in.read(inputBuffer);
+            
+            if (readCount <= 0) {
+                return -1;
+            }
+            
+            inputPos = 0;
+            inputLength = readCount;
+        }
+        
+        return inputBuffer[inputPos++] & 0xFF;
+    }
+    
+    private int readRawByteOrThrow() throws IOException {
+        final int b = readRawByte();
+        
+        if (b == -1) {
+            throw new EOFException("Unexpected end of GZIP data");
+        }
+        
+        return b;
+    }
+    
+    private int readRawUnsignedShort() throws IOException {
+        return readRawByteOrThrow() | (readRawByteOrThrow() << 8);
+    }
+    
+    private long readRawUnsignedInt() throws IOException {
+        return readRawUnsignedShort() | ((long) readRawUnsignedShort() << 16);
+    }
+    
+    private void skipRawBytes(final int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            readRawByteOrThrow();
+        }
+    }
+    
+    private void skipRawZeroTerminated() throws IOException {
+        while (readRawByteOrThrow() != 0) {
+            // Skip
+        }
+    }
+    
+    /**
+     * Reads the header of a GZIP member, see RFC 1952. Returns {@code false} if the 
+     * end of the data has been reached.
+     */
+    private boolean readHeader() throws IOException {
+        final int firstByte = readRawByte();
+        
+        if (firstByte == -1) {
+            return false;
+        }
+        
+        if ((firstByte | (readRawByteOrThrow() << 8)) != GZIPInputStream.GZIP_MAGIC) {
+            throw new ZipException("Not in GZIP format");
+        }
+        
+        final int compressionMethod = readRawByteOrThrow();
+        
+        if (compressionMethod != 8) {
+            throw new ZipException("Unsupported compression method " + compressionMethod);
+        }
+        
+        final int flags = readRawByteOrThrow();
+        // Modification time, extra flags and operating system
+        skipRawBytes(6);
+        
+        if ((flags & FLAG_EXTRA) != 0) {
+            skipRawBytes(readRawUnsignedShort());
+        }
+        
+        if ((flags & FLAG_NAME) != 0) {
+            skipRawZeroTerminated();
+        }
+        
+        if ((flags & FLAG_COMMENT) != 0) {
+            skipRawZeroTerminated();
+        }
+        
+        if ((flags & FLAG_HEADER_CRC) != 0) {
+            // Header CRC is not verified
+            skipRawBytes(2);
+        }
+        
+        inflater.reset();
+        crc.reset();
+        
+        return true;
+    }
+    
+    /**
+     * Reads the trailer of the current member and the header of the next member, 
+     * if any. Returns {@code true} if the end of the data has been reached.
+     */
+    private boolean readTrailer() throws IOException {
+        // Unconsumed input belongs to the trailer
+        inputPos = inputLength - inflater.getRemaining();
+        
+        if (readRawUnsignedInt() != crc.getValue()) {
+            throw new ZipException("Corrupt GZIP trailer, CRC mismatch");
+        }
+        
+        // Size is stored modulo 2^32
+        if (readRawUnsignedInt() != (inflater.getBytesWritten() & 0xFFFFFFFFL)) {
+            throw new ZipException("Corrupt GZIP trailer, size mismatch");
+        }
+        
+        try {
+            return !readHeader();
+        }
+        catch (final ZipException | EOFException exception) {
+            // Ignore trailing garbage, same as GZIPInputStream
+            return true;
+        }
+    }
+    
+    /**
+     * Inflates data into the given array. Returns -1 if the end of the data has been 
+     * reached.
+     */
+    private int inflate(final byte[] b, final int off, final int len) throws IOException {
+        while (!isEof) {
+            final int inflatedCount;
+            
+            try {
+                inflatedCount = inflater.inflate(b, off, len);
+            }
+            catch (final DataFormatException dataFormatException) {
+                throw new ZipException(dataFormatException.getMessage());
+            }
+            
+            if (inflatedCount > 0) {
+                crc.update(b, off, inflatedCount);
+                return inflatedCount;
+            }
+            else if (inflater.finished()) {
+                isEof = readTrailer();
+            }
+            else if (inflater.needsDictionary()) {
+                throw new ZipException("Unexpected preset dictionary");
+            }
+            else if (inflater.needsInput()) {
+                if (inputPos == inputLength) {
+                    final int readCount = in.read(inputBuffer);
+                    
+                    if (readCount <= 0) {
+                        throw new EOFException("Unexpected end of GZIP data");
+                    }
+                    
+                    inputPos = 0;
+                    inputLength = readCount;
+                }
+                
+                inflater.setInput(inputBuffer, inputPos, inputLength - inputPos);
+                // Inflater consumes the input; unconsumed input is determined by getRemaining()
+                inputPos = inputLength;
+            }
+        }
+        
+        return -1;
+    }
+    
+    private boolean fillOutputBuffer() throws IOException {
+        final int inflatedCount = inflate(outputBuffer, 0, outputBuffer.length);
+        
+        if (inflatedCount == -1) {
+            return false;
+        }
+        
+        outputPos = 0;
+        outputLength = inflatedCount;
+        return true;
+    }
+    
+    @Override
+    public int read() throws IOException {
+        ensureOpen();
+        
+        if (outputPos == outputLength && !fillOutputBuffer()) {
+            return -1;
+        }
+        
+        return outputBuffer[outputPos++] & 0xFF;
+    }
+    
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        ensureOpen();
+        
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        else if (len == 0) {
+            return 0;
+        }
+        
+        if (outputPos == outputLength) {
+            // Avoid copying when the caller requests large amounts of data
+            if (len >= outputBuffer.length) {
+                return inflate(b, off, len);
+            }
+            else if (!fillOutputBuffer()) {
+                return -1;
+            }
+        }
+        
+        final int readCount = Math.min(len, outputLength - outputPos);
+        System.arraycopy(outputBuffer, outputPos, b, off, readCount);
+        outputPos += readCount;
+        
+        return readCount;
+    }
+    
+    @Override
+    public int available() throws IOException {
+        ensureOpen();
+        return outputLength - outputPos;
+    }
+    
+    private void releaseResources() {
+        if (inflater != null) {
+            CodecPool.releaseInflater(inflater);
+            CodecPool.releaseBuffer(inputBuffer);
+            CodecPool.releaseBuffer(outputBuffer);
+            inflater = null;
+            inputBuffer = null;
+            outputBuffer = null;
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        releaseResources();
+        in.close();
+    }
+}
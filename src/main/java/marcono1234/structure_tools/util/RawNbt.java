@@ -0,0 +1,130 @@
+package marcono1234.structure_tools.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Objects;
+
+import net.querz.nbt.CompoundTag;
+
+/**
+ * <p>Value of a compound tag in serialized form, that is its entries followed by 
+ * the {@code TAG_End}, as written by {@link NbtWriter#writeCompound(CompoundTag)}. 
+ * It allows copying NBT data which is not inspected, such as the NBT data of 
+ * blocks and entities when gluing structures, from the input to the output 
+ * without decoding and encoding it.</p>
+ * 
+ * <p>The data has been validated when the instance was created, so decoding it 
+ * with {@link #toCompound()} does not fail. Two instances are only equal if their 
+ * data is the same; compounds whose entries are in a different order are equal 
+ * as tag tree but not in serialized form.</p>
+ */
+public final class RawNbt {
+    /**
+     * Limits for decoding the data; it has already been validated, possibly with a 
+     * larger maximum depth than {@link NbtReadLimits#DEFAULT_MAX_DEPTH}, so no limits 
+     * are checked again
+     */
+    private static final NbtReadLimits DECODING_LIMITS = new NbtReadLimits(Long.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    
+    private final byte[] data;
+    /**
+     * Cached hash code, {@code 0} if not computed yet; racy but the computed value 
+     * is always the same
+     */
+    private int hashCode;
+    
+    /**
+     * @param data
+     *      Validated serialized compound; not copied
+     */
+    RawNbt(final byte[] data) {
+        this.data = data;
+    }
+    
+    /**
+     * Serializes the given compound.
+     * 
+     * @param compound
+     *      The compound to serialize
+     * @return
+     *      The serialized compound
+     */
+    public static RawNbt fromCompound(final CompoundTag compound) {
+        Objects.requireNonNull(compound);
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final NbtWriter writer = new NbtWriter(outputStream);
+        
+        try {
+            writer.writeCompound(compound);
+            writer.flush();
+        }
+        catch (final IOException ioException) {
+            // Cannot happen for ByteArrayOutputStream
+            throw new UncheckedIOException(ioException);
+        }
+        
+        return new RawNbt(outputStream.toByteArray());
+    }
+    
+    /**
+     * Returns the serialized data. The returned array must not be modified.
+     */
+    byte[] getData() {
+        return data;
+    }
+    
+    /**
+     * Returns the length of the serialized data in bytes.
+     * 
+     * @return
+     *      The length in bytes
+     */
+    public int getLength() {
+        return data.length;
+    }
+    
+    /**
+     * Decodes the data as tag tree. Every call creates a new tag tree.
+     * 
+     * @return
+     *      The decoded compound
+     */
+    public CompoundTag toCompound() {
+        try {
+            return new NbtReader(new ByteArrayInputStream(data), DECODING_LIMITS).readCompound();
+        }
+        catch (final IOException ioException) {
+            // Cannot happen because data was validated
+            throw new UncheckedIOException(ioException);
+        }
+    }
+    
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        else if (obj instanceof RawNbt) {
+            final RawNbt other = (RawNbt) obj;
+            
+            return hashCode() == other.hashCode() && Arrays.equals(data, other.data);
+        }
+        
+        return false;
+    }
+    
+    @Override
+    public int hashCode() {
+        int hashCode = this.hashCode;
+        
+        if (hashCode == 0) {
+            hashCode = Arrays.hashCode(data);
+            this.hashCode = hashCode;
+        }
+        
+        return hashCode;
+    }
+}
@@ -1,10 +1,14 @@
 package marcono1234.structure_tools.gluer;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -15,10 +19,15 @@ import marcono1234.structure_tools.gluer.Gluer;
 import marcono1234.structure_tools.gluer.Layout;
 import marcono1234.structure_tools.gluer.Gluer.OutOfBoundsException;
 import marcono1234.structure_tools.gluer.Layout.StructureInfo;
+import marcono1234.structure_tools.structure.BlockColumns;
 import marcono1234.structure_tools.structure.BlockInfo;
+import marcono1234.structure_tools.structure.BlockStorage;
 import marcono1234.structure_tools.structure.BlockState;
 import marcono1234.structure_tools.structure.EntityInfo;
+import marcono1234.structure_tools.structure.OffHeapBlockStorage;
 import marcono1234.structure_tools.structure.Structure;
+import marcono1234.structure_tools.structure.StructureHeader;
+import marcono1234.structure_tools.structure.StructureWriter;
 import marcono1234.structure_tools.util.Double3D;
 import marcono1234.structure_tools.util.Int3D;
 import net.querz.nbt.CompoundTag;
@@ -88,6 +97,18 @@ class GluerTest {
         );
     }
     
+    @Test
+    void testGlueWithoutPalettes() {
+        // E.g. read with StructureProjection.HEADER_ONLY
+        final Structure structure = new Structure(size, Collections.emptyList(), Collections.emptyList(), null, 1500, null);
+        final Layout layout = Layout.fromStructureInfos(Collections.singletonList(
+            new StructureInfo(new Int3D(0, 0, 0), structure)
+        ));
+        
+        final IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> gluer.glue(layout));
+        assertEquals("Structure has no palettes; structures read without palettes cannot be glued", exception.getMessage());
+    }
+    
     @Test
     void testGlue() throws IOException {
         final int sizeX = 32;
@@ -126,6 +147,87 @@ class GluerTest {
         assertEquals(expectedEntities, gluedStructure.getEntities().get());
     }
     
+    @Test
+    void testGlueLazily() {
+        final Structure structure = new Structure(size, blocks, palettes, entities, 1500, null);
+        final Structure emptyStructure = new Structure(size, Collections.emptyList(), palettes, null, 1500, null);
+        final Structure columnsStructure = new Structure(size, BlockStorage.copyOf(blocks), palettes, null, 1500, null);
+        
+        final Layout layout = Layout.fromStructureInfos(Arrays.asList(
+            new StructureInfo(new Int3D(0, 0, 0), structure),
+            new StructureInfo(new Int3D(1, 0, 0), emptyStructure),
+            new StructureInfo(new Int3D(0, 1, 0), structure),
+            new StructureInfo(new Int3D(1, 1, 0), columnsStructure),
+            new StructureInfo(new Int3D(1, 1, 1), structure)
+        ));
+        
+        final Structure gluedStructure = gluer.glue(layout);
+        final Structure lazilyGluedStructure = gluer.glueLazily(layout);
+        assertEquals(gluedStructure, lazilyGluedStructure);
+        
+        final List<BlockInfo> lazyBlocks = lazilyGluedStructure.getBlocks();
+        assertEquals(4, lazyBlocks.size());
+        final BlockColumns lazyColumns = (BlockColumns) lazyBlocks;
+        
+        for (int index = 0; index < lazyBlocks.size(); index++) {
+            final BlockInfo blockInfo = gluedStructure.getBlocks().get(index);
+            assertEquals(blockInfo, lazyBlocks.get(index));
+            
+            assertEquals(blockInfo.getPos(), new Int3D(lazyColumns.getX(index), lazyColumns.getY(index), lazyColumns.getZ(index)));
+            assertEquals(blockInfo.getState(), lazyColumns.getState(index));
+            assertEquals(blockInfo.getNbt().isPresent(), lazyColumns.hasNbt(index));
+            assertEquals(blockInfo.getNbt(), lazyColumns.getNbt(index));
+        }
+        
+        assertThrows(IndexOutOfBoundsException.class, () -> lazyColumns.getX(lazyBlocks.size()));
+    }
+    
+    @Test
+    void testGlueOffHeap() throws IOException {
+        final CompoundTag blockNbt = new CompoundTag();
+        blockNbt.putString("id", "minecraft:chest");
+        final List<BlockInfo> nbtBlocks = Arrays.asList(
+            new BlockInfo(new Int3D(1, 2, 3), 0, blockNbt),
+            new BlockInfo(new Int3D(4, 4, 4), 0)
+        );
+        final Structure structure = new Structure(size, nbtBlocks, palettes, entities, 1500, null);
+        
+        final Layout layout = Layout.fromStructureInfos(Arrays.asList(
+            new StructureInfo(new Int3D(0, 0, 0), structure),
+            new StructureInfo(new Int3D(0, 1, 0), structure),
+            new StructureInfo(new Int3D(1, 1, 1), structure)
+        ));
+        final Structure gluedStructure = gluer.glue(layout);
+        final Path tempDirectory = Files.createTempDirectory("off-heap");
+        
+        try (
+            OffHeapBlockStorage.Builder directBuilder = new OffHeapBlockStorage.Builder();
+            OffHeapBlockStorage.Builder fileBuilder = OffHeapBlockStorage.Builder.usingTempFile(tempDirectory)
+        ) {
+            for (final OffHeapBlockStorage.Builder builder : Arrays.asList(directBuilder, fileBuilder)) {
+                final Structure offHeapStructure = gluer.glueOffHeap(layout, builder);
+                
+                try (OffHeapBlockStorage blocks = (OffHeapBlockStorage) offHeapStructure.getBlocks()) {
+                    assertEquals(gluedStructure, offHeapStructure);
+                    assertEquals(6, blocks.size());
+                    assertEquals(gluedStructure.getBlocks().get(5), blocks.get(5));
+                    assertEquals(34, blocks.getY(2));
+                    
+                    // Writing uses the primitive values
+                    final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+                    new StructureWriter(false, 0, 1).write(gluedStructure, expected);
+                    final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+                    new StructureWriter(false, 0, 1).write(offHeapStructure, actual);
+                    assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+                }
+            }
+        }
+        finally {
+            // Temporary file is deleted when the block storage is closed
+            Files.delete(tempDirectory);
+        }
+    }
+    
     private void testOutOfBounds(final Structure structure) {
         final Layout layout = Layout.fromStructureInfos(Collections.singletonList(
             new StructureInfo(new Int3D(0, 0, 0), structure)
@@ -175,6 +277,23 @@ class GluerTest {
         }
     }
     
+    @Test
+    void testValidateHeaders() {
+        for (final Int3D outOfBounds : outOfBoundsSizes) {
+            assertThrows(OutOfBoundsException.class, () -> gluer.validateHeaders(Collections.singletonList(
+                StructureHeader.fromStructure(new Structure(outOfBounds, blocks, palettes, null, 1500, author))
+            )));
+            assertThrows(OutOfBoundsException.class, () -> gluer.validateHeaders(Collections.singletonList(
+                StructureHeader.fromStructure(new Structure(size, outOfBounds, blocks, palettes, null, 1500, author))
+            )));
+        }
+        
+        assertDoesNotThrow(() -> gluer.validateHeaders(Arrays.asList(
+            StructureHeader.fromStructure(new Structure(size, blocks, palettes, null, 1500, author)),
+            StructureHeader.fromStructure(new Structure(new Int3D(32, 32, 32), blocks, palettes, entities, 1600, author))
+        )));
+    }
+    
     @Test
     void testOutOfBoundsBlocks() {
         for (final Int3D outOfBounds : outOfBoundsInts) {
@@ -186,6 +305,15 @@ class GluerTest {
                 1500,
                 author
             ));
+            // Validated using the block columns
+            testOutOfBounds(new Structure(
+                size,
+                BlockStorage.copyOf(Collections.singletonList(new BlockInfo(outOfBounds, 0))),
+                palettes,
+                null,
+                1500,
+                author
+            ));
         }
     }
     
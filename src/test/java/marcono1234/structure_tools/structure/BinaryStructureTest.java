@@ -0,0 +1,159 @@
+package marcono1234.structure_tools.structure;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import marcono1234.structure_tools.util.Double3D;
+import marcono1234.structure_tools.util.Int3D;
+import net.querz.nbt.CompoundTag;
+import net.querz.nbt.ListTag;
+import net.querz.nbt.NBTUtil;
+import net.querz.nbt.StringTag;
+
+class BinaryStructureTest {
+    private final Structure structure;
+    
+    BinaryStructureTest() {
+        final CompoundTag blockNbt = new CompoundTag();
+        blockNbt.putString("id", "minecraft:chest");
+        blockNbt.put("Items", new ListTag<StringTag>());
+        blockNbt.putLongArray("longs", new long[] {1, 2});
+        
+        final CompoundTag properties = new CompoundTag();
+        properties.putString("facing", "north");
+        
+        final CompoundTag entityNbt = new CompoundTag();
+        entityNbt.putString("id", "minecraft:pig");
+        
+        structure = new Structure(
+            new Int3D(2, 3, 4),
+            new Int3D(40, 3, 4),
+            Arrays.asList(
+                new BlockInfo(new Int3D(0, 1, 2), 0, blockNbt),
+                new BlockInfo(new Int3D(-1048576, 1048575, -3), 1),
+                new BlockInfo(new Int3D(1, 2, 3), 1, new CompoundTag())
+            ),
+            Arrays.asList(
+                Arrays.asList(new BlockState("a", properties), new BlockState("b")),
+                Arrays.asList(new BlockState("a1"), new BlockState("b1"))
+            ),
+            Arrays.asList(
+                new EntityInfo(new Double3D(0.5, 1.5, 2.5), new Int3D(0, 1, 2), entityNbt),
+                new EntityInfo(new Double3D(-0.5, 1, 2), new Int3D(-1, 1, 2), new CompoundTag())
+            ),
+            1500,
+            "authorValue"
+        );
+    }
+    
+    private static BinaryStructure writeAndWrap(final Structure structure) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        BinaryStructure.write(structure, outputStream);
+        
+        return BinaryStructure.wrap(ByteBuffer.wrap(outputStream.toByteArray()));
+    }
+    
+    @Test
+    void testRoundTrip() throws IOException {
+        final BinaryStructure binaryStructure = writeAndWrap(structure);
+        assertEquals(structure, binaryStructure.toStructure());
+        assertEquals(structure.toNbt(), binaryStructure.toStructure().toNbt());
+        
+        assertEquals(3, binaryStructure.getBlocksCount());
+        assertEquals(-1048576, binaryStructure.getBlockX(1));
+        assertEquals(1048575, binaryStructure.getBlockY(1));
+        assertEquals(-3, binaryStructure.getBlockZ(1));
+        assertEquals(1, binaryStructure.getBlockState(2));
+        assertFalse(binaryStructure.getBlockNbt(1).isPresent());
+        assertTrue(binaryStructure.hasBlockNbt(2));
+        assertEquals(2, binaryStructure.getEntitiesCount());
+        
+        // Block list gives direct access to the primitive values
+        final BlockColumns columns = (BlockColumns) binaryStructure.toStructure().getBlocks();
+        assertEquals(-1048576, columns.getX(1));
+        assertEquals(1, columns.getState(1));
+        assertFalse(columns.hasNbt(1));
+        assertTrue(columns.getRawNbt(0).isPresent());
+        
+        // Writing the structure backed by binary data uses the columns as well
+        assertEquals(structure, writeAndWrap(binaryStructure.toStructure()).toStructure());
+    }
+    
+    @Test
+    void testRoundTripMinimal() throws IOException {
+        final Structure minimalStructure = new Structure(
+            new Int3D(1, 1, 1),
+            Collections.emptyList(),
+            Collections.singletonList(Collections.emptyList()),
+            null,
+            0,
+            null
+        );
+        
+        assertEquals(minimalStructure, writeAndWrap(minimalStructure).toStructure());
+    }
+    
+    @Test
+    void testMapFiles() throws IOException {
+        final List<Path> paths;
+        
+        try (Stream<Path> files = Files.list(Paths.get("src/test/resources/structures"))) {
+            paths = files.collect(Collectors.toList());
+        }
+        
+        for (final Path path : paths) {
+            final CompoundTag nbt = (CompoundTag) NBTUtil.readTag(path.toFile());
+            final Path binaryPath = Files.createTempFile("structure", BinaryStructure.FILE_EXTENSION);
+            
+            try {
+                BinaryStructure.writeToFile(Structure.fromNbt(nbt), binaryPath);
+                // Conversion back to NBT should be lossless
+                assertEquals(Structure.fromNbt(nbt).toNbt(), BinaryStructure.readFromFile(binaryPath).toNbt());
+            }
+            finally {
+                Files.delete(binaryPath);
+            }
+        }
+    }
+    
+    @Test
+    void testUnpackablePos() {
+        final Structure unpackableStructure = new Structure(
+            new Int3D(1, 1, 1),
+            Collections.singletonList(new BlockInfo(new Int3D(1048576, 0, 0), 0)),
+            Collections.singletonList(Collections.singletonList(new BlockState("a"))),
+            null,
+            0,
+            null
+        );
+        
+        assertThrows(IllegalArgumentException.class, () -> BinaryStructure.write(unpackableStructure, new ByteArrayOutputStream()));
+    }
+    
+    @Test
+    void testMalformed() throws IOException {
+        assertThrows(IOException.class, () -> BinaryStructure.wrap(ByteBuffer.allocate(0)));
+        assertThrows(IOException.class, () -> BinaryStructure.wrap(ByteBuffer.allocate(100)));
+        
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        BinaryStructure.write(structure, outputStream);
+        final byte[] truncated = Arrays.copyOf(outputStream.toByteArray(), 100);
+        assertThrows(IOException.class, () -> BinaryStructure.wrap(ByteBuffer.wrap(truncated)));
+    }
+}
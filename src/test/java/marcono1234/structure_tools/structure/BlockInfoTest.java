@@ -1,6 +1,9 @@
 package marcono1234.structure_tools.structure;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.Test;
 
@@ -51,4 +54,20 @@ class BlockInfoTest {
     void testToNbtNoNbt() {
         assertEquals(blockInfoNbtNoNbt, blockInfoNoNbt.toNbt());
     }
+    
+    @Test
+    void testFreeze() {
+        assertFalse(blockInfo.isFrozen());
+        final BlockInfo frozen = blockInfo.freeze();
+        assertTrue(frozen.isFrozen());
+        assertEquals(blockInfo, frozen);
+        assertSame(frozen, frozen.freeze());
+        
+        // Modifying the returned NBT data has no effect
+        frozen.getNbt().get().putBoolean("modified", true);
+        assertEquals(blockInfo, frozen);
+        
+        assertTrue(blockInfoNoNbt.isFrozen());
+        assertSame(blockInfoNoNbt, blockInfoNoNbt.freeze());
+    }
 }
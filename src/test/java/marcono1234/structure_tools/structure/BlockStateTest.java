@@ -1,7 +1,17 @@
 package marcono1234.structure_tools.structure;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.jupiter.api.Test;
 
 import marcono1234.structure_tools.structure.BlockState;
@@ -48,4 +58,80 @@ class BlockStateTest {
     void testToNbtNoNbt() {
         assertEquals(blockInfoNbtNoProperties, blockInfoNoProperties.toNbt());
     }
+    
+    @Test
+    void testIntern() {
+        final CompoundTag properties = new CompoundTag();
+        properties.putString("facing", "north");
+        final BlockState original = new BlockState("minecraft:chest", properties);
+        final BlockState interned = original.intern();
+        
+        assertFalse(original.isInterned());
+        assertTrue(interned.isInterned());
+        assertEquals(original, interned);
+        assertEquals(original.hashCode(), interned.hashCode());
+        assertSame(interned, interned.intern());
+        assertSame(interned, new BlockState("minecraft:chest", properties.clone()).intern());
+        assertNotEquals(interned, new BlockState("minecraft:trapped_chest", properties).intern());
+        
+        // Equal properties are shared between different states
+        assertSame(interned.getCanonicalProperties(), new BlockState("minecraft:furnace", properties).intern().getCanonicalProperties());
+        
+        // Interned state is not affected by modifications of the original properties
+        properties.putString("facing", "south");
+        assertEquals("north", interned.getProperties().get().getString("facing"));
+    }
+    
+    @Test
+    void testInternConcurrently() throws Exception {
+        final int threadsCount = 8;
+        final ExecutorService executor = Executors.newFixedThreadPool(threadsCount);
+        
+        try {
+            for (int round = 0; round < 2000; round++) {
+                final String name = "test:concurrent_" + round;
+                final CyclicBarrier barrier = new CyclicBarrier(threadsCount);
+                final List<Future<BlockState>> futures = new ArrayList<>();
+                
+                for (int thread = 0; thread < threadsCount; thread++) {
+                    futures.add(executor.submit(() -> {
+                        final BlockState blockState = new BlockState(name);
+                        barrier.await();
+                        return blockState.intern();
+                    }));
+                }
+                
+                final BlockState interned = futures.get(0).get();
+                
+                for (final Future<BlockState> future : futures) {
+                    assertSame(interned, future.get());
+                }
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    @Test
+    void testCanonicalProperties() {
+        final CompoundTag properties = new CompoundTag();
+        properties.putString("b", "1");
+        properties.putString("a", "2");
+        final CompoundTag reorderedProperties = new CompoundTag();
+        reorderedProperties.putString("a", "2");
+        reorderedProperties.putString("b", "1");
+        
+        final BlockState blockState = new BlockState("s", properties);
+        assertEquals(blockState, new BlockState("s", reorderedProperties));
+        assertEquals(blockState.hashCode(), new BlockState("s", reorderedProperties).hashCode());
+        assertNotEquals(blockState, new BlockState("s", new CompoundTag()));
+        assertNotEquals(blockState, new BlockState("s"));
+        assertEquals(properties, blockState.getProperties().get());
+        
+        // Modifications neither of the given nor of the returned compound have an effect
+        properties.putString("c", "3");
+        blockState.getProperties().get().putString("d", "4");
+        assertEquals(reorderedProperties, blockState.getProperties().get());
+    }
 }
@@ -0,0 +1,87 @@
+package marcono1234.structure_tools.structure;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+import marcono1234.structure_tools.util.Int3D;
+import marcono1234.structure_tools.util.RawNbt;
+import net.querz.nbt.CompoundTag;
+
+class BlockStorageTest {
+    @Test
+    void testBuilder() {
+        final CompoundTag nbt = new CompoundTag();
+        nbt.putString("id", "minecraft:chest");
+        final RawNbt rawNbt = RawNbt.fromCompound(nbt);
+        
+        final List<BlockInfo> expected = new ArrayList<>();
+        // Start with a small capacity to verify that the builder grows
+        final BlockStorage.Builder builder = new BlockStorage.Builder(0);
+        
+        for (int index = 0; index < 100; index++) {
+            final BlockInfo blockInfo;
+            
+            if (index % 10 == 0) {
+                blockInfo = new BlockInfo(new Int3D(index, -index, 2 * index), index % 4, nbt);
+            }
+            else if (index % 10 == 5) {
+                blockInfo = new BlockInfo(new Int3D(index, -index, 2 * index), index % 4, rawNbt);
+            }
+            else {
+                blockInfo = new BlockInfo(new Int3D(index, -index, 2 * index), index % 4);
+            }
+            
+            expected.add(blockInfo);
+            builder.add(blockInfo);
+        }
+        
+        final BlockStorage storage = builder.build();
+        assertEquals(expected, storage);
+        assertEquals(100, storage.size());
+        
+        assertEquals(5, storage.getX(5));
+        assertEquals(-5, storage.getY(5));
+        assertEquals(10, storage.getZ(5));
+        assertEquals(1, storage.getState(5));
+        assertTrue(storage.hasNbt(10));
+        assertFalse(storage.hasNbt(11));
+        assertEquals(Optional.of(nbt), storage.getNbt(5));
+        assertEquals(Optional.empty(), storage.getNbt(11));
+        
+        // Serialized NBT data is kept as is
+        assertEquals(Optional.of(rawNbt), storage.get(15).getRawNbt());
+        assertEquals(Optional.empty(), storage.get(20).getRawNbt());
+        
+        assertThrows(IndexOutOfBoundsException.class, () -> storage.get(100));
+        assertThrows(IndexOutOfBoundsException.class, () -> storage.getX(-1));
+    }
+    
+    @Test
+    void testBuilderReuse() {
+        final BlockStorage.Builder builder = new BlockStorage.Builder();
+        builder.add(1, 2, 3, 0);
+        final BlockStorage storage = builder.build();
+        builder.add(4, 5, 6, 1, new CompoundTag());
+        
+        assertEquals(1, storage.size());
+        assertEquals(2, builder.build().size());
+    }
+    
+    @Test
+    void testCopyOf() {
+        final BlockStorage storage = new BlockStorage.Builder().add(1, 2, 3, 0).build();
+        assertSame(storage, BlockStorage.copyOf(storage));
+        
+        final List<BlockInfo> blocks = new ArrayList<>(storage);
+        assertEquals(blocks, BlockStorage.copyOf(blocks));
+    }
+}
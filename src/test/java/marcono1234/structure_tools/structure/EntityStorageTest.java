@@ -0,0 +1,135 @@
+package marcono1234.structure_tools.structure;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import marcono1234.structure_tools.util.Double3D;
+import marcono1234.structure_tools.util.Int3D;
+import marcono1234.structure_tools.util.RawNbt;
+import net.querz.nbt.CompoundTag;
+
+class EntityStorageTest {
+    private static CompoundTag createNbt(final int index) {
+        final CompoundTag nbt = new CompoundTag();
+        nbt.putString("id", "minecraft:armor_stand");
+        nbt.putInt("index", index);
+        
+        return nbt;
+    }
+    
+    @Test
+    void testBuilder() {
+        final List<EntityInfo> expected = new ArrayList<>();
+        // Start with a small capacity to verify that the builder grows
+        final EntityStorage.Builder builder = new EntityStorage.Builder(0);
+        
+        for (int index = 0; index < 100; index++) {
+            final Double3D pos = new Double3D(index + 0.5, -index, 2 * index + 0.25);
+            final Int3D blockPos = new Int3D(index, -index, 2 * index);
+            final EntityInfo entityInfo;
+            
+            if (index % 2 == 0) {
+                entityInfo = new EntityInfo(pos, blockPos, createNbt(index));
+            }
+            else {
+                entityInfo = new EntityInfo(pos, blockPos, RawNbt.fromCompound(createNbt(index)));
+            }
+            
+            expected.add(entityInfo);
+            builder.add(entityInfo);
+        }
+        
+        final EntityStorage storage = builder.build();
+        assertEquals(expected, storage);
+        assertEquals(100, storage.size());
+        
+        assertEquals(5.5, storage.getX(5));
+        assertEquals(-5.0, storage.getY(5));
+        assertEquals(10.25, storage.getZ(5));
+        assertEquals(5, storage.getBlockX(5));
+        assertEquals(-5, storage.getBlockY(5));
+        assertEquals(10, storage.getBlockZ(5));
+        assertEquals(createNbt(5), storage.getNbt(5));
+        
+        // Serialized NBT data is kept as is
+        assertTrue(storage.getRawNbt(5).isPresent());
+        assertTrue(storage.get(5).getRawNbt().isPresent());
+        assertFalse(storage.getRawNbt(4).isPresent());
+        
+        assertThrows(IndexOutOfBoundsException.class, () -> storage.get(100));
+        assertSame(storage, EntityStorage.copyOf(storage));
+    }
+    
+    @Test
+    void testLazilyDecoded() {
+        final RawNbt rawNbt = RawNbt.fromCompound(createNbt(1));
+        final EntityStorage storage = new EntityStorage.Builder()
+            .addLazilyDecoded(1, 2, 3, 1, 2, 3, rawNbt)
+            .build();
+        
+        // Copying keeps the data serialized as long as it has not been decoded
+        final EntityStorage copy = new EntityStorage.Builder()
+            .add(4, 5, 6, 4, 5, 6, storage, 0)
+            .build();
+        assertEquals(Optional.of(rawNbt), copy.getRawNbt(0));
+        
+        assertEquals(Optional.of(rawNbt), storage.getRawNbt(0));
+        final CompoundTag nbt = storage.getNbt(0);
+        assertEquals(createNbt(1), nbt);
+        
+        // Decoded data is kept, including modifications
+        nbt.putBoolean("modified", true);
+        assertSame(nbt, storage.getNbt(0));
+        assertSame(nbt, storage.get(0).getNbt());
+        assertEquals(Optional.empty(), storage.getRawNbt(0));
+        
+        // Only the copied entity is still serialized
+        assertEquals(Optional.of(rawNbt), copy.getRawNbt(0));
+        assertEquals(new Double3D(4, 5, 6), copy.get(0).getPos());
+    }
+    
+    @Test
+    void testLazilyDecodedConcurrently() throws Exception {
+        final int threadsCount = 8;
+        final RawNbt rawNbt = RawNbt.fromCompound(createNbt(1));
+        final ExecutorService executor = Executors.newFixedThreadPool(threadsCount);
+        
+        try {
+            for (int round = 0; round < 500; round++) {
+                final EntityStorage storage = new EntityStorage.Builder()
+                    .addLazilyDecoded(1, 2, 3, 1, 2, 3, rawNbt)
+                    .build();
+                final CyclicBarrier barrier = new CyclicBarrier(threadsCount);
+                final List<Future<CompoundTag>> futures = new ArrayList<>();
+                
+                for (int thread = 0; thread < threadsCount; thread++) {
+                    futures.add(executor.submit(() -> {
+                        barrier.await();
+                        return storage.getNbt(0);
+                    }));
+                }
+                
+                // All threads get the same decoded data
+                for (final Future<CompoundTag> future : futures) {
+                    assertSame(storage.getNbt(0), future.get());
+                }
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package marcono1234.structure_tools.structure;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+import marcono1234.structure_tools.util.Int3D;
+import net.querz.nbt.CompoundTag;
+
+class GridBlockStorageTest {
+    private static final Int3D SIZE = new Int3D(5, 6, 7);
+    
+    /**
+     * Verifies that the grid storage has the same blocks as the original storage.
+     */
+    private static void assertSameBlocks(final BlockStorage expected, final List<BlockInfo> actual) {
+        assertEquals(expected, actual);
+        assertEquals(expected.size(), actual.size());
+        
+        final BlockColumns columns = (BlockColumns) actual;
+        
+        for (int index = 0; index < expected.size(); index++) {
+            assertEquals(expected.getX(index), columns.getX(index));
+            assertEquals(expected.getY(index), columns.getY(index));
+            assertEquals(expected.getZ(index), columns.getZ(index));
+            assertEquals(expected.getState(index), columns.getState(index));
+            assertEquals(expected.getNbt(index), columns.getNbt(index));
+        }
+        
+        // Access in reverse order, which does not benefit from the last accessed block
+        for (int index = expected.size() - 1; index >= 0; index--) {
+            assertEquals(expected.get(index), actual.get(index));
+        }
+        
+        assertThrows(IndexOutOfBoundsException.class, () -> actual.get(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> actual.get(expected.size()));
+    }
+    
+    @Test
+    void testRunLength() {
+        final CompoundTag nbt = new CompoundTag();
+        nbt.putString("id", "minecraft:chest");
+        final Int3D size = new Int3D(2, 64, 3);
+        final BlockStorage.Builder builder = new BlockStorage.Builder();
+        
+        // Layers of the same state; ordered by cell
+        for (int y = 0; y < size.getY(); y++) {
+            for (int x = 0; x < size.getX(); x++) {
+                for (int z = 0; z < size.getZ(); z++) {
+                    builder.add(x, y, z, y / 32 * 100, x == 1 && y == 2 && z == 2 ? nbt : null);
+                }
+            }
+        }
+        
+        final BlockStorage blocks = builder.build();
+        final List<BlockInfo> compacted = GridBlockStorage.compact(blocks, size);
+        
+        assertTrue(compacted instanceof RunLengthBlockStorage);
+        assertTrue(((GridBlockStorage) compacted).isOrderedByCell());
+        // 2 runs per column
+        assertEquals(2 * size.getX() * size.getZ(), ((RunLengthBlockStorage) compacted).getRunsCount());
+        assertSameBlocks(blocks, compacted);
+        assertEquals(Optional.of(nbt), compacted.get((2 * size.getX() + 1) * size.getZ() + 2).getNbt());
+        
+        // Same blocks in reverse order
+        final BlockStorage.Builder reversedBuilder = new BlockStorage.Builder();
+        
+        for (int index = blocks.size() - 1; index >= 0; index--) {
+            reversedBuilder.add(blocks.getX(index), blocks.getY(index), blocks.getZ(index), blocks.getState(index), blocks.getNbt(index).orElse(null));
+        }
+        
+        final BlockStorage reversedBlocks = reversedBuilder.build();
+        final List<BlockInfo> reversedCompacted = GridBlockStorage.compact(reversedBlocks, size);
+        
+        assertTrue(reversedCompacted instanceof RunLengthBlockStorage);
+        assertFalse(((GridBlockStorage) reversedCompacted).isOrderedByCell());
+        assertEquals(2 * size.getX() * size.getZ(), ((RunLengthBlockStorage) reversedCompacted).getRunsCount());
+        assertSameBlocks(reversedBlocks, reversedCompacted);
+    }
+    
+    @Test
+    void testPacked() {
+        final BlockStorage.Builder builder = new BlockStorage.Builder();
+        
+        // Every third cell is empty
+        for (int y = 0; y < SIZE.getY(); y++) {
+            for (int x = 0; x < SIZE.getX(); x++) {
+                for (int z = 0; z < SIZE.getZ(); z++) {
+                    if ((x + y + z) % 3 != 0) {
+                        builder.add(x, y, z, (x * 7 + y * 3 + z) % 11);
+                    }
+                }
+            }
+        }
+        
+        final BlockStorage blocks = builder.build();
+        final List<BlockInfo> compacted = GridBlockStorage.compact(blocks, SIZE);
+        
+        assertTrue(compacted instanceof PackedBlockStorage);
+        assertTrue(((GridBlockStorage) compacted).isOrderedByCell());
+        // 11 states + empty cells
+        assertEquals(4, ((PackedBlockStorage) compacted).getBitsPerCell());
+        assertSameBlocks(blocks, compacted);
+    }
+    
+    /**
+     * Adds the blocks in the order Minecraft writes them: full blocks, then all 
+     * other blocks, then blocks with block entities, each group ordered by cell.
+     */
+    private static BlockStorage createInVanillaOrder(final Int3D size, final int[][][] states, final boolean[][][] isFull, final Int3D blockEntityPos, final CompoundTag blockEntityNbt) {
+        final BlockStorage.Builder builder = new BlockStorage.Builder();
+        
+        for (final boolean full : new boolean[] {true, false}) {
+            for (int y = 0; y < size.getY(); y++) {
+                for (int x = 0; x < size.getX(); x++) {
+                    for (int z = 0; z < size.getZ(); z++) {
+                        if (states[x][y][z] >= 0 && isFull[x][y][z] == full && !blockEntityPos.equals(new Int3D(x, y, z))) {
+                            builder.add(x, y, z, states[x][y][z]);
+                        }
+                    }
+                }
+            }
+        }
+        
+        builder.add(blockEntityPos.getX(), blockEntityPos.getY(), blockEntityPos.getZ(), 2, blockEntityNbt);
+        return builder.build();
+    }
+    
+    @Test
+    void testVanillaOrder() {
+        final CompoundTag nbt = new CompoundTag();
+        nbt.putString("id", "minecraft:chest");
+        final Int3D size = new Int3D(16, 16, 16);
+        final int[][][] states = new int[size.getX()][size.getY()][size.getZ()];
+        final boolean[][][] isFull = new boolean[size.getX()][size.getY()][size.getZ()];
+        
+        // Stone at the bottom, air at the top
+        for (int x = 0; x < size.getX(); x++) {
+            for (int y = 0; y < size.getY(); y++) {
+                for (int z = 0; z < size.getZ(); z++) {
+                    states[x][y][z] = y < 8 ? 0 : 1;
+                    isFull[x][y][z] = y < 8;
+                }
+            }
+        }
+        
+        final BlockStorage blocks = createInVanillaOrder(size, states, isFull, new Int3D(3, 8, 5), nbt);
+        final List<BlockInfo> compacted = GridBlockStorage.compact(blocks, size);
+        
+        assertTrue(compacted instanceof GridBlockStorage);
+        assertFalse(((GridBlockStorage) compacted).isOrderedByCell());
+        assertSameBlocks(blocks, compacted);
+        // Block entity is still the last block
+        assertEquals(Optional.of(nbt), compacted.get(compacted.size() - 1).getNbt());
+        
+        // Some cells empty
+        for (int x = 0; x < size.getX(); x++) {
+            for (int z = 0; z < size.getZ(); z++) {
+                states[x][15][z] = -1;
+            }
+        }
+        
+        final BlockStorage sparseBlocks = createInVanillaOrder(size, states, isFull, new Int3D(3, 8, 5), nbt);
+        final List<BlockInfo> sparseCompacted = GridBlockStorage.compact(sparseBlocks, size);
+        
+        assertTrue(sparseCompacted instanceof PackedBlockStorage);
+        assertFalse(((GridBlockStorage) sparseCompacted).isOrderedByCell());
+        assertSameBlocks(sparseBlocks, sparseCompacted);
+    }
+    
+    @Test
+    void testNotCompacted() {
+        // Blocks share a position
+        final BlockStorage.Builder duplicateBuilder = new BlockStorage.Builder();
+        
+        for (int y = 0; y < SIZE.getY(); y++) {
+            for (int x = 0; x < SIZE.getX(); x++) {
+                for (int z = 0; z < SIZE.getZ(); z++) {
+                    duplicateBuilder.add(x, y, z, 0);
+                }
+            }
+        }
+        
+        final BlockStorage duplicate = duplicateBuilder.add(0, 0, 0, 0).build();
+        assertSame(duplicate, GridBlockStorage.compact(duplicate, SIZE));
+        
+        final BlockStorage outOfBounds = new BlockStorage.Builder()
+            .add(0, 0, 0, 0)
+            .add(0, SIZE.getY(), 0, 0)
+            .build();
+        assertSame(outOfBounds, GridBlockStorage.compact(outOfBounds, SIZE));
+        
+        // Grid would need more memory than the positions of the few blocks
+        final BlockStorage sparse = new BlockStorage.Builder()
+            .add(0, 0, 0, 0)
+            .build();
+        assertSame(sparse, GridBlockStorage.compact(sparse, new Int3D(32, 32, 32)));
+    }
+}
@@ -0,0 +1,103 @@
+package marcono1234.structure_tools.structure;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+import marcono1234.structure_tools.util.Double3D;
+import marcono1234.structure_tools.util.Int3D;
+import net.querz.nbt.CompoundTag;
+
+class SpatialIndexTest {
+    private static final List<List<BlockState>> PALETTES = Collections.singletonList(Arrays.asList(
+        new BlockState("a"),
+        new BlockState("b")
+    ));
+    
+    private static Structure createStructure(final List<BlockInfo> blocks, final List<EntityInfo> entities) {
+        return new Structure(new Int3D(32, 32, 32), blocks, PALETTES, entities, 1500, null);
+    }
+    
+    @Test
+    void testDense() {
+        final List<BlockInfo> blocks = new ArrayList<>();
+        
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 4; x++) {
+                for (int z = 0; z < 4; z++) {
+                    blocks.add(new BlockInfo(new Int3D(x, y, z), (x + y + z) % 2));
+                }
+            }
+        }
+        
+        final Structure structure = createStructure(blocks, null);
+        final SpatialIndex index = structure.getSpatialIndex();
+        assertTrue(index.isDense());
+        
+        // Only cached for frozen structures
+        final Structure frozen = structure.freeze();
+        assertSame(frozen.getSpatialIndex(), frozen.getSpatialIndex());
+        blocks.add(new BlockInfo(new Int3D(10, 10, 10), 0));
+        assertEquals(blocks.size() - 1, structure.getSpatialIndex().getBlockIndex(10, 10, 10));
+        
+        assertEquals((2 * 4 + 1) * 4 + 3, index.getBlockIndex(1, 2, 3));
+        assertEquals(Optional.of(new BlockInfo(new Int3D(1, 2, 3), 0)), index.getBlockAt(1, 2, 3));
+        assertEquals(-1, index.getBlockIndex(4, 0, 0));
+        assertEquals(Optional.empty(), index.getBlockAt(-1, 0, 0));
+        
+        final List<BlockInfo> inBox = index.getBlocksIn(new Int3D(2, 2, 2), new Int3D(10, 10, 10));
+        assertEquals(8, inBox.size());
+        assertEquals(new Int3D(2, 2, 2), inBox.get(0).getPos());
+        assertEquals(new Int3D(3, 3, 3), inBox.get(7).getPos());
+        assertEquals(Collections.emptyList(), index.getBlocksIn(new Int3D(5, 5, 5), new Int3D(10, 10, 10)));
+    }
+    
+    @Test
+    void testSparse() {
+        final List<BlockInfo> blocks = Arrays.asList(
+            new BlockInfo(new Int3D(0, 0, 0), 0),
+            new BlockInfo(new Int3D(-500, 20, 1000), 1),
+            new BlockInfo(new Int3D(7, 8, 9), 0),
+            // Same position as previous block, should be found instead
+            new BlockInfo(new Int3D(7, 8, 9), 1)
+        );
+        
+        final SpatialIndex index = createStructure(blocks, null).getSpatialIndex();
+        assertFalse(index.isDense());
+        
+        assertEquals(0, index.getBlockIndex(0, 0, 0));
+        assertEquals(1, index.getBlockIndex(-500, 20, 1000));
+        assertEquals(3, index.getBlockIndex(7, 8, 9));
+        assertEquals(-1, index.getBlockIndex(1, 0, 0));
+        
+        // Box larger than the number of blocks
+        assertEquals(Arrays.asList(blocks.get(0), blocks.get(3)), index.getBlocksIn(new Int3D(0, 0, 0), new Int3D(100, 100, 100)));
+        // Box smaller than the number of blocks
+        assertEquals(Collections.singletonList(blocks.get(3)), index.getBlocksIn(new Int3D(7, 8, 9), new Int3D(7, 8, 9)));
+    }
+    
+    @Test
+    void testEntities() {
+        final List<EntityInfo> entities = Arrays.asList(
+            new EntityInfo(new Double3D(1.5, 0, 1.5), new Int3D(1, 0, 1), new CompoundTag()),
+            new EntityInfo(new Double3D(5, 0, 5), new Int3D(5, 0, 5), new CompoundTag()),
+            new EntityInfo(new Double3D(1.25, 0, 1.25), new Int3D(1, 0, 1), new CompoundTag())
+        );
+        final SpatialIndex index = createStructure(Collections.emptyList(), entities).getSpatialIndex();
+        
+        assertEquals(-1, index.getBlockIndex(0, 0, 0));
+        assertEquals(Arrays.asList(entities.get(0), entities.get(2)), index.getEntitiesAt(1, 0, 1));
+        assertEquals(Collections.emptyList(), index.getEntitiesAt(2, 0, 1));
+        assertEquals(Arrays.asList(entities.get(0), entities.get(2)), index.getEntitiesIn(new Int3D(1, 0, 1), new Int3D(1, 0, 1)));
+        assertEquals(entities, index.getEntitiesIn(new Int3D(0, 0, 0), new Int3D(5, 5, 5)));
+    }
+}
@@ -0,0 +1,128 @@
+package marcono1234.structure_tools.structure;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import marcono1234.structure_tools.util.Int3D;
+import net.querz.nbt.CompoundTag;
+
+class StructureCacheTest {
+    private static List<Path> getStructurePaths() throws IOException {
+        try (Stream<Path> files = Files.list(Paths.get("src/test/resources/structures"))) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+    
+    @Test
+    void testLoad() throws IOException {
+        final Path path = getStructurePaths().get(0);
+        final StructureCache cache = new StructureCache(Long.MAX_VALUE);
+        
+        final Structure structure = cache.load(path);
+        assertEquals(Structure.readFromFile(path), structure);
+        assertSame(structure, cache.load(path));
+        assertSame(structure, cache.load(Paths.get("src/test/resources/structures/../structures").resolve(path.getFileName())));
+        
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0, cache.getEvictionCount());
+        assertEquals(1, cache.size());
+        assertEquals(StructureCache.estimateSize(structure), cache.getTotalWeight());
+        
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getTotalWeight());
+        assertNotSame(structure, cache.load(path));
+    }
+    
+    @Test
+    void testModifiedFile() throws IOException {
+        final Path path = Files.createTempFile("structure", ".nbt");
+        
+        try {
+            Files.copy(getStructurePaths().get(0), path, StandardCopyOption.REPLACE_EXISTING);
+            Files.setLastModifiedTime(path, FileTime.fromMillis(1000));
+            
+            final StructureCache cache = new StructureCache(Long.MAX_VALUE);
+            final Structure structure = cache.load(path);
+            
+            Files.setLastModifiedTime(path, FileTime.fromMillis(2000));
+            assertNotSame(structure, cache.load(path));
+            assertEquals(2, cache.getMissCount());
+            assertEquals(1, cache.size());
+        }
+        finally {
+            Files.delete(path);
+        }
+    }
+    
+    @Test
+    void testEviction() throws IOException {
+        final List<Path> paths = getStructurePaths();
+        final Path first = paths.get(0);
+        final Path second = paths.get(1);
+        final long firstWeight = StructureCache.estimateSize(Structure.readFromFile(first));
+        final long secondWeight = StructureCache.estimateSize(Structure.readFromFile(second));
+        
+        // Only allows one of the structures
+        final StructureCache cache = new StructureCache(Math.max(firstWeight, secondWeight));
+        cache.load(first);
+        cache.load(second);
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(secondWeight, cache.getTotalWeight());
+        
+        // Structure exceeding budget should not be cached
+        final StructureCache smallCache = new StructureCache(0);
+        smallCache.load(first);
+        smallCache.load(first);
+        assertEquals(0, smallCache.size());
+        assertEquals(2, smallCache.getMissCount());
+    }
+    
+    @Test
+    void testEstimateSize() {
+        final Structure empty = new Structure(
+            new Int3D(1, 1, 1),
+            Collections.emptyList(),
+            Collections.singletonList(Collections.emptyList()),
+            null,
+            0,
+            null
+        );
+        
+        final CompoundTag nbt = new CompoundTag();
+        nbt.putLongArray("data", new long[1000]);
+        final Structure withNbt = new Structure(
+            new Int3D(1, 1, 1),
+            Collections.singletonList(new BlockInfo(new Int3D(0, 0, 0), 0, nbt)),
+            Collections.singletonList(Collections.singletonList(new BlockState("a"))),
+            null,
+            0,
+            null
+        );
+        
+        assertTrue(StructureCache.estimateSize(withNbt) > StructureCache.estimateSize(empty) + 8000);
+    }
+    
+    @Test
+    void testInvalidMaxWeight() {
+        assertThrows(IllegalArgumentException.class, () -> new StructureCache(-1));
+    }
+}
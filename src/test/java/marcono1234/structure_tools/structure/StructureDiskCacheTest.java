@@ -0,0 +1,129 @@
+package marcono1234.structure_tools.structure;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class StructureDiskCacheTest {
+    private static final Path STRUCTURES_DIRECTORY = Paths.get("src/test/resources/structures");
+    
+    private Path cacheDirectory;
+    private AtomicInteger loadCount;
+    private StructureLoader countingLoader;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        cacheDirectory = Files.createTempDirectory("structure-cache");
+        loadCount = new AtomicInteger(0);
+        countingLoader = path -> {
+            loadCount.incrementAndGet();
+            return StructureLoader.DEFAULT.load(path);
+        };
+    }
+    
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(cacheDirectory)) {
+            for (final Path path : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+    
+    private static List<Path> getStructurePaths() throws IOException {
+        try (Stream<Path> files = Files.list(STRUCTURES_DIRECTORY)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+    
+    @Test
+    void testLoad() throws IOException {
+        final Path path = getStructurePaths().get(0);
+        final StructureDiskCache cache = new StructureDiskCache(cacheDirectory, Long.MAX_VALUE, countingLoader);
+        
+        final Structure expected = Structure.readFromFile(path);
+        assertEquals(expected, cache.load(path));
+        assertEquals(1, loadCount.get());
+        assertEquals(1, cache.size());
+        
+        // Second load should use the cache entry
+        assertEquals(expected, cache.load(path));
+        assertEquals(1, loadCount.get());
+        
+        // Entries should be kept between runs
+        final StructureDiskCache newCache = new StructureDiskCache(cacheDirectory, Long.MAX_VALUE, countingLoader);
+        assertEquals(1, newCache.size());
+        assertEquals(cache.getTotalSize(), newCache.getTotalSize());
+        assertEquals(expected, newCache.load(path));
+        assertEquals(1, loadCount.get());
+    }
+    
+    @Test
+    void testEviction() throws IOException {
+        final List<Path> paths = getStructurePaths();
+        final StructureDiskCache unlimitedCache = new StructureDiskCache(cacheDirectory, Long.MAX_VALUE, countingLoader);
+        
+        for (final Path path : paths) {
+            unlimitedCache.load(path);
+        }
+        
+        final int entriesCount = unlimitedCache.size();
+        assertTrue(entriesCount > 1);
+        
+        // Limit which only allows one entry, assuming no entry is twice as large as another one
+        final long sizeLimit = unlimitedCache.getTotalSize() / entriesCount;
+        final StructureDiskCache cache = new StructureDiskCache(cacheDirectory, sizeLimit, countingLoader);
+        assertTrue(cache.size() < entriesCount);
+        assertTrue(cache.getTotalSize() <= sizeLimit);
+        
+        try (Stream<Path> files = Files.list(cacheDirectory)) {
+            assertEquals(cache.size(), files.count());
+        }
+        
+        loadCount.set(0);
+        
+        for (final Path path : paths) {
+            cache.load(path);
+            assertTrue(cache.getTotalSize() <= sizeLimit);
+        }
+        
+        assertTrue(loadCount.get() > 0);
+    }
+    
+    @Test
+    void testCorruptEntry() throws IOException {
+        final Path path = getStructurePaths().get(0);
+        final StructureDiskCache cache = new StructureDiskCache(cacheDirectory, Long.MAX_VALUE, countingLoader);
+        final Structure expected = cache.load(path);
+        
+        try (Stream<Path> files = Files.list(cacheDirectory)) {
+            for (final Path entryPath : files.collect(Collectors.toList())) {
+                Files.write(entryPath, new byte[] {1, 2, 3});
+            }
+        }
+        
+        // Should load the structure again
+        assertEquals(expected, cache.load(path));
+        assertEquals(2, loadCount.get());
+        assertEquals(1, cache.size());
+    }
+    
+    @Test
+    void testInvalidSizeLimit() {
+        assertThrows(IllegalArgumentException.class, () -> new StructureDiskCache(cacheDirectory, -1));
+    }
+}
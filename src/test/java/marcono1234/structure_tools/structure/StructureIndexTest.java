@@ -0,0 +1,83 @@
+package marcono1234.structure_tools.structure;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import marcono1234.structure_tools.util.Int3D;
+
+class StructureIndexTest {
+    private static Structure createStructure(final int blocksCount, final int dataVersion) {
+        final BlockInfo[] blocks = new BlockInfo[blocksCount];
+        Arrays.fill(blocks, new BlockInfo(new Int3D(1, 2, 3), 0));
+        
+        return new Structure(
+            new Int3D(32, 32, 32),
+            new Int3D(64, 32, 32),
+            Arrays.asList(blocks),
+            Collections.singletonList(Collections.singletonList(new BlockState("a"))),
+            null,
+            dataVersion,
+            null
+        );
+    }
+    
+    private static void deleteRecursively(final Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (final Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+    
+    @Test
+    void testIndex() throws IOException {
+        final Path directory = Files.createTempDirectory("structures");
+        
+        try {
+            final Structure structure1 = createStructure(1, 1500);
+            final Structure structure2 = createStructure(2, 1600);
+            final Path path1 = directory.resolve("a.nbt");
+            final Path path2 = Files.createDirectory(directory.resolve("sub")).resolve("b.nbt");
+            final StructureWriter writer = new StructureWriter();
+            writer.writeToFile(structure1, path1);
+            writer.writeToFile(structure2, path2);
+            // Not a structure file
+            Files.write(directory.resolve("other.txt"), new byte[] {1, 2, 3});
+            
+            final StructureIndex index = StructureIndex.scanDirectory(directory);
+            assertEquals(2, index.size());
+            assertEquals(Optional.of(StructureHeader.fromStructure(structure1)), index.getHeader(path1));
+            assertEquals(Optional.of(StructureHeader.fromStructure(structure2)), index.getHeader(path2));
+            
+            final Path indexPath = directory.resolve(StructureIndex.DEFAULT_FILE_NAME);
+            index.writeToFile(indexPath);
+            final StructureIndex readIndex = StructureIndex.readFromFile(indexPath);
+            assertEquals(2, readIndex.size());
+            assertEquals(Optional.of(StructureHeader.fromStructure(structure1)), readIndex.getHeader(path1));
+            assertEquals(Optional.of(StructureHeader.fromStructure(structure2)), readIndex.getHeader(path2));
+            
+            // Changed file should not use outdated header
+            final Structure changedStructure = createStructure(3, 1700);
+            writer.writeToFile(changedStructure, path1);
+            Files.setLastModifiedTime(path1, FileTime.fromMillis(Files.getLastModifiedTime(path1).toMillis() + 2000));
+            assertFalse(readIndex.getHeader(path1).isPresent());
+            assertEquals(StructureHeader.fromStructure(changedStructure), readIndex.getOrReadHeader(path1));
+            assertEquals(Optional.of(StructureHeader.fromStructure(changedStructure)), readIndex.getHeader(path1));
+        }
+        finally {
+            deleteRecursively(directory);
+        }
+    }
+}
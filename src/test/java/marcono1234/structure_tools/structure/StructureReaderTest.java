@@ -0,0 +1,392 @@
+package marcono1234.structure_tools.structure;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+
+import org.junit.jupiter.api.Test;
+
+import marcono1234.structure_tools.util.Double3D;
+import marcono1234.structure_tools.util.Int3D;
+import marcono1234.structure_tools.util.NbtCollectors;
+import marcono1234.structure_tools.util.NbtDeduplicator;
+import marcono1234.structure_tools.util.NbtLimitExceededException;
+import marcono1234.structure_tools.util.NbtReadLimits;
+import marcono1234.structure_tools.util.NbtTagId;
+import marcono1234.structure_tools.util.NbtUtils;
+import marcono1234.structure_tools.util.NbtWriter;
+import marcono1234.structure_tools.util.RawNbt;
+import net.querz.nbt.CompoundTag;
+import net.querz.nbt.ListTag;
+import net.querz.nbt.NBTUtil;
+
+class StructureReaderTest {
+    private final Structure structure;
+    private final CompoundTag structureNbt;
+    
+    StructureReaderTest() {
+        final CompoundTag blockNbt = new CompoundTag();
+        blockNbt.putString("id", "minecraft:chest");
+        final ListTag<CompoundTag> items = new ListTag<>();
+        items.add(new CompoundTag());
+        blockNbt.put("Items", items);
+        blockNbt.putIntArray("ints", new int[] {1, 2, 3});
+        
+        final CompoundTag properties = new CompoundTag();
+        properties.putString("facing", "north");
+        
+        final CompoundTag entityNbt = new CompoundTag();
+        entityNbt.putString("id", "minecraft:pig");
+        entityNbt.putLongArray("longs", new long[] {Long.MIN_VALUE, Long.MAX_VALUE});
+        
+        structure = new Structure(
+            new Int3D(2, 3, 4),
+            new Int3D(40, 3, 4),
+            Arrays.asList(
+                new BlockInfo(new Int3D(0, 1, 2), 0, blockNbt),
+                new BlockInfo(new Int3D(1, 2, 3), 1)
+            ),
+            Arrays.asList(
+                Arrays.asList(new BlockState("a", properties), new BlockState("b")),
+                Arrays.asList(new BlockState("a1"), new BlockState("b1"))
+            ),
+            Arrays.asList(
+                new EntityInfo(new Double3D(0.5, 1.5, 2.5), new Int3D(0, 1, 2), entityNbt)
+            ),
+            1500,
+            "authorValue"
+        );
+        structureNbt = structure.toNbt();
+        // Unknown tags should be skipped
+        structureNbt.putString("unknown", "value");
+        structureNbt.put("unknownList", NbtUtils.toNbtList(Arrays.asList(blockNbt, entityNbt), CompoundTag::clone));
+    }
+    
+    private static Structure writeAndRead(final CompoundTag compound, final boolean compressed, final StructureProjection projection) throws IOException {
+        final Path path = Files.createTempFile("structure", ".nbt");
+        
+        try {
+            NBTUtil.writeTag(compound, path.toString(), compressed);
+            return new StructureReader(projection).readFromFile(path);
+        }
+        finally {
+            Files.delete(path);
+        }
+    }
+    
+    private static Structure writeAndRead(final CompoundTag compound, final boolean compressed) throws IOException {
+        return writeAndRead(compound, compressed, StructureProjection.ALL);
+    }
+    
+    @Test
+    void testRead() throws IOException {
+        assertEquals(structure, writeAndRead(structureNbt, true));
+    }
+    
+    @Test
+    void testReadUncompressed() throws IOException {
+        assertEquals(structure, writeAndRead(structureNbt, false));
+    }
+    
+    @Test
+    void testReadSinglePalette() throws IOException {
+        final CompoundTag compound = structureNbt.clone();
+        compound.remove("palettes");
+        compound.put("palette", structure.getPalettes().get(0).stream()
+            .map(BlockState::toNbt)
+            .collect(NbtCollectors.toList())
+        );
+        
+        assertEquals(Structure.fromNbt(compound), writeAndRead(compound, true));
+    }
+    
+    @Test
+    void testReadFiles() throws IOException {
+        final List<Path> paths;
+        
+        try (Stream<Path> files = Files.list(Paths.get("src/test/resources/structures"))) {
+            paths = files.collect(Collectors.toList());
+        }
+        
+        for (final Path path : paths) {
+            assertEquals(Structure.fromNbt((CompoundTag) NBTUtil.readTag(path.toFile())), Structure.readFromFile(path));
+        }
+    }
+    
+    @Test
+    void testMissingTag() {
+        final CompoundTag compound = structureNbt.clone();
+        compound.remove("blocks");
+        
+        final IOException exception = assertThrows(IOException.class, () -> writeAndRead(compound, true));
+        assertEquals("The structure is missing the tag 'blocks'", exception.getMessage());
+    }
+    
+    @Test
+    void testWrongType() {
+        final CompoundTag compound = structureNbt.clone();
+        compound.putString("DataVersion", "1500");
+        
+        final IOException exception = assertThrows(IOException.class, () -> writeAndRead(compound, true));
+        assertEquals("Expected tag 'DataVersion' to be TAG_Int, but was TAG_String", exception.getMessage());
+    }
+    
+    @Test
+    void testWrongCoordinatesCount() {
+        final CompoundTag compound = structureNbt.clone();
+        final ListTag<?> size = compound.getListTag("size");
+        size.remove(2);
+        
+        final IOException exception = assertThrows(IOException.class, () -> writeAndRead(compound, true));
+        assertEquals("Expected list of size 3, actual size is 2", exception.getMessage());
+    }
+    
+    @Test
+    void testReadHeaderOnly() throws IOException {
+        final Structure expected = new Structure(
+            structure.getSize(),
+            structure.getActualSize(),
+            Collections.emptyList(),
+            Collections.emptyList(),
+            null,
+            structure.getDataVersion(),
+            structure.getAuthor().get()
+        );
+        assertEquals(expected, writeAndRead(structureNbt, true, StructureProjection.HEADER_ONLY));
+    }
+    
+    @Test
+    void testReadPaletteOnly() throws IOException {
+        final Structure expected = new Structure(
+            structure.getSize(),
+            structure.getActualSize(),
+            Collections.emptyList(),
+            structure.getPalettes(),
+            null,
+            structure.getDataVersion(),
+            structure.getAuthor().get()
+        );
+        assertEquals(expected, writeAndRead(structureNbt, true, StructureProjection.PALETTE_ONLY));
+    }
+    
+    @Test
+    void testReadWithoutNbt() throws IOException {
+        final Structure expected = new Structure(
+            structure.getSize(),
+            structure.getActualSize(),
+            structure.getBlocks().stream()
+                .map(blockInfo -> new BlockInfo(blockInfo.getPos(), blockInfo.getState()))
+                .collect(Collectors.toList()),
+            structure.getPalettes(),
+            null,
+            structure.getDataVersion(),
+            structure.getAuthor().get()
+        );
+        assertEquals(expected, writeAndRead(structureNbt, true, StructureProjection.WITHOUT_NBT));
+    }
+    
+    @Test
+    void testProjectionStillVerifiesTypes() {
+        final CompoundTag compound = structureNbt.clone();
+        compound.putString("blocks", "value");
+        
+        final IOException exception = assertThrows(IOException.class, () -> writeAndRead(compound, true, StructureProjection.HEADER_ONLY));
+        assertEquals("Expected tag 'blocks' to be TAG_List, but was TAG_String", exception.getMessage());
+    }
+    
+    @Test
+    void testReadHeader() throws IOException {
+        final Path path = Files.createTempFile("structure", ".nbt");
+        
+        try {
+            NBTUtil.writeTag(structureNbt, path.toString(), true);
+            assertEquals(StructureHeader.fromStructure(structure), new StructureReader().readHeaderFromFile(path));
+        }
+        finally {
+            Files.delete(path);
+        }
+    }
+    
+    @Test
+    void testReadHeaderStopsEarly() throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        // Writes all header tags, including the structure-tools tag, so reading can stop after them
+        new StructureWriter(false, 0, 1).write(structure, outputStream);
+        final byte[] data = outputStream.toByteArray();
+        // Replace the TAG_End of the root compound with an invalid tag ID
+        data[data.length - 1] = (byte) 0xFF;
+        
+        assertThrows(IOException.class, () -> new StructureReader().read(new ByteArrayInputStream(data)));
+        assertEquals(StructureHeader.fromStructure(structure), new StructureReader().readHeader(new ByteArrayInputStream(data)));
+    }
+    
+    @Test
+    void testReadHeaderFiles() throws IOException {
+        final List<Path> paths;
+        
+        try (Stream<Path> files = Files.list(Paths.get("src/test/resources/structures"))) {
+            paths = files.collect(Collectors.toList());
+        }
+        
+        for (final Path path : paths) {
+            assertEquals(StructureHeader.fromStructure(Structure.readFromFile(path)), new StructureReader().readHeaderFromFile(path));
+        }
+    }
+    
+    private static NbtLimitExceededException assertLimitExceeded(final byte[] data, final NbtReadLimits limits, final String expectedLimitName) {
+        final StructureReader reader = new StructureReader(StructureProjection.ALL, limits);
+        final NbtLimitExceededException exception = assertThrows(NbtLimitExceededException.class, () -> reader.read(new ByteArrayInputStream(data)));
+        assertEquals(expectedLimitName, exception.getLimitName());
+        
+        return exception;
+    }
+    
+    @Test
+    void testReadLimits() throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new StructureWriter(true, Deflater.DEFAULT_COMPRESSION, 1024).write(structure, outputStream);
+        final byte[] data = outputStream.toByteArray();
+        
+        final NbtReadLimits sufficientLimits = new NbtReadLimits(10_000, 10, 3, 20);
+        assertEquals(structure, new StructureReader(StructureProjection.ALL, sufficientLimits).read(new ByteArrayInputStream(data)));
+        
+        // Limits apply to uncompressed data
+        final NbtLimitExceededException exception = assertLimitExceeded(data, new NbtReadLimits(100, 10, 3, 20), "maxBytes");
+        assertEquals(100, exception.getLimit());
+        assertLimitExceeded(data, new NbtReadLimits(10_000, 1, 3, 20), "maxListLength");
+        assertLimitExceeded(data, new NbtReadLimits(10_000, 10, 2, 20), "maxDepth");
+        assertLimitExceeded(data, new NbtReadLimits(10_000, 10, 3, 10), "maxStringLength");
+    }
+    
+    @Test
+    void testReadLimitsHugeList() throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final NbtWriter writer = new NbtWriter(outputStream);
+        writer.writeTagHeader(NbtTagId.COMPOUND, "");
+        writer.writeTagHeader(NbtTagId.LIST, "blocks");
+        writer.writeListHeader(NbtTagId.COMPOUND, Integer.MAX_VALUE);
+        writer.flush();
+        
+        // Should fail before allocating memory for the list
+        final NbtLimitExceededException exception = assertLimitExceeded(outputStream.toByteArray(), new NbtReadLimits(1_000_000, Integer.MAX_VALUE, 512, 100), "maxBytes");
+        assertTrue(exception.getActualValue() > Integer.MAX_VALUE);
+    }
+    
+    @Test
+    void testHugeListLengthWithoutLimits() throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final NbtWriter writer = new NbtWriter(outputStream);
+        writer.writeTagHeader(NbtTagId.COMPOUND, "");
+        writer.writeTagHeader(NbtTagId.LIST, "blocks");
+        writer.writeListHeader(NbtTagId.COMPOUND, Integer.MAX_VALUE);
+        writer.flush();
+        
+        // Should fail because the data ends, without allocating memory for the claimed length
+        assertThrows(EOFException.class, () -> new StructureReader().read(new ByteArrayInputStream(outputStream.toByteArray())));
+    }
+    
+    @Test
+    void testReadRawNbt() throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new StructureWriter(false, 0, 1).write(structure, outputStream);
+        final StructureReader reader = new StructureReader(StructureProjection.ALL, NbtReadLimits.UNLIMITED, true);
+        final Structure read = reader.read(new ByteArrayInputStream(outputStream.toByteArray()));
+        
+        assertEquals(structure, read);
+        assertTrue(read.getBlocks().get(0).getRawNbt().isPresent());
+        assertFalse(read.getBlocks().get(1).hasNbt());
+        assertTrue(read.getEntities().get().get(0).getRawNbt().isPresent());
+        
+        // Serialized data should be written as is
+        final ByteArrayOutputStream rewritten = new ByteArrayOutputStream();
+        new StructureWriter(false, 0, 1).write(read, rewritten);
+        assertEquals(structure, new StructureReader().read(new ByteArrayInputStream(rewritten.toByteArray())));
+    }
+    
+    @Test
+    void testReadRawNbtDeeperThanDefaultMaxDepth() throws IOException {
+        final CompoundTag blockNbt = new CompoundTag();
+        CompoundTag nested = blockNbt;
+        
+        for (int depth = 0; depth < NbtReadLimits.DEFAULT_MAX_DEPTH + 10; depth++) {
+            final CompoundTag child = new CompoundTag();
+            nested.put("nested", child);
+            nested = child;
+        }
+        
+        final Structure deepStructure = new Structure(
+            new Int3D(1, 1, 1),
+            Collections.singletonList(new BlockInfo(new Int3D(0, 0, 0), 0, blockNbt)),
+            Collections.singletonList(Collections.singletonList(new BlockState("a"))),
+            null,
+            1500,
+            null
+        );
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new StructureWriter(false, 0, 1).write(deepStructure, outputStream);
+        
+        final NbtReadLimits limits = new NbtReadLimits(Long.MAX_VALUE, Integer.MAX_VALUE, 2 * NbtReadLimits.DEFAULT_MAX_DEPTH, Integer.MAX_VALUE);
+        final Structure read = new StructureReader(StructureProjection.ALL, limits, true).read(new ByteArrayInputStream(outputStream.toByteArray()));
+        
+        assertTrue(read.getBlocks().get(0).getRawNbt().isPresent());
+        // Decoding the data must not apply the default maximum depth
+        assertEquals(Optional.of(blockNbt), read.getBlocks().get(0).getNbt());
+    }
+    
+    @Test
+    void testDeduplicateBlockNbt() throws IOException {
+        final CompoundTag chestNbt = new CompoundTag();
+        chestNbt.putString("id", "minecraft:chest");
+        final CompoundTag signNbt = new CompoundTag();
+        signNbt.putString("id", "minecraft:sign");
+        
+        final Structure withDuplicates = new Structure(
+            structure.getSize(),
+            Arrays.asList(
+                new BlockInfo(new Int3D(0, 0, 0), 0, chestNbt),
+                new BlockInfo(new Int3D(0, 0, 1), 0, chestNbt.clone()),
+                new BlockInfo(new Int3D(0, 0, 2), 1, signNbt),
+                new BlockInfo(new Int3D(0, 0, 3), 1)
+            ),
+            structure.getPalettes(),
+            null,
+            structure.getDataVersion(),
+            null
+        );
+        
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new StructureWriter(false, 0, 1).write(withDuplicates, outputStream);
+        final NbtDeduplicator deduplicator = new NbtDeduplicator();
+        final StructureReader reader = new StructureReader(StructureProjection.ALL, NbtReadLimits.UNLIMITED, false, deduplicator);
+        final Structure read = reader.read(new ByteArrayInputStream(outputStream.toByteArray()));
+        final Structure readAgain = reader.read(new ByteArrayInputStream(outputStream.toByteArray()));
+        
+        assertEquals(withDuplicates, read);
+        assertEquals(2, deduplicator.getDistinctCount());
+        
+        // Identical NBT data is shared, also between structures
+        final RawNbt chestRawNbt = read.getBlocks().get(0).getRawNbt().get();
+        assertSame(chestRawNbt, read.getBlocks().get(1).getRawNbt().get());
+        assertSame(chestRawNbt, readAgain.getBlocks().get(0).getRawNbt().get());
+        assertNotSame(chestRawNbt, read.getBlocks().get(2).getRawNbt().get());
+        assertEquals(chestNbt, read.getBlocks().get(1).getNbt().get());
+    }
+}
@@ -1,8 +1,13 @@
 package marcono1234.structure_tools.structure;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.function.Function;
@@ -16,6 +21,7 @@ import marcono1234.structure_tools.util.Double3D;
 import marcono1234.structure_tools.util.Int3D;
 import marcono1234.structure_tools.util.NbtCollectors;
 import marcono1234.structure_tools.util.NbtUtils;
+import marcono1234.structure_tools.util.RawNbt;
 import net.querz.nbt.CompoundTag;
 
 class StructureTest {
@@ -184,4 +190,126 @@ class StructureTest {
             assertEquals(size, structure.getActualSize());
         }
     }
+    
+    @Test
+    void testNbtLargeStructure() {
+        // Large enough to be converted in parallel
+        final int blocksCount = NbtUtils.PARALLEL_THRESHOLD * 4 + 1;
+        final List<BlockInfo> largeBlocks = new ArrayList<>(blocksCount);
+        final List<EntityInfo> largeEntities = new ArrayList<>(blocksCount);
+        
+        for (int index = 0; index < blocksCount; index++) {
+            final Int3D pos = new Int3D(index % 16, index / 256, (index / 16) % 16);
+            largeBlocks.add(new BlockInfo(pos, index % 3));
+            
+            final CompoundTag entityNbt = new CompoundTag();
+            entityNbt.putInt("index", index);
+            largeEntities.add(new EntityInfo(new Double3D(pos.getX(), pos.getY(), pos.getZ()), pos, entityNbt));
+        }
+        
+        final Structure largeStructure = new Structure(
+            new Int3D(16, blocksCount / 256 + 1, 16),
+            largeBlocks,
+            singlePalettes,
+            largeEntities,
+            1500,
+            null
+        );
+        final CompoundTag nbt = largeStructure.toNbt();
+        
+        for (int index = 0; index < blocksCount; index++) {
+            assertEquals(largeBlocks.get(index).toNbt(), nbt.getListTag("blocks").get(index));
+        }
+        
+        assertEquals(largeStructure, Structure.fromNbt(nbt));
+    }
+    
+    @Test
+    void testContentHash() {
+        final Structure fromNbt = Structure.fromNbt(structureOptionalsNbt);
+        assertEquals(structureOptionals.getContentHash(), fromNbt.getContentHash());
+        assertEquals(structureOptionals.hashCode(), fromNbt.hashCode());
+        assertEquals(structureOptionals, fromNbt);
+        // Frozen structures compare only the hashes
+        assertEquals(structureOptionals.freeze(), fromNbt.freeze());
+        assertEquals(structureOptionals.freeze().hashCode(), fromNbt.hashCode());
+        assertEquals(structureOptionals.freeze().hashCode(), fromNbt.freeze().hashCode());
+        assertEquals(32, structureOptionals.getContentHash().toString().length());
+        
+        assertNotEquals(structure.getContentHash(), structureOptionals.getContentHash());
+        assertNotEquals(structure, structureOptionals);
+        
+        final CompoundTag blockNbt = new CompoundTag();
+        blockNbt.putString("id", "minecraft:chest");
+        blockNbt.putInt("value", 1);
+        final Structure withNbt = new Structure(
+            size,
+            Arrays.asList(new BlockInfo(new Int3D(1, 2, 3), 0, blockNbt)),
+            singlePalettes,
+            null,
+            1500,
+            null
+        );
+        // Serialized NBT data has the same hash as the decoded data
+        final Structure withRawNbt = new Structure(
+            size,
+            Arrays.asList(new BlockInfo(new Int3D(1, 2, 3), 0, RawNbt.fromCompound(blockNbt))),
+            singlePalettes,
+            null,
+            1500,
+            null
+        );
+        assertEquals(withNbt.getContentHash(), withRawNbt.getContentHash());
+        
+        blockNbt.putInt("value", 2);
+        final Structure withModifiedNbt = new Structure(
+            size,
+            Arrays.asList(new BlockInfo(new Int3D(1, 2, 3), 0, blockNbt)),
+            singlePalettes,
+            null,
+            1500,
+            null
+        );
+        assertNotEquals(withRawNbt.getContentHash(), withModifiedNbt.getContentHash());
+        
+        // Hash of mutable structure is not cached
+        final ContentHash hashBeforeModification = withModifiedNbt.getContentHash();
+        blockNbt.putInt("value", 1);
+        assertEquals(withNbt.getContentHash(), withModifiedNbt.getContentHash());
+        assertNotEquals(hashBeforeModification, withModifiedNbt.getContentHash());
+        assertEquals(withNbt, withModifiedNbt);
+    }
+    
+    @Test
+    void testFreeze() {
+        final CompoundTag blockNbt = new CompoundTag();
+        blockNbt.putString("id", "minecraft:chest");
+        final Structure mutable = new Structure(
+            size,
+            new ArrayList<>(Arrays.asList(new BlockInfo(new Int3D(1, 2, 3), 0, blockNbt))),
+            singlePalettes,
+            new ArrayList<>(structureOptionals.getEntities().get()),
+            1500,
+            null
+        );
+        assertFalse(mutable.isFrozen());
+        
+        final Structure frozen = mutable.freeze();
+        assertTrue(frozen.isFrozen());
+        assertSame(frozen, frozen.freeze());
+        assertEquals(mutable.getContentHash(), frozen.getContentHash());
+        
+        assertTrue(frozen.getBlocks().get(0).isFrozen());
+        assertTrue(frozen.getEntities().get().get(0).isFrozen());
+        assertTrue(frozen.getPalettes().get(0).get(0).isInterned());
+        assertThrows(UnsupportedOperationException.class, () -> frozen.getBlocks().remove(0));
+        assertThrows(UnsupportedOperationException.class, () -> frozen.getPalettes().get(0).set(0, new BlockState("d")));
+        
+        // Modifying the NBT data of the original or the returned copies has no effect
+        blockNbt.putBoolean("modified", true);
+        frozen.getBlocks().get(0).getNbt().get().putBoolean("modified", true);
+        frozen.getEntities().get().get(0).getNbt().putBoolean("modified", true);
+        assertFalse(frozen.getBlocks().get(0).getNbt().get().containsKey("modified"));
+        assertFalse(frozen.getEntities().get().get(0).getNbt().containsKey("modified"));
+    }
 }
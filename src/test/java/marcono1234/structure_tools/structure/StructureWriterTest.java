@@ -0,0 +1,127 @@
+package marcono1234.structure_tools.structure;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.Deflater;
+
+import org.junit.jupiter.api.Test;
+
+import marcono1234.structure_tools.util.Double3D;
+import marcono1234.structure_tools.util.Int3D;
+import marcono1234.structure_tools.util.NbtTagId;
+import net.querz.nbt.CompoundTag;
+import net.querz.nbt.ListTag;
+import net.querz.nbt.NBTUtil;
+import net.querz.nbt.StringTag;
+
+class StructureWriterTest {
+    private final Structure structure;
+    private final Structure structureSinglePalette;
+    
+    StructureWriterTest() {
+        final CompoundTag blockNbt = new CompoundTag();
+        blockNbt.putString("id", "minecraft:chest");
+        blockNbt.put("Items", new ListTag<StringTag>());
+        blockNbt.putByteArray("bytes", new byte[] {1, 2, 3});
+        blockNbt.putDouble("double", 1.5);
+        
+        final CompoundTag properties = new CompoundTag();
+        properties.putString("facing", "north");
+        
+        final CompoundTag entityNbt = new CompoundTag();
+        final ListTag<StringTag> tags = new ListTag<>();
+        tags.addString("a");
+        tags.addString("b");
+        entityNbt.put("Tags", tags);
+        
+        structure = new Structure(
+            new Int3D(2, 3, 4),
+            new Int3D(40, 3, 4),
+            Arrays.asList(
+                new BlockInfo(new Int3D(0, 1, 2), 0, blockNbt),
+                new BlockInfo(new Int3D(1, 2, 3), 1)
+            ),
+            Arrays.asList(
+                Arrays.asList(new BlockState("a", properties), new BlockState("b")),
+                Arrays.asList(new BlockState("a1"), new BlockState("b1"))
+            ),
+            Collections.singletonList(
+                new EntityInfo(new Double3D(0.5, 1.5, 2.5), new Int3D(0, 1, 2), entityNbt)
+            ),
+            1500,
+            "authorValue"
+        );
+        structureSinglePalette = new Structure(
+            new Int3D(2, 3, 4),
+            Collections.singletonList(new BlockInfo(new Int3D(0, 1, 2), 0)),
+            Collections.singletonList(Collections.singletonList(new BlockState("a"))),
+            null,
+            1500,
+            null
+        );
+    }
+    
+    private static void assertWrittenAsNbt(final Structure structure) throws IOException {
+        final Path path = Files.createTempFile("structure", ".nbt");
+        
+        try {
+            new StructureWriter().writeToFile(structure, path);
+            assertEquals(structure.toNbt(), NBTUtil.readTag(path.toFile()));
+        }
+        finally {
+            Files.delete(path);
+        }
+    }
+    
+    @Test
+    void testWrite() throws IOException {
+        assertWrittenAsNbt(structure);
+    }
+    
+    @Test
+    void testWriteSinglePalette() throws IOException {
+        assertWrittenAsNbt(structureSinglePalette);
+    }
+    
+    @Test
+    void testWriteRead() throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new StructureWriter().write(structure, Channels.newChannel(outputStream));
+        
+        assertEquals(structure, new StructureReader().read(new ByteArrayInputStream(outputStream.toByteArray())));
+    }
+    
+    @Test
+    void testWriteUncompressed() throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new StructureWriter(false, Deflater.DEFAULT_COMPRESSION, 1).write(structure, outputStream);
+        final byte[] data = outputStream.toByteArray();
+        
+        // Starts with root compound tag ID
+        assertEquals(NbtTagId.COMPOUND, data[0]);
+        assertEquals(structure, new StructureReader().read(new ByteArrayInputStream(data)));
+    }
+    
+    @Test
+    void testWriteCompressionLevel() throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new StructureWriter(true, Deflater.BEST_COMPRESSION, 64).write(structure, outputStream);
+        
+        assertEquals(structure, new StructureReader().read(new ByteArrayInputStream(outputStream.toByteArray())));
+    }
+    
+    @Test
+    void testInvalidCompressionSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new StructureWriter(true, 10, 100));
+        assertThrows(IllegalArgumentException.class, () -> new StructureWriter(true, 1, 0));
+    }
+}
@@ -0,0 +1,93 @@
+package marcono1234.structure_tools.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+import marcono1234.structure_tools.gluer.Layout;
+import marcono1234.structure_tools.gluer.Layout.StructureInfo;
+import marcono1234.structure_tools.structure.BinaryStructure;
+import marcono1234.structure_tools.structure.Structure;
+import marcono1234.structure_tools.structure.StructureLoader;
+
+class ArchivePathHelperTest {
+    private static final Path STRUCTURE_PATH = Paths.get("src/test/resources/structures/x0y0z0.nbt");
+    
+    private static Path createArchive() throws IOException {
+        final Path archivePath = Files.createTempFile("pack", ".zip");
+        
+        try (OutputStream outputStream = Files.newOutputStream(archivePath)) {
+            final ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream);
+            zipOutputStream.putNextEntry(new ZipEntry("data/ns/structures/a.nbt"));
+            zipOutputStream.write(Files.readAllBytes(STRUCTURE_PATH));
+            zipOutputStream.closeEntry();
+            
+            zipOutputStream.putNextEntry(new ZipEntry("data/ns/structures/a" + BinaryStructure.FILE_EXTENSION));
+            BinaryStructure.write(Structure.readFromFile(STRUCTURE_PATH), zipOutputStream);
+            zipOutputStream.closeEntry();
+            zipOutputStream.finish();
+        }
+        
+        return archivePath;
+    }
+    
+    @Test
+    void testParse() throws IOException {
+        assertEquals(Paths.get("a/b.nbt"), ArchivePathHelper.parse("a/b.nbt"));
+        
+        final Path archivePath = createArchive();
+        
+        try {
+            final Path entryPath = ArchivePathHelper.parse(archivePath + "!/data/ns/structures/a.nbt");
+            assertEquals("/data/ns/structures/a.nbt", entryPath.toString());
+            // File system should be shared
+            assertSame(entryPath.getFileSystem(), ArchivePathHelper.parse(archivePath + "!/data/ns/structures/a.stb").getFileSystem());
+            
+            final Structure expected = Structure.readFromFile(STRUCTURE_PATH);
+            assertEquals(expected, StructureLoader.DEFAULT.load(entryPath));
+            assertEquals(expected, StructureLoader.DEFAULT.load(entryPath.resolveSibling("a" + BinaryStructure.FILE_EXTENSION)));
+        }
+        finally {
+            ArchivePathHelper.closeAll();
+            Files.delete(archivePath);
+        }
+    }
+    
+    @Test
+    void testLayout() throws IOException {
+        final Path archivePath = createArchive();
+        
+        try {
+            // Backslashes in Windows paths have to be escaped
+            final String layoutJson = "[[[\"" + archivePath.toString().replace("\\", "\\\\") + "!/data/ns/structures/a.nbt\"]]]";
+            final Layout layout = Layout.fromInputStream(new ByteArrayInputStream(layoutJson.getBytes(StandardCharsets.UTF_8)));
+            final Iterator<StructureInfo> structureInfos = layout.createStructureInfoIterator();
+            
+            assertEquals(new StructureInfo(new Int3D(0, 0, 0), Structure.readFromFile(STRUCTURE_PATH)), structureInfos.next());
+            assertFalse(structureInfos.hasNext());
+        }
+        finally {
+            ArchivePathHelper.closeAll();
+            Files.delete(archivePath);
+        }
+    }
+    
+    @Test
+    void testMissingArchive() {
+        assertThrows(IOException.class, () -> ArchivePathHelper.parse("does-not-exist.zip!/a.nbt"));
+    }
+}
@@ -1,6 +1,9 @@
 package marcono1234.structure_tools.util;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.Objects;
 
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
@@ -36,11 +39,15 @@ class Double3DTest {
         final Double3D second = new Double3D(Double.NaN, Double.NaN, Double.NaN);
         
         assertEquals(first, second);
+        // Same as Double.equals
+        assertNotEquals(new Double3D(0.0, 0, 0), new Double3D(-0.0, 0, 0));
     }
     
     @Test
     void testHashCode() {
         assertEquals(new Double3D(1, 2, 3).hashCode(), new Double3D(1, 2, 3).hashCode());
+        // Same hash code as before, when Objects.hash was used
+        assertEquals(Objects.hash(1.5, -2.0, Double.NaN), new Double3D(1.5, -2.0, Double.NaN).hashCode());
     }
     
     @Test
@@ -6,6 +6,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.function.Predicate;
 
 import org.junit.jupiter.api.Test;
@@ -38,6 +39,8 @@ class Int3DTest {
     @Test
     void testHashCode() {
         assertEquals(new Int3D(1, 2, 3).hashCode(), new Int3D(1, 2, 3).hashCode());
+        // Same hash code as before, when Objects.hash was used
+        assertEquals(Objects.hash(1, -2, 3), new Int3D(1, -2, 3).hashCode());
     }
     
     @Test
@@ -0,0 +1,45 @@
+package marcono1234.structure_tools.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+class NbtNameTest {
+    private static NbtReader writeNames(final String... names) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final NbtWriter writer = new NbtWriter(outputStream);
+        
+        for (final String name : names) {
+            writer.writeTagHeader(NbtTagId.END, NbtName.of(name));
+        }
+        writer.flush();
+        
+        return new NbtReader(new ByteArrayInputStream(outputStream.toByteArray()));
+    }
+    
+    @Test
+    void testReadName() throws IOException {
+        final NbtName[] knownNames = {NbtName.of("pos"), NbtName.of("state"), NbtName.of("\u00E4\0")};
+        final NbtReader reader = writeNames("state", "po", "\u00E4\0", "pos", "unknown", "");
+        
+        final int[] expectedIndices = {1, -1, 2, 0, -1, -1};
+        
+        for (final int expectedIndex : expectedIndices) {
+            assertEquals(NbtTagId.END, reader.readTagId());
+            assertEquals(expectedIndex, reader.readName(knownNames));
+        }
+    }
+    
+    @Test
+    void testEncodingMatchesWriteString() throws IOException {
+        final String name = "a\u00E4\0\uD83D\uDE00";
+        final NbtReader reader = writeNames(name);
+        
+        assertEquals(NbtTagId.END, reader.readTagId());
+        assertEquals(name, reader.readName());
+    }
+}
@@ -0,0 +1,74 @@
+package marcono1234.structure_tools.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class PackedPosTest {
+    @Test
+    void testPack() {
+        final List<Int3D> positions = Arrays.asList(
+            new Int3D(0, 0, 0),
+            new Int3D(1, -2, 3),
+            new Int3D(PackedPos.MIN_COORDINATE, PackedPos.MAX_COORDINATE, -1),
+            new Int3D(PackedPos.MAX_COORDINATE, PackedPos.MIN_COORDINATE, PackedPos.MAX_COORDINATE)
+        );
+        
+        for (final Int3D pos : positions) {
+            final long packedPos = PackedPos.pack(pos);
+            
+            assertEquals(pos.getX(), PackedPos.unpackX(packedPos));
+            assertEquals(pos.getY(), PackedPos.unpackY(packedPos));
+            assertEquals(pos.getZ(), PackedPos.unpackZ(packedPos));
+            assertEquals(pos, PackedPos.unpack(packedPos));
+        }
+        
+        final IllegalArgumentException exception = assertThrows(
+            IllegalArgumentException.class,
+            () -> PackedPos.pack(0, PackedPos.MAX_COORDINATE + 1, 0)
+        );
+        assertEquals("Position [x=0, y=1048576, z=0] cannot be packed", exception.getMessage());
+    }
+    
+    @Test
+    void testAdd() {
+        final long packedPos = PackedPos.pack(1, 2, 3);
+        
+        assertEquals(new Int3D(-9, 22, 3), PackedPos.unpack(PackedPos.add(packedPos, -10, 20, 0)));
+        assertThrows(IllegalArgumentException.class, () -> PackedPos.add(packedPos, PackedPos.MAX_COORDINATE, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> PackedPos.add(packedPos, 0, Integer.MAX_VALUE, 0));
+    }
+    
+    @Test
+    void testIsWithin() {
+        assertTrue(PackedPos.isWithin(PackedPos.pack(0, 0, 0), 1, 1, 1));
+        assertTrue(PackedPos.isWithin(PackedPos.pack(1, 2, 3), 2, 3, 4));
+        assertFalse(PackedPos.isWithin(PackedPos.pack(1, 2, 3), 2, 2, 4));
+        assertFalse(PackedPos.isWithin(PackedPos.pack(-1, 0, 0), 2, 2, 2));
+    }
+    
+    @Test
+    void testCompare() {
+        // Ordered by Y, then X, then Z
+        final List<Int3D> ordered = Arrays.asList(
+            new Int3D(5, -1, 5),
+            new Int3D(-3, 0, 7),
+            new Int3D(0, 0, -2),
+            new Int3D(0, 0, 1),
+            new Int3D(-5, 1, 0)
+        );
+        
+        for (int index1 = 0; index1 < ordered.size(); index1++) {
+            for (int index2 = 0; index2 < ordered.size(); index2++) {
+                final int result = PackedPos.compare(PackedPos.pack(ordered.get(index1)), PackedPos.pack(ordered.get(index2)));
+                assertEquals(Integer.signum(Integer.compare(index1, index2)), Integer.signum(result));
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package marcono1234.structure_tools.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+
+class ParallelGzipOutputStreamTest {
+    private static byte[] decompress(final byte[] compressed) throws IOException {
+        final ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+        
+        try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            final byte[] buffer = new byte[1024];
+            int readCount;
+            
+            while ((readCount = inputStream.read(buffer)) != -1) {
+                decompressed.write(buffer, 0, readCount);
+            }
+        }
+        
+        return decompressed.toByteArray();
+    }
+    
+    /**
+     * Creates data which is partially compressible and partially random. Also 
+     * used by {@link PooledGzipInputStreamTest}.
+     */
+    static byte[] createData(final int length) {
+        final Random random = new Random(1);
+        final byte[] data = new byte[length];
+        
+        for (int i = 0; i < length; i++) {
+            data[i] = (i / 100) % 2 == 0 ? (byte) (i % 7) : (byte) random.nextInt();
+        }
+        
+        return data;
+    }
+    
+    private static void assertRoundTrip(final byte[] data, final int compressionLevel, final int blockSize) throws IOException {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        
+        try (ParallelGzipOutputStream outputStream = new ParallelGzipOutputStream(compressed, compressionLevel, blockSize)) {
+            // Mix single byte and array writes
+            final int half = data.length / 2;
+            for (int i = 0; i < half; i++) {
+                outputStream.write(data[i]);
+            }
+            outputStream.write(data, half, data.length - half);
+        }
+        
+        assertArrayEquals(data, decompress(compressed.toByteArray()));
+    }
+    
+    @Test
+    void testEmpty() throws IOException {
+        assertRoundTrip(new byte[0], Deflater.DEFAULT_COMPRESSION, 100);
+    }
+    
+    @Test
+    void testSingleBlock() throws IOException {
+        assertRoundTrip(createData(1000), Deflater.DEFAULT_COMPRESSION, ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE);
+    }
+    
+    @Test
+    void testMultipleBlocks() throws IOException {
+        final byte[] data = createData(1_000_000);
+        // Block size smaller than dictionary size
+        assertRoundTrip(data, Deflater.DEFAULT_COMPRESSION, 1000);
+        // Data length is multiple of block size
+        assertRoundTrip(data, Deflater.BEST_SPEED, 100_000);
+        assertRoundTrip(data, Deflater.BEST_COMPRESSION, ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE);
+        assertRoundTrip(data, Deflater.NO_COMPRESSION, ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE);
+    }
+    
+    @Test
+    void testWriteAfterFinish() throws IOException {
+        final ParallelGzipOutputStream outputStream = new ParallelGzipOutputStream(new ByteArrayOutputStream());
+        outputStream.finish();
+        
+        assertThrows(IOException.class, () -> outputStream.write(1));
+    }
+    
+    @Test
+    void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new ParallelGzipOutputStream(new ByteArrayOutputStream(), 10, 100));
+        assertThrows(IllegalArgumentException.class, () -> new ParallelGzipOutputStream(new ByteArrayOutputStream(), 1, 0));
+    }
+}
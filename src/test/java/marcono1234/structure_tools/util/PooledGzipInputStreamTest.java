@@ -0,0 +1,141 @@
+package marcono1234.structure_tools.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import org.junit.jupiter.api.Test;
+
+class PooledGzipInputStreamTest {
+    private static byte[] compress(final byte[] data) throws IOException {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        
+        try (GZIPOutputStream outputStream = new GZIPOutputStream(compressed)) {
+            outputStream.write(data);
+        }
+        
+        return compressed.toByteArray();
+    }
+    
+    private static byte[] decompress(final byte[] compressed, final int readLength) throws IOException {
+        final ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+        
+        try (InputStream inputStream = new PooledGzipInputStream(new ByteArrayInputStream(compressed))) {
+            final byte[] buffer = new byte[readLength];
+            int readCount;
+            
+            while ((readCount = inputStream.read(buffer)) != -1) {
+                decompressed.write(buffer, 0, readCount);
+            }
+        }
+        
+        return decompressed.toByteArray();
+    }
+    
+    @Test
+    void testRead() throws IOException {
+        for (final int length : new int[] {0, 1, 1000, 500_000}) {
+            final byte[] data = ParallelGzipOutputStreamTest.createData(length);
+            final byte[] compressed = compress(data);
+            
+            // Small reads use the output buffer, large ones inflate directly
+            assertArrayEquals(data, decompress(compressed, 10));
+            assertArrayEquals(data, decompress(compressed, 1024 * 1024));
+        }
+    }
+    
+    @Test
+    void testReadSingleBytes() throws IOException {
+        final byte[] data = ParallelGzipOutputStreamTest.createData(1000);
+        final ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+        
+        try (InputStream inputStream = new PooledGzipInputStream(new ByteArrayInputStream(compress(data)))) {
+            int b;
+            
+            while ((b = inputStream.read()) != -1) {
+                decompressed.write(b);
+            }
+        }
+        
+        assertArrayEquals(data, decompressed.toByteArray());
+    }
+    
+    @Test
+    void testReadSmallBufferSize() throws IOException {
+        final int oldBufferSize = CodecPool.getBufferSize();
+        CodecPool.setBufferSize(3);
+        
+        try {
+            final byte[] data = ParallelGzipOutputStreamTest.createData(10_000);
+            assertArrayEquals(data, decompress(compress(data), 7));
+        }
+        finally {
+            CodecPool.setBufferSize(oldBufferSize);
+        }
+    }
+    
+    @Test
+    void testReadMultipleMembers() throws IOException {
+        final byte[] data1 = ParallelGzipOutputStreamTest.createData(1000);
+        final byte[] data2 = ParallelGzipOutputStreamTest.createData(3000);
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        compressed.write(compress(data1));
+        compressed.write(compress(data2));
+        
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(data1);
+        expected.write(data2);
+        assertArrayEquals(expected.toByteArray(), decompress(compressed.toByteArray(), 100));
+        
+        // Trailing garbage should be ignored
+        compressed.write(new byte[] {1, 2, 3, 4});
+        assertArrayEquals(expected.toByteArray(), decompress(compressed.toByteArray(), 100));
+    }
+    
+    @Test
+    void testMalformed() throws IOException {
+        assertThrows(EOFException.class, () -> decompress(new byte[0], 10));
+        assertThrows(ZipException.class, () -> decompress(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10}, 10));
+        
+        final byte[] compressed = compress(ParallelGzipOutputStreamTest.createData(1000));
+        assertThrows(EOFException.class, () -> decompress(Arrays.copyOf(compressed, compressed.length - 4), 10));
+        
+        final byte[] corruptCrc = compressed.clone();
+        corruptCrc[corruptCrc.length - 8]++;
+        assertThrows(ZipException.class, () -> decompress(corruptCrc, 10));
+    }
+    
+    @Test
+    void testCodecPoolReuse() {
+        final Inflater inflater = CodecPool.acquireInflater();
+        CodecPool.releaseInflater(inflater);
+        assertSame(inflater, CodecPool.acquireInflater());
+        CodecPool.releaseInflater(inflater);
+        
+        final Deflater deflater = CodecPool.acquireDeflater(1);
+        CodecPool.releaseDeflater(deflater, 1);
+        assertSame(deflater, CodecPool.acquireDeflater(1));
+        CodecPool.releaseDeflater(deflater, 1);
+        
+        final byte[] buffer = CodecPool.acquireBuffer();
+        assertEquals(CodecPool.getBufferSize(), buffer.length);
+        CodecPool.releaseBuffer(buffer);
+        assertSame(buffer, CodecPool.acquireBuffer());
+        CodecPool.releaseBuffer(buffer);
+        
+        assertThrows(IllegalArgumentException.class, () -> CodecPool.acquireDeflater(10));
+        assertThrows(IllegalArgumentException.class, () -> CodecPool.setBufferSize(0));
+    }
+}